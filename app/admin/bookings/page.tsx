@@ -95,6 +95,9 @@ export default function BookingManagement() {
     const [paymentFilter, setPaymentFilter] = useState<string>("all")
     const [searchTerm, setSearchTerm] = useState<string>("")
     const [bookings, setBookings] = useState<Booking[]>([])
+    // Con trỏ trang sau của danh sách (keyset theo thời gian tạo), null nếu đã hết
+    const [nextCursor, setNextCursor] = useState<{ afterCreatedAt: string | null, afterId: number } | null>(null)
+    const [loadingMore, setLoadingMore] = useState(false)
     const [stats, setStats] = useState<BookingStats>({
         totalBookings: 0,
         pendingBookings: 0,
@@ -154,46 +157,71 @@ export default function BookingManagement() {
         checkAuth();
     }, []);
 
+    // Map backend data to frontend format với trạng thái thanh toán từ hóa đơn
+    const mapBooking = (booking: any): Booking => ({
+        id: booking.id,
+        userName: booking.userName || 'N/A',
+        userEmail: booking.userEmail || 'N/A',
+        userPhone: booking.userPhone || 'N/A',
+        courtName: booking.courtName || 'N/A',
+        courtLocation: booking.courtLocation || 'N/A',
+        bookingDate: booking.bookingDate,
+        startTime: booking.startTime,
+        endTime: booking.endTime,
+        status: booking.status,
+        totalAmount: booking.totalAmount || 0,
+        paymentStatus: booking.paymentStatus || 'pending', // Lấy từ API, đã được cập nhật từ hóa đơn
+        createdAt: booking.createdAt || new Date().toISOString(),
+        notes: booking.notes
+    });
+
+    const fetchBookingPage = (cursor: { afterCreatedAt: string | null, afterId: number } | null) => {
+        const params = new URLSearchParams();
+        if (dateFilter !== "all") params.append("dateFilter", dateFilter);
+        if (statusFilter !== "all") params.append("statusFilter", statusFilter);
+        if (cursor) {
+            if (cursor.afterCreatedAt) params.append("afterCreatedAt", cursor.afterCreatedAt);
+            params.append("afterId", String(cursor.afterId));
+        }
+        return axios.get(`${API_URL}/admin/bookings/all?${params.toString()}`, getAuthHeader());
+    };
+
+    const readCursor = (data: any) =>
+        data?.hasMore ? { afterCreatedAt: data.nextAfterCreatedAt ?? null, afterId: data.nextAfterId } : null;
+
+    const loadMoreBookings = async () => {
+        if (!nextCursor) return;
+        try {
+            setLoadingMore(true);
+            const response = await fetchBookingPage(nextCursor);
+            const page = Array.isArray(response.data?.bookings) ? response.data.bookings : [];
+            setBookings(prev => [...prev, ...page.map(mapBooking)]);
+            setNextCursor(readCursor(response.data));
+        } catch (error: any) {
+            console.error("Error loading more bookings:", error);
+            setError("Có lỗi xảy ra khi tải thêm dữ liệu");
+        } finally {
+            setLoadingMore(false);
+        }
+    };
+
     const loadBookingData = async () => {
         try {
             setLoading(true);
             setError(null);
             
-            // Load bookings với filter
-            const params = new URLSearchParams();
-            if (dateFilter !== "all") params.append("dateFilter", dateFilter);
-            if (statusFilter !== "all") params.append("statusFilter", statusFilter);
-            
-            const bookingsResponse = await axios.get(
-                `${API_URL}/admin/bookings/all?${params.toString()}`, 
-                getAuthHeader()
-            );
+            // Load trang đầu của danh sách bookings với filter
+            const bookingsResponse = await fetchBookingPage(null);
             
             // Load stats
             const statsResponse = await axios.get(`${API_URL}/admin/bookings/stats`, getAuthHeader());
             
-            if (bookingsResponse.data && Array.isArray(bookingsResponse.data)) {
-                // Map backend data to frontend format với trạng thái thanh toán từ hóa đơn
-                // Backend đã cập nhật để trả về trạng thái thanh toán dựa trên hóa đơn
-                const mappedBookings = bookingsResponse.data.map((booking: any) => ({
-                    id: booking.id,
-                    userName: booking.userName || 'N/A',
-                    userEmail: booking.userEmail || 'N/A',
-                    userPhone: booking.userPhone || 'N/A',
-                    courtName: booking.courtName || 'N/A',
-                    courtLocation: booking.courtLocation || 'N/A',
-                    bookingDate: booking.bookingDate,
-                    startTime: booking.startTime,
-                    endTime: booking.endTime,
-                    status: booking.status,
-                    totalAmount: booking.totalAmount || 0,
-                    paymentStatus: booking.paymentStatus || 'pending', // Lấy từ API, đã được cập nhật từ hóa đơn
-                    createdAt: booking.createdAt || new Date().toISOString(),
-                    notes: booking.notes
-                }));
-                setBookings(mappedBookings);
+            if (bookingsResponse.data && Array.isArray(bookingsResponse.data.bookings)) {
+                setBookings(bookingsResponse.data.bookings.map(mapBooking));
+                setNextCursor(readCursor(bookingsResponse.data));
             } else {
                 setBookings([]);
+                setNextCursor(null);
             }
             
             if (statsResponse.data && typeof statsResponse.data === 'object') {
@@ -899,6 +927,13 @@ export default function BookingManagement() {
                                     </TableBody>
                                 </Table>
                             </div>
+                            {!loading && !error && nextCursor && (
+                                <div className="flex justify-center py-4">
+                                    <Button onClick={loadMoreBookings} variant="outline" disabled={loadingMore}>
+                                        {loadingMore ? "Đang tải..." : "Tải thêm"}
+                                    </Button>
+                                </div>
+                            )}
                         </CardContent>
                     </Card>
                 </div>
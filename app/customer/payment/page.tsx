@@ -571,6 +571,10 @@ const PaymentPage = () => {
     const [countDown, setCountDown] = useState(300); // 5 minutes countdown
     const [invoices, setInvoices] = useState<any[]>([]);
     const [isLoadingInvoices, setIsLoadingInvoices] = useState(false);
+    // Con trỏ trang sau của danh sách hóa đơn (id hóa đơn cuối trang), null nếu đã hết
+    const [nextInvoiceCursor, setNextInvoiceCursor] = useState<number | null>(null);
+    const [invoiceTotal, setInvoiceTotal] = useState(0);
+    const [isLoadingMoreInvoices, setIsLoadingMoreInvoices] = useState(false);
     const [selectedInvoice, setSelectedInvoice] = useState<any>(null);
     const [invoiceToPayment, setInvoiceToPayment] = useState<any>(null); // Hóa đơn đang thanh toán
     const [statusFilter, setStatusFilter] = useState('all'); // Filter for invoices
@@ -671,9 +675,12 @@ const PaymentPage = () => {
     const loadInvoices = async () => {
         try {
             setIsLoadingInvoices(true);
+            // Tải trang đầu, các trang sau tải khi bấm "Tải thêm"
             const response = await customerInvoiceApi.getMyInvoices();
             if (response.success) {
                 setInvoices(response.invoices || []);
+                setInvoiceTotal(response.total || 0);
+                setNextInvoiceCursor(response.hasMore ? response.nextCursor : null);
             }
         } catch (error) {
             console.error('Error loading invoices:', error);
@@ -682,6 +689,23 @@ const PaymentPage = () => {
         }
     };
 
+    const loadMoreInvoices = async () => {
+        if (nextInvoiceCursor == null) return;
+        try {
+            setIsLoadingMoreInvoices(true);
+            const response = await customerInvoiceApi.getMyInvoices(nextInvoiceCursor);
+            if (response.success) {
+                setInvoices(prev => [...prev, ...(response.invoices || [])]);
+                setInvoiceTotal(response.total || 0);
+                setNextInvoiceCursor(response.hasMore ? response.nextCursor : null);
+            }
+        } catch (error) {
+            console.error('Error loading more invoices:', error);
+        } finally {
+            setIsLoadingMoreInvoices(false);
+        }
+    };
+
     // Function để chuyển sang tab thanh toán với hóa đơn
     const handlePayInvoice = (invoice: any) => {
         setInvoiceToPayment(invoice);
@@ -1216,7 +1240,7 @@ const PaymentPage = () => {
                                         : 'bg-gray-100 text-gray-600 hover:bg-gray-200'
                                 }`}
                             >
-                                Tất cả ({invoices.length})
+                                Tất cả ({Math.max(invoiceTotal, invoices.length)})
                             </button>
                             <button
                                 onClick={() => setStatusFilter('pending')}
@@ -1326,6 +1350,17 @@ const PaymentPage = () => {
                                 </div>
                             </div>
                         ))}
+                        {nextInvoiceCursor != null && (
+                            <div className="flex justify-center pt-2">
+                                <button
+                                    onClick={loadMoreInvoices}
+                                    disabled={isLoadingMoreInvoices}
+                                    className="px-4 py-2 rounded-lg text-sm font-medium bg-gray-100 text-gray-600 hover:bg-gray-200 transition-colors disabled:opacity-50"
+                                >
+                                    {isLoadingMoreInvoices ? 'Đang tải...' : 'Tải thêm'}
+                                </button>
+                            </div>
+                        )}
                     </div>
                 )}
             </div>
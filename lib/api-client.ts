@@ -505,10 +505,14 @@ export const customerInvoiceApi = {
     }
   },
 
-  // Get all invoices of current user
-  async getMyInvoices() {
+  // Get one page of invoices of current user (newest first); pass nextCursor of the previous page as afterId
+  async getMyInvoices(afterId?: number | null, size?: number) {
     try {
-      const response = await fetch(`${API_BASE_URL}/customer/invoices/my-invoices`, {
+      const params = new URLSearchParams();
+      if (afterId != null) params.append('afterId', String(afterId));
+      if (size != null) params.append('size', String(size));
+      const query = params.toString();
+      const response = await fetch(`${API_BASE_URL}/customer/invoices/my-invoices${query ? `?${query}` : ''}`, {
         method: 'GET',
         headers: getAuthHeaders()
       });
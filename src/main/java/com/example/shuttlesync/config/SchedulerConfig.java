@@ -1,5 +1,6 @@
 package com.example.shuttlesync.config;
 
+import com.example.shuttlesync.dto.ExpirySweepResult;
 import com.example.shuttlesync.service.TimeSlotService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
@@ -17,15 +18,21 @@ public class SchedulerConfig {
 
     private static final Logger logger = Logger.getLogger(SchedulerConfig.class.getName());
 
+    // Lần quét đầu tiên sau khi khởi động sẽ bù toàn bộ các ngày trước đó
+    private static final LocalDate CATCH_UP_FROM = LocalDate.of(2000, 1, 1);
+
     @Autowired
     private TimeSlotService timeSlotService;
 
+    // Ngày của lần quét thành công gần nhất, null nếu chưa quét lần nào từ khi khởi động
+    private LocalDate lastSweptDate;
+
     /**
-     * Hàm này chạy mỗi phút để kiểm tra và cập nhật trạng thái các khung giờ đã qua
+     * Lưới an toàn cho SlotExpiryScheduler: định kỳ quét lại các khung giờ đã qua
+     * phòng khi hàng đợi bỏ sót (lỗi khi xử lý, booking được sửa trực tiếp trong database...)
      * Khi một khung giờ đã kết thúc, trạng thái sẽ được đặt lại thành "Trống"
-     * Điều này giúp đảm bảo khung giờ được cập nhật gần như ngay lập tức sau khi kết thúc
      */
-    @Scheduled(fixedRate = 60 * 1000) // Chạy mỗi phút
+    @Scheduled(fixedRateString = "${app.expiry.reconcile-interval-ms:900000}")
     public void resetPastTimeSlots() {
         LocalDateTime now = LocalDateTime.now();
         LocalDate today = now.toLocalDate();
@@ -34,11 +41,18 @@ public class SchedulerConfig {
         logger.info("Bắt đầu kiểm tra và reset khung giờ đã hết hạn vào lúc " + now);
         
         try {
-            // Reset trạng thái của các khung giờ đã qua trong ngày hôm nay
-            int updatedSlots = timeSlotService.resetExpiredTimeSlots(today, currentTime);
+            // Nếu đã sang ngày mới hoặc vừa khởi động lại thì quét bù cả các ngày bị bỏ lỡ
+            LocalDate fromDate = lastSweptDate != null ? lastSweptDate : CATCH_UP_FROM;
+            if (fromDate.isBefore(today)) {
+                logger.info("Quét bù khung giờ hết hạn từ ngày " + fromDate);
+            }
+
+            ExpirySweepResult result = timeSlotService.resetExpiredTimeSlots(fromDate, today, currentTime);
+            lastSweptDate = today;
             
-            if (updatedSlots > 0) {
-                logger.info("Đã reset " + updatedSlots + " khung giờ đã hết hạn vào lúc " + now);
+            if (!result.isEmpty()) {
+                logger.info("Đã hoàn thành " + result.getCompletedBookings() + " booking và reset "
+                        + result.getResetTimeSlots() + " khung giờ đã hết hạn vào lúc " + now);
             } else {
                 logger.info("Không có khung giờ nào cần reset vào lúc " + now);
             }
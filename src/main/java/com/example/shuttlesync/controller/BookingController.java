@@ -1,6 +1,7 @@
 package com.example.shuttlesync.controller;
 
 import com.example.shuttlesync.dto.BookingDTO;
+import com.example.shuttlesync.exeption.ConflictException;
 import com.example.shuttlesync.exeption.ResourceNotFoundException;
 import com.example.shuttlesync.model.Booking;
 import com.example.shuttlesync.model.Invoice;
@@ -8,7 +9,9 @@ import com.example.shuttlesync.model.Payment;
 import com.example.shuttlesync.model.TimeSlot;
 import com.example.shuttlesync.model.User;
 import com.example.shuttlesync.repository.PaymentRepository;
+import com.example.shuttlesync.service.AdminBookingListService;
 import com.example.shuttlesync.service.BookingService;
+import com.example.shuttlesync.service.DashboardMetrics;
 import com.example.shuttlesync.service.InvoiceService;
 import com.example.shuttlesync.service.UserService;
 import lombok.RequiredArgsConstructor;
@@ -16,7 +19,9 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -30,6 +35,8 @@ public class BookingController {
 
     private static final Logger logger = Logger.getLogger(BookingController.class.getName());
     private final BookingService bookingService;
+    private final AdminBookingListService adminBookingListService;
+    private final DashboardMetrics dashboardMetrics;
     private final InvoiceService invoiceService;
     private final PaymentRepository paymentRepository;
     private final UserService userService;
@@ -45,70 +52,51 @@ public class BookingController {
         return ResponseEntity.ok(bookings);
     }
 
+    /**
+     * Danh sách booking cho trang quản lý, phân trang keyset (mới tạo trước).
+     * Trang sau: truyền afterCreatedAt/afterId bằng nextAfterCreatedAt/nextAfterId của trang trước.
+     */
     @GetMapping("/admin/bookings/all")
-    public ResponseEntity<List<BookingDTO>> getAllBookings(
+    public ResponseEntity<Map<String, Object>> getAllBookings(
             @RequestParam(required = false) String dateFilter,
-            @RequestParam(required = false) String statusFilter) {
+            @RequestParam(required = false) String statusFilter,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterCreatedAt,
+            @RequestParam(required = false) Integer afterId,
+            @RequestParam(defaultValue = "50") int size) {
         logger.info("Getting all bookings with filters - dateFilter: " + dateFilter + ", statusFilter: " + statusFilter);
         
-        List<Booking> bookings;
-        
+        Byte statusId = null;
+        LocalDate fromDate = null;
+        LocalDate toDate = null;
         if (statusFilter != null && !statusFilter.equals("all")) {
-            bookings = bookingService.getBookingsByStatus(Byte.parseByte(statusFilter));
+            statusId = Byte.parseByte(statusFilter);
         } else if (dateFilter != null && !dateFilter.equals("all")) {
-            LocalDate targetDate;
-            if ("today".equals(dateFilter)) {
-                targetDate = LocalDate.now();
-            } else if ("week".equals(dateFilter)) {
-                targetDate = LocalDate.now();
-                // For week filter, get last 7 days
-                LocalDate startDate = targetDate.minusDays(7);
-                bookings = bookingService.getBookingsBetweenDates(startDate, targetDate);
-                return ResponseEntity.ok(bookings.stream()
-                    .map(this::convertToDTO)
-                    .toList());
-            } else {
-                targetDate = LocalDate.now();
-            }
-            bookings = bookingService.getBookingsByDate(targetDate);
-        } else {
-            bookings = bookingService.getAllBookings();
+            toDate = LocalDate.now();
+            // For week filter, get last 7 days
+            fromDate = "week".equals(dateFilter) ? toDate.minusDays(7) : toDate;
         }
         
-        List<BookingDTO> bookingDTOs = bookings.stream()
-            .map(this::convertToDTO)
-            .toList();
-            
-        logger.info("Returning " + bookingDTOs.size() + " bookings");
-        return ResponseEntity.ok(bookingDTOs);
+        return ResponseEntity.ok(adminBookingListService.getPage(fromDate, toDate, statusId, afterCreatedAt, afterId, size));
     }
 
     @GetMapping("/admin/bookings/stats")
     public ResponseEntity<Map<String, Object>> getBookingStats() {
         logger.info("Getting booking statistics");
         
-        List<Booking> allBookings = bookingService.getAllBookings();
-        List<Booking> todayBookings = bookingService.getBookingsByDate(LocalDate.now());
-        
-        // Calculate total revenue (simplified - sum of all booking prices)
-        double totalRevenue = allBookings.stream()
-            .filter(b -> b.getStatus().getId() == 2) // Only confirmed bookings
-            .mapToDouble(b -> b.getTimeSlot().getPrice().doubleValue())
-            .sum();
-        
-        // Get total users count (simplified - return a fixed number for now)
-        int totalUsers = 150; // Placeholder - in real app, get from UserService
+        // Tổng số liệu đọc từ bộ đếm trong bộ nhớ, số booking theo trạng thái lấy bằng một truy vấn gom nhóm
+        Map<Byte, Long> byStatus = bookingService.countBookingsByStatus();
+        BigDecimal totalRevenue = dashboardMetrics.getPaidRevenue();
         
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalBookings", allBookings.size());
-        stats.put("todayBookings", todayBookings.size());
-        stats.put("totalRevenue", totalRevenue);
-        stats.put("totalUsers", totalUsers);
-        stats.put("pendingBookings", allBookings.stream().filter(b -> b.getStatus().getId() == 1).count());
-        stats.put("confirmedBookings", allBookings.stream().filter(b -> b.getStatus().getId() == 2).count());
-        stats.put("cancelledBookings", allBookings.stream().filter(b -> b.getStatus().getId() == 3).count());
+        stats.put("totalBookings", dashboardMetrics.getTotalBookings());
+        stats.put("todayBookings", dashboardMetrics.getTodayBookings());
+        stats.put("totalRevenue", totalRevenue.doubleValue());
+        stats.put("totalUsers", dashboardMetrics.getTotalUsers());
+        stats.put("pendingBookings", byStatus.getOrDefault((byte) 1, 0L));
+        stats.put("confirmedBookings", byStatus.getOrDefault((byte) 2, 0L));
+        stats.put("cancelledBookings", byStatus.getOrDefault((byte) 3, 0L));
         
-        logger.info("Returning stats: totalBookings=" + allBookings.size() + ", totalRevenue=" + totalRevenue);
+        logger.info("Returning stats: totalBookings=" + dashboardMetrics.getTotalBookings() + ", totalRevenue=" + totalRevenue);
         return ResponseEntity.ok(stats);
     }
 
@@ -216,15 +204,7 @@ public class BookingController {
                        ", timeSlot: " + timeSlotId + ", date: " + bookingDate + 
                        ", isWalkIn: " + isWalkIn);
             
-            // Kiểm tra trước nếu khung giờ đã được đặt
-            boolean isTimeSlotAvailable = !bookingService.isTimeSlotBooked(courtId, timeSlotId, bookingDate);
-            if (!isTimeSlotAvailable) {
-                logger.warning("Time slot is already booked for court: " + courtId + 
-                      ", timeSlot: " + timeSlotId + ", date: " + bookingDate);
-                return ResponseEntity.badRequest().build();
-            }
-            
-            // Tạo booking mới với bookingChannel phù hợp
+            // Tạo booking mới (khung giờ đã có người đặt sẽ trả về 409) với bookingChannel phù hợp
             Booking.BookingChannel channel = isWalkIn ? Booking.BookingChannel.COUNTER : Booking.BookingChannel.ONLINE;
             Integer counterStaffId = isWalkIn ? 1 : null; // TODO: Lấy staffId từ JWT token trong tương lai
             
@@ -259,6 +239,10 @@ public class BookingController {
         } catch (ResourceNotFoundException e) {
             logger.severe("Resource not found: " + e.getMessage());
             return ResponseEntity.status(404).build();
+        } catch (ConflictException e) {
+            logger.warning("Time slot is already booked for court: " + request.get("courtId") +
+                  ", timeSlot: " + request.get("timeSlotId") + ", date: " + request.get("bookingDate"));
+            return ResponseEntity.status(409).build();
         } catch (IllegalArgumentException e) {
             logger.severe("Invalid argument: " + e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -3,6 +3,7 @@ package com.example.shuttlesync.controller;
 import com.example.shuttlesync.model.Configuration;
 import com.example.shuttlesync.model.User;
 import com.example.shuttlesync.service.ConfigurationService;
+import com.example.shuttlesync.service.ReferenceDataRegistry;
 import com.example.shuttlesync.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -25,6 +26,7 @@ public class ConfigurationController {
 
     private final ConfigurationService configurationService;
     private final UserService userService;
+    private final ReferenceDataRegistry referenceDataRegistry;
 
     @GetMapping
     public ResponseEntity<List<Configuration>> getAllConfigurations() {
@@ -143,6 +145,12 @@ public class ConfigurationController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @PostMapping("/reference-data/reload")
+    public ResponseEntity<Map<String, Integer>> reloadReferenceData() {
+        log.info("Reloading reference data");
+        return ResponseEntity.ok(referenceDataRegistry.reload());
+    }
     
     private User getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -1,6 +1,7 @@
 package com.example.shuttlesync.controller;
 
 import com.example.shuttlesync.dto.*;
+import com.example.shuttlesync.exeption.ConflictException;
 import com.example.shuttlesync.model.User;
 import com.example.shuttlesync.model.Booking;
 import com.example.shuttlesync.model.Payment;
@@ -127,6 +128,11 @@ public class CustomerBookingController {
             
             Map<String, Object> result = bookingService.createBooking(userId, bookingData);
             return ResponseEntity.ok(result);
+        } catch (ConflictException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Đặt sân thất bại: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
         } catch (Exception e) {
             e.printStackTrace();
             Map<String, Object> errorResponse = new HashMap<>();
@@ -161,6 +167,12 @@ public class CustomerBookingController {
             Map<String, Object> result = bookingService.createBooking(userId, bookingData);
             log.info("Booking created successfully for userId: " + userId);
             return ResponseEntity.ok(result);
+        } catch (ConflictException e) {
+            log.warn("Slot conflict in create-test: " + e.getMessage());
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Đặt sân thất bại: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
         } catch (Exception e) {
             log.error("Error in create-test: " + e.getMessage(), e);
             e.printStackTrace();
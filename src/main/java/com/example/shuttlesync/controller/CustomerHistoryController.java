@@ -4,10 +4,12 @@ import com.example.shuttlesync.model.User;
 import com.example.shuttlesync.security.AuthenticationFacade;
 import com.example.shuttlesync.service.CustomerHistoryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,19 +41,21 @@ public class CustomerHistoryController {
     }
 
     /**
-     * Lấy danh sách booking history với filter
+     * Lấy danh sách booking history với filter.
+     * Trang sau: truyền afterDate/afterId bằng nextAfterDate/nextAfterId của trang trước.
      */
     @GetMapping("/bookings")
-    public ResponseEntity<List<Map<String, Object>>> getBookingHistory(
+    public ResponseEntity<Map<String, Object>> getBookingHistory(
             @RequestParam(defaultValue = "all") String status,
             @RequestParam(defaultValue = "all") String period,
             @RequestParam(required = false) String search,
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate afterDate,
+            @RequestParam(required = false) Integer afterId,
             @RequestParam(defaultValue = "10") int size) {
         try {
-            User currentUser = authenticationFacade.getCurrentUser();
-            List<Map<String, Object>> bookings = historyService.getBookingHistory(
-                    currentUser.getId(), status, period, search, page, size);
+            Integer userId = authenticationFacade.getCurrentUserId();
+            Map<String, Object> bookings = historyService.getBookingHistory(
+                    userId, status, period, search, afterDate, afterId, Math.max(1, Math.min(size, 100)));
             return ResponseEntity.ok(bookings);
         } catch (Exception e) {
             e.printStackTrace();
@@ -1,5 +1,6 @@
 package com.example.shuttlesync.controller;
 
+import com.example.shuttlesync.dto.CustomerInvoiceSummaryDTO;
 import com.example.shuttlesync.dto.InvoiceDTO;
 import com.example.shuttlesync.model.Invoice;
 import com.example.shuttlesync.model.User;
@@ -24,6 +25,9 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = {"http://localhost:3000", "http://127.0.0.1:3000"})
 public class CustomerInvoiceController {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final InvoiceService invoiceService;
     private final AuthenticationFacade authenticationFacade;
 
@@ -83,53 +87,36 @@ public class CustomerInvoiceController {
     }
 
     /**
-     * Lấy danh sách hóa đơn của user hiện tại
+     * Lấy danh sách hóa đơn của user hiện tại, mới nhất trước.
+     * Phân trang theo keyset: trang sau gọi lại với afterId = nextCursor của trang trước.
      */
     @GetMapping("/my-invoices")
     @PreAuthorize("hasRole('CUSTOMER')")
-    public ResponseEntity<Map<String, Object>> getMyInvoices() {
+    public ResponseEntity<Map<String, Object>> getMyInvoices(
+            @RequestParam(required = false) Integer afterId,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
         try {
-            log.info("Getting invoices for current user");
-            
-            // Get current authenticated user
-            User currentUser = authenticationFacade.getCurrentUser();
-            log.info("Current user ID: {}", currentUser.getId());
-            
-            // Lấy tất cả hóa đơn và filter theo user
-            List<Invoice> allInvoices = invoiceService.getAllInvoices();
-            log.info("Total invoices found: {}", allInvoices.size());
-            
-            List<Invoice> userInvoices = allInvoices.stream()
-                    .filter(invoice -> {
-                        try {
-                            return invoice.getBooking() != null 
-                                && invoice.getBooking().getUser() != null
-                                && invoice.getBooking().getUser().getId().equals(currentUser.getId());
-                        } catch (Exception e) {
-                            log.warn("Error filtering invoice: {}", invoice.getId(), e);
-                            return false;
-                        }
-                    })
-                    .collect(Collectors.toList());
-            
-            log.info("User invoices found: {}", userInvoices.size());
+            Integer userId = authenticationFacade.getCurrentUserId();
+            int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+            log.info("Getting invoices for user {} (afterId={}, size={})", userId, afterId, pageSize);
 
-            List<Map<String, Object>> invoiceDTOs = userInvoices.stream()
-                    .map(invoice -> {
-                        try {
-                            return convertToSimpleDTO(invoice);
-                        } catch (Exception e) {
-                            log.error("Error converting invoice {} to DTO", invoice.getId(), e);
-                            return null;
-                        }
-                    })
-                    .filter(dto -> dto != null)
+            // Lấy dư một dòng để biết còn trang sau hay không
+            List<CustomerInvoiceSummaryDTO> rows = invoiceService.getUserInvoicePage(userId, afterId, pageSize + 1);
+            boolean hasMore = rows.size() > pageSize;
+            if (hasMore) {
+                rows = rows.subList(0, pageSize);
+            }
+
+            List<Map<String, Object>> invoiceDTOs = rows.stream()
+                    .map(this::convertToSimpleDTO)
                     .collect(Collectors.toList());
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("invoices", invoiceDTOs);
-            response.put("total", invoiceDTOs.size());
+            response.put("total", invoiceService.countUserInvoices(userId));
+            response.put("hasMore", hasMore);
+            response.put("nextCursor", hasMore ? rows.get(rows.size() - 1).getId() : null);
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -147,25 +134,7 @@ public class CustomerInvoiceController {
     @GetMapping("/pending-count/{userId}")
     public ResponseEntity<Map<String, Object>> getPendingInvoicesCount(@PathVariable Integer userId) {
         try {
-            log.info("Getting pending invoices count for user: {}", userId);
-            
-            // Lấy tất cả hóa đơn và filter theo user và status
-            List<Invoice> allInvoices = invoiceService.getAllInvoices();
-            
-            long pendingCount = allInvoices.stream()
-                    .filter(invoice -> {
-                        try {
-                            return invoice.getBooking() != null 
-                                && invoice.getBooking().getUser() != null
-                                && invoice.getBooking().getUser().getId().equals(userId)
-                                && "Pending".equals(invoice.getStatus());
-                        } catch (Exception e) {
-                            log.warn("Error filtering invoice: {}", invoice.getId(), e);
-                            return false;
-                        }
-                    })
-                    .count();
-            
+            long pendingCount = invoiceService.countUserInvoicesByStatus(userId, "Pending");
             log.info("Pending invoices count for user {}: {}", userId, pendingCount);
 
             Map<String, Object> response = new HashMap<>();
@@ -222,6 +191,33 @@ public class CustomerInvoiceController {
         }
     }
 
+    /**
+     * Convert projection row to simple DTO for list view (cùng các khóa với convertToSimpleDTO(Invoice))
+     */
+    private Map<String, Object> convertToSimpleDTO(CustomerInvoiceSummaryDTO row) {
+        Map<String, Object> dto = new HashMap<>();
+        dto.put("id", row.getId());
+        dto.put("bookingId", row.getBookingId());
+        dto.put("bookingDate", row.getBookingDate());
+        dto.put("bookingChannel", row.getBookingChannel() != null ? row.getBookingChannel().name() : null);
+        dto.put("bookingChannelDisplay", row.getBookingChannel() != null ? row.getBookingChannel().getDescription() : null);
+        dto.put("bookingType", row.getBookingType() != null ? row.getBookingType().name() : null);
+        dto.put("bookingTypeDisplay", row.getBookingType() != null ? row.getBookingType().getDescription() : null);
+        dto.put("counterStaffId", row.getCounterStaffId());
+        dto.put("courtName", row.getCourtName() != null ? row.getCourtName() : "N/A");
+        dto.put("startTime", row.getStartTime());
+        dto.put("endTime", row.getEndTime());
+        dto.put("invoiceType", row.getInvoiceType() != null ? row.getInvoiceType().name() : null);
+        dto.put("invoiceTypeDisplay", row.getInvoiceType() != null ? row.getInvoiceType().getDisplayName() : null);
+        dto.put("invoiceDate", row.getInvoiceDate());
+        dto.put("originalAmount", row.getOriginalAmount() != null ? row.getOriginalAmount() : BigDecimal.ZERO);
+        dto.put("discountAmount", row.getDiscountAmount() != null ? row.getDiscountAmount() : BigDecimal.ZERO);
+        dto.put("finalAmount", row.getFinalAmount() != null ? row.getFinalAmount() : BigDecimal.ZERO);
+        dto.put("status", row.getStatus() != null ? row.getStatus() : "Unknown");
+        dto.put("createdAt", row.getCreatedAt());
+        return dto;
+    }
+
     /**
      * Convert Invoice to simple DTO for list view
      */
@@ -4,6 +4,7 @@ import com.example.shuttlesync.dto.*;
 import com.example.shuttlesync.model.Invoice;
 import com.example.shuttlesync.model.InvoiceDetail;
 import com.example.shuttlesync.model.User;
+import com.example.shuttlesync.service.InvoicePdfCache;
 import com.example.shuttlesync.service.InvoiceService;
 import com.example.shuttlesync.service.UserService;
 import com.example.shuttlesync.util.PDFGenerator;
@@ -17,7 +18,9 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.TemporalAdjusters;
@@ -25,6 +28,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @RestController
@@ -36,6 +40,7 @@ public class InvoiceController {
 
     private final InvoiceService invoiceService;
     private final UserService userService;
+    private final InvoicePdfCache invoicePdfCache;
 
     @GetMapping
     public ResponseEntity<List<InvoiceDTO>> getAllInvoices(
@@ -205,48 +210,44 @@ public class InvoiceController {
         }
     }
 
+    /**
+     * Xuất PDF hóa đơn. PDF được ghi thẳng ra response khi đang dựng và lưu lại trong InvoicePdfCache,
+     * lần tải sau của cùng phiên bản hóa đơn không phải dựng lại.
+     */
     @GetMapping("/{id}/export")
-    public ResponseEntity<byte[]> exportInvoicePDF(@PathVariable Integer id) {
+    public ResponseEntity<StreamingResponseBody> exportInvoicePDF(@PathVariable Integer id) {
         log.info("Exporting PDF for invoice: {}", id);
 
-        try {
-            return invoiceService.getInvoiceById(id)
-                    .map(invoice -> {
-                        try {
-                            // Chuyển đổi Invoice thành InvoiceDTO
-                            InvoiceDTO invoiceDTO = convertToDTO(invoice);
-
-                            // Log thông tin chi tiết
-                            log.info("Invoice details - ID: {}, Status: {}, Date: {}, Customer: {}, Email: {}, Phone: {}",
-                                    invoiceDTO.getId(),
-                                    invoiceDTO.getStatus(),
-                                    invoiceDTO.getInvoiceDate(),
-                                    invoiceDTO.getCustomerName(),
-                                    invoiceDTO.getCustomerEmail(),
-                                    invoiceDTO.getCustomerPhone());
-
-                            // Tạo PDF từ InvoiceDTO
-                            byte[] pdfBytes = PDFGenerator.generateInvoicePDF(invoiceDTO);
-
-                            // Thiết lập header cho response
-                            HttpHeaders headers = new HttpHeaders();
-                            headers.setContentType(MediaType.APPLICATION_PDF);
-                            headers.setContentDispositionFormData("attachment", "invoice-" + id + ".pdf");
-                            headers.setContentLength(pdfBytes.length);
-
-                            return ResponseEntity.ok()
-                                    .headers(headers)
-                                    .body(pdfBytes);
-                        } catch (DocumentException e) {
-                            log.error("Error generating PDF for invoice {}: {}", id, e.getMessage());
-                            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).<byte[]>body(null);
-                        }
-                    })
-                    .orElse(ResponseEntity.notFound().<byte[]>build());
-        } catch (Exception e) {
-            log.error("Unexpected error exporting PDF for invoice {}: {}", id, e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).<byte[]>body(null);
+        Optional<Invoice> found = invoiceService.getInvoiceById(id);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
         }
+        Invoice invoice = found.get();
+        LocalDateTime version = invoice.getUpdatedAt();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", "invoice-" + id + ".pdf");
+
+        byte[] cached = invoicePdfCache.get(id, version);
+        if (cached != null) {
+            headers.setContentLength(cached.length);
+            return ResponseEntity.ok().headers(headers).body(out -> out.write(cached));
+        }
+
+        // Chuyển sang DTO trên luồng request, trước khi ghi response
+        InvoiceDTO invoiceDTO = convertToDTO(invoice);
+        return ResponseEntity.ok().headers(headers).body(out -> {
+            InvoicePdfCache.CapturingOutputStream capture = invoicePdfCache.capture(id, version, out);
+            try {
+                PDFGenerator.writeInvoicePDF(invoiceDTO, capture);
+                capture.flush();
+                capture.commit();
+            } catch (DocumentException e) {
+                log.error("Error generating PDF for invoice {}: {}", id, e.getMessage());
+                throw new IOException("Không thể tạo PDF cho hóa đơn " + id, e);
+            }
+        });
     }
 
     @DeleteMapping("/{id}")
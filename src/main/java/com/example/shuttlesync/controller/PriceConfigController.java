@@ -244,6 +244,25 @@ public class PriceConfigController {
         }
     }
 
+    @GetMapping("/price-settings/grid")
+    public ResponseEntity<Map<String, Object>> getPriceGrid(
+            @RequestParam Integer courtId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.info("Fetching price grid for court id: {}, from: {} to: {}", courtId, from, to);
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("courtId", courtId);
+            response.put("from", from.toString());
+            response.put("to", to.toString());
+            response.put("prices", priceSettingService.getPriceGrid(courtId, from, to));
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid price grid request for court id: {}", courtId, e);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     // Quản lý ngày lễ
     @GetMapping("/holidays")
     public ResponseEntity<List<HolidayDate>> getAllHolidays() {
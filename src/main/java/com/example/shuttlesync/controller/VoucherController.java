@@ -3,6 +3,7 @@ package com.example.shuttlesync.controller;
 import com.example.shuttlesync.dto.CreateVoucherRequest;
 import com.example.shuttlesync.dto.UpdateVoucherStatusRequest;
 import com.example.shuttlesync.dto.VoucherDTO;
+import com.example.shuttlesync.exeption.ConflictException;
 import com.example.shuttlesync.model.Discount;
 import com.example.shuttlesync.model.User;
 import com.example.shuttlesync.service.UserService;
@@ -210,6 +211,10 @@ public class VoucherController {
         try {
             Discount usedVoucher = voucherService.useVoucher(code, amount, getCurrentUser(authentication));
             return ResponseEntity.ok(convertToDTO(usedVoucher));
+        } catch (ConflictException e) {
+            // Voucher vừa hết lượt giữa lúc kiểm tra và lúc ghi nhận
+            log.warn("Voucher {} exhausted: {}", code, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (IllegalArgumentException | IllegalStateException e) {
             log.error("Error using voucher: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -287,7 +292,7 @@ public class VoucherController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("processedCount", processedCount);
-            response.put("message", "Đã kiểm tra " + processedCount + " khách hàng để tặng voucher");
+            response.put("message", "Đã tặng " + processedCount + " voucher cho khách hàng đủ điều kiện");
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
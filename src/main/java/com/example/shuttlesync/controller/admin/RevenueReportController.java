@@ -0,0 +1,42 @@
+package com.example.shuttlesync.controller.admin;
+
+import com.example.shuttlesync.service.RevenueReportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admin/reports")
+@RequiredArgsConstructor
+public class RevenueReportController {
+
+    private final RevenueReportService revenueReportService;
+
+    /**
+     * Doanh thu và công suất sân theo kỳ, ví dụ ?period=quarter&year=2025&quarter=2
+     *
+     * @param statusIds chỉ tính các trạng thái booking này (bỏ trống = tất cả)
+     */
+    @GetMapping("/revenue")
+    public ResponseEntity<Map<String, Object>> getRevenueReport(
+            @RequestParam(defaultValue = "month") String period,
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) Integer month,
+            @RequestParam(required = false) Integer quarter,
+            @RequestParam(required = false) List<Byte> statusIds) {
+
+        LocalDate today = LocalDate.now();
+        int reportYear = year != null ? year : today.getYear();
+        if ("month".equalsIgnoreCase(period) && month == null) {
+            month = today.getMonthValue();
+        }
+        if ("quarter".equalsIgnoreCase(period) && quarter == null) {
+            quarter = (today.getMonthValue() - 1) / 3 + 1;
+        }
+        return ResponseEntity.ok(revenueReportService.getRevenueReport(period, reportYear, month, quarter, statusIds));
+    }
+}
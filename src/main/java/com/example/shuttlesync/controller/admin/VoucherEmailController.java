@@ -1,5 +1,6 @@
 package com.example.shuttlesync.controller.admin;
 
+import com.example.shuttlesync.dto.EmailRunStats;
 import com.example.shuttlesync.service.VoucherEmailService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -29,7 +30,7 @@ public class VoucherEmailController {
             if (sent) {
                 return ResponseEntity.ok(Map.of(
                     "success", true,
-                    "message", "✅ Đã gửi email test voucher thành công đến: " + email
+                    "message", "✅ Đã đưa email test voucher vào hàng đợi gửi đến: " + email
                 ));
             } else {
                 return ResponseEntity.badRequest().body(Map.of(
@@ -62,7 +63,7 @@ public class VoucherEmailController {
             if (sent) {
                 return ResponseEntity.ok(Map.of(
                     "success", true,
-                    "message", "✅ Đã gửi email voucher thành công"
+                    "message", "✅ Đã đưa email voucher vào hàng đợi gửi"
                 ));
             } else {
                 return ResponseEntity.badRequest().body(Map.of(
@@ -88,11 +89,12 @@ public class VoucherEmailController {
         try {
             log.info("🔄 Xử lý email voucher chờ gửi (thủ công)");
             
-            voucherEmailService.processVoucherEmails();
+            EmailRunStats stats = voucherEmailService.processPendingEmails();
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
-                "message", "✅ Đã xử lý email voucher chờ gửi"
+                "message", "✅ Đã xử lý email chờ gửi",
+                "stats", stats
             ));
             
         } catch (Exception e) {
@@ -1,5 +1,6 @@
 package com.example.shuttlesync.controller.customer;
 
+import com.example.shuttlesync.dto.EmailRunStats;
 import com.example.shuttlesync.service.VoucherEmailService;
 import com.example.shuttlesync.service.SimpleEmailTestService;
 import lombok.RequiredArgsConstructor;
@@ -28,7 +29,7 @@ public class TestEmailController {
             if (sent) {
                 return ResponseEntity.ok(Map.of(
                     "success", true,
-                    "message", "✅ Đã gửi email test voucher thành công đến: " + email
+                    "message", "✅ Đã đưa email test voucher vào hàng đợi gửi đến: " + email
                 ));
             } else {
                 return ResponseEntity.badRequest().body(Map.of(
@@ -52,11 +53,12 @@ public class TestEmailController {
         try {
             log.info("🔄 [PUBLIC] Xử lý email voucher chờ gửi");
             
-            voucherEmailService.processVoucherEmails();
+            EmailRunStats stats = voucherEmailService.processPendingEmails();
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
-                "message", "✅ Đã xử lý email voucher chờ gửi"
+                "message", "✅ Đã xử lý email chờ gửi",
+                "stats", stats
             ));
             
         } catch (Exception e) {
@@ -3,8 +3,10 @@ package com.example.shuttlesync.dto;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 
 @Data
 @NoArgsConstructor
@@ -25,6 +27,32 @@ public class BookingDTO {
     private LocalDateTime createdAt;
     private String notes;
 
+    // Dòng danh sách booking phía admin, dựng trực tiếp từ SELECT NEW trong BookingRepository
+    public BookingDTO(Integer id, String userName, String courtName, LocalDate bookingDate,
+                      LocalTime startTime, LocalTime endTime, Byte statusId) {
+        this.id = id;
+        this.userName = userName;
+        this.courtName = courtName;
+        this.bookingDate = bookingDate;
+        this.startTime = startTime.toString();
+        this.endTime = endTime.toString();
+        this.status = statusId.toString();
+    }
+
+    // Dòng danh sách booking đầy đủ phía admin, dựng từ AdminBookingListRepositoryImpl.findAdminPage
+    public BookingDTO(Integer id, String userName, String userEmail, String userPhone,
+                      String courtName, String courtLocation, LocalDate bookingDate,
+                      LocalTime startTime, LocalTime endTime, Byte statusId, BigDecimal price,
+                      LocalDateTime createdAt, String notes) {
+        this(id, userName, courtName, bookingDate, startTime, endTime, statusId);
+        this.userEmail = userEmail;
+        this.userPhone = userPhone != null ? userPhone : "N/A";
+        this.courtLocation = courtLocation;
+        this.totalAmount = price != null ? price.doubleValue() : null;
+        this.createdAt = createdAt;
+        this.notes = notes;
+    }
+
     @Override
     public String toString() {
         return "BookingDTO{" +
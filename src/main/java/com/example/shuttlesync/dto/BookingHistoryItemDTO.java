@@ -0,0 +1,52 @@
+package com.example.shuttlesync.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Dòng trong lịch sử booking của khách hàng.
+ * Phần booking được dựng trực tiếp từ truy vấn Criteria, phần thanh toán được điền sau bằng một truy vấn cho cả trang.
+ */
+@Data
+@NoArgsConstructor
+public class BookingHistoryItemDTO {
+
+    private Integer id;
+    private Integer courtId;
+    private String courtName;
+    private String courtDescription;
+    private LocalDate bookingDate;
+    private Integer timeSlotId;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    private Byte statusId;
+    private String notes;
+    private LocalDateTime createdAt;
+
+    // Điền từ bảng Payments
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+    private Byte paymentStatusId;
+    private String paymentMethod;
+
+    // Thứ tự tham số phải khớp với BookingHistoryRepositoryImpl.findHistoryPage
+    public BookingHistoryItemDTO(Integer id, Integer courtId, String courtName, String courtDescription,
+                                 LocalDate bookingDate, Integer timeSlotId, LocalTime startTime, LocalTime endTime,
+                                 Byte statusId, String notes, LocalDateTime createdAt) {
+        this.id = id;
+        this.courtId = courtId;
+        this.courtName = courtName;
+        this.courtDescription = courtDescription;
+        this.bookingDate = bookingDate;
+        this.timeSlotId = timeSlotId;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.statusId = statusId;
+        this.notes = notes;
+        this.createdAt = createdAt;
+    }
+}
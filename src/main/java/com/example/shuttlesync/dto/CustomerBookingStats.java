@@ -0,0 +1,41 @@
+package com.example.shuttlesync.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Thống kê booking của một khách hàng, dùng chung cho dashboard và lịch sử
+ */
+@Data
+@AllArgsConstructor
+public class CustomerBookingStats {
+    // Số booking theo id trạng thái
+    private Map<Byte, Long> bookingsByStatus;
+    // Tổng tiền đã thanh toán theo id trạng thái booking
+    private Map<Byte, BigDecimal> paidByStatus;
+    // Booking đã xác nhận có ngày sau hôm nay
+    private long upcomingBookings;
+    // Booking có ngày từ đầu tháng này
+    private long thisMonthBookings;
+    private Integer favoriteCourtId;
+    private String favoriteCourtName;
+
+    public long getTotalBookings() {
+        return bookingsByStatus.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public long countByStatus(Byte statusId) {
+        return bookingsByStatus.getOrDefault(statusId, 0L);
+    }
+
+    public BigDecimal getPaidTotal() {
+        return paidByStatus.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    public BigDecimal paidByStatus(Byte statusId) {
+        return paidByStatus.getOrDefault(statusId, BigDecimal.ZERO);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.shuttlesync.dto;
+
+import com.example.shuttlesync.model.Booking;
+import com.example.shuttlesync.model.Invoice;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Dòng hóa đơn trong danh sách hóa đơn của khách hàng.
+ * Được dựng trực tiếp từ câu truy vấn JPQL (Invoice join Booking, Court, TimeSlot), không nạp entity.
+ */
+@Data
+@NoArgsConstructor
+public class CustomerInvoiceSummaryDTO {
+
+    private Integer id;
+    private Integer bookingId;
+    private LocalDate bookingDate;
+    private Booking.BookingChannel bookingChannel;
+    private Booking.BookingType bookingType;
+    private Integer counterStaffId;
+    private String courtName;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    private Invoice.InvoiceType invoiceType;
+    private LocalDate invoiceDate;
+    private BigDecimal originalAmount;
+    private BigDecimal discountAmount;
+    private BigDecimal finalAmount;
+    private String status;
+    private LocalDateTime createdAt;
+
+    // Thứ tự tham số phải khớp với SELECT NEW trong InvoiceRepository.findUserInvoicePage
+    public CustomerInvoiceSummaryDTO(Integer id, Integer bookingId, LocalDate bookingDate,
+                                     Booking.BookingChannel bookingChannel, Booking.BookingType bookingType,
+                                     Integer counterStaffId, String courtName, LocalTime startTime, LocalTime endTime,
+                                     Invoice.InvoiceType invoiceType, LocalDate invoiceDate,
+                                     BigDecimal originalAmount, BigDecimal discountAmount, BigDecimal finalAmount,
+                                     String status, LocalDateTime createdAt) {
+        this.id = id;
+        this.bookingId = bookingId;
+        this.bookingDate = bookingDate;
+        this.bookingChannel = bookingChannel;
+        this.bookingType = bookingType;
+        this.counterStaffId = counterStaffId;
+        this.courtName = courtName;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.invoiceType = invoiceType;
+        this.invoiceDate = invoiceDate;
+        this.originalAmount = originalAmount;
+        this.discountAmount = discountAmount;
+        this.finalAmount = finalAmount;
+        this.status = status;
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.shuttlesync.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Booking gần đây trên dashboard khách hàng.
+ * Được dựng trực tiếp từ câu truy vấn JPQL, tổng tiền và trạng thái thanh toán lấy bằng subquery trên Payments.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerRecentBookingDTO {
+
+    // Thứ tự field phải khớp với SELECT NEW trong BookingRepository.findUserRecentBookings
+    private Integer id;
+    private String courtName;
+    private LocalDate bookingDate;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    private Byte statusId;
+    private BigDecimal amount;
+    // Trạng thái thanh toán cao nhất trong các payment của booking (null nếu chưa có payment)
+    private Byte paymentStatusId;
+}
@@ -0,0 +1,29 @@
+package com.example.shuttlesync.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả một lần xử lý hàng đợi email (một lượt drain của EmailDeliveryService)
+ */
+@Data
+@AllArgsConstructor
+public class EmailRunStats {
+    private int batches;
+    private int claimed;
+    private int sent;
+    private int failed;
+    // Email bị hoãn do giới hạn tốc độ theo người nhận, không tính là lỗi
+    private int deferred;
+    private long elapsedMillis;
+    private LocalDateTime finishedAt;
+
+    /**
+     * Số email gửi thành công mỗi giây trong lần chạy
+     */
+    public double getEmailsPerSecond() {
+        return elapsedMillis > 0 ? sent * 1000.0 / elapsedMillis : 0;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.shuttlesync.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Kết quả một lần quét khung giờ hết hạn
+ */
+@Data
+@AllArgsConstructor
+public class ExpirySweepResult {
+    private int completedBookings;
+    private int resetTimeSlots;
+
+    public boolean isEmpty() {
+        return completedBookings == 0 && resetTimeSlots == 0;
+    }
+}
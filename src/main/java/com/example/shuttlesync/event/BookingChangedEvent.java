@@ -0,0 +1,23 @@
+package com.example.shuttlesync.event;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Booking vừa được tạo, sửa hoặc xóa. Các giá trị được chụp lại lúc thay đổi
+ * (với DELETED là trước khi xóa), nên bên nhận không cần đọc lại booking.
+ * Các giá trị previous* là sân, khung giờ, ngày trước thay đổi (null với CREATED), để bên nhận cập nhật cả vị trí cũ khi booking bị dời.
+ */
+public record BookingChangedEvent(Integer bookingId, Integer userId, Integer courtId, Integer timeSlotId,
+                                  LocalDate bookingDate, Byte statusId, ChangeType change,
+                                  Integer previousCourtId, Integer previousTimeSlotId, LocalDate previousBookingDate) {
+
+    /**
+     * Booking đã đổi sân, khung giờ hoặc ngày so với trước thay đổi
+     */
+    public boolean moved() {
+        return previousBookingDate != null
+                && (!Objects.equals(previousCourtId, courtId) || !Objects.equals(previousTimeSlotId, timeSlotId)
+                || !previousBookingDate.equals(bookingDate));
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.shuttlesync.event;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Một lần quét hết hạn đã chuyển hàng loạt booking sang "Đã hoàn thành" bằng SQL (không qua entity listener).
+ *
+ * @param fromDate  ngày đầu của khoảng đã quét
+ * @param toDate    ngày cuối của khoảng đã quét
+ * @param bookings  các booking đã được chuyển trạng thái
+ */
+public record BookingsCompletedEvent(LocalDate fromDate, LocalDate toDate, List<CompletedBooking> bookings) {
+
+    public record CompletedBooking(Integer bookingId, Integer userId, Integer courtId, Integer timeSlotId,
+                                   LocalDate bookingDate) {
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.shuttlesync.event;
+
+/**
+ * Loại thay đổi của entity trong các sự kiện *ChangedEvent
+ */
+public enum ChangeType {
+    CREATED, UPDATED, DELETED
+}
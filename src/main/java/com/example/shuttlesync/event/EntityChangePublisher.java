@@ -0,0 +1,99 @@
+package com.example.shuttlesync.event;
+
+import com.example.shuttlesync.model.Booking;
+import com.example.shuttlesync.model.Invoice;
+import com.example.shuttlesync.model.Payment;
+import com.example.shuttlesync.model.User;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.PreRemove;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * Entity listener phát sự kiện khi Booking, Invoice, Payment hoặc User thay đổi.
+ * Bên nhận dùng @TransactionalEventListener(phase = AFTER_COMMIT) nên chỉ thấy thay đổi đã commit.
+ * Chỉ đọc id của các quan hệ (không khởi tạo proxy lazy); khi xóa, dữ liệu được chụp ở @PreRemove lúc entity còn đủ.
+ */
+@Component
+public class EntityChangePublisher {
+
+    private static final byte PAYMENT_STATUS_PAID = 2;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public EntityChangePublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostLoad
+    public void onLoaded(Object entity) {
+        if (entity instanceof Payment payment) {
+            payment.setPaidAmountSnapshot(paidAmount(payment));
+        } else if (entity instanceof Booking booking) {
+            rememberSlot(booking);
+        }
+    }
+
+    @PostPersist
+    public void onCreated(Object entity) {
+        publish(entity, ChangeType.CREATED);
+    }
+
+    @PostUpdate
+    public void onUpdated(Object entity) {
+        publish(entity, ChangeType.UPDATED);
+    }
+
+    @PreRemove
+    public void onDeleted(Object entity) {
+        publish(entity, ChangeType.DELETED);
+    }
+
+    private void publish(Object entity, ChangeType change) {
+        if (entity instanceof Booking booking) {
+            eventPublisher.publishEvent(new BookingChangedEvent(
+                    booking.getId(),
+                    booking.getUser() != null ? booking.getUser().getId() : null,
+                    booking.getCourt() != null ? booking.getCourt().getId() : null,
+                    booking.getTimeSlot() != null ? booking.getTimeSlot().getId() : null,
+                    booking.getBookingDate(),
+                    booking.getStatus() != null ? booking.getStatus().getId() : null,
+                    change,
+                    booking.getPreviousCourtId(),
+                    booking.getPreviousTimeSlotId(),
+                    booking.getPreviousBookingDate()));
+            rememberSlot(booking);
+        } else if (entity instanceof Invoice invoice && invoice.getBooking() != null) {
+            eventPublisher.publishEvent(new InvoiceChangedEvent(invoice.getBooking().getId()));
+        } else if (entity instanceof Payment payment) {
+            BigDecimal before = payment.getPaidAmountSnapshot() != null ? payment.getPaidAmountSnapshot() : BigDecimal.ZERO;
+            BigDecimal after = change == ChangeType.DELETED ? BigDecimal.ZERO : paidAmount(payment);
+            payment.setPaidAmountSnapshot(after);
+            eventPublisher.publishEvent(new PaymentChangedEvent(
+                    payment.getBooking() != null ? payment.getBooking().getId() : null, after.subtract(before)));
+        } else if (entity instanceof User user) {
+            eventPublisher.publishEvent(new UserChangedEvent(user.getId(), change));
+        }
+    }
+
+    private static void rememberSlot(Booking booking) {
+        booking.setPreviousCourtId(booking.getCourt() != null ? booking.getCourt().getId() : null);
+        booking.setPreviousTimeSlotId(booking.getTimeSlot() != null ? booking.getTimeSlot().getId() : null);
+        booking.setPreviousBookingDate(booking.getBookingDate());
+    }
+
+    /**
+     * Số tiền payment đóng góp vào doanh thu: amount nếu đã thanh toán, ngược lại 0
+     */
+    private static BigDecimal paidAmount(Payment payment) {
+        if (payment.getPaymentStatus() == null || payment.getAmount() == null
+                || payment.getPaymentStatus().getId() != PAYMENT_STATUS_PAID) {
+            return BigDecimal.ZERO;
+        }
+        return payment.getAmount();
+    }
+}
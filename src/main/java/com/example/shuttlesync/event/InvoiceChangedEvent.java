@@ -0,0 +1,7 @@
+package com.example.shuttlesync.event;
+
+/**
+ * Hóa đơn của booking bookingId vừa được tạo, sửa hoặc xóa
+ */
+public record InvoiceChangedEvent(Integer bookingId) {
+}
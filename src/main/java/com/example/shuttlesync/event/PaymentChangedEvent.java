@@ -0,0 +1,11 @@
+package com.example.shuttlesync.event;
+
+import java.math.BigDecimal;
+
+/**
+ * Payment của booking bookingId vừa được tạo, sửa hoặc xóa
+ *
+ * @param paidDelta phần chênh lệch số tiền đã thanh toán (amount nếu trạng thái Đã thanh toán, ngược lại 0) so với trước thay đổi
+ */
+public record PaymentChangedEvent(Integer bookingId, BigDecimal paidDelta) {
+}
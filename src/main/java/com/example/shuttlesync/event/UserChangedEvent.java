@@ -0,0 +1,7 @@
+package com.example.shuttlesync.event;
+
+/**
+ * Người dùng vừa được tạo, sửa hoặc xóa
+ */
+public record UserChangedEvent(Integer userId, ChangeType change) {
+}
@@ -1,5 +1,8 @@
 package com.example.shuttlesync.model;
 
+import com.example.shuttlesync.event.EntityChangePublisher;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -9,6 +12,28 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@NamedEntityGraph(
+        name = Booking.GRAPH_ADMIN_LIST,
+        attributeNodes = {
+                @NamedAttributeNode("user"),
+                @NamedAttributeNode("court"),
+                @NamedAttributeNode("timeSlot"),
+                @NamedAttributeNode("status"),
+                @NamedAttributeNode("customerBookingInfo")
+        })
+@NamedEntityGraph(
+        name = Booking.GRAPH_CUSTOMER_DETAIL,
+        attributeNodes = {
+                @NamedAttributeNode("user"),
+                @NamedAttributeNode("court"),
+                @NamedAttributeNode("timeSlot"),
+                @NamedAttributeNode("status"),
+                @NamedAttributeNode("customerBookingInfo"),
+                @NamedAttributeNode(value = "payments", subgraph = "payments")
+        },
+        subgraphs = @NamedSubgraph(name = "payments", attributeNodes = @NamedAttributeNode("paymentStatus")))
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@EntityListeners(EntityChangePublisher.class)
 @Table(name = "Bookings")
 @Getter
 @Setter
@@ -16,16 +41,21 @@ import java.util.Set;
 @AllArgsConstructor
 public class Booking {
 
+    // Danh sách booking phía admin: người đặt, sân, khung giờ, trạng thái
+    public static final String GRAPH_ADMIN_LIST = "Booking.adminList";
+    // Booking của khách hàng kèm thanh toán
+    public static final String GRAPH_CUSTOMER_DETAIL = "Booking.customerDetail";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "UserId", nullable = false)
     @ToString.Exclude
     private User user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "CourtId", nullable = false)
     @ToString.Exclude
     private Court court;
@@ -33,12 +63,12 @@ public class Booking {
     @Column(name = "BookingDate", nullable = false)
     private LocalDate bookingDate;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "TimeSlotId", nullable = false)
     @ToString.Exclude
     private TimeSlot timeSlot;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "Status", nullable = false)
     @ToString.Exclude
     private BookingStatusType status;
@@ -80,6 +110,22 @@ public class Booking {
     )
     @ToString.Exclude
     private Set<Discount> discounts = new HashSet<>();
+
+    // Sân, khung giờ và ngày lúc nạp hoặc ghi gần nhất (EntityChangePublisher gửi kèm để bên nhận cập nhật cả vị trí cũ)
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    private Integer previousCourtId;
+
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    private Integer previousTimeSlotId;
+
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    private LocalDate previousBookingDate;
     
     @PrePersist
     protected void onCreate() {
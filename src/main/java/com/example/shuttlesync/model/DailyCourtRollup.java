@@ -0,0 +1,47 @@
+package com.example.shuttlesync.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Tổng hợp theo ngày đặt sân, sân, kênh đặt và trạng thái booking.
+ * Bảng do ReportingRollupService ghi bằng SQL (tính lại từng lát ngày/sân), entity chỉ dùng để đọc báo cáo.
+ */
+@Entity
+@Table(name = "DailyCourtRollups")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyCourtRollup {
+
+    @EmbeddedId
+    private DailyCourtRollupId id;
+
+    @Column(name = "Bookings", nullable = false)
+    private Integer bookings;
+
+    @Column(name = "MinutesBooked", nullable = false)
+    private Integer minutesBooked;
+
+    // Tổng OriginalAmount / DiscountAmount / FinalAmount của hóa đơn
+    @Column(name = "GrossAmount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal grossAmount;
+
+    @Column(name = "DiscountAmount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal discountAmount;
+
+    @Column(name = "NetAmount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal netAmount;
+
+    // Tổng payment đã thanh toán
+    @Column(name = "PaidAmount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal paidAmount;
+
+    @Column(name = "UpdatedAt", nullable = false)
+    private LocalDateTime updatedAt;
+}
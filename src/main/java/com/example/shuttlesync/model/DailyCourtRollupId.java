@@ -0,0 +1,29 @@
+package com.example.shuttlesync.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyCourtRollupId implements Serializable {
+
+    @Column(name = "RollupDate", nullable = false)
+    private LocalDate rollupDate;
+
+    @Column(name = "CourtId", nullable = false)
+    private Integer courtId;
+
+    @Column(name = "BookingChannel", length = 20, nullable = false)
+    private String bookingChannel;
+
+    @Column(name = "Status", nullable = false)
+    private Byte statusId;
+}
@@ -45,7 +45,8 @@ public class Discount {
     @Column(name = "UsageLimit")
     private Integer usageLimit;
 
-    @Column(name = "UsedCount", nullable = false)
+    // Chỉ thay đổi qua VoucherRedemptionService (UPDATE có điều kiện), không ghi đè khi lưu entity
+    @Column(name = "UsedCount", nullable = false, updatable = false)
     private Integer usedCount = 0;
 
     @Column(name = "ValidFrom", nullable = false)
@@ -1,5 +1,7 @@
 package com.example.shuttlesync.model;
 
+import com.example.shuttlesync.event.EntityChangePublisher;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -10,6 +12,20 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@NamedEntityGraph(
+        name = Invoice.GRAPH_EXPORT,
+        attributeNodes = {
+                @NamedAttributeNode(value = "booking", subgraph = "booking"),
+                @NamedAttributeNode("invoiceDetails")
+        },
+        subgraphs = @NamedSubgraph(name = "booking", attributeNodes = {
+                @NamedAttributeNode("user"),
+                @NamedAttributeNode("court"),
+                @NamedAttributeNode("timeSlot"),
+                @NamedAttributeNode("customerBookingInfo")
+        }))
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@EntityListeners(EntityChangePublisher.class)
 @Table(name = "Invoices")
 @Getter
 @Setter
@@ -17,12 +33,15 @@ import java.util.Set;
 @AllArgsConstructor
 public class Invoice {
 
+    // Hóa đơn kèm khách hàng và chi tiết, dùng cho danh sách admin, xem chi tiết và xuất PDF
+    public static final String GRAPH_EXPORT = "Invoice.export";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "Id")
     private Integer id;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "BookingId", nullable = false, unique = true)
     private Booking booking;
 
@@ -0,0 +1,80 @@
+package com.example.shuttlesync.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tác vụ phụ (hóa đơn, thông báo, log, email) được ghi cùng transaction với booking
+ * và được OutboxDispatcher thực hiện sau khi commit
+ */
+@Entity
+@Table(name = "OutboxEvents")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "EventType", length = 50, nullable = false)
+    private EventType eventType;
+
+    @Column(name = "AggregateId")
+    private Integer aggregateId;
+
+    @Column(name = "Payload", nullable = false, columnDefinition = "NVARCHAR(MAX)")
+    private String payload; // JSON format
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "Status", length = 20, nullable = false)
+    private Status status = Status.PENDING;
+
+    @Column(name = "Attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "NextAttemptAt", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "ClaimToken", length = 36)
+    private String claimToken;
+
+    @Column(name = "LastError", length = 1000)
+    private String lastError;
+
+    @Column(name = "CreatedAt")
+    private LocalDateTime createdAt;
+
+    @Column(name = "ProcessedAt")
+    private LocalDateTime processedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+
+    public enum EventType {
+        CREATE_INVOICE,
+        NOTIFY_ADMINS,
+        NOTIFY_USER,
+        AUDIT_LOG,
+        EMAIL_BOOKING_CONFIRMED,
+        EMAIL_BOOKING_CANCELLED
+    }
+
+    public enum Status {
+        PENDING,
+        PROCESSING,
+        DONE,
+        FAILED
+    }
+}
@@ -1,9 +1,13 @@
 package com.example.shuttlesync.model;
 
+import com.example.shuttlesync.event.EntityChangePublisher;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -11,6 +15,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@EntityListeners(EntityChangePublisher.class)
 @Table(name = "Payments")
 @Data
 @NoArgsConstructor
@@ -21,12 +26,16 @@ public class Payment {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "BookingId", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Booking booking;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "InvoiceId")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Invoice invoice;
 
     @Column(name = "Amount", nullable = false, precision = 10, scale = 2)
@@ -35,8 +44,10 @@ public class Payment {
     @Column(name = "PaymentMethod", length = 50)
     private String paymentMethod;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "PaymentStatus", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private PaymentStatusType paymentStatus;
 
     @Column(name = "CreatedAt")
@@ -46,8 +57,17 @@ public class Payment {
     private LocalDateTime paidAt;
 
     @OneToMany(mappedBy = "payment", cascade = CascadeType.ALL, orphanRemoval = true)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Set<PaymentDiscount> paymentDiscounts = new HashSet<>();
 
+    // Số tiền payment đóng góp vào doanh thu lúc nạp hoặc ghi gần nhất (EntityChangePublisher tính phần chênh lệch)
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private BigDecimal paidAmountSnapshot;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -1,15 +1,19 @@
 package com.example.shuttlesync.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalTime;
 
 @Entity
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 @Table(name = "TimeSlots")
 @Data
 @NoArgsConstructor
@@ -20,8 +24,10 @@ public class TimeSlot {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "CourtId", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Court court;
 
     @Column(name = "SlotIndex", nullable = false)
@@ -33,8 +39,10 @@ public class TimeSlot {
     @Column(name = "EndTime", nullable = false)
     private LocalTime endTime;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "Status", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private StatusType status;
 
     @Column(name = "Price")
@@ -1,5 +1,7 @@
 package com.example.shuttlesync.model;
 
+import com.example.shuttlesync.event.EntityChangePublisher;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -10,6 +12,8 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(EntityChangePublisher.class)
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 @Table(name = "Users")
 @Data
 @NoArgsConstructor
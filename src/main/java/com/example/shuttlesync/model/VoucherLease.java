@@ -0,0 +1,34 @@
+package com.example.shuttlesync.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Các lượt dùng của một voucher nóng mà một node đã giữ trước (đã cộng vào UsedCount).
+ * Node gia hạn LeaseUntil định kỳ; lease quá hạn (node chết hoặc mất kết nối) được node khác thu hồi:
+ * trả lại Reserved trừ số dòng VoucherLeaseUses đã commit.
+ */
+@Entity
+@Table(name = "VoucherLeases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VoucherLease {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "VoucherId", nullable = false)
+    private Integer voucherId;
+
+    @Column(name = "Reserved", nullable = false)
+    private Integer reserved;
+
+    @Column(name = "LeaseUntil", nullable = false)
+    private LocalDateTime leaseUntil;
+}
@@ -0,0 +1,25 @@
+package com.example.shuttlesync.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một lượt dùng đã cấp phát từ VoucherLease, ghi cùng transaction với đơn dùng voucher.
+ * Chỉ INSERT nên các request không tranh khóa cùng một dòng.
+ */
+@Entity
+@Table(name = "VoucherLeaseUses")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VoucherLeaseUse {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "LeaseId", nullable = false)
+    private Long leaseId;
+}
@@ -0,0 +1,15 @@
+package com.example.shuttlesync.repository;
+
+import com.example.shuttlesync.dto.BookingDTO;
+import com.example.shuttlesync.model.Booking;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface AdminBookingListRepository {
+
+    /**
+     * Tối đa limit booking thỏa spec, sắp xếp theo (createdAt DESC, id DESC), chỉ lấy các cột danh sách admin cần
+     */
+    List<BookingDTO> findAdminPage(Specification<Booking> spec, int limit);
+}
@@ -0,0 +1,55 @@
+package com.example.shuttlesync.repository;
+
+import com.example.shuttlesync.dto.BookingDTO;
+import com.example.shuttlesync.model.Booking;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public class AdminBookingListRepositoryImpl implements AdminBookingListRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<BookingDTO> findAdminPage(Specification<Booking> spec, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BookingDTO> query = cb.createQuery(BookingDTO.class);
+        Root<Booking> root = query.from(Booking.class);
+        Path<Object> user = root.get("user");
+        Path<Object> court = root.get("court");
+        Path<Object> timeSlot = root.get("timeSlot");
+
+        query.select(cb.construct(BookingDTO.class,
+                root.get("id"),
+                user.get("fullName"),
+                user.get("email"),
+                user.get("phone"),
+                court.get("name"),
+                court.get("description"),
+                root.get("bookingDate"),
+                timeSlot.get("startTime"),
+                timeSlot.get("endTime"),
+                root.get("status").get("id"),
+                timeSlot.get("price"),
+                root.get("createdAt"),
+                root.get("notes")));
+
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.desc(root.get("createdAt")), cb.desc(root.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
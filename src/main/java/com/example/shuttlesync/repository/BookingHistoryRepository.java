@@ -0,0 +1,15 @@
+package com.example.shuttlesync.repository;
+
+import com.example.shuttlesync.dto.BookingHistoryItemDTO;
+import com.example.shuttlesync.model.Booking;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface BookingHistoryRepository {
+
+    /**
+     * Tối đa limit booking thỏa spec, sắp xếp theo (bookingDate DESC, id DESC), chỉ lấy các cột cần hiển thị
+     */
+    List<BookingHistoryItemDTO> findHistoryPage(Specification<Booking> spec, int limit);
+}
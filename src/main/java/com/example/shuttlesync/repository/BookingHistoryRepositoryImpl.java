@@ -0,0 +1,52 @@
+package com.example.shuttlesync.repository;
+
+import com.example.shuttlesync.dto.BookingHistoryItemDTO;
+import com.example.shuttlesync.model.Booking;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public class BookingHistoryRepositoryImpl implements BookingHistoryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<BookingHistoryItemDTO> findHistoryPage(Specification<Booking> spec, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BookingHistoryItemDTO> query = cb.createQuery(BookingHistoryItemDTO.class);
+        Root<Booking> root = query.from(Booking.class);
+        Path<Object> court = root.get("court");
+        Path<Object> timeSlot = root.get("timeSlot");
+
+        query.select(cb.construct(BookingHistoryItemDTO.class,
+                root.get("id"),
+                court.get("id"),
+                court.get("name"),
+                court.get("description"),
+                root.get("bookingDate"),
+                timeSlot.get("id"),
+                timeSlot.get("startTime"),
+                timeSlot.get("endTime"),
+                root.get("status").get("id"),
+                root.get("notes"),
+                root.get("createdAt")));
+
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.desc(root.get("bookingDate")), cb.desc(root.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
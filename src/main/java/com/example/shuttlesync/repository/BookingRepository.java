@@ -1,20 +1,41 @@
 package com.example.shuttlesync.repository;
 
+import com.example.shuttlesync.dto.BookingDTO;
+import com.example.shuttlesync.dto.CustomerRecentBookingDTO;
 import com.example.shuttlesync.model.Booking;
 import com.example.shuttlesync.model.BookingStatusType;
 import com.example.shuttlesync.model.Court;
 import com.example.shuttlesync.model.TimeSlot;
 import com.example.shuttlesync.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface BookingRepository extends JpaRepository<Booking, Integer> {
+public interface BookingRepository extends JpaRepository<Booking, Integer>, JpaSpecificationExecutor<Booking>,
+        BookingHistoryRepository, AdminBookingListRepository {
+
+    @Override
+    @EntityGraph(Booking.GRAPH_ADMIN_LIST)
+    List<Booking> findAll();
+
+    /**
+     * Booking kèm người đặt, sân và khung giờ, dùng khi xử lý ngoài transaction (gửi email từ outbox)
+     */
+    @EntityGraph(Booking.GRAPH_ADMIN_LIST)
+    Optional<Booking> findWithDetailsById(Integer id);
 
     List<Booking> findByUser(User user);
 
@@ -24,12 +45,15 @@ public interface BookingRepository extends JpaRepository<Booking, Integer> {
 
     boolean existsByCourtAndBookingDateAndTimeSlotAndStatusNot(Court court, LocalDate bookingDate, TimeSlot timeSlot, BookingStatusType status);
 
+    @EntityGraph(Booking.GRAPH_ADMIN_LIST)
     @Query("SELECT b FROM Booking b WHERE b.bookingDate = :date ORDER BY b.timeSlot.startTime ASC")
     List<Booking> findBookingsByDate(@Param("date") LocalDate date);
 
+    @EntityGraph(Booking.GRAPH_ADMIN_LIST)
     @Query("SELECT b FROM Booking b WHERE b.bookingDate >= :startDate AND b.bookingDate <= :endDate")
     List<Booking> findBookingsBetweenDates(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 
+    @EntityGraph(Booking.GRAPH_ADMIN_LIST)
     @Query("SELECT b FROM Booking b WHERE b.court.id = :courtId AND b.bookingDate = :date")
     List<Booking> findBookingsByCourtAndDate(@Param("courtId") Integer courtId, @Param("date") LocalDate date);
 
@@ -38,6 +62,20 @@ public interface BookingRepository extends JpaRepository<Booking, Integer> {
 
     List<Booking> findByUserId(Integer userId);
 
+    long countByBookingDate(LocalDate bookingDate);
+
+    /**
+     * Số booking theo trạng thái. Mỗi dòng: StatusId, số booking
+     */
+    @Query("SELECT b.status.id, COUNT(b) FROM Booking b GROUP BY b.status.id")
+    List<Object[]> countGroupedByStatus();
+
+    /**
+     * Các lát (ngày đặt sân, sân) của những booking đã cho. Mỗi dòng: BookingDate, CourtId
+     */
+    @Query("SELECT DISTINCT b.bookingDate, b.court.id FROM Booking b WHERE b.id IN :bookingIds")
+    List<Object[]> findDateAndCourtByIds(@Param("bookingIds") Collection<Integer> bookingIds);
+
     @Query("""
         SELECT b FROM Booking b
         WHERE b.court.id = :courtId
@@ -59,6 +97,7 @@ public interface BookingRepository extends JpaRepository<Booking, Integer> {
             @Param("timeSlot") TimeSlot timeSlot, 
             @Param("bookingDate") LocalDate bookingDate);
 
+    @EntityGraph(Booking.GRAPH_ADMIN_LIST)
     @Query("SELECT b FROM Booking b WHERE b.status.id = :statusId")
     List<Booking> findByStatusId(@Param("statusId") Byte statusId);
 
@@ -76,24 +115,137 @@ public interface BookingRepository extends JpaRepository<Booking, Integer> {
             @Param("bookingDate") LocalDate bookingDate,
             @Param("statusId") Byte statusId);
 
-    @Query("SELECT b FROM Booking b ORDER BY b.createdAt DESC")
-    List<Booking> findFirst10ByOrderByCreatedAtDesc();
+    /**
+     * Các booking mới tạo gần nhất cho danh sách admin, chỉ lấy các cột hiển thị (số dòng giới hạn bởi pageable)
+     */
+    @Query("""
+        SELECT new com.example.shuttlesync.dto.BookingDTO(
+            b.id, u.fullName, c.name, b.bookingDate, t.startTime, t.endTime, s.id)
+        FROM Booking b JOIN b.user u JOIN b.court c JOIN b.timeSlot t JOIN b.status s
+        ORDER BY b.createdAt DESC
+    """)
+    List<BookingDTO> findRecentSummaries(Pageable pageable);
 
+    /**
+     * Id các booking trong danh sách đã thanh toán: có hóa đơn Paid hoặc có payment đã thanh toán
+     */
+    @Query("""
+        SELECT b.id FROM Booking b
+        WHERE b.id IN :bookingIds
+          AND (EXISTS (SELECT 1 FROM Invoice i WHERE i.booking = b AND UPPER(i.status) = 'PAID')
+               OR EXISTS (SELECT 1 FROM Payment p WHERE p.booking = b AND p.paymentStatus.id = :paidStatus))
+    """)
+    List<Integer> findPaidBookingIds(@Param("bookingIds") Collection<Integer> bookingIds,
+                                     @Param("paidStatus") Byte paidStatus);
+
+    /**
+     * Booking gần đây của khách hàng kèm tổng tiền và trạng thái thanh toán, một câu SQL cho cả danh sách
+     */
+    @Query("""
+        SELECT new com.example.shuttlesync.dto.CustomerRecentBookingDTO(
+            b.id, c.name, b.bookingDate, t.startTime, t.endTime, s.id,
+            (SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.booking = b),
+            (SELECT MAX(p.paymentStatus.id) FROM Payment p WHERE p.booking = b))
+        FROM Booking b JOIN b.court c JOIN b.timeSlot t JOIN b.status s
+        WHERE b.user.id = :userId
+        ORDER BY b.createdAt DESC, b.id DESC
+    """)
+    List<CustomerRecentBookingDTO> findUserRecentBookings(@Param("userId") Integer userId, Pageable pageable);
+
+    @EntityGraph(Booking.GRAPH_CUSTOMER_DETAIL)
     @Query("SELECT b FROM Booking b WHERE b.user.id = :userId ORDER BY b.bookingDate DESC")
     List<Booking> findByUserIdOrderByBookingDateDesc(@Param("userId") Integer userId);
     
+    @EntityGraph(Booking.GRAPH_CUSTOMER_DETAIL)
     @Query("SELECT b FROM Booking b WHERE b.user.id = :userId ORDER BY b.createdAt DESC")
     List<Booking> findByUserIdOrderByCreatedAtDesc(@Param("userId") Integer userId);
     
+    @EntityGraph(Booking.GRAPH_CUSTOMER_DETAIL)
+    @Query("SELECT b FROM Booking b WHERE b.user.id = :userId ORDER BY b.createdAt DESC")
+    List<Booking> findByUserIdWithAllDetails(@Param("userId") Integer userId);
+
+    /**
+     * Lấy (CourtId, TimeSlotId, BookingDate) của các booking đang hoạt động trong khoảng ngày
+     * Dùng để nạp chỉ mục khung giờ trống trong bộ nhớ
+     */
     @Query("""
-        SELECT b FROM Booking b 
-        LEFT JOIN FETCH b.user 
-        LEFT JOIN FETCH b.court 
-        LEFT JOIN FETCH b.timeSlot 
-        LEFT JOIN FETCH b.status 
-        LEFT JOIN FETCH b.customerBookingInfo 
-        WHERE b.user.id = :userId 
-        ORDER BY b.createdAt DESC
+        SELECT b.court.id, b.timeSlot.id, b.bookingDate
+        FROM Booking b
+        WHERE b.bookingDate >= :startDate
+        AND b.bookingDate <= :endDate
+        AND b.status.id IN (1, 2)
     """)
-    List<Booking> findByUserIdWithAllDetails(@Param("userId") Integer userId);
-}
\ No newline at end of file
+    List<Object[]> findActiveSlotKeysBetween(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    @Query("""
+        SELECT CASE WHEN COUNT(b) > 0 THEN true ELSE false END
+        FROM Booking b
+        WHERE b.court.id = :courtId
+        AND b.timeSlot.id = :timeSlotId
+        AND b.bookingDate = :bookingDate
+        AND b.status.id IN (1, 2)
+    """)
+    boolean existsActiveBooking(
+            @Param("courtId") Integer courtId,
+            @Param("timeSlotId") Integer timeSlotId,
+            @Param("bookingDate") LocalDate bookingDate);
+
+    @Query("""
+        SELECT b.id, b.timeSlot.endTime
+        FROM Booking b
+        WHERE b.bookingDate = :date
+        AND b.status.id IN (1, 2)
+    """)
+    List<Object[]> findActiveEndTimesByDate(@Param("date") LocalDate date);
+
+    /**
+     * Chuyển tối đa :limit booking đang hoạt động (1, 2) đã kết thúc sang "Đã hoàn thành" (4).
+     * Booking đã kết thúc: ngày trong [fromDate, date) hoặc ngày = date và giờ kết thúc <= currentTime.
+     *
+     * @return Các booking đã cập nhật, mỗi dòng: Id, UserId, CourtId, TimeSlotId, BookingDate
+     */
+    @Transactional
+    @Query(value = """
+        UPDATE TOP (:limit) b SET b.Status = 4
+        OUTPUT inserted.Id, inserted.UserId, inserted.CourtId, inserted.TimeSlotId, inserted.BookingDate
+        FROM Bookings b
+        INNER JOIN TimeSlots ts ON ts.Id = b.TimeSlotId
+        WHERE b.Status IN (1, 2)
+        AND b.BookingDate >= :fromDate
+        AND (b.BookingDate < :date
+             OR (b.BookingDate = :date AND CAST(ts.EndTime AS time) <= CAST(:currentTime AS time)))
+    """, nativeQuery = true)
+    List<Object[]> completeExpiredBookings(
+            @Param("fromDate") LocalDate fromDate,
+            @Param("date") LocalDate date,
+            @Param("currentTime") LocalTime currentTime,
+            @Param("limit") int limit);
+
+    /**
+     * Thống kê booking của user trong một lần truy vấn, gom theo (trạng thái, sân).
+     * Mỗi dòng: Status, CourtId, CourtName, số booking, số booking đã xác nhận sau :today,
+     * số booking từ :monthStart, tổng tiền các payment có trạng thái :paidStatus.
+     */
+    @Query(value = """
+        SELECT b.Status, b.CourtId, c.Name,
+               COUNT(*),
+               SUM(CASE WHEN b.Status = 2 AND b.BookingDate > :today THEN 1 ELSE 0 END),
+               SUM(CASE WHEN b.BookingDate >= :monthStart THEN 1 ELSE 0 END),
+               COALESCE(SUM(p.Paid), 0)
+        FROM Bookings b
+        INNER JOIN Courts c ON c.Id = b.CourtId
+        LEFT JOIN (
+            SELECT BookingId, SUM(Amount) AS Paid
+            FROM Payments
+            WHERE PaymentStatus = :paidStatus
+            GROUP BY BookingId
+        ) p ON p.BookingId = b.Id
+        WHERE b.UserId = :userId
+        GROUP BY b.Status, b.CourtId, c.Name
+    """, nativeQuery = true)
+    List<Object[]> aggregateUserStats(
+            @Param("userId") Integer userId,
+            @Param("today") LocalDate today,
+            @Param("monthStart") LocalDate monthStart,
+            @Param("paidStatus") byte paidStatus);
+}
@@ -13,6 +13,9 @@ import java.util.List;
 public interface BookingServiceRepository extends JpaRepository<BookingService, Integer> {
 
     List<BookingService> findByBookingId(Integer bookingId);
+
+    @Query("SELECT bs FROM BookingService bs JOIN FETCH bs.service WHERE bs.booking.id = :bookingId")
+    List<BookingService> findWithServiceByBookingId(@Param("bookingId") Integer bookingId);
     
     void deleteByBookingIdAndId(Integer bookingId, Integer id);
     
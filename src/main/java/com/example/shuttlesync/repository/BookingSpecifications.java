@@ -0,0 +1,72 @@
+package com.example.shuttlesync.repository;
+
+import com.example.shuttlesync.model.Booking;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Điều kiện lọc booking dùng cho truy vấn lịch sử, ghép lại bằng Specification.where(...).and(...)
+ */
+public final class BookingSpecifications {
+
+    private BookingSpecifications() {
+    }
+
+    public static Specification<Booking> ofUser(Integer userId) {
+        return (root, query, cb) -> cb.equal(root.get("user").get("id"), userId);
+    }
+
+    public static Specification<Booking> hasStatus(Byte statusId) {
+        return (root, query, cb) -> cb.equal(root.get("status").get("id"), statusId);
+    }
+
+    public static Specification<Booking> bookedOnOrAfter(LocalDate date) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("bookingDate"), date);
+    }
+
+    public static Specification<Booking> bookedOnOrBefore(LocalDate date) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("bookingDate"), date);
+    }
+
+    /**
+     * Tên sân chứa từ khóa (không phân biệt hoa thường) hoặc mã booking chứa từ khóa
+     */
+    public static Specification<Booking> matchesSearch(String keyword) {
+        String pattern = "%" + keyword.toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+        return (root, query, cb) -> cb.or(
+                cb.like(cb.lower(root.get("court").get("name")), pattern, '\\'),
+                cb.like(root.get("id").as(String.class), pattern, '\\'));
+    }
+
+    /**
+     * Keyset theo thứ tự (bookingDate DESC, id DESC): các booking nằm sau booking (afterDate, afterId)
+     */
+    public static Specification<Booking> after(LocalDate afterDate, Integer afterId) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("bookingDate"), afterDate),
+                cb.and(cb.equal(root.get("bookingDate"), afterDate),
+                        cb.lessThan(root.get("id"), afterId)));
+    }
+
+    /**
+     * Keyset theo thứ tự (createdAt DESC, id DESC): các booking nằm sau booking (afterCreatedAt, afterId).
+     * Booking chưa có createdAt nằm cuối danh sách.
+     */
+    public static Specification<Booking> createdBefore(LocalDateTime afterCreatedAt, Integer afterId) {
+        return (root, query, cb) -> {
+            if (afterCreatedAt == null) {
+                return cb.and(cb.isNull(root.get("createdAt")), cb.lessThan(root.get("id"), afterId));
+            }
+            return cb.or(
+                    cb.lessThan(root.get("createdAt"), afterCreatedAt),
+                    cb.and(cb.equal(root.get("createdAt"), afterCreatedAt),
+                            cb.lessThan(root.get("id"), afterId)),
+                    cb.isNull(root.get("createdAt")));
+        };
+    }
+}
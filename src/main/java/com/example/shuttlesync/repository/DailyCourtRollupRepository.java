@@ -0,0 +1,46 @@
+package com.example.shuttlesync.repository;
+
+import com.example.shuttlesync.model.DailyCourtRollup;
+import com.example.shuttlesync.model.DailyCourtRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Đọc bảng tổng hợp cho báo cáo.
+ * Mỗi dòng: khóa nhóm, StatusId, Bookings, MinutesBooked, GrossAmount, DiscountAmount, NetAmount, PaidAmount
+ */
+@Repository
+public interface DailyCourtRollupRepository extends JpaRepository<DailyCourtRollup, DailyCourtRollupId> {
+
+    @Query("""
+        SELECT r.id.rollupDate, r.id.statusId, SUM(r.bookings), SUM(r.minutesBooked),
+               SUM(r.grossAmount), SUM(r.discountAmount), SUM(r.netAmount), SUM(r.paidAmount)
+        FROM DailyCourtRollup r
+        WHERE r.id.rollupDate BETWEEN :from AND :to
+        GROUP BY r.id.rollupDate, r.id.statusId
+    """)
+    List<Object[]> sumByDay(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("""
+        SELECT r.id.courtId, r.id.statusId, SUM(r.bookings), SUM(r.minutesBooked),
+               SUM(r.grossAmount), SUM(r.discountAmount), SUM(r.netAmount), SUM(r.paidAmount)
+        FROM DailyCourtRollup r
+        WHERE r.id.rollupDate BETWEEN :from AND :to
+        GROUP BY r.id.courtId, r.id.statusId
+    """)
+    List<Object[]> sumByCourt(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("""
+        SELECT r.id.bookingChannel, r.id.statusId, SUM(r.bookings), SUM(r.minutesBooked),
+               SUM(r.grossAmount), SUM(r.discountAmount), SUM(r.netAmount), SUM(r.paidAmount)
+        FROM DailyCourtRollup r
+        WHERE r.id.rollupDate BETWEEN :from AND :to
+        GROUP BY r.id.bookingChannel, r.id.statusId
+    """)
+    List<Object[]> sumByChannel(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -2,6 +2,7 @@ package com.example.shuttlesync.repository;
 
 import com.example.shuttlesync.model.Discount;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -19,6 +20,10 @@ public interface DiscountRepository extends JpaRepository<Discount, Integer> {
     // Check if code exists (for unique validation)
     boolean existsByCode(String code);
 
+    // Personal vouchers a customer holds and has not used yet
+    @Query(value = "SELECT pv.VoucherId FROM PersonalVouchers pv WHERE pv.UserId = :userId AND pv.IsUsed = 0", nativeQuery = true)
+    List<Integer> findUnusedPersonalVoucherIds(@Param("userId") Integer userId);
+
     // Find by status
     List<Discount> findByStatus(Discount.DiscountStatus status);
 
@@ -58,4 +63,24 @@ public interface DiscountRepository extends JpaRepository<Discount, Integer> {
 
     @Query("SELECT AVG(CAST(d.usedCount AS double) / CAST(d.usageLimit AS double)) FROM Discount d WHERE d.usageLimit > 0")
     Double getAverageUsageRate();
-} 
\ No newline at end of file
+
+    /**
+     * Tăng UsedCount thêm count nếu không vượt UsageLimit, trong một câu UPDATE có điều kiện
+     *
+     * @return 1 nếu thành công, 0 nếu voucher không tồn tại hoặc không đủ lượt
+     */
+    @Modifying
+    @Query("UPDATE Discount d SET d.usedCount = d.usedCount + :count WHERE d.id = :id AND (d.usageLimit IS NULL OR d.usedCount + :count <= d.usageLimit)")
+    int tryIncrementUsage(@Param("id") Integer id, @Param("count") int count);
+
+    /**
+     * Trả lại count lượt dùng, UsedCount không xuống dưới 0
+     */
+    @Modifying
+    @Query("UPDATE Discount d SET d.usedCount = CASE WHEN d.usedCount > :count THEN d.usedCount - :count ELSE 0 END WHERE d.id = :id")
+    int releaseUsage(@Param("id") Integer id, @Param("count") int count);
+
+    // Số lượt còn lại, null nếu không giới hạn hoặc không tồn tại
+    @Query("SELECT d.usageLimit - d.usedCount FROM Discount d WHERE d.id = :id")
+    Integer findRemainingUsage(@Param("id") Integer id);
+}
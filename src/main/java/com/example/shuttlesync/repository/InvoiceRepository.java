@@ -1,6 +1,9 @@
 package com.example.shuttlesync.repository;
 
+import com.example.shuttlesync.dto.CustomerInvoiceSummaryDTO;
 import com.example.shuttlesync.model.Invoice;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -8,21 +11,34 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface InvoiceRepository extends JpaRepository<Invoice, Integer> {
+
+    @Override
+    @EntityGraph(Invoice.GRAPH_EXPORT)
+    List<Invoice> findAll();
+
+    @EntityGraph(Invoice.GRAPH_EXPORT)
+    Optional<Invoice> findWithDetailsById(Integer id);
     
     Invoice findByBookingId(Integer bookingId);
     
+    @EntityGraph(Invoice.GRAPH_EXPORT)
     List<Invoice> findByStatus(String status);
     
-    @Query(value = "SELECT * FROM Invoices WHERE CONVERT(DATE, InvoiceDate) = CONVERT(DATE, :date)", nativeQuery = true)
+    // InvoiceDate là cột DATE: so sánh trực tiếp để SQL Server dùng được index IX_Invoices_InvoiceDate
+    @EntityGraph(Invoice.GRAPH_EXPORT)
+    @Query("SELECT i FROM Invoice i WHERE i.invoiceDate = :date")
     List<Invoice> findByDate(@Param("date") LocalDate date);
     
-    @Query(value = "SELECT * FROM Invoices WHERE CONVERT(DATE, InvoiceDate) >= CONVERT(DATE, :startDate) AND CONVERT(DATE, InvoiceDate) <= CONVERT(DATE, :endDate)", nativeQuery = true)
+    @EntityGraph(Invoice.GRAPH_EXPORT)
+    @Query("SELECT i FROM Invoice i WHERE i.invoiceDate >= :startDate AND i.invoiceDate <= :endDate")
     List<Invoice> findBetweenDates(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
     
-    @Query(value = "SELECT i.* FROM Invoices i JOIN Bookings b ON i.BookingId = b.Id JOIN Courts c ON b.CourtId = c.Id WHERE c.Id = :courtId AND CONVERT(DATE, i.InvoiceDate) = CONVERT(DATE, :date)", nativeQuery = true)
+    @EntityGraph(Invoice.GRAPH_EXPORT)
+    @Query("SELECT i FROM Invoice i WHERE i.booking.court.id = :courtId AND i.invoiceDate = :date")
     List<Invoice> findByCourtAndDate(@Param("courtId") Integer courtId, @Param("date") LocalDate date);
     
     @Query(value = "SELECT i.* FROM Invoices i JOIN Bookings b ON i.BookingId = b.Id WHERE b.UserId = :userId", nativeQuery = true)
@@ -30,4 +46,25 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Integer> {
     
     @Query(value = "SELECT i.* FROM Invoices i JOIN Bookings b ON i.BookingId = b.Id WHERE b.UserId = :userId AND i.Status = :status", nativeQuery = true)
     List<Invoice> findByUserIdAndStatus(@Param("userId") Integer userId, @Param("status") String status);
-} 
\ No newline at end of file
+
+    /**
+     * Một trang hóa đơn của user, mới nhất trước, phân trang theo keyset trên Id:
+     * trang đầu truyền afterId = null, trang sau truyền Id nhỏ nhất của trang trước.
+     */
+    @Query("SELECT new com.example.shuttlesync.dto.CustomerInvoiceSummaryDTO(" +
+           "i.id, b.id, b.bookingDate, b.bookingChannel, b.bookingType, b.counterStaffId, " +
+           "c.name, ts.startTime, ts.endTime, i.invoiceType, i.invoiceDate, " +
+           "i.originalAmount, i.discountAmount, i.finalAmount, i.status, i.createdAt) " +
+           "FROM Invoice i JOIN i.booking b JOIN b.court c JOIN b.timeSlot ts " +
+           "WHERE b.user.id = :userId AND (:afterId IS NULL OR i.id < :afterId) " +
+           "ORDER BY i.id DESC")
+    List<CustomerInvoiceSummaryDTO> findUserInvoicePage(@Param("userId") Integer userId,
+                                                        @Param("afterId") Integer afterId,
+                                                        Pageable pageable);
+
+    @Query("SELECT COUNT(i) FROM Invoice i WHERE i.booking.user.id = :userId")
+    long countByUserId(@Param("userId") Integer userId);
+
+    @Query("SELECT COUNT(i) FROM Invoice i WHERE i.booking.user.id = :userId AND i.status = :status")
+    long countByUserIdAndStatus(@Param("userId") Integer userId, @Param("status") String status);
+}
@@ -0,0 +1,53 @@
+package com.example.shuttlesync.repository;
+
+import com.example.shuttlesync.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Lấy id các event đến hạn xử lý (PENDING, hoặc PROCESSING đã hết hạn giữ chỗ)
+     */
+    @Query("""
+        SELECT e.id FROM OutboxEvent e
+        WHERE e.status IN (com.example.shuttlesync.model.OutboxEvent.Status.PENDING,
+                           com.example.shuttlesync.model.OutboxEvent.Status.PROCESSING)
+        AND e.nextAttemptAt <= :now
+        ORDER BY e.id ASC
+    """)
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Nhận xử lý một lô event, event nào đã bị node khác nhận thì bỏ qua
+     */
+    @Modifying
+    @Query("""
+        UPDATE OutboxEvent e
+        SET e.status = com.example.shuttlesync.model.OutboxEvent.Status.PROCESSING,
+            e.claimToken = :token,
+            e.nextAttemptAt = :leaseUntil
+        WHERE e.id IN :ids
+        AND e.status IN (com.example.shuttlesync.model.OutboxEvent.Status.PENDING,
+                         com.example.shuttlesync.model.OutboxEvent.Status.PROCESSING)
+        AND e.nextAttemptAt <= :now
+    """)
+    int claim(@Param("ids") List<Long> ids,
+              @Param("token") String token,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    List<OutboxEvent> findByClaimTokenOrderByIdAsc(String claimToken);
+
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.status = com.example.shuttlesync.model.OutboxEvent.Status.DONE AND e.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
@@ -11,6 +11,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -44,4 +45,12 @@ public interface PaymentRepository extends JpaRepository<Payment, Integer> {
 
     @Query("SELECT SUM(p.amount) FROM Payment p WHERE p.booking.id = :bookingId AND p.paymentStatus.id = 2")
     BigDecimal getTotalPaidAmountByBookingId(@Param("bookingId") Integer bookingId);
-}
\ No newline at end of file
+
+    /**
+     * Thanh toán của các booking trong danh sách, theo thứ tự Id.
+     * Mỗi dòng: BookingId, Amount, PaymentStatus, PaymentMethod
+     */
+    @Query("SELECT p.booking.id, p.amount, p.paymentStatus.id, p.paymentMethod FROM Payment p " +
+           "WHERE p.booking.id IN :bookingIds ORDER BY p.id")
+    List<Object[]> findSummariesByBookingIds(@Param("bookingIds") Collection<Integer> bookingIds);
+}
@@ -3,6 +3,7 @@ package com.example.shuttlesync.repository;
 import com.example.shuttlesync.model.Service;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -15,17 +16,24 @@ import java.util.Optional;
 @Repository
 public interface ServiceRepository extends JpaRepository<Service, Integer> {
 
+    @Override
+    @EntityGraph(attributePaths = "serviceType")
+    List<Service> findAll();
+
     @Query("SELECT s FROM Service s WHERE s.serviceType.id = :typeId")
     List<Service> findByServiceTypeId(@Param("typeId") Integer typeId);
 
+    @EntityGraph(attributePaths = "serviceType")
     List<Service> findByIsActive(Boolean isActive);
 
     @Query("SELECT s FROM Service s WHERE s.serviceType.id = :typeId AND s.isActive = :active")
     List<Service> findByServiceTypeIdAndIsActive(@Param("typeId") Integer typeId, @Param("active") Boolean active);
 
+    @EntityGraph(attributePaths = "serviceType")
     @Query("SELECT s FROM Service s WHERE LOWER(s.serviceName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(s.description) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<Service> searchServices(@Param("keyword") String keyword);
 
+    @EntityGraph(attributePaths = "serviceType")
     @Query("SELECT s FROM Service s WHERE LOWER(s.serviceName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(s.description) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     Page<Service> searchServices(@Param("keyword") String keyword, Pageable pageable);
 
@@ -4,9 +4,11 @@ import com.example.shuttlesync.model.Court;
 import com.example.shuttlesync.model.StatusType;
 import com.example.shuttlesync.model.TimeSlot;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -23,6 +25,12 @@ public interface TimeSlotRepository extends JpaRepository<TimeSlot, Integer> {
 
     List<TimeSlot> findByCourtId(Integer courtId);
 
+    /**
+     * Tổng số phút của các khung giờ mỗi sân trong một ngày. Mỗi dòng: CourtId, số phút
+     */
+    @Query(value = "SELECT CourtId, SUM(DATEDIFF(MINUTE, StartTime, EndTime)) FROM TimeSlots GROUP BY CourtId", nativeQuery = true)
+    List<Object[]> sumSlotMinutesByCourt();
+
     @Query("SELECT t FROM TimeSlot t WHERE t.court = :court AND t.slotIndex = :slotIndex")
     List<TimeSlot> findByCourtAndSlotIndex(@Param("court") Court court, @Param("slotIndex") Integer slotIndex);
 
@@ -90,4 +98,46 @@ public interface TimeSlotRepository extends JpaRepository<TimeSlot, Integer> {
                   "AND CAST(ts.EndTime AS time) <= CAST(:currentTime AS time) " +
                   "AND ts.Status != 1", nativeQuery = true)
     List<TimeSlot> findExpiredTimeSlotsForBookings(@Param("bookingDate") LocalDate bookingDate, @Param("currentTime") LocalTime currentTime);
-}
\ No newline at end of file
+
+    /**
+     * Điều kiện trên khung giờ ts: có booking đã kết thúc trong khoảng ngày cần quét
+     * (ngày trong [fromDate, date) hoặc ngày = date và giờ kết thúc <= currentTime), bất kể trạng thái booking,
+     * và không còn booking đang giữ chỗ (trạng thái 1/2) chưa kết thúc: hôm nay sau currentTime hoặc các ngày sau.
+     * Khung giờ dùng chung cho mọi ngày nên booking cũ không được làm trống khung giờ đang có người giữ.
+     */
+    String EXPIRED_SLOT_CONDITION = """
+        EXISTS (
+            SELECT 1 FROM Bookings b
+            WHERE b.TimeSlotId = ts.Id
+            AND b.BookingDate >= :fromDate
+            AND (b.BookingDate < :date
+                 OR (b.BookingDate = :date AND CAST(ts.EndTime AS time) <= CAST(:currentTime AS time)))
+        )
+        AND NOT EXISTS (
+            SELECT 1 FROM Bookings live
+            WHERE live.TimeSlotId = ts.Id
+            AND live.Status IN (1, 2)
+            AND (live.BookingDate > :date
+                 OR (live.BookingDate = :date AND CAST(ts.EndTime AS time) > CAST(:currentTime AS time)))
+        )
+        """;
+
+    /**
+     * Đặt lại tối đa :limit khung giờ về "Trống" (1) theo EXPIRED_SLOT_CONDITION
+     *
+     * @return Số khung giờ đã cập nhật
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+        UPDATE TOP (:limit) ts SET ts.Status = 1
+        FROM TimeSlots ts
+        WHERE ts.Status != 1
+        AND
+        """ + EXPIRED_SLOT_CONDITION, nativeQuery = true)
+    int resetExpiredTimeSlots(
+            @Param("fromDate") LocalDate fromDate,
+            @Param("date") LocalDate date,
+            @Param("currentTime") LocalTime currentTime,
+            @Param("limit") int limit);
+}
@@ -0,0 +1,57 @@
+package com.example.shuttlesync.repository;
+
+import com.example.shuttlesync.model.VoucherLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface VoucherLeaseRepository extends JpaRepository<VoucherLease, Long> {
+
+    /**
+     * Ghi một lượt dùng của lease, chỉ khi lease còn tồn tại
+     *
+     * @return 1 nếu đã ghi, 0 nếu lease đã bị thu hồi
+     */
+    @Modifying
+    @Query(value = "INSERT INTO VoucherLeaseUses (LeaseId) SELECT l.Id FROM VoucherLeases l WHERE l.Id = :leaseId", nativeQuery = true)
+    int recordUse(@Param("leaseId") Long leaseId);
+
+    /**
+     * Cộng thêm count lượt đã giữ và gia hạn lease
+     *
+     * @return 0 nếu lease đã bị thu hồi
+     */
+    @Modifying
+    @Query("UPDATE VoucherLease l SET l.reserved = l.reserved + :count, l.leaseUntil = :leaseUntil WHERE l.id = :id")
+    int addReserved(@Param("id") Long id, @Param("count") int count, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * @return 0 nếu lease đã bị thu hồi
+     */
+    @Modifying
+    @Query("UPDATE VoucherLease l SET l.leaseUntil = :leaseUntil WHERE l.id = :id")
+    int renew(@Param("id") Long id, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Query("SELECT l.id FROM VoucherLease l WHERE l.leaseUntil < :now")
+    List<Long> findExpiredIds(@Param("now") LocalDateTime now);
+
+    /**
+     * Xóa lease nếu vẫn còn quá hạn, để node chủ lease gia hạn kịp thì không bị thu hồi
+     */
+    @Modifying
+    @Query("DELETE FROM VoucherLease l WHERE l.id = :id AND l.leaseUntil < :now")
+    int deleteIfExpired(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Query("SELECT COUNT(u) FROM VoucherLeaseUse u WHERE u.leaseId = :leaseId")
+    long countUses(@Param("leaseId") Long leaseId);
+
+    @Modifying
+    @Query("DELETE FROM VoucherLeaseUse u WHERE u.leaseId = :leaseId")
+    int deleteUses(@Param("leaseId") Long leaseId);
+}
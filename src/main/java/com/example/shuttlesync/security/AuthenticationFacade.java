@@ -2,6 +2,7 @@ package com.example.shuttlesync.security;
 
 import com.example.shuttlesync.model.User;
 import com.example.shuttlesync.repository.UserRepository;
+import com.example.shuttlesync.service.impl.UserDetailsImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -55,6 +56,12 @@ public class AuthenticationFacade {
      * Lấy ID của user hiện tại
      */
     public Integer getCurrentUserId() {
+        // Principal dựng từ JWT đã có sẵn id, không cần truy vấn lại
+        Authentication authentication = getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetailsImpl userDetails
+                && userDetails.getId() != null) {
+            return userDetails.getId();
+        }
         User user = getCurrentUser();
         return user.getId();
     }
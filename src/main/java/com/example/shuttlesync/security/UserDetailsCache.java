@@ -0,0 +1,108 @@
+package com.example.shuttlesync.security;
+
+import com.example.shuttlesync.service.impl.UserDetailsImpl;
+import com.example.shuttlesync.service.impl.UserDetailsServiceImpl;
+import com.example.shuttlesync.util.BoundedTtlCache;
+import com.example.shuttlesync.util.TransactionHooks;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Xác định UserDetails cho request đã có JWT hợp lệ mà không truy vấn database.
+ * Token mới mang sẵn id và quyền của user (claim "uid", "role") nên dựng thẳng từ claims.
+ * Token cũ hoặc token phát hành trước lần thay đổi tài khoản gần nhất thì lấy từ bộ đệm có giới hạn kích thước và TTL.
+ */
+@Component
+@Slf4j
+public class UserDetailsCache {
+
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_FULL_NAME = "name";
+
+    private final UserDetailsServiceImpl userDetailsService;
+    private final Duration tokenLifetime;
+
+    private final BoundedTtlCache<String, UserDetails> entries;
+
+    // Email -> thời điểm tài khoản thay đổi gần nhất, token phát hành trước đó không được tin claims nữa
+    private final Map<String, Instant> invalidatedAt = new ConcurrentHashMap<>();
+
+    public UserDetailsCache(UserDetailsServiceImpl userDetailsService,
+                            @Value("${app.auth.user-cache.ttl-seconds:300}") long ttlSeconds,
+                            @Value("${app.auth.user-cache.max-size:10000}") int maxSize,
+                            @Value("${jwt.expiration}") long jwtExpiration) {
+        this.userDetailsService = userDetailsService;
+        this.tokenLifetime = Duration.ofMillis(jwtExpiration);
+        this.entries = new BoundedTtlCache<>(Duration.ofSeconds(ttlSeconds), maxSize);
+    }
+
+    /**
+     * UserDetails cho claims đã được xác thực chữ ký
+     */
+    public UserDetails resolve(Claims claims) {
+        String email = claims.getSubject();
+        Object userId = claims.get(CLAIM_USER_ID);
+        Object role = claims.get(CLAIM_ROLE);
+        if (userId instanceof Number && role instanceof String && !isStale(email, claims.getIssuedAt())) {
+            return new UserDetailsImpl(
+                    ((Number) userId).intValue(),
+                    email,
+                    claims.get(CLAIM_FULL_NAME, String.class),
+                    null,
+                    Collections.singletonList(new SimpleGrantedAuthority((String) role))
+            );
+        }
+        return get(email);
+    }
+
+    /**
+     * Lấy UserDetails từ bộ đệm, hết hạn hoặc chưa có thì tải từ database
+     */
+    public UserDetails get(String email) {
+        return entries.get(email, userDetailsService::loadUserByUsername);
+    }
+
+    /**
+     * Bỏ thông tin đã lưu của user sau khi tài khoản thay đổi (quyền, mật khẩu, trạng thái, xóa tài khoản).
+     * Nếu đang trong transaction thì áp dụng cả ngay lập tức lẫn sau khi commit,
+     * để request chen giữa không nạp lại dữ liệu cũ vào bộ đệm.
+     */
+    public void invalidate(String email) {
+        if (email == null) {
+            return;
+        }
+        evict(email);
+        TransactionHooks.afterCommit(() -> evict(email));
+    }
+
+    private void evict(String email) {
+        entries.invalidate(email);
+        Instant now = Instant.now();
+        invalidatedAt.put(email, now);
+        // Mốc cũ hơn thời hạn token không còn tác dụng
+        invalidatedAt.values().removeIf(at -> at.isBefore(now.minus(tokenLifetime)));
+        log.debug("[AUTH] Đã làm mới thông tin đăng nhập của {}", email);
+    }
+
+    private boolean isStale(String email, Date issuedAt) {
+        Instant changedAt = invalidatedAt.get(email);
+        if (changedAt == null) {
+            return false;
+        }
+        // iat chỉ chính xác đến giây nên token cùng giây với lần thay đổi cũng coi là cũ
+        return issuedAt == null || !issuedAt.toInstant().isAfter(changedAt.truncatedTo(ChronoUnit.SECONDS));
+    }
+}
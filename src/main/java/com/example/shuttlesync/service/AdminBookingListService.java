@@ -0,0 +1,111 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.dto.BookingDTO;
+import com.example.shuttlesync.model.Booking;
+import com.example.shuttlesync.repository.BookingRepository;
+import com.example.shuttlesync.repository.BookingSpecifications;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Danh sách booking phía admin, phân trang keyset theo (createdAt DESC, id DESC).
+ * Lọc theo ngày và trạng thái trong câu truy vấn, trạng thái thanh toán lấy bằng một truy vấn cho cả trang.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class AdminBookingListService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final byte PAYMENT_STATUS_PAID = 2;
+
+    private static final String ENSURE_INDEXES_SQL = """
+        IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_Bookings_CreatedAt' AND object_id = OBJECT_ID('Bookings'))
+            CREATE INDEX IX_Bookings_CreatedAt ON Bookings (CreatedAt DESC, Id DESC);
+        IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_Bookings_Status_CreatedAt' AND object_id = OBJECT_ID('Bookings'))
+            CREATE INDEX IX_Bookings_Status_CreatedAt ON Bookings (Status, CreatedAt DESC, Id DESC);
+        """;
+
+    private final BookingRepository bookingRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Tạo index phục vụ sắp xếp theo thời gian tạo nếu chưa có
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        try {
+            jdbcTemplate.execute(ENSURE_INDEXES_SQL);
+        } catch (Exception e) {
+            log.warn("[ADMIN-BOOKINGS] Không thể tạo index cho danh sách booking: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Một trang booking. Trang sau: truyền afterCreatedAt/afterId bằng nextAfterCreatedAt/nextAfterId của trang trước.
+     *
+     * @param fromDate ngày đặt sân từ (null = không lọc)
+     * @param toDate   ngày đặt sân đến, tính cả ngày này (null = không lọc)
+     * @param statusId trạng thái booking (null = tất cả)
+     */
+    public Map<String, Object> getPage(LocalDate fromDate, LocalDate toDate, Byte statusId,
+                                       LocalDateTime afterCreatedAt, Integer afterId, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        Specification<Booking> filter = Specification.where(null);
+        if (fromDate != null) {
+            filter = filter.and(BookingSpecifications.bookedOnOrAfter(fromDate));
+        }
+        if (toDate != null) {
+            filter = filter.and(BookingSpecifications.bookedOnOrBefore(toDate));
+        }
+        if (statusId != null) {
+            filter = filter.and(BookingSpecifications.hasStatus(statusId));
+        }
+        if (afterId != null) {
+            filter = filter.and(BookingSpecifications.createdBefore(afterCreatedAt, afterId));
+        }
+
+        // Lấy dư một dòng để biết còn trang sau
+        List<BookingDTO> items = bookingRepository.findAdminPage(filter, pageSize + 1);
+        boolean hasMore = items.size() > pageSize;
+        if (hasMore) {
+            items = items.subList(0, pageSize);
+        }
+        fillPaymentStatus(items);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("bookings", items);
+        result.put("hasMore", hasMore);
+        if (hasMore) {
+            BookingDTO last = items.get(items.size() - 1);
+            result.put("nextAfterCreatedAt", last.getCreatedAt());
+            result.put("nextAfterId", last.getId());
+        }
+        return result;
+    }
+
+    private void fillPaymentStatus(List<BookingDTO> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        Set<Integer> ids = new HashSet<>();
+        items.forEach(item -> ids.add(item.getId()));
+        Set<Integer> paid = new HashSet<>(bookingRepository.findPaidBookingIds(ids, PAYMENT_STATUS_PAID));
+        items.forEach(item -> item.setPaymentStatus(paid.contains(item.getId()) ? "paid" : "pending"));
+    }
+}
@@ -6,6 +6,7 @@ import com.example.shuttlesync.dto.BookingDTO;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -43,6 +44,8 @@ public interface BookingService {
     boolean isTimeSlotBooked(Integer courtId, Integer timeSlotId, LocalDate bookingDate);
 
     List<BookingDTO> getRecentBookings();
+
+    Map<Byte, Long> countBookingsByStatus();
     
     Booking saveBooking(Booking booking);
     
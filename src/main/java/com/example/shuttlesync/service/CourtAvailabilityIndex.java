@@ -0,0 +1,222 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.event.BookingChangedEvent;
+import com.example.shuttlesync.event.BookingsCompletedEvent;
+import com.example.shuttlesync.event.BookingsCompletedEvent.CompletedBooking;
+import com.example.shuttlesync.event.ChangeType;
+import com.example.shuttlesync.model.TimeSlot;
+import com.example.shuttlesync.repository.BookingRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chỉ mục khung giờ đã đặt trong bộ nhớ, mỗi (sân, ngày) giữ một bitset các khung giờ đang bị chiếm.
+ * Chỉ lưu các ngày trong khoảng [hôm nay, hôm nay + horizon], ngoài khoảng này sẽ truy vấn database.
+ * Booking đang hoạt động là booking có trạng thái 1 (Chờ xác nhận) hoặc 2 (Đã xác nhận).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CourtAvailabilityIndex {
+
+    private final BookingRepository bookingRepository;
+
+    @Value("${app.availability.horizon-days:30}")
+    private int horizonDays;
+
+    private volatile Map<CourtDay, BitSet> occupied = new ConcurrentHashMap<>();
+
+    // TimeSlotId -> vị trí bit trong bitset
+    private final Map<Integer, Integer> slotPositions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextPosition = new AtomicInteger();
+
+    private volatile LocalDate windowStart;
+    private volatile LocalDate windowEnd;
+    private volatile boolean ready = false;
+
+    // Thay đổi đã commit trong lúc rebuild đang chạy, được áp lại lên bản mới trước khi thay thế
+    private final Object changeLock = new Object();
+    private List<Change> changesDuringRebuild;
+
+    private record CourtDay(Integer courtId, LocalDate date) {
+    }
+
+    private record Change(Integer courtId, Integer timeSlotId, LocalDate date, boolean active) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("[AVAILABILITY] Không thể nạp chỉ mục khung giờ, sẽ dùng database: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Trượt cửa sổ sang ngày mới (chạy lúc 00:05 mỗi ngày)
+     */
+    @Scheduled(cron = "0 5 0 * * *")
+    public void rollWindow() {
+        warmUp();
+    }
+
+    /**
+     * Nạp lại toàn bộ chỉ mục từ database bằng một truy vấn.
+     * Thay đổi đến trong lúc truy vấn có thể không có trong kết quả nên được ghi lại và áp lên bản mới trước khi thay thế.
+     */
+    public synchronized void rebuild() {
+        LocalDate start = LocalDate.now();
+        LocalDate end = start.plusDays(horizonDays);
+
+        synchronized (changeLock) {
+            changesDuringRebuild = new ArrayList<>();
+        }
+        List<Object[]> rows;
+        Map<CourtDay, BitSet> fresh = new ConcurrentHashMap<>();
+        try {
+            rows = bookingRepository.findActiveSlotKeysBetween(start, end);
+            for (Object[] row : rows) {
+                CourtDay key = new CourtDay((Integer) row[0], (LocalDate) row[2]);
+                fresh.computeIfAbsent(key, k -> new BitSet()).set(positionOf((Integer) row[1]));
+            }
+        } catch (RuntimeException e) {
+            synchronized (changeLock) {
+                changesDuringRebuild = null;
+            }
+            throw e;
+        }
+
+        synchronized (changeLock) {
+            for (Change change : changesDuringRebuild) {
+                applyTo(fresh, start, end, change);
+            }
+            changesDuringRebuild = null;
+            occupied = fresh;
+            windowStart = start;
+            windowEnd = end;
+            ready = true;
+        }
+        log.info("[AVAILABILITY] Đã nạp {} booking đang hoạt động cho {} -> {}", rows.size(), start, end);
+    }
+
+    /**
+     * Kiểm tra khung giờ đã có booking đang hoạt động chưa
+     */
+    public boolean isBooked(Integer courtId, Integer timeSlotId, LocalDate date) {
+        if (!covers(date)) {
+            return bookingRepository.existsActiveBooking(courtId, timeSlotId, date);
+        }
+        BitSet bits = occupied.get(new CourtDay(courtId, date));
+        if (bits == null) {
+            return false;
+        }
+        Integer position = slotPositions.get(timeSlotId);
+        if (position == null) {
+            return false;
+        }
+        synchronized (bits) {
+            return bits.get(position);
+        }
+    }
+
+    /**
+     * Đếm số khung giờ còn trống của sân trong ngày
+     */
+    public int countAvailable(Integer courtId, Collection<TimeSlot> timeSlots, LocalDate date) {
+        int count = 0;
+        for (TimeSlot slot : timeSlots) {
+            if (!isBooked(courtId, slot.getId(), date)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Booking đã commit thay đổi: cập nhật khung giờ của nó theo trạng thái mới (booking bị xóa thì giải phóng).
+     * Booking bị dời thì giải phóng cả khung giờ cũ.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBookingChanged(BookingChangedEvent event) {
+        if (event.moved() && event.previousCourtId() != null && event.previousTimeSlotId() != null) {
+            apply(event.previousCourtId(), event.previousTimeSlotId(), event.previousBookingDate(), false);
+        }
+        if (event.courtId() == null || event.timeSlotId() == null || event.statusId() == null) {
+            return;
+        }
+        boolean active = event.change() != ChangeType.DELETED && isActiveStatus(event.statusId());
+        apply(event.courtId(), event.timeSlotId(), event.bookingDate(), active);
+    }
+
+    /**
+     * Lần quét hết hạn đã hoàn thành hàng loạt booking: chỉ giải phóng đúng các khung giờ của chúng
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingsCompleted(BookingsCompletedEvent event) {
+        for (CompletedBooking booking : event.bookings()) {
+            apply(booking.courtId(), booking.timeSlotId(), booking.bookingDate(), false);
+        }
+    }
+
+    public static boolean isActiveStatus(Byte statusId) {
+        return statusId != null && (statusId == 1 || statusId == 2);
+    }
+
+    private void apply(Integer courtId, Integer timeSlotId, LocalDate date, boolean active) {
+        Change change = new Change(courtId, timeSlotId, date, active);
+        synchronized (changeLock) {
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+            if (ready) {
+                applyTo(occupied, windowStart, windowEnd, change);
+            }
+        }
+    }
+
+    private void applyTo(Map<CourtDay, BitSet> target, LocalDate start, LocalDate end, Change change) {
+        if (change.date() == null || change.date().isBefore(start) || change.date().isAfter(end)) {
+            return;
+        }
+        CourtDay key = new CourtDay(change.courtId(), change.date());
+        int position = positionOf(change.timeSlotId());
+        if (change.active()) {
+            BitSet bits = target.computeIfAbsent(key, k -> new BitSet());
+            synchronized (bits) {
+                bits.set(position);
+            }
+        } else {
+            BitSet bits = target.get(key);
+            if (bits != null) {
+                synchronized (bits) {
+                    bits.clear(position);
+                }
+            }
+        }
+    }
+
+    private boolean covers(LocalDate date) {
+        return ready && date != null && !date.isBefore(windowStart) && !date.isAfter(windowEnd);
+    }
+
+    private int positionOf(Integer timeSlotId) {
+        return slotPositions.computeIfAbsent(timeSlotId, id -> nextPosition.getAndIncrement());
+    }
+}
@@ -1,9 +1,11 @@
 package com.example.shuttlesync.service;
 
+import com.example.shuttlesync.exeption.ConflictException;
 import com.example.shuttlesync.model.*;
 import com.example.shuttlesync.repository.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -20,8 +22,15 @@ public class CustomerBookingService {
     private final TimeSlotRepository timeSlotRepository;
     private final BookingRepository bookingRepository;
     private final UserRepository userRepository;
-    private final BookingStatusTypeRepository bookingStatusTypeRepository;
+    private final ReferenceDataRegistry referenceDataRegistry;
     private final PaymentRepository paymentRepository;
+    private final CourtAvailabilityIndex availabilityIndex;
+    private final SlotReservationService slotReservationService;
+    private final ServiceRepository serviceRepository;
+    private final BookingServiceRepository bookingServiceRepository;
+    private final DiscountRepository discountRepository;
+    private final VoucherCatalog voucherCatalog;
+    private final VoucherService voucherService;
 
     /**
      * Lấy danh sách sân có sẵn từ database
@@ -30,6 +39,10 @@ public class CustomerBookingService {
         List<Court> courts = courtRepository.findAll();
         List<Map<String, Object>> result = new ArrayList<>();
         
+        // Lấy danh sách khung giờ một lần, trạng thái đặt được tra trong bộ nhớ
+        LocalDate today = LocalDate.now();
+        List<TimeSlot> timeSlots = timeSlotRepository.findAll();
+        
         for (Court court : courts) {
             Map<String, Object> courtMap = new HashMap<>();
             courtMap.put("id", court.getId());
@@ -41,12 +54,7 @@ public class CustomerBookingService {
             courtMap.put("priceRange", "200,000 - 300,000 VND"); // Default price range
             
             // Check availability for today
-            LocalDate today = LocalDate.now();
-            List<TimeSlot> timeSlots = timeSlotRepository.findAll();
-            long availableSlots = timeSlots.stream()
-                    .filter(slot -> !isTimeSlotBooked(court.getId(), slot.getId(), today))
-                    .count();
-            courtMap.put("availableSlots", (int) availableSlots);
+            courtMap.put("availableSlots", availabilityIndex.countAvailable(court.getId(), timeSlots, today));
             
             result.add(courtMap);
         }
@@ -97,13 +105,13 @@ public class CustomerBookingService {
      * Kiểm tra khung giờ đã được đặt chưa
      */
     private boolean isTimeSlotBooked(Integer courtId, Integer timeSlotId, LocalDate date) {
-        return bookingRepository.existsByCourtIdAndTimeSlotIdAndBookingDateAndStatusIdNot(
-                courtId, timeSlotId, date, (byte) 4); // 4 = Cancelled
+        return availabilityIndex.isBooked(courtId, timeSlotId, date);
     }
 
     /**
-     * Tạo booking mới
+     * Tạo booking mới cùng các dịch vụ đi kèm và voucher trong một transaction
      */
+    @Transactional
     public Map<String, Object> createBooking(Integer userId, Map<String, Object> bookingData) {
         try {
             Integer courtId = (Integer) bookingData.get("courtId");
@@ -129,11 +137,6 @@ public class CustomerBookingService {
             TimeSlot timeSlot = timeSlotRepository.findById(timeSlotId)
                     .orElseThrow(() -> new RuntimeException("Time slot not found"));
             
-            // Check if time slot is available
-            if (isTimeSlotBooked(courtId, timeSlotId, bookingDate)) {
-                throw new RuntimeException("Time slot is already booked");
-            }
-            
             // Validate voucher nếu có
             if (voucherData != null) {
                 // Lấy subtotal từ frontend - safe casting
@@ -158,44 +161,31 @@ public class CustomerBookingService {
                 }
             }
             
-            // Thêm voucher info vào notes nếu có
-            if (voucherData != null) {
-                String voucherCode = (String) voucherData.get("code");
-                String voucherName = (String) voucherData.get("name");
-                if (voucherCode != null) {
-                    notes += (notes.isEmpty() ? "" : " | ") + "Voucher: " + voucherCode + " - " + voucherName;
+            // Dịch vụ đi kèm: gộp theo serviceId, tải tất cả dịch vụ bằng một truy vấn
+            Map<Integer, Integer> serviceQuantities = new LinkedHashMap<>();
+            for (Map<String, Object> service : servicesData) {
+                if (service.get("serviceId") instanceof Number serviceId
+                        && service.get("quantity") instanceof Number quantity && quantity.intValue() > 0) {
+                    serviceQuantities.merge(serviceId.intValue(), quantity.intValue(), Integer::sum);
                 }
             }
-            
-            // Thêm services info vào notes nếu có
-            if (!servicesData.isEmpty()) {
-                StringBuilder servicesInfo = new StringBuilder();
-                for (Map<String, Object> service : servicesData) {
-                    // Safe casting for serviceId and quantity
-                    Object serviceIdObj = service.get("serviceId");
-                    Object quantityObj = service.get("quantity");
-                    
-                    Integer serviceId = null;
-                    Integer quantity = null;
-                    
-                    if (serviceIdObj instanceof Number) {
-                        serviceId = ((Number) serviceIdObj).intValue();
-                    }
-                    
-                    if (quantityObj instanceof Number) {
-                        quantity = ((Number) quantityObj).intValue();
-                    }
-                    
-                    if (serviceId != null && quantity != null && quantity > 0) {
-                        if (servicesInfo.length() > 0) servicesInfo.append(", ");
-                        servicesInfo.append("Service ").append(serviceId).append(" x").append(quantity);
-                    }
-                }
-                if (servicesInfo.length() > 0) {
-                    notes += (notes.isEmpty() ? "" : " | ") + "Services: " + servicesInfo.toString();
+            List<com.example.shuttlesync.model.BookingService> serviceLines = new ArrayList<>();
+            if (!serviceQuantities.isEmpty()) {
+                for (com.example.shuttlesync.model.Service service : serviceRepository.findAllById(serviceQuantities.keySet())) {
+                    com.example.shuttlesync.model.BookingService line = new com.example.shuttlesync.model.BookingService();
+                    line.setService(service);
+                    line.setQuantity(serviceQuantities.get(service.getId()));
+                    line.setUnitPrice(service.getUnitPrice());
+                    serviceLines.add(line);
                 }
             }
             
+            // Voucher được lưu vào BookingDiscounts, hóa đơn sẽ áp dụng lại từ đó
+            Discount voucher = null;
+            if (voucherData != null && voucherData.get("code") instanceof String voucherCode) {
+                voucher = discountRepository.findByCode(voucherCode).orElse(null);
+            }
+            
             // Create booking
             Booking booking = new Booking();
             booking.setUser(user);
@@ -204,14 +194,23 @@ public class CustomerBookingService {
             booking.setBookingDate(bookingDate);
             booking.setNotes(notes);
             booking.setCreatedAt(java.time.LocalDateTime.now());
+            if (voucher != null) {
+                booking.getDiscounts().add(voucher);
+            }
             
             // Set default status (pending confirmation)
-            BookingStatusType pendingStatus = bookingStatusTypeRepository.findById((byte) 1)
+            BookingStatusType pendingStatus = referenceDataRegistry.findBookingStatus((byte) 1)
                     .orElseThrow(() -> new RuntimeException("Pending status not found"));
             booking.setStatus(pendingStatus);
             
-            // Save booking
-            booking = bookingRepository.save(booking);
+            // Giữ chỗ và lưu booking (khóa theo khung giờ + unique index chống đặt trùng)
+            Booking newBooking = booking;
+            booking = slotReservationService.reserve(courtId, timeSlotId, bookingDate, () -> {
+                Booking saved = bookingRepository.saveAndFlush(newBooking);
+                serviceLines.forEach(line -> line.setBooking(saved));
+                bookingServiceRepository.saveAll(serviceLines);
+                return saved;
+            });
             
             // CustomerBookingInfo sẽ được tự động tạo bởi database triggers
             
@@ -229,6 +228,8 @@ public class CustomerBookingService {
             
             return response;
             
+        } catch (ConflictException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo booking: " + e.getMessage());
         }
@@ -283,7 +284,7 @@ public class CustomerBookingService {
         }
         
         // Set status to cancelled
-        BookingStatusType cancelledStatus = bookingStatusTypeRepository.findById((byte) 4)
+        BookingStatusType cancelledStatus = referenceDataRegistry.findBookingStatus((byte) 4)
                 .orElseThrow(() -> new RuntimeException("Cancelled status not found"));
         booking.setStatus(cancelledStatus);
         
@@ -318,51 +319,52 @@ public class CustomerBookingService {
     }
 
     /**
-     * Áp dụng voucher
+     * Kiểm tra voucher cho đơn hàng ở màn hình thanh toán (chỉ đọc danh mục voucher trong bộ nhớ).
+     * Voucher cá nhân chỉ hợp lệ với khách đang giữ nó. voucherData: code (hoặc voucherCode) và totalAmount (hoặc amount).
      */
     public Map<String, Object> applyVoucher(Integer userId, Map<String, Object> voucherData) {
         Map<String, Object> result = new HashMap<>();
-        
-        // Mock implementation
+        Object codeValue = voucherData.getOrDefault("code", voucherData.get("voucherCode"));
+        Object amountValue = voucherData.getOrDefault("totalAmount", voucherData.get("amount"));
+        String code = codeValue != null ? codeValue.toString().trim() : "";
+        BigDecimal amount = amountValue != null ? new BigDecimal(amountValue.toString()) : BigDecimal.ZERO;
+
+        Optional<Discount> voucher = voucherCatalog.findByCode(code, userId);
+        if (voucher.isEmpty() || !voucherService.canUseVoucher(code, amount)) {
+            result.put("isValid", false);
+            result.put("discountAmount", BigDecimal.ZERO);
+            result.put("message", voucher.isEmpty()
+                    ? "Voucher không tồn tại hoặc đã hết hạn"
+                    : "Voucher không áp dụng được cho đơn hàng này");
+            return result;
+        }
+
         result.put("isValid", true);
-        result.put("discountAmount", 20000);
-        result.put("discountType", "fixed");
+        result.put("voucherId", voucher.get().getId());
+        result.put("code", voucher.get().getCode());
+        result.put("discountAmount", voucherService.calculateDiscount(code, amount));
+        result.put("discountType", voucher.get().getType().name().toLowerCase());
         result.put("message", "Voucher đã được áp dụng thành công");
-        
         return result;
     }
 
     /**
-     * Lấy danh sách voucher có thể sử dụng
+     * Lấy danh sách voucher có thể sử dụng cho đơn hàng totalAmount: voucher PUBLIC và voucher cá nhân của khách
      */
     public List<Map<String, Object>> getAvailableVouchers(Integer userId, Double totalAmount) {
         List<Map<String, Object>> vouchers = new ArrayList<>();
-        
-        // Mock vouchers
-        Map<String, Object> voucher1 = new HashMap<>();
-        voucher1.put("id", 1);
-        voucher1.put("code", "WELCOME10");
-        voucher1.put("name", "Chào mừng khách hàng mới");
-        voucher1.put("description", "Giảm 10% cho đơn hàng đầu tiên");
-        voucher1.put("discountType", "percentage");
-        voucher1.put("discountValue", 10);
-        voucher1.put("minAmount", 200000);
-        voucher1.put("maxDiscount", 50000);
-        vouchers.add(voucher1);
-        
-        Map<String, Object> voucher2 = new HashMap<>();
-        voucher2.put("id", 2);
-        voucher2.put("code", "WEEKEND20");
-        voucher2.put("name", "Khuyến mãi cuối tuần");
-        voucher2.put("description", "Giảm 20% cho booking cuối tuần");
-        voucher2.put("discountType", "percentage");
-        voucher2.put("discountValue", 20);
-        voucher2.put("minAmount", 300000);
-        voucher2.put("maxDiscount", 100000);
-        vouchers.add(voucher2);
-        
+        for (Discount voucher : voucherCatalog.findAvailable(BigDecimal.valueOf(totalAmount), LocalDate.now(), userId)) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", voucher.getId());
+            item.put("code", voucher.getCode());
+            item.put("name", voucher.getName());
+            item.put("description", voucher.getDescription());
+            item.put("discountType", voucher.getType().name().toLowerCase());
+            item.put("discountValue", voucher.getValue());
+            item.put("minAmount", voucher.getMinOrderAmount());
+            item.put("maxDiscount", voucher.getMaxDiscountAmount());
+            vouchers.add(item);
+        }
         return vouchers;
     }
-    
-
-} 
\ No newline at end of file
+}
@@ -1,9 +1,12 @@
 package com.example.shuttlesync.service;
 
+import com.example.shuttlesync.dto.CustomerBookingStats;
+import com.example.shuttlesync.dto.CustomerRecentBookingDTO;
 import com.example.shuttlesync.dto.DashboardStatsDto;
 import com.example.shuttlesync.model.*;
 import com.example.shuttlesync.repository.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -18,6 +21,8 @@ public class CustomerDashboardService {
     private final BookingRepository bookingRepository;
     private final CourtRepository courtRepository;
     private final TimeSlotRepository timeSlotRepository;
+    private final CourtAvailabilityIndex availabilityIndex;
+    private final CustomerStatsService customerStatsService;
     
     // Constants for status mapping
     private static final byte BOOKING_STATUS_PENDING = 1;      // Chờ xác nhận
@@ -31,50 +36,23 @@ public class CustomerDashboardService {
     public DashboardStatsDto getDashboardStats(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found"));
+        return buildDashboardStats(user);
+    }
 
-        List<Booking> userBookings = bookingRepository.findByUserIdOrderByBookingDateDesc(user.getId());
-        System.out.println("Dashboard Stats for user: " + email + ", Total bookings: " + userBookings.size());
-        
-        // Tính toán stats
-        int totalBookings = userBookings.size();
-        int completedBookings = (int) userBookings.stream()
-                .filter(b -> b.getStatus() != null && b.getStatus().getId() == (byte) 3)
-                .count();
-        int upcomingBookings = (int) userBookings.stream()
-                .filter(b -> b.getStatus() != null && b.getStatus().getId() == (byte) 2 && 
-                           b.getBookingDate().isAfter(LocalDate.now()))
-                .count();
-        int cancelledBookings = (int) userBookings.stream()
-                .filter(b -> b.getStatus() != null && b.getStatus().getId() == (byte) 4)
-                .count();
-
-        // Tính tổng chi tiêu từ payments (chỉ tính các payment đã thanh toán)
-        Double totalSpent = userBookings.stream()
-                .flatMap(b -> b.getPayments().stream())
-                .filter(p -> p.getPaymentStatus() != null && p.getPaymentStatus().getId() == PAYMENT_STATUS_PAID)
-                .mapToDouble(p -> p.getAmount().doubleValue())
-                .sum();
-
-        // Tìm sân yêu thích (được đặt nhiều nhất)
-        Map<Integer, Long> courtFrequency = userBookings.stream()
-                .collect(Collectors.groupingBy(
-                    b -> b.getCourt().getId(), 
-                    Collectors.counting()
-                ));
-        
-        Integer favoriteCourtId = null;
-        String favoriteCourtName = "N/A";
-        if (!courtFrequency.isEmpty()) {
-            favoriteCourtId = courtFrequency.entrySet().stream()
-                    .max(Map.Entry.comparingByValue())
-                    .map(Map.Entry::getKey)
-                    .orElse(null);
-            if (favoriteCourtId != null) {
-                favoriteCourtName = courtRepository.findById(favoriteCourtId)
-                        .map(Court::getName)
-                        .orElse("N/A");
-            }
-        }
+    private DashboardStatsDto buildDashboardStats(User user) {
+        CustomerBookingStats stats = customerStatsService.getStats(user.getId());
+
+        int totalBookings = (int) stats.getTotalBookings();
+        int completedBookings = (int) stats.countByStatus(BOOKING_STATUS_COMPLETED);
+        int upcomingBookings = (int) stats.getUpcomingBookings();
+        int cancelledBookings = (int) stats.countByStatus(BOOKING_STATUS_CANCELLED);
+
+        // Tổng chi tiêu từ các payment đã thanh toán
+        Double totalSpent = stats.getPaidTotal().doubleValue();
+
+        // Sân yêu thích (được đặt nhiều nhất)
+        Integer favoriteCourtId = stats.getFavoriteCourtId();
+        String favoriteCourtName = stats.getFavoriteCourtName() != null ? stats.getFavoriteCourtName() : "N/A";
 
         // Tính membership level dựa trên số booking
         String membershipLevel = calculateMembershipLevel(totalBookings);
@@ -100,51 +78,39 @@ public class CustomerDashboardService {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        List<Booking> recentBookings = bookingRepository.findByUserIdOrderByCreatedAtDesc(user.getId())
-                .stream()
-                .limit(limit)
-                .collect(Collectors.toList());
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        List<CustomerRecentBookingDTO> recentBookings =
+                bookingRepository.findUserRecentBookings(user.getId(), PageRequest.of(0, limit));
 
         return recentBookings.stream().map(booking -> {
             Map<String, Object> bookingMap = new HashMap<>();
             bookingMap.put("bookingId", booking.getId());
-            bookingMap.put("courtName", booking.getCourt().getName());
+            bookingMap.put("courtName", booking.getCourtName());
             bookingMap.put("bookingDate", booking.getBookingDate().toString());
-            bookingMap.put("startTime", booking.getTimeSlot().getStartTime().toString());
-            bookingMap.put("endTime", booking.getTimeSlot().getEndTime().toString());
+            bookingMap.put("startTime", booking.getStartTime().toString());
+            bookingMap.put("endTime", booking.getEndTime().toString());
             
             // Convert BookingStatusType to String
             String status = "Chờ xác nhận";
-            if (booking.getStatus() != null) {
-                switch (booking.getStatus().getId()) {
-                    case 1: status = "Chờ xác nhận"; break;
-                    case 2: status = "Đã xác nhận"; break;
-                    case 3: status = "Đã hoàn thành"; break;
-                    case 4: status = "Đã hủy"; break;
-                }
+            switch (booking.getStatusId()) {
+                case 1: status = "Chờ xác nhận"; break;
+                case 2: status = "Đã xác nhận"; break;
+                case 3: status = "Đã hoàn thành"; break;
+                case 4: status = "Đã hủy"; break;
             }
             bookingMap.put("status", status);
             
-            // Tính tổng amount từ payments
-            Double amount = booking.getPayments().stream()
-                    .mapToDouble(p -> p.getAmount().doubleValue())
-                    .sum();
-            bookingMap.put("amount", amount);
+            // Tổng amount từ payments (đã cộng trong câu truy vấn)
+            bookingMap.put("amount", booking.getAmount().doubleValue());
             
-            String paymentStatus = "Chưa thanh toán";
-            if (!booking.getPayments().isEmpty()) {
-                Payment firstPayment = booking.getPayments().iterator().next();
-                if (firstPayment.getPaymentStatus() != null) {
-                    if (firstPayment.getPaymentStatus().getId() == PAYMENT_STATUS_PAID) {
-                        paymentStatus = "Đã thanh toán";
-                    } else {
-                        paymentStatus = "Chưa thanh toán";
-                    }
-                }
-            }
+            Byte paymentStatusId = booking.getPaymentStatusId();
+            String paymentStatus = paymentStatusId != null && paymentStatusId == PAYMENT_STATUS_PAID
+                    ? "Đã thanh toán" : "Chưa thanh toán";
             bookingMap.put("paymentStatus", paymentStatus);
-            bookingMap.put("canCancel", canCancelBooking(booking));
-            bookingMap.put("canReview", canReviewBooking(booking));
+            bookingMap.put("canCancel", canCancelBooking(booking.getStatusId(), booking.getBookingDate()));
+            bookingMap.put("canReview", canReviewBooking(booking.getStatusId()));
             
             return bookingMap;
         }).collect(Collectors.toList());
@@ -153,6 +119,7 @@ public class CustomerDashboardService {
     public List<Map<String, Object>> getAvailableCourts() {
         List<Court> courts = courtRepository.findAll(); // Lấy tất cả courts để hiển thị
         LocalDate today = LocalDate.now();
+        List<TimeSlot> timeSlots = timeSlotRepository.findAll();
         
         return courts.stream().map(court -> {
             Map<String, Object> courtMap = new HashMap<>();
@@ -166,12 +133,8 @@ public class CustomerDashboardService {
             courtMap.put("amenities", Arrays.asList("Điều hòa", "Thay đồ", "Nước uống"));
             courtMap.put("image", "/images/court" + court.getId() + ".jpg");
             
-            // Tính available slots hôm nay
-            List<TimeSlot> timeSlots = timeSlotRepository.findAll();
-            long availableSlots = timeSlots.stream()
-                    .filter(slot -> !isTimeSlotBooked(court.getId(), slot.getId(), today))
-                    .count();
-            courtMap.put("availableSlots", (int) availableSlots);
+            // Tính available slots hôm nay từ chỉ mục trong bộ nhớ
+            courtMap.put("availableSlots", availabilityIndex.countAvailable(court.getId(), timeSlots, today));
             
             return courtMap;
         }).collect(Collectors.toList());
@@ -210,7 +173,7 @@ public class CustomerDashboardService {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        DashboardStatsDto stats = getDashboardStats(email);
+        DashboardStatsDto stats = buildDashboardStats(user);
 
         Map<String, Object> profile = new HashMap<>();
         profile.put("id", user.getId());
@@ -230,17 +193,12 @@ public class CustomerDashboardService {
         return "Bronze";
     }
 
-    private boolean canCancelBooking(Booking booking) {
-        return booking.getStatus() != null && booking.getStatus().getId() == (byte) 2 && 
-               booking.getBookingDate().isAfter(LocalDate.now());
+    private boolean canCancelBooking(Byte statusId, LocalDate bookingDate) {
+        return statusId == BOOKING_STATUS_CONFIRMED && bookingDate.isAfter(LocalDate.now());
     }
 
-    private boolean canReviewBooking(Booking booking) {
-        return booking.getStatus() != null && booking.getStatus().getId() == (byte) 3;
+    private boolean canReviewBooking(Byte statusId) {
+        return statusId == BOOKING_STATUS_COMPLETED;
     }
 
-    private boolean isTimeSlotBooked(Integer courtId, Integer timeSlotId, LocalDate date) {
-        return bookingRepository.existsByCourtIdAndTimeSlotIdAndBookingDateAndStatusIdNot(
-                courtId, timeSlotId, date, (byte) 4);
-    }
 } 
\ No newline at end of file
@@ -1,11 +1,15 @@
 package com.example.shuttlesync.service;
 
+import com.example.shuttlesync.dto.BookingHistoryItemDTO;
+import com.example.shuttlesync.dto.CustomerBookingStats;
 import com.example.shuttlesync.model.*;
 import com.example.shuttlesync.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -31,70 +35,65 @@ public class CustomerHistoryService {
     @Autowired
     private ReviewRepository reviewRepository;
 
+    @Autowired
+    private CustomerStatsService customerStatsService;
+
+    @Autowired
+    private ReferenceDataRegistry referenceDataRegistry;
+
     /**
      * Lấy thống kê lịch sử booking
      */
     public Map<String, Object> getHistoryStats(Integer userId) {
         Map<String, Object> stats = new HashMap<>();
         
-        List<Booking> allBookings = bookingRepository.findByUserIdOrderByBookingDateDesc(userId);
+        CustomerBookingStats bookingStats = customerStatsService.getStats(userId);
         
         // Tổng số booking
-        stats.put("totalBookings", allBookings.size());
+        stats.put("totalBookings", (int) bookingStats.getTotalBookings());
         
         // Booking theo trạng thái (sử dụng name từ BookingStatusType)
-        Map<String, Long> statusCount = allBookings.stream()
-                .collect(Collectors.groupingBy(
-                    booking -> booking.getStatus().getName(),
-                    Collectors.counting()
-                ));
+        Map<String, Long> statusCount = new HashMap<>();
+        bookingStats.getBookingsByStatus().forEach((statusId, count) -> statusCount.merge(
+                referenceDataRegistry.findBookingStatus(statusId).map(BookingStatusType::getName).orElse(String.valueOf(statusId)),
+                count, Long::sum));
         stats.put("statusBreakdown", statusCount);
         
-        // Tổng tiền đã chi tiêu (từ Payment table)
-        Double totalSpent = allBookings.stream()
-                .filter(booking -> "Đã hoàn thành".equals(booking.getStatus().getName()))
-                .flatMap(booking -> booking.getPayments().stream())
-                .filter(payment -> "Đã thanh toán".equals(payment.getPaymentStatus().getName()))
-                .mapToDouble(payment -> payment.getAmount().doubleValue())
-                .sum();
+        // Tổng tiền đã chi tiêu (payment đã thanh toán của booking đã hoàn thành)
+        Double totalSpent = referenceDataRegistry.findBookingStatusByName("Đã hoàn thành")
+                .map(status -> bookingStats.paidByStatus(status.getId()).doubleValue())
+                .orElse(0.0);
         stats.put("totalSpent", totalSpent);
         
-        // Sân được đặt nhiều nhất (sử dụng name từ Court)
-        Map<String, Long> courtCount = allBookings.stream()
-                .collect(Collectors.groupingBy(
-                    booking -> booking.getCourt().getName(),
-                    Collectors.counting()
-                ));
-        
-        String favoriteCourt = courtCount.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("Chưa có");
+        // Sân được đặt nhiều nhất
+        String favoriteCourt = bookingStats.getFavoriteCourtName() != null ? bookingStats.getFavoriteCourtName() : "Chưa có";
         stats.put("favoriteCourt", favoriteCourt);
         
         // Booking trong tháng này
-        LocalDate startOfMonth = LocalDate.now().withDayOfMonth(1);
-        long thisMonthBookings = allBookings.stream()
-                .filter(booking -> !booking.getBookingDate().isBefore(startOfMonth))
-                .count();
-        stats.put("thisMonthBookings", thisMonthBookings);
+        stats.put("thisMonthBookings", bookingStats.getThisMonthBookings());
         
         return stats;
     }
 
     /**
-     * Lấy danh sách booking history với filter
+     * Lấy một trang lịch sử booking với filter, mới nhất trước.
+     * Lọc và phân trang thực hiện trong SQL; trang sau gọi lại với (afterDate, afterId) của dòng cuối trang trước.
      */
-    public List<Map<String, Object>> getBookingHistory(Integer userId, String status, String period, 
-                                                       String search, int page, int size) {
-        
-        List<Booking> bookings = bookingRepository.findByUserIdOrderByBookingDateDesc(userId);
+    public Map<String, Object> getBookingHistory(Integer userId, String status, String period, String search,
+                                                 LocalDate afterDate, Integer afterId, int size) {
+        Map<String, Object> result = new HashMap<>();
+        Specification<Booking> filter = Specification.where(BookingSpecifications.ofUser(userId));
         
         // Filter theo status
         if (!"all".equals(status)) {
-            bookings = bookings.stream()
-                    .filter(booking -> status.equals(booking.getStatus().getName()))
-                    .collect(Collectors.toList());
+            Optional<BookingStatusType> statusType = referenceDataRegistry.findBookingStatusByName(status);
+            if (statusType.isEmpty()) {
+                result.put("bookings", List.of());
+                result.put("total", 0L);
+                result.put("hasMore", false);
+                return result;
+            }
+            filter = filter.and(BookingSpecifications.hasStatus(statusType.get().getId()));
         }
         
         // Filter theo period
@@ -106,33 +105,54 @@ public class CustomerHistoryService {
                 case "year" -> LocalDate.now().minusYears(1);
                 default -> LocalDate.now().minusYears(10);
             };
-            
-            bookings = bookings.stream()
-                    .filter(booking -> !booking.getBookingDate().isBefore(filterDate))
-                    .collect(Collectors.toList());
+            filter = filter.and(BookingSpecifications.bookedOnOrAfter(filterDate));
         }
         
         // Filter theo search
         if (search != null && !search.trim().isEmpty()) {
-            String searchLower = search.toLowerCase();
-            bookings = bookings.stream()
-                    .filter(booking -> 
-                        booking.getCourt().getName().toLowerCase().contains(searchLower) ||
-                        booking.getId().toString().contains(searchLower))
-                    .collect(Collectors.toList());
+            filter = filter.and(BookingSpecifications.matchesSearch(search.trim()));
         }
         
-        // Pagination
-        int start = page * size;
-        int end = Math.min(start + size, bookings.size());
-        
-        if (start >= bookings.size()) {
-            return new ArrayList<>();
+        // Keyset pagination, lấy dư một dòng để biết còn trang sau
+        Specification<Booking> page = filter;
+        if (afterDate != null && afterId != null) {
+            page = page.and(BookingSpecifications.after(afterDate, afterId));
+        }
+        List<BookingHistoryItemDTO> items = bookingRepository.findHistoryPage(page, size + 1);
+        boolean hasMore = items.size() > size;
+        if (hasMore) {
+            items = items.subList(0, size);
+        }
+        fillPayments(items);
+        
+        result.put("bookings", items.stream().map(this::convertHistoryItemToMap).collect(Collectors.toList()));
+        result.put("total", bookingRepository.count(filter));
+        result.put("hasMore", hasMore);
+        if (hasMore) {
+            BookingHistoryItemDTO last = items.get(items.size() - 1);
+            result.put("nextAfterDate", last.getBookingDate());
+            result.put("nextAfterId", last.getId());
+        }
+        return result;
+    }
+
+    /**
+     * Điền tổng tiền và thanh toán đầu tiên cho cả trang bằng một truy vấn
+     */
+    private void fillPayments(List<BookingHistoryItemDTO> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        Map<Integer, BookingHistoryItemDTO> byId = new HashMap<>();
+        items.forEach(item -> byId.put(item.getId(), item));
+        for (Object[] row : paymentRepository.findSummariesByBookingIds(byId.keySet())) {
+            BookingHistoryItemDTO item = byId.get((Integer) row[0]);
+            item.setTotalAmount(item.getTotalAmount().add((BigDecimal) row[1]));
+            if (item.getPaymentStatusId() == null) {
+                item.setPaymentStatusId((Byte) row[2]);
+                item.setPaymentMethod((String) row[3]);
+            }
         }
-        
-        return bookings.subList(start, end).stream()
-                .map(this::convertBookingToMap)
-                .collect(Collectors.toList());
     }
 
     /**
@@ -323,6 +343,40 @@ public class CustomerHistoryService {
         return exportData;
     }
 
+    /**
+     * Convert history item to Map (cùng các khóa với convertBookingToMap)
+     */
+    private Map<String, Object> convertHistoryItemToMap(BookingHistoryItemDTO item) {
+        Map<String, Object> result = new HashMap<>();
+        
+        result.put("id", item.getId());
+        result.put("courtId", item.getCourtId());
+        result.put("courtName", item.getCourtName());
+        result.put("courtDescription", item.getCourtDescription());
+        result.put("bookingDate", item.getBookingDate());
+        result.put("timeSlotId", item.getTimeSlotId());
+        result.put("startTime", item.getStartTime());
+        result.put("endTime", item.getEndTime());
+        result.put("status", referenceDataRegistry.findBookingStatus(item.getStatusId())
+                .map(BookingStatusType::getName).orElse(null));
+        result.put("statusId", item.getStatusId());
+        result.put("notes", item.getNotes());
+        result.put("createdAt", item.getCreatedAt());
+        result.put("totalAmount", item.getTotalAmount().doubleValue());
+        result.put("courtImage", "https://images.unsplash.com/photo-1626224583764-f87db24ac4ea?w=400&h=250&fit=crop");
+        
+        if (item.getPaymentStatusId() != null) {
+            result.put("paymentStatus", referenceDataRegistry.findPaymentStatus(item.getPaymentStatusId())
+                    .map(PaymentStatusType::getName).orElse(null));
+            result.put("paymentMethod", item.getPaymentMethod());
+        } else {
+            result.put("paymentStatus", "Chưa thanh toán");
+            result.put("paymentMethod", null);
+        }
+        
+        return result;
+    }
+
     /**
      * Convert Booking entity to Map
      */
@@ -2,7 +2,9 @@ package com.example.shuttlesync.service;
 
 import com.example.shuttlesync.model.*;
 import com.example.shuttlesync.repository.*;
+import com.example.shuttlesync.security.UserDetailsCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,6 +27,9 @@ public class CustomerProfileService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
     /**
      * Lấy thông tin profile
      */
@@ -114,6 +119,7 @@ public class CustomerProfileService {
         // Cập nhật mật khẩu mới
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        userDetailsCache.invalidate(user.getEmail());
     }
 
     /**
@@ -236,15 +242,15 @@ public class CustomerProfileService {
             throw new RuntimeException("Mật khẩu xác nhận không đúng");
         }
         
-        // Trong thực tế, có thể soft delete thay vì hard delete
-        // user.setDeleted(true);
-        // user.setDeletedAt(LocalDateTime.now());
-        // userRepository.save(user);
-        
-        // Hoặc hard delete (cần cẩn thận với foreign keys)
-        // userRepository.delete(user);
-        
-        throw new RuntimeException("Tính năng xóa tài khoản chưa được kích hoạt");
+        // Xóa hẳn tài khoản; khách đã có booking hoặc thanh toán thì foreign key chặn lại
+        try {
+            userRepository.delete(user);
+            userRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            throw new RuntimeException("Tài khoản đã có lịch sử đặt sân nên không thể xóa");
+        }
+        // Bỏ thông tin đăng nhập đã lưu sau khi commit để token cũ không còn dùng được
+        userDetailsCache.invalidate(user.getEmail());
     }
 
     /**
@@ -0,0 +1,121 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.dto.CustomerBookingStats;
+import com.example.shuttlesync.event.BookingChangedEvent;
+import com.example.shuttlesync.event.BookingsCompletedEvent;
+import com.example.shuttlesync.repository.BookingRepository;
+import com.example.shuttlesync.util.BoundedTtlCache;
+import com.example.shuttlesync.util.TransactionHooks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Thống kê booking theo khách hàng, tính bằng một truy vấn gom nhóm và lưu đệm ngắn hạn theo user.
+ * Bộ đệm được xóa sau khi booking (BookingChangedEvent) hoặc payment của user thay đổi.
+ */
+@Service
+public class CustomerStatsService {
+
+    private static final byte PAYMENT_STATUS_PAID = 2;
+
+    private final BookingRepository bookingRepository;
+    private final BoundedTtlCache<Integer, CustomerBookingStats> entries;
+
+    public CustomerStatsService(BookingRepository bookingRepository,
+                                @Value("${app.customer-stats.ttl-seconds:60}") long ttlSeconds,
+                                @Value("${app.customer-stats.max-size:5000}") int maxSize) {
+        this.bookingRepository = bookingRepository;
+        this.entries = new BoundedTtlCache<>(Duration.ofSeconds(ttlSeconds), maxSize);
+    }
+
+    /**
+     * Thống kê của user, lấy từ bộ đệm nếu còn hạn
+     */
+    public CustomerBookingStats getStats(Integer userId) {
+        return entries.get(userId, this::load);
+    }
+
+    /**
+     * Xóa thống kê đã lưu của user, áp dụng ngay và cả sau khi transaction hiện tại commit
+     */
+    public void invalidate(Integer userId) {
+        if (userId == null) {
+            return;
+        }
+        entries.invalidate(userId);
+        TransactionHooks.afterCommit(() -> entries.invalidate(userId));
+    }
+
+    /**
+     * Booking đã commit thay đổi: thống kê của chủ booking không còn đúng
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBookingChanged(BookingChangedEvent event) {
+        if (event.userId() != null) {
+            entries.invalidate(event.userId());
+        }
+    }
+
+    /**
+     * Lần quét hết hạn đã hoàn thành hàng loạt booking: xóa thống kê của các khách liên quan
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingsCompleted(BookingsCompletedEvent event) {
+        event.bookings().forEach(booking -> entries.invalidate(booking.userId()));
+    }
+
+    private CustomerBookingStats load(Integer userId) {
+        LocalDate today = LocalDate.now();
+        Map<Byte, Long> bookingsByStatus = new HashMap<>();
+        Map<Byte, BigDecimal> paidByStatus = new HashMap<>();
+        Map<Integer, Long> bookingsByCourt = new HashMap<>();
+        Map<Integer, String> courtNames = new HashMap<>();
+        long upcoming = 0;
+        long thisMonth = 0;
+
+        for (Object[] row : bookingRepository.aggregateUserStats(userId, today, today.withDayOfMonth(1), PAYMENT_STATUS_PAID)) {
+            Byte statusId = ((Number) row[0]).byteValue();
+            Integer courtId = ((Number) row[1]).intValue();
+            long count = ((Number) row[3]).longValue();
+
+            bookingsByStatus.merge(statusId, count, Long::sum);
+            paidByStatus.merge(statusId, toBigDecimal(row[6]), BigDecimal::add);
+            bookingsByCourt.merge(courtId, count, Long::sum);
+            courtNames.put(courtId, (String) row[2]);
+            upcoming += ((Number) row[4]).longValue();
+            thisMonth += ((Number) row[5]).longValue();
+        }
+
+        // Sân được đặt nhiều nhất, bằng nhau thì lấy sân có id nhỏ hơn
+        Comparator<Map.Entry<Integer, Long>> byCount = Map.Entry.comparingByValue();
+        Integer favoriteCourtId = bookingsByCourt.entrySet().stream()
+                .max(byCount.thenComparing(Map.Entry::getKey, Comparator.reverseOrder()))
+                .map(Map.Entry::getKey)
+                .orElse(null);
+
+        return new CustomerBookingStats(
+                Collections.unmodifiableMap(bookingsByStatus),
+                Collections.unmodifiableMap(paidByStatus),
+                upcoming,
+                thisMonth,
+                favoriteCourtId,
+                favoriteCourtId != null ? courtNames.get(favoriteCourtId) : null);
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+    }
+}
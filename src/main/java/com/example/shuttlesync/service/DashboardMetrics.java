@@ -0,0 +1,145 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.event.BookingChangedEvent;
+import com.example.shuttlesync.event.ChangeType;
+import com.example.shuttlesync.event.PaymentChangedEvent;
+import com.example.shuttlesync.event.UserChangedEvent;
+import com.example.shuttlesync.repository.BookingRepository;
+import com.example.shuttlesync.repository.PaymentRepository;
+import com.example.shuttlesync.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bộ đếm cho dashboard admin: tổng booking, booking hôm nay, số người dùng, doanh thu đã thanh toán.
+ * Nạp bằng COUNT/SUM khi khởi động, cộng dồn theo sự kiện thay đổi booking/user/payment (sau khi commit)
+ * và đối soát lại định kỳ với database. Đọc số liệu chỉ là đọc bộ nhớ.
+ */
+@Service
+@Slf4j
+public class DashboardMetrics {
+
+    private final BookingRepository bookingRepository;
+    private final UserRepository userRepository;
+    private final PaymentRepository paymentRepository;
+
+    private final AtomicLong totalBookings = new AtomicLong();
+    private final AtomicLong totalUsers = new AtomicLong();
+    private final AtomicReference<BigDecimal> paidRevenue = new AtomicReference<>(BigDecimal.ZERO);
+
+    // Số booking có ngày đặt sân bằng date; được nạp lại khi sang ngày mới
+    private volatile DayCount today = new DayCount(LocalDate.MIN, new AtomicLong());
+
+    private record DayCount(LocalDate date, AtomicLong count) {
+    }
+
+    public DashboardMetrics(BookingRepository bookingRepository, UserRepository userRepository,
+                            PaymentRepository paymentRepository) {
+        this.bookingRepository = bookingRepository;
+        this.userRepository = userRepository;
+        this.paymentRepository = paymentRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        reconcile();
+    }
+
+    /**
+     * Đối soát bộ đếm với database. Sai lệch do thay đổi commit đúng lúc đang đếm sẽ được sửa ở lần sau.
+     */
+    @Scheduled(fixedDelayString = "${app.dashboard-metrics.reconcile-interval-ms:300000}",
+            initialDelayString = "${app.dashboard-metrics.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        try {
+            LocalDate date = LocalDate.now();
+            totalBookings.set(bookingRepository.count());
+            today = new DayCount(date, new AtomicLong(bookingRepository.countByBookingDate(date)));
+            totalUsers.set(userRepository.count());
+            BigDecimal revenue = paymentRepository.getTotalPaidAmount();
+            paidRevenue.set(revenue != null ? revenue : BigDecimal.ZERO);
+            log.debug("[METRICS] Đã đối soát: {} booking, {} hôm nay, {} người dùng, doanh thu {}",
+                    totalBookings.get(), today.count().get(), totalUsers.get(), paidRevenue.get());
+        } catch (Exception e) {
+            log.warn("[METRICS] Không thể đối soát số liệu dashboard: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Nạp lại số booking của ngày mới lúc 00:00
+     */
+    @Scheduled(cron = "0 0 0 * * *")
+    public void rollOverDay() {
+        try {
+            LocalDate date = LocalDate.now();
+            today = new DayCount(date, new AtomicLong(bookingRepository.countByBookingDate(date)));
+        } catch (Exception e) {
+            log.warn("[METRICS] Không thể nạp số booking hôm nay: {}", e.getMessage());
+        }
+    }
+
+    public long getTotalBookings() {
+        return totalBookings.get();
+    }
+
+    public long getTodayBookings() {
+        DayCount current = today;
+        // Trước khi rollOverDay chạy, số của ngày hôm qua không còn đúng cho hôm nay
+        if (!current.date().equals(LocalDate.now())) {
+            rollOverDay();
+            current = today;
+        }
+        return current.count().get();
+    }
+
+    public long getTotalUsers() {
+        return totalUsers.get();
+    }
+
+    public BigDecimal getPaidRevenue() {
+        return paidRevenue.get();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBookingChanged(BookingChangedEvent event) {
+        long delta = switch (event.change()) {
+            case CREATED -> 1;
+            case DELETED -> -1;
+            case UPDATED -> 0;
+        };
+        if (delta == 0) {
+            return;
+        }
+        totalBookings.addAndGet(delta);
+        DayCount current = today;
+        if (current.date().equals(event.bookingDate())) {
+            current.count().addAndGet(delta);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.change() == ChangeType.CREATED) {
+            totalUsers.incrementAndGet();
+        } else if (event.change() == ChangeType.DELETED) {
+            totalUsers.decrementAndGet();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPaymentChanged(PaymentChangedEvent event) {
+        if (event.paidDelta().signum() != 0) {
+            paidRevenue.accumulateAndGet(event.paidDelta(), BigDecimal::add);
+        }
+    }
+}
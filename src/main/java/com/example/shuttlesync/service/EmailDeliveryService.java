@@ -0,0 +1,463 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.dto.EmailRunStats;
+import com.example.shuttlesync.util.TransactionHooks;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hàng đợi email bền vững trên bảng EmailLogs.
+ * enqueue chỉ ghi một dòng PENDING (trong transaction của người gọi) rồi trả về ngay;
+ * luồng điều phối nhận từng lô (READPAST, nhiều node không nhận trùng) và chia cho một số luồng gửi cố định
+ * dùng chung MailTransportPool. Email lỗi được thử lại với thời gian chờ tăng dần,
+ * mỗi người nhận chỉ nhận tối đa một số email mỗi phút.
+ * Loại email có EmailRenderer đăng ký (ví dụ VOUCHER) được dựng nội dung theo lô ngay trước khi gửi.
+ * Trạng thái SENT/thử lại của cả lô được ghi bằng batchUpdate; mọi mốc thời gian so sánh với NextAttemptAt
+ * đều tính bằng SYSDATETIME() của database để các node lệch giờ không nhận email sớm hoặc muộn.
+ */
+@Service
+@Slf4j
+public class EmailDeliveryService {
+
+    public static final String RELATED_TYPE_VOUCHER = "VOUCHER";
+
+    private static final Duration CLAIM_LEASE = Duration.ofMinutes(5);
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(30);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+    private static final long DRAIN_WAIT_SECONDS = 60;
+
+    private static final String ENSURE_COLUMNS_SQL = """
+        IF COL_LENGTH('EmailLogs', 'Attempts') IS NULL
+            ALTER TABLE EmailLogs ADD
+                Attempts INT NOT NULL CONSTRAINT DF_EmailLogs_Attempts DEFAULT 0,
+                NextAttemptAt DATETIME2 NULL,
+                ClaimToken VARCHAR(36) NULL
+        """;
+
+    private static final String ENSURE_INDEX_SQL = """
+        IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_EmailLogs_Due' AND object_id = OBJECT_ID('EmailLogs'))
+            CREATE INDEX IX_EmailLogs_Due ON EmailLogs (Status, NextAttemptAt)
+        """;
+
+    private static final String ENQUEUE_SQL = """
+        INSERT INTO EmailLogs (ToEmail, Subject, Body, Status, RelatedType, RelatedId, NextAttemptAt)
+        VALUES (?, ?, ?, 'PENDING', ?, ?, SYSDATETIME())
+        """;
+
+    // Nhận tối đa ? email đến hạn; SENDING quá hạn giữ chỗ là email của node đã dừng giữa chừng
+    private static final String CLAIM_SQL = """
+        WITH due AS (
+            SELECT TOP (?) * FROM EmailLogs WITH (ROWLOCK, READPAST, UPDLOCK)
+            WHERE Status IN ('PENDING', 'SENDING')
+            AND (NextAttemptAt IS NULL OR NextAttemptAt <= SYSDATETIME())
+            ORDER BY Id
+        )
+        UPDATE due SET Status = 'SENDING', ClaimToken = ?, NextAttemptAt = DATEADD(SECOND, ?, SYSDATETIME())
+        OUTPUT inserted.Id, inserted.ToEmail, inserted.Subject, inserted.Body, inserted.Attempts,
+               inserted.RelatedType, inserted.RelatedId
+        """;
+
+    private static final String SENT_SQL = """
+        UPDATE EmailLogs SET Status = 'SENT', SentAt = GETDATE(), ErrorMessage = NULL, ClaimToken = NULL
+        WHERE Id = ? AND ClaimToken = ?
+        """;
+
+    private static final String RESCHEDULE_SQL = """
+        UPDATE EmailLogs SET Status = ?, Attempts = ?, NextAttemptAt = DATEADD(MILLISECOND, ?, SYSDATETIME()),
+            ErrorMessage = ?, ClaimToken = NULL
+        WHERE Id = ? AND ClaimToken = ?
+        """;
+
+    /**
+     * Email đã được nhận để gửi; các email cùng lô có cùng claimToken
+     */
+    public record QueuedEmail(Integer id, String to, String subject, String body, int attempts,
+                              String relatedType, Integer relatedId, String claimToken) {
+    }
+
+    /**
+     * Nội dung email do EmailRenderer dựng
+     */
+    public record EmailContent(String subject, String body, boolean html) {
+    }
+
+    private record StatusUpdate(QueuedEmail email, String status, int attempts, Duration delay, String error) {
+    }
+
+    /**
+     * Kết quả gửi của một lô, ghi xuống database một lần sau khi các luồng gửi xong
+     */
+    private static final class BatchOutcome {
+        private final Queue<QueuedEmail> sent = new ConcurrentLinkedQueue<>();
+        private final Queue<StatusUpdate> rescheduled = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger deferred = new AtomicInteger();
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MailTransportPool transportPool;
+    private final RecipientRateLimiter rateLimiter;
+    private final ExecutorService dispatcher;
+    private final ExecutorService workers;
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+    private final Map<String, EmailRenderer> renderers = new ConcurrentHashMap<>();
+    private volatile EmailRunStats lastRun;
+
+    @Value("${spring.mail.username:noreply@shuttlesync.com}")
+    private String fromEmail;
+
+    @Value("${app.email.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.email.max-attempts:6}")
+    private int maxAttempts;
+
+    public EmailDeliveryService(JdbcTemplate jdbcTemplate, MailTransportPool transportPool,
+                                @Value("${app.email.workers:2}") int workerCount,
+                                @Value("${app.email.per-recipient-per-minute:5}") int perRecipientPerMinute) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transportPool = transportPool;
+        this.rateLimiter = new RecipientRateLimiter(perRecipientPerMinute, Duration.ofMinutes(1));
+        this.dispatcher = Executors.newSingleThreadExecutor(named("email-dispatcher"));
+        this.workers = Executors.newFixedThreadPool(workerCount, named("email-worker-"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureColumns() {
+        try {
+            jdbcTemplate.execute(ENSURE_COLUMNS_SQL);
+            jdbcTemplate.execute(ENSURE_INDEX_SQL);
+        } catch (Exception e) {
+            log.warn("[EMAIL] Không thể cập nhật bảng EmailLogs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Đưa email vào hàng đợi. Dòng EmailLogs thuộc transaction hiện tại (nếu có),
+     * việc gửi bắt đầu sau khi transaction commit.
+     *
+     * @param relatedType loại đối tượng liên quan, ví dụ BOOKING hoặc VOUCHER
+     */
+    public void enqueue(String to, String subject, String body, String relatedType, Integer relatedId) {
+        jdbcTemplate.update(ENQUEUE_SQL, to, subject, body, relatedType, relatedId);
+        TransactionHooks.afterCommit(this::wake);
+    }
+
+    /**
+     * Dựng nội dung cho mọi email có RelatedType = relatedType bằng renderer
+     */
+    public void registerRenderer(String relatedType, EmailRenderer renderer) {
+        renderers.put(relatedType, renderer);
+    }
+
+    /**
+     * Quét định kỳ các email đến hạn thử lại và các email được ghi từ node khác
+     */
+    @Scheduled(fixedDelayString = "${app.email.poll-interval-ms:5000}",
+            initialDelayString = "${app.email.poll-interval-ms:5000}")
+    public void poll() {
+        rateLimiter.evictIdle(System.currentTimeMillis());
+        wake();
+    }
+
+    /**
+     * Yêu cầu luồng điều phối xử lý hàng đợi; các lần gọi dồn dập chỉ tạo một lượt xử lý
+     */
+    public void wake() {
+        if (drainQueued.compareAndSet(false, true)) {
+            dispatcher.execute(() -> {
+                drainQueued.set(false);
+                drain();
+            });
+        }
+    }
+
+    /**
+     * Xử lý hàng đợi ngay trên luồng điều phối và chờ lượt xử lý kết thúc
+     *
+     * @return số liệu của lượt xử lý
+     * @throws IllegalStateException nếu lượt xử lý chưa xong sau DRAIN_WAIT_SECONDS giây
+     */
+    public EmailRunStats drainNow() {
+        Future<EmailRunStats> result = dispatcher.submit(this::drain);
+        try {
+            return result.get(DRAIN_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bị gián đoạn khi chờ xử lý hàng đợi email", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Hàng đợi email chưa xử lý xong, thử lại sau", e);
+        }
+    }
+
+    /**
+     * Số liệu của lượt xử lý hàng đợi gần nhất có email, null nếu chưa có
+     */
+    public EmailRunStats getLastRun() {
+        return lastRun;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        dispatcher.shutdown();
+        dispatcher.awaitTermination(30, TimeUnit.SECONDS);
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private EmailRunStats drain() {
+        long startedAt = System.nanoTime();
+        int batches = 0;
+        int claimedTotal = 0;
+        int sentTotal = 0;
+        int failedTotal = 0;
+        int deferredTotal = 0;
+        try {
+            int claimed;
+            do {
+                List<QueuedEmail> batch = claim();
+                claimed = batch.size();
+                if (claimed == 0) {
+                    break;
+                }
+                BatchOutcome outcome = new BatchOutcome();
+                Map<Integer, EmailContent> contents = render(batch, outcome);
+                List<Future<?>> results = new ArrayList<>();
+                for (QueuedEmail email : batch) {
+                    EmailContent content = contents.get(email.id());
+                    if (content != null) {
+                        results.add(workers.submit(() -> deliver(email, content, outcome)));
+                    }
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+                write(outcome);
+
+                batches++;
+                claimedTotal += claimed;
+                sentTotal += outcome.sent.size();
+                failedTotal += outcome.failed.get();
+                deferredTotal += outcome.deferred.get();
+            } while (claimed >= batchSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("[EMAIL] Lỗi khi xử lý hàng đợi email: {}", e.getMessage());
+        }
+
+        EmailRunStats stats = new EmailRunStats(batches, claimedTotal, sentTotal, failedTotal, deferredTotal,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), LocalDateTime.now());
+        if (claimedTotal > 0) {
+            lastRun = stats;
+            log.info("[EMAIL] Đã gửi {}/{} email trong {} lô ({} lỗi, {} hoãn), {} ms, {} email/s",
+                    sentTotal, claimedTotal, batches, failedTotal, deferredTotal, stats.getElapsedMillis(),
+                    String.format("%.1f", stats.getEmailsPerSecond()));
+        }
+        return stats;
+    }
+
+    /**
+     * Ghi trạng thái cả lô bằng hai lệnh batchUpdate, rồi báo cho renderer các email đã gửi
+     */
+    private void write(BatchOutcome outcome) {
+        try {
+            if (!outcome.sent.isEmpty()) {
+                jdbcTemplate.batchUpdate(SENT_SQL, outcome.sent.stream()
+                        .map(email -> new Object[]{email.id(), email.claimToken()})
+                        .toList());
+            }
+            if (!outcome.rescheduled.isEmpty()) {
+                jdbcTemplate.batchUpdate(RESCHEDULE_SQL, outcome.rescheduled.stream()
+                        .map(update -> new Object[]{update.status(), update.attempts(), (int) update.delay().toMillis(),
+                                update.error(), update.email().id(), update.email().claimToken()})
+                        .toList());
+            }
+        } catch (Exception e) {
+            // Hết hạn giữ chỗ thì các email này sẽ được nhận lại
+            log.error("[EMAIL] Không thể cập nhật trạng thái {} email: {}",
+                    outcome.sent.size() + outcome.rescheduled.size(), e.getMessage());
+            return;
+        }
+        for (QueuedEmail email : outcome.sent) {
+            EmailRenderer renderer = email.relatedType() != null ? renderers.get(email.relatedType()) : null;
+            if (renderer != null) {
+                try {
+                    renderer.onSent(email);
+                } catch (Exception e) {
+                    log.error("[EMAIL] Lỗi sau khi gửi email #{}: {}", email.id(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private List<QueuedEmail> claim() {
+        String token = UUID.randomUUID().toString();
+        return jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new QueuedEmail(
+                rs.getInt("Id"), rs.getString("ToEmail"), rs.getString("Subject"), rs.getString("Body"),
+                rs.getInt("Attempts"), rs.getString("RelatedType"), (Integer) rs.getObject("RelatedId"), token),
+                batchSize, token, CLAIM_LEASE.toSeconds());
+    }
+
+    /**
+     * Nội dung của từng email trong lô; email không dựng được nội dung đã được đánh dấu lỗi và không có trong kết quả
+     */
+    private Map<Integer, EmailContent> render(List<QueuedEmail> batch, BatchOutcome outcome) {
+        Map<Integer, EmailContent> contents = new HashMap<>();
+        Map<String, List<QueuedEmail>> byType = new HashMap<>();
+        for (QueuedEmail email : batch) {
+            EmailRenderer renderer = email.relatedType() != null ? renderers.get(email.relatedType()) : null;
+            if (renderer == null) {
+                contents.put(email.id(), new EmailContent(email.subject(), email.body(), false));
+            } else {
+                byType.computeIfAbsent(email.relatedType(), key -> new ArrayList<>()).add(email);
+            }
+        }
+        byType.forEach((relatedType, emails) -> {
+            Map<Integer, EmailContent> rendered;
+            try {
+                rendered = renderers.get(relatedType).render(emails);
+            } catch (Exception e) {
+                emails.forEach(email -> scheduleRetry(email, e, outcome));
+                return;
+            }
+            for (QueuedEmail email : emails) {
+                EmailContent content = rendered.get(email.id());
+                if (content != null) {
+                    contents.put(email.id(), content);
+                } else {
+                    outcome.failed.incrementAndGet();
+                    outcome.rescheduled.add(new StatusUpdate(email, "FAILED", email.attempts() + 1, Duration.ZERO,
+                            "Không dựng được nội dung email"));
+                    log.error("[EMAIL] Không dựng được nội dung email #{} ({} {})",
+                            email.id(), relatedType, email.relatedId());
+                }
+            }
+        });
+        return contents;
+    }
+
+    private void deliver(QueuedEmail email, EmailContent content, BatchOutcome outcome) {
+        long waitMillis = rateLimiter.tryAcquire(email.to().toLowerCase(), System.currentTimeMillis());
+        if (waitMillis > 0) {
+            // Chưa tính là một lần thử
+            outcome.deferred.incrementAndGet();
+            outcome.rescheduled.add(new StatusUpdate(email, "PENDING", email.attempts(), Duration.ofMillis(waitMillis), null));
+            return;
+        }
+        try {
+            MimeMessage message = transportPool.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, content.html(), "UTF-8");
+            helper.setFrom(fromEmail);
+            helper.setTo(email.to());
+            helper.setSubject(content.subject());
+            helper.setText(content.body() != null ? content.body() : "", content.html());
+            transportPool.send(message);
+            outcome.sent.add(email);
+        } catch (Exception e) {
+            scheduleRetry(email, e, outcome);
+        }
+    }
+
+    private void scheduleRetry(QueuedEmail email, Exception e, BatchOutcome outcome) {
+        int attempts = email.attempts() + 1;
+        String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        if (message.length() > 1000) {
+            message = message.substring(0, 1000);
+        }
+        outcome.failed.incrementAndGet();
+
+        if (attempts >= maxAttempts) {
+            outcome.rescheduled.add(new StatusUpdate(email, "FAILED", attempts, Duration.ZERO, message));
+            log.error("[EMAIL] Email #{} đến {} thất bại sau {} lần: {}", email.id(), email.to(), attempts, message);
+            return;
+        }
+
+        Duration backoff = BASE_BACKOFF.multipliedBy(1L << Math.min(attempts - 1, 16));
+        if (backoff.compareTo(MAX_BACKOFF) > 0) {
+            backoff = MAX_BACKOFF;
+        }
+        outcome.rescheduled.add(new StatusUpdate(email, "PENDING", attempts, backoff, message));
+        log.warn("[EMAIL] Email #{} đến {} lỗi lần {}, thử lại sau {}s: {}",
+                email.id(), email.to(), attempts, backoff.toSeconds(), message);
+    }
+
+    private static java.util.concurrent.ThreadFactory named(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix.endsWith("-") ? prefix + counter.incrementAndGet() : prefix);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Giới hạn số email gửi cho một người nhận trong một cửa sổ thời gian trượt
+     */
+    static final class RecipientRateLimiter {
+
+        private final int limit;
+        private final long windowMillis;
+        private final Map<String, Deque<Long>> sent = new ConcurrentHashMap<>();
+
+        RecipientRateLimiter(int limit, Duration window) {
+            this.limit = limit;
+            this.windowMillis = window.toMillis();
+        }
+
+        /**
+         * @return 0 nếu được gửi ngay (và ghi nhận lần gửi), ngược lại số mili giây phải chờ
+         */
+        long tryAcquire(String recipient, long now) {
+            Deque<Long> times = sent.computeIfAbsent(recipient, key -> new ArrayDeque<>());
+            synchronized (times) {
+                while (!times.isEmpty() && times.peekFirst() <= now - windowMillis) {
+                    times.pollFirst();
+                }
+                if (times.size() >= limit) {
+                    return times.peekFirst() + windowMillis - now;
+                }
+                times.addLast(now);
+                return 0;
+            }
+        }
+
+        void evictIdle(long now) {
+            sent.entrySet().removeIf(entry -> {
+                synchronized (entry.getValue()) {
+                    Long last = entry.getValue().peekLast();
+                    return last == null || last <= now - windowMillis;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.shuttlesync.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dựng nội dung cho các email có cùng RelatedType ngay trước khi gửi, đăng ký bằng EmailDeliveryService.registerRenderer.
+ * Email của loại không có renderer được gửi nguyên văn Subject/Body dạng văn bản.
+ */
+public interface EmailRenderer {
+
+    /**
+     * Dựng nội dung cho các email cùng loại trong một lô (một truy vấn cho cả lô).
+     * Email không có trong kết quả bị đánh dấu FAILED.
+     *
+     * @return nội dung theo id email
+     */
+    Map<Integer, EmailDeliveryService.EmailContent> render(List<EmailDeliveryService.QueuedEmail> emails);
+
+    /**
+     * Gọi sau khi email đã gửi thành công và được đánh dấu SENT
+     */
+    default void onSent(EmailDeliveryService.QueuedEmail email) {
+    }
+}
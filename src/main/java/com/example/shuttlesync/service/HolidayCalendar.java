@@ -0,0 +1,136 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.model.HolidayDate;
+import com.example.shuttlesync.model.PriceSetting;
+import com.example.shuttlesync.repository.HolidayDateRepository;
+import com.example.shuttlesync.util.TransactionHooks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lịch ngày lễ và cuối tuần dạng bitset, mỗi năm một bitset 366 bit (bit i = ngày thứ i + 1 trong năm).
+ * Ngày lễ lặp lại hằng năm được trải ra cho từng năm khi năm đó được dùng lần đầu.
+ * Kiểm tra loại ngày chỉ còn là một phép thử bit.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HolidayCalendar {
+
+    private static final int DAYS_IN_YEAR = 366;
+
+    private final HolidayDateRepository holidayDateRepository;
+
+    private volatile Calendar calendar;
+
+    private record YearBits(BitSet holidays, BitSet weekends) {
+    }
+
+    /**
+     * Danh sách ngày lễ đã nạp và các năm đã tính sẵn, được thay thế nguyên khối khi làm mới
+     */
+    private record Calendar(List<LocalDate> oneOffHolidays, List<MonthDay> recurringHolidays,
+                            Map<Integer, YearBits> years) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("[HOLIDAY] Không thể nạp lịch ngày lễ, sẽ thử lại khi cần: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Nạp lại danh sách ngày lễ, bitset của các năm sẽ được tính lại khi cần
+     */
+    public synchronized void refresh() {
+        List<LocalDate> oneOff = new ArrayList<>();
+        List<MonthDay> recurring = new ArrayList<>();
+        for (HolidayDate holiday : holidayDateRepository.findAll()) {
+            if (Boolean.TRUE.equals(holiday.getIsRecurringYearly())) {
+                recurring.add(MonthDay.from(holiday.getDate()));
+            } else {
+                oneOff.add(holiday.getDate());
+            }
+        }
+        calendar = new Calendar(List.copyOf(oneOff), List.copyOf(recurring), new ConcurrentHashMap<>());
+        log.info("[HOLIDAY] Đã nạp {} ngày lễ, {} ngày lặp lại hằng năm", oneOff.size(), recurring.size());
+    }
+
+    /**
+     * Làm mới sau khi transaction hiện tại commit (dùng khi thêm, sửa, xóa ngày lễ)
+     */
+    public void refreshAfterCommit() {
+        TransactionHooks.afterCommit(this::warmUp);
+    }
+
+    public boolean isHoliday(LocalDate date) {
+        return yearOf(date).holidays().get(date.getDayOfYear() - 1);
+    }
+
+    public boolean isWeekend(LocalDate date) {
+        return yearOf(date).weekends().get(date.getDayOfYear() - 1);
+    }
+
+    public PriceSetting.DayType dayTypeOf(LocalDate date) {
+        YearBits bits = yearOf(date);
+        int day = date.getDayOfYear() - 1;
+        if (bits.holidays().get(day)) {
+            return PriceSetting.DayType.holiday;
+        }
+        if (bits.weekends().get(day)) {
+            return PriceSetting.DayType.weekend;
+        }
+        return PriceSetting.DayType.weekday;
+    }
+
+    private YearBits yearOf(LocalDate date) {
+        Calendar current = calendar;
+        if (current == null) {
+            refresh();
+            current = calendar;
+        }
+        Calendar snapshot = current;
+        return snapshot.years().computeIfAbsent(date.getYear(), year -> compute(snapshot, year));
+    }
+
+    private static YearBits compute(Calendar snapshot, int year) {
+        BitSet holidays = new BitSet(DAYS_IN_YEAR);
+        for (LocalDate date : snapshot.oneOffHolidays()) {
+            if (date.getYear() == year) {
+                holidays.set(date.getDayOfYear() - 1);
+            }
+        }
+        for (MonthDay monthDay : snapshot.recurringHolidays()) {
+            // Ngày 29/2 chỉ có trong năm nhuận
+            if (monthDay.isValidYear(year)) {
+                holidays.set(monthDay.atYear(year).getDayOfYear() - 1);
+            }
+        }
+
+        BitSet weekends = new BitSet(DAYS_IN_YEAR);
+        LocalDate day = LocalDate.of(year, 1, 1);
+        while (day.getYear() == year) {
+            DayOfWeek dayOfWeek = day.getDayOfWeek();
+            if (dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY) {
+                weekends.set(day.getDayOfYear() - 1);
+            }
+            day = day.plusDays(1);
+        }
+        return new YearBits(holidays, weekends);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.util.TransactionHooks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bộ đệm PDF hóa đơn đã dựng, khóa theo (id hóa đơn, UpdatedAt), giới hạn theo tổng số byte (LRU).
+ * Hóa đơn sửa qua entity sẽ có UpdatedAt mới nên bản cũ tự mất hiệu lực;
+ * thay đổi chi tiết hóa đơn thì InvoiceService gọi invalidate.
+ */
+@Service
+public class InvoicePdfCache {
+
+    private final long maxBytes;
+    private final int maxEntryBytes;
+
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private record Entry(LocalDateTime version, byte[] pdf) {
+    }
+
+    public InvoicePdfCache(@Value("${app.invoice-pdf-cache.max-bytes:33554432}") long maxBytes,
+                           @Value("${app.invoice-pdf-cache.max-entry-bytes:1048576}") int maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    /**
+     * PDF đã dựng của hóa đơn ở đúng phiên bản version, hoặc null
+     */
+    public synchronized byte[] get(Integer invoiceId, LocalDateTime version) {
+        Entry entry = entries.get(invoiceId);
+        if (entry == null) {
+            return null;
+        }
+        if (!Objects.equals(entry.version(), version)) {
+            remove(invoiceId);
+            return null;
+        }
+        return entry.pdf();
+    }
+
+    public synchronized void put(Integer invoiceId, LocalDateTime version, byte[] pdf) {
+        if (pdf.length > maxEntryBytes) {
+            return;
+        }
+        remove(invoiceId);
+        entries.put(invoiceId, new Entry(version, pdf));
+        totalBytes += pdf.length;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().pdf().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Xóa PDF đã lưu của hóa đơn, áp dụng ngay và cả sau khi transaction hiện tại commit
+     */
+    public void invalidate(Integer invoiceId) {
+        if (invoiceId == null) {
+            return;
+        }
+        synchronized (this) {
+            remove(invoiceId);
+        }
+        TransactionHooks.afterCommit(() -> {
+            synchronized (this) {
+                remove(invoiceId);
+            }
+        });
+    }
+
+    /**
+     * Bọc target: dữ liệu ghi ra target đồng thời được giữ lại, gọi commit() sau khi ghi xong để lưu vào bộ đệm.
+     * PDF vượt quá giới hạn một mục thì chỉ được ghi ra, không lưu.
+     */
+    public CapturingOutputStream capture(Integer invoiceId, LocalDateTime version, OutputStream target) {
+        return new CapturingOutputStream(invoiceId, version, target);
+    }
+
+    private void remove(Integer invoiceId) {
+        Entry removed = entries.remove(invoiceId);
+        if (removed != null) {
+            totalBytes -= removed.pdf().length;
+        }
+    }
+
+    public final class CapturingOutputStream extends FilterOutputStream {
+
+        private final Integer invoiceId;
+        private final LocalDateTime version;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        private CapturingOutputStream(Integer invoiceId, LocalDateTime version, OutputStream target) {
+            super(target);
+            this.invoiceId = invoiceId;
+            this.version = version;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (keep(1)) {
+                copy.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (keep(len)) {
+                copy.write(b, off, len);
+            }
+        }
+
+        public void commit() {
+            if (copy != null) {
+                put(invoiceId, version, copy.toByteArray());
+            }
+        }
+
+        private boolean keep(int len) {
+            if (copy != null && copy.size() + len > maxEntryBytes) {
+                copy = null;
+            }
+            return copy != null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.shuttlesync.service;
 
+import com.example.shuttlesync.dto.CustomerInvoiceSummaryDTO;
 import com.example.shuttlesync.model.Invoice;
 import com.example.shuttlesync.model.User;
 
@@ -17,6 +18,18 @@ public interface InvoiceService {
     Invoice getInvoiceByBookingId(Integer bookingId);
     
     List<Invoice> getInvoicesByStatus(String status);
+
+    /**
+     * Một trang hóa đơn của user, mới nhất trước
+     *
+     * @param afterId Id nhỏ nhất của trang trước, null nếu lấy trang đầu
+     * @param size Số hóa đơn tối đa của trang
+     */
+    List<CustomerInvoiceSummaryDTO> getUserInvoicePage(Integer userId, Integer afterId, int size);
+
+    long countUserInvoices(Integer userId);
+
+    long countUserInvoicesByStatus(Integer userId, String status);
     
     Invoice createInvoice(Integer bookingId);
     
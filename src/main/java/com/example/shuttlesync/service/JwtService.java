@@ -12,6 +12,13 @@ import java.util.function.Function;
 
     <T> T extractClaim(String token, Function<Claims, T> claimsResolver);
 
+    /**
+     * Xác thực chữ ký và hạn dùng của token, trả về claims đã parse để dùng lại trong cùng request
+     *
+     * @throws io.jsonwebtoken.JwtException nếu token không hợp lệ hoặc đã hết hạn
+     */
+    Claims parseClaims(String token);
+
     String generateToken(UserDetails userDetails);
 
     String generateToken(Map<String, Object> extraClaims, UserDetails userDetails);
@@ -19,4 +26,6 @@ import java.util.function.Function;
     String generateRefreshToken(UserDetails userDetails);
 
     boolean isTokenValid(String token, UserDetails userDetails);
+
+    boolean isTokenValid(Claims claims, UserDetails userDetails);
 }
\ No newline at end of file
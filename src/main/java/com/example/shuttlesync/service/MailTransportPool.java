@@ -0,0 +1,136 @@
+package com.example.shuttlesync.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Giữ sẵn một số phiên SMTP đã đăng nhập và dùng lại cho nhiều email,
+ * thay vì mở kết nối + STARTTLS + AUTH cho từng email như JavaMailSender.send.
+ * Phiên bị đóng và mở lại khi gửi lỗi, khi rảnh quá lâu hoặc đã gửi đủ số email cho một kết nối.
+ */
+@Service
+@Slf4j
+public class MailTransportPool {
+
+    private final JavaMailSenderImpl mailSender;
+    private final long maxIdleMillis;
+    private final int maxMessagesPerConnection;
+    private final BlockingQueue<Slot> idle;
+
+    public MailTransportPool(JavaMailSenderImpl mailSender,
+                             @Value("${app.email.workers:2}") int size,
+                             @Value("${app.email.max-idle-ms:60000}") long maxIdleMillis,
+                             @Value("${app.email.max-messages-per-connection:100}") int maxMessagesPerConnection) {
+        this.mailSender = mailSender;
+        this.maxIdleMillis = maxIdleMillis;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            idle.add(new Slot());
+        }
+    }
+
+    public MimeMessage createMimeMessage() {
+        return new MimeMessage(mailSender.getSession());
+    }
+
+    /**
+     * Gửi email trên một phiên SMTP của pool, chờ nếu tất cả phiên đang bận
+     */
+    public void send(MimeMessage message) throws MessagingException {
+        Slot slot = borrow();
+        try {
+            if (message.getSentDate() == null) {
+                message.setSentDate(new Date());
+            }
+            message.saveChanges();
+            boolean reused = slot.isOpen();
+            try {
+                slot.transport().sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException e) {
+                slot.close();
+                if (!reused) {
+                    throw e;
+                }
+                // Máy chủ có thể đã đóng phiên cũ: thử lại một lần trên kết nối mới
+                log.debug("[MAIL] Phiên SMTP cũ lỗi, kết nối lại: {}", e.getMessage());
+                slot.transport().sendMessage(message, message.getAllRecipients());
+            }
+            slot.sent();
+        } catch (MessagingException | RuntimeException e) {
+            slot.close();
+            throw e;
+        } finally {
+            idle.add(slot);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        idle.forEach(Slot::close);
+    }
+
+    private Slot borrow() throws MessagingException {
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Bị ngắt khi chờ phiên SMTP", e);
+        }
+    }
+
+    /**
+     * Một phiên SMTP, chỉ được dùng bởi luồng đang mượn nó
+     */
+    private final class Slot {
+        private Transport transport;
+        private long lastUsed;
+        private int messages;
+
+        boolean isOpen() {
+            return transport != null && transport.isConnected()
+                    && System.currentTimeMillis() - lastUsed < maxIdleMillis
+                    && messages < maxMessagesPerConnection;
+        }
+
+        Transport transport() throws MessagingException {
+            if (!isOpen()) {
+                close();
+                Session session = mailSender.getSession();
+                Transport opened = session.getTransport(mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp");
+                opened.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+                transport = opened;
+                messages = 0;
+                lastUsed = System.currentTimeMillis();
+            }
+            return transport;
+        }
+
+        void sent() {
+            messages++;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        void close() {
+            if (transport != null) {
+                try {
+                    transport.close();
+                } catch (MessagingException e) {
+                    log.debug("[MAIL] Lỗi khi đóng phiên SMTP: {}", e.getMessage());
+                }
+                transport = null;
+            }
+        }
+    }
+}
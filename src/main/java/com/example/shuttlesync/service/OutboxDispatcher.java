@@ -0,0 +1,281 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.model.Booking;
+import com.example.shuttlesync.model.Notification;
+import com.example.shuttlesync.model.OutboxEvent;
+import com.example.shuttlesync.model.SystemChangeLog;
+import com.example.shuttlesync.model.User;
+import com.example.shuttlesync.repository.BookingRepository;
+import com.example.shuttlesync.repository.InvoiceRepository;
+import com.example.shuttlesync.repository.NotificationRepository;
+import com.example.shuttlesync.repository.OutboxEventRepository;
+import com.example.shuttlesync.repository.SystemChangeLogRepository;
+import com.example.shuttlesync.repository.UserRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Thực hiện các event trong bảng OutboxEvents theo lô, mỗi event một transaction riêng.
+ * Event lỗi được thử lại với thời gian chờ tăng dần, quá số lần cho phép sẽ chuyển sang FAILED.
+ */
+@Service
+@Slf4j
+public class OutboxDispatcher {
+
+    private static final Duration CLAIM_LEASE = Duration.ofMinutes(5);
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(5);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(30);
+
+    private static final String ENSURE_TABLE_SQL = """
+        IF OBJECT_ID('OutboxEvents', 'U') IS NULL
+        BEGIN
+            CREATE TABLE OutboxEvents (
+                Id BIGINT IDENTITY(1,1) PRIMARY KEY,
+                EventType VARCHAR(50) NOT NULL,
+                AggregateId INT NULL,
+                Payload NVARCHAR(MAX) NOT NULL,
+                Status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+                Attempts INT NOT NULL DEFAULT 0,
+                NextAttemptAt DATETIME2 NOT NULL,
+                ClaimToken VARCHAR(36) NULL,
+                LastError NVARCHAR(1000) NULL,
+                CreatedAt DATETIME2 NULL,
+                ProcessedAt DATETIME2 NULL
+            );
+            CREATE INDEX IX_OutboxEvents_Due ON OutboxEvents (Status, NextAttemptAt);
+            CREATE INDEX IX_OutboxEvents_ClaimToken ON OutboxEvents (ClaimToken);
+        END
+        """;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceService invoiceService;
+    private final UserRepository userRepository;
+    private final NotificationRepository notificationRepository;
+    private final SystemChangeLogRepository systemChangeLogRepository;
+    private final BookingRepository bookingRepository;
+    private final EmailService emailService;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    public OutboxDispatcher(OutboxEventRepository outboxEventRepository,
+                            InvoiceRepository invoiceRepository,
+                            InvoiceService invoiceService,
+                            UserRepository userRepository,
+                            NotificationRepository notificationRepository,
+                            SystemChangeLogRepository systemChangeLogRepository,
+                            BookingRepository bookingRepository,
+                            EmailService emailService,
+                            ObjectMapper objectMapper,
+                            JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.invoiceRepository = invoiceRepository;
+        this.invoiceService = invoiceService;
+        this.userRepository = userRepository;
+        this.notificationRepository = notificationRepository;
+        this.systemChangeLogRepository = systemChangeLogRepository;
+        this.bookingRepository = bookingRepository;
+        this.emailService = emailService;
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureTable() {
+        try {
+            jdbcTemplate.execute(ENSURE_TABLE_SQL);
+        } catch (Exception e) {
+            log.warn("[OUTBOX] Không thể tạo bảng OutboxEvents: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lấy các event đến hạn và xử lý cho đến khi hết lô đầy
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:2000}")
+    public void dispatch() {
+        try {
+            int claimed;
+            do {
+                claimed = dispatchBatch();
+            } while (claimed >= batchSize);
+        } catch (Exception e) {
+            log.error("[OUTBOX] Lỗi khi xử lý outbox: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Xóa các event đã xử lý xong quá 7 ngày (chạy lúc 03:30 mỗi ngày)
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgeProcessed() {
+        try {
+            Integer deleted = transactionTemplate.execute(status ->
+                    outboxEventRepository.deleteProcessedBefore(LocalDateTime.now().minusDays(7)));
+            log.info("[OUTBOX] Đã xóa {} event đã xử lý", deleted);
+        } catch (Exception e) {
+            log.error("[OUTBOX] Lỗi khi dọn outbox: {}", e.getMessage());
+        }
+    }
+
+    private int dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = outboxEventRepository.findDueIds(now, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String token = UUID.randomUUID().toString();
+        transactionTemplate.executeWithoutResult(status ->
+                outboxEventRepository.claim(ids, token, now, now.plus(CLAIM_LEASE)));
+        List<OutboxEvent> events = outboxEventRepository.findByClaimTokenOrderByIdAsc(token);
+
+        BatchContext context = new BatchContext();
+        int failed = 0;
+        for (OutboxEvent event : events) {
+            try {
+                handle(event, context);
+                event.setStatus(OutboxEvent.Status.DONE);
+                event.setProcessedAt(LocalDateTime.now());
+                event.setLastError(null);
+            } catch (Exception e) {
+                failed++;
+                scheduleRetry(event, e);
+            }
+            event.setClaimToken(null);
+        }
+        transactionTemplate.executeWithoutResult(status -> outboxEventRepository.saveAll(events));
+
+        if (!events.isEmpty()) {
+            log.info("[OUTBOX] Đã xử lý {} event ({} lỗi)", events.size(), failed);
+        }
+        return ids.size();
+    }
+
+    private void handle(OutboxEvent event, BatchContext context) {
+        Map<String, Object> payload = readPayload(event);
+        switch (event.getEventType()) {
+            case CREATE_INVOICE -> transactionTemplate.executeWithoutResult(status -> {
+                // Hóa đơn có thể đã được tạo từ controller
+                if (invoiceRepository.findByBookingId(event.getAggregateId()) == null) {
+                    invoiceService.createInvoice(event.getAggregateId());
+                }
+            });
+            case NOTIFY_ADMINS -> {
+                List<User> admins = context.admins();
+                transactionTemplate.executeWithoutResult(status -> {
+                    List<Notification> notifications = new ArrayList<>();
+                    for (User admin : admins) {
+                        notifications.add(newNotification(admin, (String) payload.get("message")));
+                    }
+                    notificationRepository.saveAll(notifications);
+                });
+            }
+            case NOTIFY_USER -> transactionTemplate.executeWithoutResult(status -> {
+                User user = userRepository.getReferenceById(((Number) payload.get("userId")).intValue());
+                notificationRepository.save(newNotification(user, (String) payload.get("message")));
+            });
+            case AUDIT_LOG -> transactionTemplate.executeWithoutResult(status -> {
+                SystemChangeLog changeLog = new SystemChangeLog();
+                changeLog.setTableName((String) payload.get("tableName"));
+                changeLog.setRecordId(event.getAggregateId());
+                changeLog.setChangeType((String) payload.get("changeType"));
+                changeLog.setChangedFields((String) payload.get("changedFields"));
+                changeLog.setChangedBy(userRepository.getReferenceById(((Number) payload.get("changedBy")).intValue()));
+                systemChangeLogRepository.save(changeLog);
+            });
+            case EMAIL_BOOKING_CONFIRMED -> {
+                // Gửi email ngoài transaction để không giữ kết nối database trong lúc chờ SMTP
+                Booking booking = loadBooking(event.getAggregateId());
+                emailService.sendBookingConfirmationEmail(booking.getUser(), booking);
+            }
+            case EMAIL_BOOKING_CANCELLED -> {
+                Booking booking = loadBooking(event.getAggregateId());
+                emailService.sendBookingCancellationEmail(booking.getUser(), booking);
+            }
+        }
+    }
+
+    private void scheduleRetry(OutboxEvent event, Exception e) {
+        int attempts = event.getAttempts() + 1;
+        event.setAttempts(attempts);
+        String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        event.setLastError(message.length() > 1000 ? message.substring(0, 1000) : message);
+
+        if (attempts >= maxAttempts) {
+            event.setStatus(OutboxEvent.Status.FAILED);
+            log.error("[OUTBOX] Event #{} ({}) thất bại sau {} lần: {}", event.getId(), event.getEventType(), attempts, message);
+            return;
+        }
+
+        Duration backoff = BASE_BACKOFF.multipliedBy(1L << Math.min(attempts - 1, 16));
+        if (backoff.compareTo(MAX_BACKOFF) > 0) {
+            backoff = MAX_BACKOFF;
+        }
+        event.setStatus(OutboxEvent.Status.PENDING);
+        event.setNextAttemptAt(LocalDateTime.now().plus(backoff));
+        log.warn("[OUTBOX] Event #{} ({}) lỗi lần {}, thử lại sau {}s: {}",
+                event.getId(), event.getEventType(), attempts, backoff.toSeconds(), message);
+    }
+
+    private Booking loadBooking(Integer bookingId) {
+        return transactionTemplate.execute(status -> bookingRepository.findWithDetailsById(bookingId)
+                .orElseThrow(() -> new IllegalStateException("Không tìm thấy booking với ID: " + bookingId)));
+    }
+
+    private Notification newNotification(User user, String message) {
+        Notification notification = new Notification();
+        notification.setUser(user);
+        notification.setMessage(message);
+        notification.setIsRead(false);
+        return notification;
+    }
+
+    private Map<String, Object> readPayload(OutboxEvent event) {
+        try {
+            return objectMapper.readValue(event.getPayload(), new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            throw new IllegalStateException("Payload outbox không hợp lệ: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Dữ liệu dùng chung trong một lô, danh sách admin chỉ tải một lần
+     */
+    private class BatchContext {
+        private List<User> admins;
+
+        List<User> admins() {
+            if (admins == null) {
+                admins = userRepository.findByRole("admin");
+            }
+            return admins;
+        }
+    }
+}
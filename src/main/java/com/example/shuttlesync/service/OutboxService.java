@@ -0,0 +1,64 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.model.OutboxEvent;
+import com.example.shuttlesync.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ghi các tác vụ phụ của booking vào bảng OutboxEvents trong cùng transaction với booking.
+ * Các tác vụ được OutboxDispatcher thực hiện sau khi commit.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    public void createInvoice(Integer bookingId) {
+        enqueue(OutboxEvent.EventType.CREATE_INVOICE, bookingId, Map.of());
+    }
+
+    public void notifyAdmins(Integer bookingId, String message) {
+        enqueue(OutboxEvent.EventType.NOTIFY_ADMINS, bookingId, Map.of("message", message));
+    }
+
+    public void notifyUser(Integer bookingId, Integer userId, String message) {
+        enqueue(OutboxEvent.EventType.NOTIFY_USER, bookingId, Map.of("userId", userId, "message", message));
+    }
+
+    public void auditLog(String tableName, Integer recordId, String changeType, String changedFields, Integer changedById) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("tableName", tableName);
+        payload.put("changeType", changeType);
+        payload.put("changedFields", changedFields);
+        payload.put("changedBy", changedById);
+        enqueue(OutboxEvent.EventType.AUDIT_LOG, recordId, payload);
+    }
+
+    public void sendBookingConfirmedEmail(Integer bookingId) {
+        enqueue(OutboxEvent.EventType.EMAIL_BOOKING_CONFIRMED, bookingId, Map.of());
+    }
+
+    public void sendBookingCancelledEmail(Integer bookingId) {
+        enqueue(OutboxEvent.EventType.EMAIL_BOOKING_CANCELLED, bookingId, Map.of());
+    }
+
+    private void enqueue(OutboxEvent.EventType type, Integer aggregateId, Map<String, Object> payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setEventType(type);
+        event.setAggregateId(aggregateId);
+        try {
+            event.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Không thể chuyển payload outbox sang JSON: " + e.getMessage(), e);
+        }
+        outboxEventRepository.save(event);
+    }
+}
@@ -6,6 +6,7 @@ import com.example.shuttlesync.model.User;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface PriceSettingService {
@@ -22,6 +23,11 @@ public interface PriceSettingService {
     
     BigDecimal getPriceForCourtAndDate(Integer courtId, LocalDate date, Integer timeSlotIndex);
     
+    /**
+     * Bảng giá của sân theo ngày (from..to) và theo chỉ số khung giờ
+     */
+    Map<LocalDate, Map<Integer, BigDecimal>> getPriceGrid(Integer courtId, LocalDate from, LocalDate to);
+    
     PriceSetting createPriceSetting(
             Integer courtId, 
             Integer timeSlotIndex, 
@@ -0,0 +1,174 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.model.PriceSetting;
+import com.example.shuttlesync.repository.PriceSettingRepository;
+import com.example.shuttlesync.util.TransactionHooks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Tính giá khung giờ từ bảng luật giá đã biên dịch sẵn trong bộ nhớ.
+ * Các PriceSetting đang hoạt động được nhóm theo (sân, khung giờ, loại ngày) và sắp xếp theo ngày bắt đầu hiệu lực,
+ * tra cứu bằng tìm kiếm nhị phân. Thứ tự ưu tiên: luật của sân và khung giờ, luật chung cho khung giờ,
+ * luật chung cho loại ngày. Loại ngày được tra từ HolidayCalendar.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PricingEngine {
+
+    private final PriceSettingRepository priceSettingRepository;
+    private final HolidayCalendar holidayCalendar;
+
+    private volatile RuleTable table;
+
+    private record RuleKey(Integer courtId, Integer slotIndex, PriceSetting.DayType dayType) {
+    }
+
+    private record Rule(LocalDate effectiveFrom, LocalDate effectiveTo, BigDecimal price) {
+
+        boolean covers(LocalDate date) {
+            return effectiveTo == null || !date.isAfter(effectiveTo);
+        }
+    }
+
+    private record RuleTable(Map<RuleKey, Rule[]> rules) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("[PRICING] Không thể nạp bảng giá, sẽ thử lại khi cần: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Biên dịch lại toàn bộ bảng giá, thay thế bảng cũ một lần
+     */
+    public synchronized void rebuild() {
+        Map<RuleKey, List<Rule>> grouped = new HashMap<>();
+        List<PriceSetting> settings = priceSettingRepository.findByIsActiveTrue();
+        for (PriceSetting setting : settings) {
+            if (setting.getEffectiveFrom() == null || setting.getPrice() == null) {
+                continue;
+            }
+            RuleKey key = new RuleKey(setting.getCourtId(), setting.getTimeSlotIndex(), setting.getDayType());
+            grouped.computeIfAbsent(key, k -> new ArrayList<>())
+                    .add(new Rule(setting.getEffectiveFrom(), setting.getEffectiveTo(), setting.getPrice()));
+        }
+
+        Map<RuleKey, Rule[]> rules = new HashMap<>();
+        grouped.forEach((key, list) -> {
+            list.sort(Comparator.comparing(Rule::effectiveFrom));
+            rules.put(key, list.toArray(new Rule[0]));
+        });
+
+        table = new RuleTable(Map.copyOf(rules));
+        log.info("[PRICING] Đã biên dịch {} luật giá", settings.size());
+    }
+
+    /**
+     * Biên dịch lại sau khi transaction hiện tại commit (dùng khi sửa cấu hình giá)
+     */
+    public void rebuildAfterCommit() {
+        TransactionHooks.afterCommit(this::warmUp);
+    }
+
+    public PriceSetting.DayType dayTypeOf(LocalDate date) {
+        return holidayCalendar.dayTypeOf(date);
+    }
+
+    /**
+     * Tìm giá của khung giờ cho sân vào ngày cụ thể
+     */
+    public Optional<BigDecimal> findPrice(Integer courtId, Integer slotIndex, LocalDate date) {
+        return Optional.ofNullable(lookup(current(), courtId, slotIndex, date, dayTypeOf(date)));
+    }
+
+    /**
+     * Bảng giá của sân theo từng ngày trong [from, to] và từng khung giờ.
+     * Khung giờ không có luật giá phù hợp sẽ không có trong kết quả.
+     */
+    public Map<LocalDate, Map<Integer, BigDecimal>> priceGrid(Integer courtId, Collection<Integer> slotIndexes,
+                                                              LocalDate from, LocalDate to) {
+        RuleTable current = current();
+        Map<LocalDate, Map<Integer, BigDecimal>> grid = new LinkedHashMap<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            PriceSetting.DayType dayType = dayTypeOf(date);
+            Map<Integer, BigDecimal> prices = new LinkedHashMap<>();
+            for (Integer slotIndex : slotIndexes) {
+                BigDecimal price = lookup(current, courtId, slotIndex, date, dayType);
+                if (price != null) {
+                    prices.put(slotIndex, price);
+                }
+            }
+            grid.put(date, prices);
+        }
+        return grid;
+    }
+
+    private BigDecimal lookup(RuleTable current, Integer courtId, Integer slotIndex, LocalDate date,
+                              PriceSetting.DayType dayType) {
+        BigDecimal price = match(current.rules().get(new RuleKey(courtId, slotIndex, dayType)), date);
+        if (price == null) {
+            price = match(current.rules().get(new RuleKey(null, slotIndex, dayType)), date);
+        }
+        if (price == null) {
+            price = match(current.rules().get(new RuleKey(null, null, dayType)), date);
+        }
+        return price;
+    }
+
+    /**
+     * Luật có ngày bắt đầu gần nhất nhưng không sau date và còn hiệu lực tại date
+     */
+    private static BigDecimal match(Rule[] rules, LocalDate date) {
+        if (rules == null) {
+            return null;
+        }
+        int low = 0;
+        int high = rules.length - 1;
+        int floor = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (rules[mid].effectiveFrom().isAfter(date)) {
+                high = mid - 1;
+            } else {
+                floor = mid;
+                low = mid + 1;
+            }
+        }
+        // Các khoảng hiệu lực thường không chồng nhau nên vòng lặp này hầu như chỉ chạy một lần
+        for (int i = floor; i >= 0; i--) {
+            if (rules[i].covers(date)) {
+                return rules[i].price();
+            }
+        }
+        return null;
+    }
+
+    private RuleTable current() {
+        RuleTable loaded = table;
+        if (loaded == null) {
+            rebuild();
+            loaded = table;
+        }
+        return loaded;
+    }
+}
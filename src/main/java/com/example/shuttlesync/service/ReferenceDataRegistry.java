@@ -0,0 +1,137 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.model.BookingStatusType;
+import com.example.shuttlesync.model.PaymentStatusType;
+import com.example.shuttlesync.model.ServiceType;
+import com.example.shuttlesync.model.StatusType;
+import com.example.shuttlesync.repository.BookingStatusTypeRepository;
+import com.example.shuttlesync.repository.PaymentStatusTypeRepository;
+import com.example.shuttlesync.repository.ServiceTypeRepository;
+import com.example.shuttlesync.repository.StatusTypeRepository;
+import com.example.shuttlesync.util.TransactionHooks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bộ nhớ đệm chỉ đọc cho các bảng danh mục ít thay đổi:
+ * BookingStatusTypes, PaymentStatusTypes, StatusTypes và ServiceTypes.
+ * Được nạp khi khởi động và nạp lại toàn bộ khi admin yêu cầu hoặc khi ServiceTypes thay đổi.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReferenceDataRegistry {
+
+    private final BookingStatusTypeRepository bookingStatusTypeRepository;
+    private final PaymentStatusTypeRepository paymentStatusTypeRepository;
+    private final StatusTypeRepository statusTypeRepository;
+    private final ServiceTypeRepository serviceTypeRepository;
+
+    private volatile Snapshot snapshot;
+
+    private record Snapshot(Map<Byte, BookingStatusType> bookingStatuses,
+                            Map<Byte, PaymentStatusType> paymentStatuses,
+                            Map<Byte, StatusType> statusTypes,
+                            Map<Integer, ServiceType> serviceTypes) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("[REFERENCE] Không thể nạp dữ liệu danh mục, sẽ thử lại khi cần: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Nạp lại toàn bộ danh mục từ database và thay thế bản cũ một lần
+     */
+    public synchronized Map<String, Integer> reload() {
+        Snapshot fresh = new Snapshot(
+                index(bookingStatusTypeRepository.findAll(), BookingStatusType::getId),
+                index(paymentStatusTypeRepository.findAll(), PaymentStatusType::getId),
+                index(statusTypeRepository.findAll(), StatusType::getId),
+                index(serviceTypeRepository.findAll(), ServiceType::getId));
+        snapshot = fresh;
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put("bookingStatusTypes", fresh.bookingStatuses().size());
+        counts.put("paymentStatusTypes", fresh.paymentStatuses().size());
+        counts.put("statusTypes", fresh.statusTypes().size());
+        counts.put("serviceTypes", fresh.serviceTypes().size());
+        log.info("[REFERENCE] Đã nạp dữ liệu danh mục: {}", counts);
+        return counts;
+    }
+
+    /**
+     * Nạp lại sau khi transaction hiện tại commit (dùng khi sửa ServiceTypes)
+     */
+    public void reloadAfterCommit() {
+        TransactionHooks.afterCommit(this::warmUp);
+    }
+
+    public Optional<BookingStatusType> findBookingStatus(Byte id) {
+        return Optional.ofNullable(current().bookingStatuses().get(id));
+    }
+
+    public Optional<BookingStatusType> findBookingStatusByName(String name) {
+        return current().bookingStatuses().values().stream()
+                .filter(status -> status.getName().equals(name))
+                .findFirst();
+    }
+
+    public Optional<PaymentStatusType> findPaymentStatus(Byte id) {
+        return Optional.ofNullable(current().paymentStatuses().get(id));
+    }
+
+    public Optional<StatusType> findStatusType(Byte id) {
+        return Optional.ofNullable(current().statusTypes().get(id));
+    }
+
+    public Optional<StatusType> findStatusTypeByName(String name) {
+        return current().statusTypes().values().stream()
+                .filter(status -> status.getName().equals(name))
+                .findFirst();
+    }
+
+    public List<StatusType> getStatusTypes() {
+        return List.copyOf(current().statusTypes().values());
+    }
+
+    public Optional<ServiceType> findServiceType(Integer id) {
+        return Optional.ofNullable(current().serviceTypes().get(id));
+    }
+
+    public List<ServiceType> getServiceTypes() {
+        return List.copyOf(current().serviceTypes().values());
+    }
+
+    private Snapshot current() {
+        Snapshot loaded = snapshot;
+        if (loaded == null) {
+            reload();
+            loaded = snapshot;
+        }
+        return loaded;
+    }
+
+    private static <K extends Comparable<K>, V> Map<K, V> index(List<V> rows, Function<V, K> idOf) {
+        Map<K, V> byId = new LinkedHashMap<>();
+        rows.stream()
+                .sorted(Comparator.comparing(idOf))
+                .forEach(row -> byId.put(idOf.apply(row), row));
+        return Collections.unmodifiableMap(byId);
+    }
+}
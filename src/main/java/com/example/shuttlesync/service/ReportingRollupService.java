@@ -0,0 +1,277 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.event.BookingChangedEvent;
+import com.example.shuttlesync.event.BookingsCompletedEvent;
+import com.example.shuttlesync.event.InvoiceChangedEvent;
+import com.example.shuttlesync.event.PaymentChangedEvent;
+import com.example.shuttlesync.repository.BookingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Duy trì bảng DailyCourtRollups: số booking, số phút đã đặt và tiền hóa đơn/thanh toán
+ * theo (ngày đặt sân, sân, kênh đặt, trạng thái booking).
+ * Booking/hóa đơn/payment thay đổi (sự kiện sau commit) thì lát (ngày, sân) của booking bị đánh dấu và được tính lại theo lô;
+ * job đêm tính lại cả một khoảng ngày để sửa sai lệch do cập nhật ngoài JPA.
+ */
+@Service
+@Slf4j
+public class ReportingRollupService {
+
+    private static final byte PAYMENT_STATUS_PAID = 2;
+
+    private static final String ENSURE_TABLE_SQL = """
+        IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_Invoices_InvoiceDate' AND object_id = OBJECT_ID('Invoices'))
+            CREATE INDEX IX_Invoices_InvoiceDate ON Invoices (InvoiceDate);
+        IF OBJECT_ID('DailyCourtRollups', 'U') IS NULL
+        BEGIN
+            CREATE TABLE DailyCourtRollups (
+                RollupDate DATE NOT NULL,
+                CourtId INT NOT NULL,
+                BookingChannel VARCHAR(20) NOT NULL,
+                Status TINYINT NOT NULL,
+                Bookings INT NOT NULL,
+                MinutesBooked INT NOT NULL,
+                GrossAmount DECIMAL(14,2) NOT NULL,
+                DiscountAmount DECIMAL(14,2) NOT NULL,
+                NetAmount DECIMAL(14,2) NOT NULL,
+                PaidAmount DECIMAL(14,2) NOT NULL,
+                UpdatedAt DATETIME2 NOT NULL,
+                CONSTRAINT PK_DailyCourtRollups PRIMARY KEY (RollupDate, CourtId, BookingChannel, Status)
+            );
+        END
+        """;
+
+    // Gom booking theo lát; tham số: paidStatus, from, to (+ courtId)
+    private static final String AGGREGATE_SQL = """
+        INSERT INTO DailyCourtRollups (RollupDate, CourtId, BookingChannel, Status, Bookings, MinutesBooked,
+                                       GrossAmount, DiscountAmount, NetAmount, PaidAmount, UpdatedAt)
+        SELECT b.BookingDate, b.CourtId, b.BookingChannel, b.Status,
+               COUNT(*),
+               COALESCE(SUM(DATEDIFF(MINUTE, t.StartTime, t.EndTime)), 0),
+               COALESCE(SUM(i.OriginalAmount), 0),
+               COALESCE(SUM(i.DiscountAmount), 0),
+               COALESCE(SUM(i.FinalAmount), 0),
+               COALESCE(SUM(p.Paid), 0),
+               SYSDATETIME()
+        FROM Bookings b
+        INNER JOIN TimeSlots t ON t.Id = b.TimeSlotId
+        LEFT JOIN Invoices i ON i.BookingId = b.Id
+        LEFT JOIN (SELECT BookingId, SUM(Amount) AS Paid FROM Payments
+                   WHERE PaymentStatus = ? GROUP BY BookingId) p ON p.BookingId = b.Id
+        WHERE b.BookingDate BETWEEN ? AND ?
+        """;
+
+    private static final String GROUP_BY_SQL = " GROUP BY b.BookingDate, b.CourtId, b.BookingChannel, b.Status";
+
+    private static final String DELETE_RANGE_SQL = "DELETE FROM DailyCourtRollups WHERE RollupDate BETWEEN ? AND ?";
+
+    private record Slice(LocalDate date, Integer courtId) {
+    }
+
+    private final BookingRepository bookingRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Lát của booking thay đổi đã commit, chờ lần flush sau
+    private final Set<Slice> dirtySlices = ConcurrentHashMap.newKeySet();
+    // Booking có hóa đơn/payment thay đổi đã commit, lát được tra khi flush
+    private final Set<Integer> dirtyBookings = ConcurrentHashMap.newKeySet();
+    // Khoảng ngày bị cập nhật hàng loạt (không qua entity), chờ lần flush sau; null nếu không có
+    private final Object rangeLock = new Object();
+    private LocalDate dirtyFrom;
+    private LocalDate dirtyTo;
+
+    @Value("${app.reporting.compaction-days-back:7}")
+    private int compactionDaysBack;
+
+    @Value("${app.reporting.compaction-days-ahead:60}")
+    private int compactionDaysAhead;
+
+    public ReportingRollupService(BookingRepository bookingRepository, JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager) {
+        this.bookingRepository = bookingRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Tạo bảng tổng hợp nếu chưa có và nạp toàn bộ dữ liệu cũ vào bảng
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureTable() {
+        try {
+            boolean created = jdbcTemplate.queryForObject(
+                    "SELECT CASE WHEN OBJECT_ID('DailyCourtRollups', 'U') IS NULL THEN 1 ELSE 0 END", Integer.class) == 1;
+            jdbcTemplate.execute(ENSURE_TABLE_SQL);
+            if (created) {
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.update(AGGREGATE_SQL + GROUP_BY_SQL,
+                                PAYMENT_STATUS_PAID, Date.valueOf(LocalDate.of(1900, 1, 1)), Date.valueOf(LocalDate.of(9999, 12, 31))));
+                log.info("[ROLLUP] Đã tạo và nạp bảng DailyCourtRollups");
+            }
+        } catch (Exception e) {
+            log.warn("[ROLLUP] Không thể tạo bảng DailyCourtRollups: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Booking đã commit thay đổi: đánh dấu lát (ngày, sân) của nó; với booking bị xóa là lát trước khi xóa.
+     * Booking bị dời sang ngày hoặc sân khác thì đánh dấu cả lát cũ.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBookingChanged(BookingChangedEvent event) {
+        if (event.bookingDate() != null && event.courtId() != null) {
+            dirtySlices.add(new Slice(event.bookingDate(), event.courtId()));
+        } else if (event.bookingId() != null) {
+            dirtyBookings.add(event.bookingId());
+        }
+        if (event.previousBookingDate() != null && event.previousCourtId() != null) {
+            dirtySlices.add(new Slice(event.previousBookingDate(), event.previousCourtId()));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onInvoiceChanged(InvoiceChangedEvent event) {
+        if (event.bookingId() != null) {
+            dirtyBookings.add(event.bookingId());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPaymentChanged(PaymentChangedEvent event) {
+        if (event.bookingId() != null) {
+            dirtyBookings.add(event.bookingId());
+        }
+    }
+
+    /**
+     * Lần quét hết hạn đã hoàn thành hàng loạt booking: tính lại cả khoảng ngày bằng một câu lệnh
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingsCompleted(BookingsCompletedEvent event) {
+        markRangeDirty(event.fromDate(), event.toDate());
+    }
+
+    /**
+     * Đánh dấu cả khoảng ngày cần tính lại (dùng sau khi cập nhật hàng loạt booking bằng SQL).
+     * Các khoảng được gộp thành một khoảng [min, max] và tính lại một lần ở lần flush sau.
+     */
+    public void markRangeDirty(LocalDate from, LocalDate to) {
+        synchronized (rangeLock) {
+            if (dirtyFrom == null || from.isBefore(dirtyFrom)) {
+                dirtyFrom = from;
+            }
+            if (dirtyTo == null || to.isAfter(dirtyTo)) {
+                dirtyTo = to;
+            }
+        }
+    }
+
+    /**
+     * Tính lại các lát đã bị đánh dấu
+     */
+    @Scheduled(fixedDelayString = "${app.reporting.flush-interval-ms:10000}",
+            initialDelayString = "${app.reporting.flush-interval-ms:10000}")
+    public void flush() {
+        LocalDate from;
+        LocalDate to;
+        synchronized (rangeLock) {
+            from = dirtyFrom;
+            to = dirtyTo;
+            dirtyFrom = null;
+            dirtyTo = null;
+        }
+        List<Slice> slices = drain(dirtySlices);
+        List<Integer> bookingIds = drain(dirtyBookings);
+        if (from == null && slices.isEmpty() && bookingIds.isEmpty()) {
+            return;
+        }
+        try {
+            if (from != null) {
+                recompute(from, to, null);
+            }
+            Set<Slice> pending = new HashSet<>(slices);
+            if (!bookingIds.isEmpty()) {
+                for (Object[] row : bookingRepository.findDateAndCourtByIds(bookingIds)) {
+                    pending.add(new Slice((LocalDate) row[0], (Integer) row[1]));
+                }
+            }
+            for (Slice slice : pending) {
+                if (from == null || slice.date().isBefore(from) || slice.date().isAfter(to)) {
+                    recompute(slice.date(), slice.date(), slice.courtId());
+                }
+            }
+            log.debug("[ROLLUP] Đã tính lại {} lát, khoảng ngày {} - {}", pending.size(), from, to);
+        } catch (Exception e) {
+            // Đưa lại vào hàng đợi để lần sau thử tiếp
+            if (from != null) {
+                markRangeDirty(from, to);
+            }
+            dirtySlices.addAll(slices);
+            dirtyBookings.addAll(bookingIds);
+            log.warn("[ROLLUP] Không thể cập nhật bảng tổng hợp: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Job đêm: tính lại toàn bộ các ngày gần đây và sắp tới, gộp các lát đã cập nhật rời rạc trong ngày
+     */
+    @Scheduled(cron = "${app.reporting.compaction-cron:0 15 2 * * *}")
+    public void compact() {
+        LocalDate today = LocalDate.now();
+        try {
+            LocalDate from = today.minusDays(compactionDaysBack);
+            LocalDate to = today.plusDays(compactionDaysAhead);
+            recompute(from, to, null);
+            log.info("[ROLLUP] Đã tính lại bảng tổng hợp từ {} đến {}", from, to);
+        } catch (Exception e) {
+            log.warn("[ROLLUP] Không thể tính lại bảng tổng hợp: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Xóa và tính lại các dòng tổng hợp trong [from, to], chỉ của một sân nếu courtId khác null
+     */
+    public void recompute(LocalDate from, LocalDate to, Integer courtId) {
+        Date fromDate = Date.valueOf(from);
+        Date toDate = Date.valueOf(to);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (courtId == null) {
+                jdbcTemplate.update(DELETE_RANGE_SQL, fromDate, toDate);
+                jdbcTemplate.update(AGGREGATE_SQL + GROUP_BY_SQL, PAYMENT_STATUS_PAID, fromDate, toDate);
+            } else {
+                jdbcTemplate.update(DELETE_RANGE_SQL + " AND CourtId = ?", fromDate, toDate, courtId);
+                jdbcTemplate.update(AGGREGATE_SQL + " AND b.CourtId = ?" + GROUP_BY_SQL,
+                        PAYMENT_STATUS_PAID, fromDate, toDate, courtId);
+            }
+        });
+    }
+
+    private static <T> List<T> drain(Set<T> source) {
+        List<T> drained = new ArrayList<>();
+        for (T item : source) {
+            if (source.remove(item)) {
+                drained.add(item);
+            }
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.exeption.BadRequestException;
+import com.example.shuttlesync.model.Court;
+import com.example.shuttlesync.repository.CourtRepository;
+import com.example.shuttlesync.repository.DailyCourtRollupRepository;
+import com.example.shuttlesync.repository.TimeSlotRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Báo cáo doanh thu và công suất sân theo tháng/quý/năm, đọc từ bảng DailyCourtRollups
+ * (tối đa vài nghìn dòng tổng hợp thay vì quét toàn bộ booking, hóa đơn và payment).
+ */
+@Service
+@RequiredArgsConstructor
+public class RevenueReportService {
+
+    private final DailyCourtRollupRepository rollupRepository;
+    private final CourtRepository courtRepository;
+    private final TimeSlotRepository timeSlotRepository;
+    private final ReferenceDataRegistry referenceDataRegistry;
+
+    /**
+     * Cộng dồn các cột của bảng tổng hợp
+     */
+    private static final class Totals {
+        long bookings;
+        long minutesBooked;
+        BigDecimal grossAmount = BigDecimal.ZERO;
+        BigDecimal discountAmount = BigDecimal.ZERO;
+        BigDecimal netAmount = BigDecimal.ZERO;
+        BigDecimal paidAmount = BigDecimal.ZERO;
+
+        // row: khóa, StatusId, Bookings, MinutesBooked, Gross, Discount, Net, Paid
+        void add(Object[] row) {
+            bookings += ((Number) row[2]).longValue();
+            minutesBooked += ((Number) row[3]).longValue();
+            grossAmount = grossAmount.add(toBigDecimal(row[4]));
+            discountAmount = discountAmount.add(toBigDecimal(row[5]));
+            netAmount = netAmount.add(toBigDecimal(row[6]));
+            paidAmount = paidAmount.add(toBigDecimal(row[7]));
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("bookings", bookings);
+            map.put("hoursBooked", BigDecimal.valueOf(minutesBooked).divide(BigDecimal.valueOf(60), 2, RoundingMode.HALF_UP));
+            map.put("grossAmount", grossAmount);
+            map.put("discountAmount", discountAmount);
+            map.put("netAmount", netAmount);
+            map.put("paidAmount", paidAmount);
+            return map;
+        }
+    }
+
+    /**
+     * Báo cáo cho một kỳ
+     *
+     * @param period   month | quarter | year
+     * @param month    1-12, bắt buộc khi period = month
+     * @param quarter  1-4, bắt buộc khi period = quarter
+     * @param statusIds chỉ tính các trạng thái booking này (null/rỗng = tất cả)
+     */
+    public Map<String, Object> getRevenueReport(String period, int year, Integer month, Integer quarter,
+                                                Collection<Byte> statusIds) {
+        LocalDate from;
+        LocalDate to;
+        switch (period == null ? "" : period.toLowerCase()) {
+            case "month" -> {
+                if (month == null || month < 1 || month > 12) {
+                    throw new BadRequestException("Tháng phải từ 1 đến 12");
+                }
+                from = LocalDate.of(year, month, 1);
+                to = YearMonth.of(year, month).atEndOfMonth();
+            }
+            case "quarter" -> {
+                if (quarter == null || quarter < 1 || quarter > 4) {
+                    throw new BadRequestException("Quý phải từ 1 đến 4");
+                }
+                from = LocalDate.of(year, (quarter - 1) * 3 + 1, 1);
+                to = from.plusMonths(3).minusDays(1);
+            }
+            case "year" -> {
+                from = LocalDate.of(year, 1, 1);
+                to = LocalDate.of(year, 12, 31);
+            }
+            default -> throw new BadRequestException("period phải là month, quarter hoặc year");
+        }
+        boolean monthly = !"month".equalsIgnoreCase(period);
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+
+        Totals total = new Totals();
+        Map<Byte, Totals> byStatus = new TreeMap<>();
+        Map<Integer, Totals> byCourt = new TreeMap<>();
+        Map<String, Totals> byChannel = new TreeMap<>();
+        Map<String, Totals> buckets = new TreeMap<>();
+
+        for (Object[] row : rollupRepository.sumByCourt(from, to)) {
+            if (accepts(row, statusIds)) {
+                total.add(row);
+                byStatus.computeIfAbsent(((Number) row[1]).byteValue(), k -> new Totals()).add(row);
+                byCourt.computeIfAbsent(((Number) row[0]).intValue(), k -> new Totals()).add(row);
+            }
+        }
+        for (Object[] row : rollupRepository.sumByChannel(from, to)) {
+            if (accepts(row, statusIds)) {
+                byChannel.computeIfAbsent((String) row[0], k -> new Totals()).add(row);
+            }
+        }
+        for (Object[] row : rollupRepository.sumByDay(from, to)) {
+            if (accepts(row, statusIds)) {
+                LocalDate date = (LocalDate) row[0];
+                String key = monthly ? YearMonth.from(date).toString() : date.toString();
+                buckets.computeIfAbsent(key, k -> new Totals()).add(row);
+            }
+        }
+
+        Map<Integer, String> courtNames = new HashMap<>();
+        for (Court court : courtRepository.findAll()) {
+            courtNames.put(court.getId(), court.getName());
+        }
+        Map<Integer, Long> minutesPerDay = new HashMap<>();
+        for (Object[] row : timeSlotRepository.sumSlotMinutesByCourt()) {
+            minutesPerDay.put(((Number) row[0]).intValue(), row[1] != null ? ((Number) row[1]).longValue() : 0L);
+        }
+
+        List<Map<String, Object>> courts = new ArrayList<>();
+        byCourt.forEach((courtId, totals) -> {
+            Map<String, Object> item = totals.toMap();
+            item.put("courtId", courtId);
+            item.put("courtName", courtNames.get(courtId));
+            long capacity = minutesPerDay.getOrDefault(courtId, 0L) * days;
+            item.put("utilization", capacity > 0
+                    ? BigDecimal.valueOf(totals.minutesBooked).divide(BigDecimal.valueOf(capacity), 4, RoundingMode.HALF_UP)
+                    : null);
+            courts.add(item);
+        });
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("period", period.toLowerCase());
+        report.put("fromDate", from);
+        report.put("toDate", to);
+        report.put("totals", total.toMap());
+        report.put("byStatus", toList(byStatus, "statusId", statusId -> Map.of("statusName",
+                referenceDataRegistry.findBookingStatus(statusId).map(status -> status.getName()).orElse(""))));
+        report.put("byCourt", courts);
+        report.put("byChannel", toList(byChannel, "bookingChannel", channel -> Map.of()));
+        report.put("buckets", toList(buckets, monthly ? "month" : "date", key -> Map.of()));
+        return report;
+    }
+
+    private static boolean accepts(Object[] row, Collection<Byte> statusIds) {
+        return statusIds == null || statusIds.isEmpty() || statusIds.contains(((Number) row[1]).byteValue());
+    }
+
+    private static <K> List<Map<String, Object>> toList(Map<K, Totals> groups, String keyName,
+                                                        Function<K, Map<String, Object>> extra) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        groups.forEach((key, totals) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put(keyName, key);
+            item.putAll(extra.apply(key));
+            item.putAll(totals.toMap());
+            items.add(item);
+        });
+        return items;
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+    }
+}
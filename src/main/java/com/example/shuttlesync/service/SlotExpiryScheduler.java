@@ -0,0 +1,155 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.dto.ExpirySweepResult;
+import com.example.shuttlesync.event.BookingChangedEvent;
+import com.example.shuttlesync.event.ChangeType;
+import com.example.shuttlesync.repository.BookingRepository;
+import com.example.shuttlesync.repository.TimeSlotRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hàng đợi trễ các thời điểm kết thúc khung giờ của booking đang hoạt động.
+ * Khi đến đúng giờ kết thúc, khung giờ được reset và booking được hoàn thành ngay,
+ * thay vì chờ lần quét định kỳ. Lần quét định kỳ trong SchedulerConfig chỉ còn là lưới an toàn.
+ */
+@Service
+@Slf4j
+public class SlotExpiryScheduler {
+
+    private final BookingRepository bookingRepository;
+    private final TimeSlotRepository timeSlotRepository;
+    private final TimeSlotService timeSlotService;
+
+    private final DelayQueue<Expiry> queue = new DelayQueue<>();
+
+    // Thời điểm kết thúc -> các booking đang hoạt động kết thúc vào thời điểm đó
+    private final Map<LocalDateTime, Set<Integer>> pending = new ConcurrentHashMap<>();
+
+    private volatile Thread worker;
+
+    public SlotExpiryScheduler(BookingRepository bookingRepository, TimeSlotRepository timeSlotRepository,
+                               TimeSlotService timeSlotService) {
+        this.bookingRepository = bookingRepository;
+        this.timeSlotRepository = timeSlotRepository;
+        this.timeSlotService = timeSlotService;
+    }
+
+    private record Expiry(LocalDateTime endAt) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Duration.between(LocalDateTime.now(), endAt));
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return endAt.compareTo(((Expiry) other).endAt);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        worker = new Thread(this::run, "slot-expiry");
+        worker.setDaemon(true);
+        worker.start();
+        seedToday();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread current = worker;
+        worker = null;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    /**
+     * Nạp các booking đang hoạt động của ngày hôm nay (chạy khi khởi động và lúc 00:00 mỗi ngày)
+     */
+    @Scheduled(cron = "0 0 0 * * *")
+    public void seedToday() {
+        try {
+            LocalDate today = LocalDate.now();
+            List<Object[]> rows = bookingRepository.findActiveEndTimesByDate(today);
+            for (Object[] row : rows) {
+                track((Integer) row[0], today.atTime((LocalTime) row[1]));
+            }
+            log.info("[EXPIRY] Đã nạp {} booking kết thúc trong ngày {}", rows.size(), today);
+        } catch (Exception e) {
+            log.warn("[EXPIRY] Không thể nạp hàng đợi hết hạn, sẽ dựa vào lần quét định kỳ: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Booking đã commit thay đổi: bỏ thời điểm kết thúc cũ, theo dõi lại nếu booking vẫn đang hoạt động
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBookingChanged(BookingChangedEvent event) {
+        if (event.bookingId() == null) {
+            return;
+        }
+        // Hàng đợi chỉ giữ vài thời điểm trong ngày nên duyệt hết để bỏ cả mục cũ khi booking đổi ngày hoặc khung giờ
+        pending.values().forEach(bookingIds -> bookingIds.remove(event.bookingId()));
+
+        if (event.change() == ChangeType.DELETED || !CourtAvailabilityIndex.isActiveStatus(event.statusId())
+                || event.bookingDate() == null || event.timeSlotId() == null) {
+            return;
+        }
+        timeSlotRepository.findById(event.timeSlotId())
+                .ifPresent(slot -> track(event.bookingId(), event.bookingDate().atTime(slot.getEndTime())));
+    }
+
+    private void track(Integer bookingId, LocalDateTime endAt) {
+        pending.computeIfAbsent(endAt, key -> {
+            queue.put(new Expiry(key));
+            return ConcurrentHashMap.newKeySet();
+        }).add(bookingId);
+    }
+
+    private void run() {
+        while (worker != null) {
+            try {
+                expire(queue.take().endAt());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void expire(LocalDateTime endAt) {
+        Set<Integer> bookingIds = pending.remove(endAt);
+        if (bookingIds == null || bookingIds.isEmpty()) {
+            // Các booking kết thúc lúc này đều đã bị hủy
+            return;
+        }
+        try {
+            ExpirySweepResult result = timeSlotService.resetExpiredTimeSlots(
+                    endAt.toLocalDate(), endAt.toLocalDate(), endAt.toLocalTime());
+            log.info("[EXPIRY] {}: hoàn thành {} booking, reset {} khung giờ",
+                    endAt, result.getCompletedBookings(), result.getResetTimeSlots());
+        } catch (Exception e) {
+            log.error("[EXPIRY] Lỗi khi xử lý khung giờ kết thúc lúc {}: {}", endAt, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.exeption.ConflictException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Giữ chỗ khung giờ không bị trùng khi nhiều khách đặt cùng lúc.
+ * Trong một tiến trình: khóa phân dải theo (sân, khung giờ, ngày), giữ đến khi transaction kết thúc.
+ * Giữa nhiều tiến trình: unique index có lọc trên các booking đang hoạt động (trạng thái 1, 2).
+ */
+@Service
+@Slf4j
+public class SlotReservationService {
+
+    private static final int STRIPES = 64;
+    private static final long LOCK_TIMEOUT_SECONDS = 5;
+
+    static final String UNIQUE_INDEX_NAME = "UX_Bookings_ActiveSlot";
+
+    private static final String ENSURE_UNIQUE_INDEX_SQL = """
+        IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'UX_Bookings_ActiveSlot' AND object_id = OBJECT_ID('Bookings'))
+            CREATE UNIQUE INDEX UX_Bookings_ActiveSlot ON Bookings (CourtId, TimeSlotId, BookingDate)
+            WHERE Status IN (1, 2)
+        """;
+
+    private final CourtAvailabilityIndex availabilityIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public SlotReservationService(CourtAvailabilityIndex availabilityIndex, JdbcTemplate jdbcTemplate) {
+        this.availabilityIndex = availabilityIndex;
+        this.jdbcTemplate = jdbcTemplate;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Tạo unique index cho booking đang hoạt động nếu chưa có
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureUniqueIndex() {
+        try {
+            jdbcTemplate.execute(ENSURE_UNIQUE_INDEX_SQL);
+        } catch (Exception e) {
+            log.warn("[RESERVATION] Không thể tạo unique index {}: {}", UNIQUE_INDEX_NAME, e.getMessage());
+        }
+    }
+
+    /**
+     * Giữ chỗ khung giờ rồi gọi insert để lưu booking.
+     * insert phải flush xuống database (saveAndFlush) để unique index được kiểm tra ngay.
+     *
+     * @throws ConflictException nếu khung giờ đã có booking đang hoạt động
+     */
+    public <T> T reserve(Integer courtId, Integer timeSlotId, LocalDate date, Supplier<T> insert) {
+        ReentrantLock lock = locks[stripeOf(courtId, timeSlotId, date)];
+        acquire(lock);
+
+        boolean releaseOnCompletion = TransactionSynchronizationManager.isSynchronizationActive();
+        if (releaseOnCompletion) {
+            // Giữ khóa đến khi transaction commit/rollback để request sau thấy được booking vừa tạo
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lock.unlock();
+                }
+            });
+        }
+
+        try {
+            if (availabilityIndex.isBooked(courtId, timeSlotId, date)) {
+                throw new ConflictException("Khung giờ này đã được đặt cho ngày " + date);
+            }
+            return insert.get();
+        } catch (DataIntegrityViolationException e) {
+            if (!isActiveSlotViolation(e)) {
+                throw e;
+            }
+            log.debug("[RESERVATION] Trùng khung giờ sân {} slot {} ngày {}: {}", courtId, timeSlotId, date, e.getMessage());
+            throw new ConflictException("Khung giờ này đã được đặt cho ngày " + date);
+        } finally {
+            if (!releaseOnCompletion) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void acquire(ReentrantLock lock) {
+        try {
+            if (!lock.tryLock(LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new ConflictException("Khung giờ đang được người khác đặt, vui lòng thử lại");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Khung giờ đang được người khác đặt, vui lòng thử lại");
+        }
+    }
+
+    private boolean isActiveSlotViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains(UNIQUE_INDEX_NAME)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int stripeOf(Integer courtId, Integer timeSlotId, LocalDate date) {
+        int hash = Objects.hash(courtId, timeSlotId, date);
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, STRIPES);
+    }
+}
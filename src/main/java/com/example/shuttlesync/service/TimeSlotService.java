@@ -1,5 +1,6 @@
 package com.example.shuttlesync.service;
 
+import com.example.shuttlesync.dto.ExpirySweepResult;
 import com.example.shuttlesync.model.Court;
 import com.example.shuttlesync.model.TimeSlot;
 import com.example.shuttlesync.model.TimeSlotConfig;
@@ -32,11 +33,14 @@ public interface TimeSlotService {
     int resetPastTimeSlots(LocalDate date);
     
     /**
-     * Reset trạng thái của các khung giờ đã hết hạn (đã qua) trong ngày hiện tại về "Trống"
+     * Reset trạng thái của các khung giờ đã hết hạn (đã qua) về "Trống" và hoàn thành các booking tương ứng.
+     * Quét các ngày từ fromDate đến date; truyền fromDate = date để chỉ quét ngày hiện tại,
+     * truyền ngày sớm hơn để bù các ngày bị bỏ lỡ khi hệ thống ngừng chạy.
      * 
-     * @param date Ngày cần kiểm tra
+     * @param fromDate Ngày đầu tiên cần quét
+     * @param date Ngày hiện tại
      * @param currentTime Thời gian hiện tại để so sánh
-     * @return Số lượng khung giờ đã được cập nhật
+     * @return Số booking và số khung giờ đã được cập nhật
      */
-    int resetExpiredTimeSlots(LocalDate date, LocalTime currentTime);
+    ExpirySweepResult resetExpiredTimeSlots(LocalDate fromDate, LocalDate date, LocalTime currentTime);
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.example.shuttlesync.service;
 
 import com.example.shuttlesync.model.User;
 import com.example.shuttlesync.repository.UserRepository;
+import com.example.shuttlesync.security.UserDetailsCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -12,10 +13,12 @@ import java.util.Optional;
 @Service
 public class UserService {
     private final UserRepository userRepository;
+    private final UserDetailsCache userDetailsCache;
 
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, UserDetailsCache userDetailsCache) {
         this.userRepository = userRepository;
+        this.userDetailsCache = userDetailsCache;
     }
 
     public List<User> getAllUsers() {
@@ -35,6 +38,7 @@ public class UserService {
     }
 
     public void deleteUser(Integer id) {
+        userRepository.findById(id).ifPresent(user -> userDetailsCache.invalidate(user.getEmail()));
         userRepository.deleteById(id);
     }
 
@@ -42,6 +46,9 @@ public class UserService {
         Optional<User> existingUser = userRepository.findById(id);
         if (existingUser.isPresent()) {
             User userToUpdate = existingUser.get();
+            // Email cũ và mới đều không còn dùng thông tin đã lưu
+            userDetailsCache.invalidate(userToUpdate.getEmail());
+            userDetailsCache.invalidate(user.getEmail());
             userToUpdate.setFullName(user.getFullName());
             userToUpdate.setEmail(user.getEmail());
             userToUpdate.setPhone(user.getPhone());
@@ -105,7 +112,9 @@ public class UserService {
             // Đây chỉ là triển khai đơn giản
             
             user.setPassword(newPassword);
-            return userRepository.save(user);
+            User saved = userRepository.save(user);
+            userDetailsCache.invalidate(saved.getEmail());
+            return saved;
         }
         throw new RuntimeException("User not found with id: " + userId);
     }
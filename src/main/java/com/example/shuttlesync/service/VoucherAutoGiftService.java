@@ -1,120 +1,198 @@
 package com.example.shuttlesync.service;
 
-import lombok.RequiredArgsConstructor;
+import com.example.shuttlesync.event.BookingChangedEvent;
+import com.example.shuttlesync.event.BookingsCompletedEvent;
+import com.example.shuttlesync.event.ChangeType;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tự động tặng voucher cá nhân (VoucherType = PERSONAL) cho khách có đủ số booking hợp lệ (trạng thái 2 hoặc 4).
+ * Mọi cặp (khách, voucher) mới đủ điều kiện được tặng bằng một câu INSERT ... SELECT, kèm email chờ gửi.
+ * Khi booking của khách chuyển sang trạng thái 2/4 chỉ khách đó được xét lại (BookingChangedEvent sau commit);
+ * lượt quét toàn bộ chỉ chạy mỗi đêm để bắt voucher mới kích hoạt.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class VoucherAutoGiftService {
 
+    private static final byte STATUS_CONFIRMED = 2;
+    private static final byte STATUS_COMPLETED = 4;
+
+    private static final String EMAIL_SUBJECT = "🎉 Bạn đã nhận được voucher đặc biệt từ ShuttleSync";
+
+    // %s: điều kiện chọn khách cần xét trên bảng Users u (luôn chỉ xét khách hàng).
+    // Chạy trong transaction do Spring quản lý (gift) để hai câu INSERT cùng commit hoặc cùng rollback.
+    private static final String GIFT_SQL_TEMPLATE = """
+        SET NOCOUNT ON;
+        SET XACT_ABORT ON;
+        DECLARE @gifted TABLE (UserId INT, VoucherId INT);
+
+        WITH eligible AS (
+            SELECT b.UserId, COUNT(*) AS EligibleBookings
+            FROM Bookings b
+            JOIN Users u ON u.Id = b.UserId
+            WHERE b.Status IN (2, 4) AND u.Role = 'CUSTOMER' AND %s
+            GROUP BY b.UserId
+        )
+        INSERT INTO PersonalVouchers (UserId, VoucherId, IsUsed, EmailSent)
+        OUTPUT inserted.UserId, inserted.VoucherId INTO @gifted
+        SELECT e.UserId, d.Id
+        FROM eligible e
+        JOIN Discounts d ON d.VoucherType = 'PERSONAL'
+            AND d.Status = 'ACTIVE'
+            AND d.RequiredBookingCount <= e.EligibleBookings
+        WHERE NOT EXISTS (
+            SELECT 1 FROM PersonalVouchers pv WITH (UPDLOCK, HOLDLOCK)
+            WHERE pv.UserId = e.UserId AND pv.VoucherId = d.Id
+        );
+
+        INSERT INTO EmailLogs (ToEmail, Subject, Body, Status, RelatedType, RelatedId)
+        SELECT u.Email, ?, CONCAT(N'Voucher ', d.Name, N' - Code: ', d.Code), 'PENDING', 'VOUCHER', d.Id
+        FROM @gifted g
+        JOIN Users u ON u.Id = g.UserId
+        JOIN Discounts d ON d.Id = g.VoucherId;
+
+        SELECT COUNT(*) FROM @gifted;
+        """;
+
+    private static final String GIFT_ALL_SQL = GIFT_SQL_TEMPLATE.formatted("1 = 1");
+
+    private static final String GIFT_USER_SQL = GIFT_SQL_TEMPLATE.formatted("u.Id = ?");
+
+    // Khách có booking vừa được hoàn thành hàng loạt trong khoảng ngày
+    private static final String GIFT_COMPLETED_BETWEEN_SQL = GIFT_SQL_TEMPLATE.formatted("""
+        u.Id IN (SELECT UserId FROM Bookings WHERE Status = 4 AND BookingDate BETWEEN ? AND ?)""");
+
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Set<Integer> dirtyUsers = ConcurrentHashMap.newKeySet();
+    // Khoảng ngày có booking hoàn thành hàng loạt, chờ lần flush sau; null nếu không có
+    private final Object rangeLock = new Object();
+    private LocalDate dirtyFrom;
+    private LocalDate dirtyTo;
+
+    public VoucherAutoGiftService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
     /**
-     * Tự động kiểm tra và tặng voucher cho tất cả khách hàng (chạy mỗi 10 phút)
+     * Tặng voucher cho mọi khách đủ điều kiện mà chưa có (chạy mỗi đêm và khi gọi thủ công)
+     *
+     * @return số voucher đã tặng
      */
-    @Scheduled(fixedRate = 600000) // 1 phút
-    public void autoGiftVouchersForAllCustomers() {
+    @Scheduled(cron = "${app.voucher-gift.reconcile-cron:0 30 3 * * *}")
+    public int autoGiftVouchersForAllCustomers() {
         try {
-            log.info("[AUTO-GIFT] Bắt đầu kiểm tra và tặng voucher tự động...");
-
-            String getUsersSql = """
-                SELECT DISTINCT u.Id, u.Email, u.FullName,
-                       COUNT(b.Id) as TotalBookings,
-                       COUNT(CASE WHEN b.Status IN (2, 4) THEN 1 END) as EligibleBookings
-                FROM Users u
-                JOIN Bookings b ON u.Id = b.UserId
-                WHERE u.Role = 'CUSTOMER'
-                GROUP BY u.Id, u.Email, u.FullName
-                HAVING COUNT(CASE WHEN b.Status IN (2, 4) THEN 1 END) > 0
-                ORDER BY EligibleBookings DESC
-                """;
-
-            List<Map<String, Object>> customers = jdbcTemplate.queryForList(getUsersSql);
-            
-            log.info("[AUTO-GIFT] Tìm thấy {} khách hàng có booking", customers.size());
-
-            int totalVouchersGifted = 0;
-            int customersProcessed = 0;
-
-            for (Map<String, Object> customer : customers) {
-                Integer userId = (Integer) customer.get("Id");
-                String email = (String) customer.get("Email");
-                Integer eligibleBookings = (Integer) customer.get("EligibleBookings");
-
-                int vouchersGifted = processCustomerVouchers(userId, email, eligibleBookings);
-                
-                if (vouchersGifted > 0) {
-                    totalVouchersGifted += vouchersGifted;
-                    customersProcessed++;
-                    log.info("[AUTO-GIFT] Tặng {} voucher cho {}", vouchersGifted, email);
-                }
-            }
-
-            log.info("[AUTO-GIFT] Hoàn thành: Tặng {} voucher cho {} khách hàng", 
-                    totalVouchersGifted, customersProcessed);
-
+            int gifted = gift(GIFT_ALL_SQL, EMAIL_SUBJECT);
+            log.info("[AUTO-GIFT] Hoàn thành: Tặng {} voucher", gifted);
+            return gifted;
         } catch (Exception e) {
             log.error("[AUTO-GIFT] Lỗi khi tự động tặng voucher: {}", e.getMessage(), e);
+            return 0;
         }
     }
 
-    private int processCustomerVouchers(Integer userId, String email, Integer eligibleBookings) {
-        try {
-            String findMissingVouchersSql = """
-                SELECT d.Id, d.Code, d.Name, d.RequiredBookingCount
-                FROM Discounts d
-                WHERE d.VoucherType = 'PERSONAL'
-                AND d.Status = 'ACTIVE'
-                AND d.RequiredBookingCount <= ?
-                AND d.Id NOT IN (
-                    SELECT VoucherId 
-                    FROM PersonalVouchers 
-                    WHERE UserId = ?
-                )
-                ORDER BY d.RequiredBookingCount
-                """;
-
-            List<Map<String, Object>> missingVouchers = jdbcTemplate.queryForList(
-                findMissingVouchersSql, eligibleBookings, userId);
-
-            if (missingVouchers.isEmpty()) {
-                return 0;
-            }
-
-            for (Map<String, Object> voucher : missingVouchers) {
-                Integer voucherId = (Integer) voucher.get("Id");
-                String code = (String) voucher.get("Code");
-                String name = (String) voucher.get("Name");
-
-                String insertVoucherSql = """
-                    INSERT INTO PersonalVouchers (UserId, VoucherId, IsUsed, EmailSent)
-                    VALUES (?, ?, 0, 0)
-                    """;
-                
-                jdbcTemplate.update(insertVoucherSql, userId, voucherId);
+    /**
+     * Booking đã commit ở trạng thái 2 hoặc 4: xét lại khách đặt ở lần flush sau
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBookingChanged(BookingChangedEvent event) {
+        if (event.change() == ChangeType.DELETED || event.userId() == null || event.statusId() == null) {
+            return;
+        }
+        if (event.statusId() == STATUS_CONFIRMED || event.statusId() == STATUS_COMPLETED) {
+            dirtyUsers.add(event.userId());
+        }
+    }
 
-                String insertEmailSql = """
-                    INSERT INTO EmailLogs (ToEmail, Subject, Body, Status, RelatedType, RelatedId)
-                    VALUES (?, ?, ?, 'PENDING', 'VOUCHER', ?)
-                    """;
+    /**
+     * Lần quét hết hạn đã hoàn thành hàng loạt booking: xét lại cả khoảng ngày ở lần flush sau
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingsCompleted(BookingsCompletedEvent event) {
+        markRangeCompleted(event.fromDate(), event.toDate());
+    }
 
-                String subject = "🎉 Bạn đã nhận được voucher đặc biệt từ ShuttleSync";
-                String body = String.format("Voucher %s - Code: %s", name, code);
+    /**
+     * Xét lại các khách có booking hoàn thành trong khoảng ngày (dùng sau khi cập nhật hàng loạt booking bằng SQL).
+     * Các khoảng được gộp thành một khoảng [min, max] và xét một lần ở lần flush sau.
+     */
+    public void markRangeCompleted(LocalDate from, LocalDate to) {
+        synchronized (rangeLock) {
+            if (dirtyFrom == null || from.isBefore(dirtyFrom)) {
+                dirtyFrom = from;
+            }
+            if (dirtyTo == null || to.isAfter(dirtyTo)) {
+                dirtyTo = to;
+            }
+        }
+    }
 
-                jdbcTemplate.update(insertEmailSql, email, subject, body, voucherId);
+    /**
+     * Xét lại các khách đã bị đánh dấu
+     */
+    @Scheduled(fixedDelayString = "${app.voucher-gift.flush-interval-ms:10000}",
+            initialDelayString = "${app.voucher-gift.flush-interval-ms:10000}")
+    public void flush() {
+        LocalDate from;
+        LocalDate to;
+        synchronized (rangeLock) {
+            from = dirtyFrom;
+            to = dirtyTo;
+            dirtyFrom = null;
+            dirtyTo = null;
+        }
+        List<Integer> userIds = new ArrayList<>(dirtyUsers);
+        dirtyUsers.removeAll(userIds);
+        if (userIds.isEmpty() && from == null) {
+            return;
+        }
 
-                log.info("[AUTO-GIFT] Tặng voucher {} cho {}", code, email);
+        int gifted = 0;
+        try {
+            if (from != null) {
+                gifted += gift(GIFT_COMPLETED_BETWEEN_SQL, from, to, EMAIL_SUBJECT);
             }
+            for (Integer userId : userIds) {
+                gifted += gift(GIFT_USER_SQL, userId, EMAIL_SUBJECT);
+            }
+        } catch (Exception e) {
+            // Đưa lại vào hàng đợi để lần sau thử tiếp; câu lệnh không tặng trùng nên chạy lại an toàn
+            dirtyUsers.addAll(userIds);
+            if (from != null) {
+                markRangeCompleted(from, to);
+            }
+            log.warn("[AUTO-GIFT] Không thể xét lại voucher: {}", e.getMessage());
+            return;
+        }
+        if (gifted > 0) {
+            log.info("[AUTO-GIFT] Tặng {} voucher cho {} khách, khoảng ngày {} - {}", gifted, userIds.size(), from, to);
+        }
+    }
 
-            return missingVouchers.size();
-
+    /**
+     * Tặng ngay các voucher khách đủ điều kiện mà chưa có
+     *
+     * @return số voucher đã tặng
+     */
+    public int giftVouchersForUser(Integer userId) {
+        try {
+            return gift(GIFT_USER_SQL, userId, EMAIL_SUBJECT);
         } catch (Exception e) {
             log.error("[AUTO-GIFT] Lỗi khi xử lý voucher cho user {}: {}", userId, e.getMessage());
             return 0;
@@ -123,28 +201,19 @@ public class VoucherAutoGiftService {
 
     public int giftVouchersForCustomer(String email) {
         try {
-            String sql = """
-                SELECT u.Id, COUNT(CASE WHEN b.Status IN (2, 4) THEN 1 END) as EligibleBookings
-                FROM Users u
-                LEFT JOIN Bookings b ON u.Id = b.UserId
-                WHERE u.Email = ?
-                GROUP BY u.Id
-                """;
-
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, email);
-            
-            if (results.isEmpty()) {
+            List<Integer> ids = jdbcTemplate.queryForList("SELECT Id FROM Users WHERE Email = ?", Integer.class, email);
+            if (ids.isEmpty()) {
                 return 0;
             }
-
-            Integer userId = (Integer) results.get(0).get("Id");
-            Integer eligibleBookings = (Integer) results.get(0).get("EligibleBookings");
-
-            return processCustomerVouchers(userId, email, eligibleBookings);
-
+            return gift(GIFT_USER_SQL, ids.get(0), EMAIL_SUBJECT);
         } catch (Exception e) {
             log.error("[MANUAL] Lỗi khi tặng voucher thủ công: {}", e.getMessage());
             return 0;
         }
     }
-} 
\ No newline at end of file
+
+    private int gift(String sql, Object... args) {
+        Integer gifted = transactionTemplate.execute(status -> jdbcTemplate.queryForObject(sql, Integer.class, args));
+        return gifted != null ? gifted : 0;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.model.Discount;
+import com.example.shuttlesync.repository.DiscountRepository;
+import com.example.shuttlesync.util.TransactionHooks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Danh mục voucher đang hoạt động trong bộ nhớ, dùng cho kiểm tra voucher ở màn hình thanh toán.
+ * Tra theo mã bằng bảng băm; "voucher dùng được cho đơn X" là tìm theo khoảng trên danh sách voucher PUBLIC sắp theo minOrderAmount.
+ * Voucher PERSONAL chỉ hiện cho khách đang giữ nó chưa dùng (tra PersonalVouchers theo khách khi cần).
+ * Nạp lại sau khi voucher được tạo/sửa/xóa (sau commit), mỗi ngày lúc 00:00 và định kỳ để đồng bộ giữa các node.
+ * Số lượt đã dùng được cộng dồn từ VoucherRedemptionService; giới hạn lượt thật sự vẫn do UPDATE có điều kiện đảm bảo.
+ * Danh mục giữ bản sao riêng của voucher và trả về bản sao mới cho mỗi lần tra, người gọi sửa kết quả không ảnh hưởng danh mục.
+ */
+@Service
+@Slf4j
+public class VoucherCatalog {
+
+    private static final Comparator<Discount> BY_MIN_ORDER_AMOUNT =
+            Comparator.comparing(VoucherCatalog::minOrderAmount).thenComparing(Discount::getId);
+
+    private final DiscountRepository discountRepository;
+    private final Clock clock;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), Map.of(), List.of(), new BigDecimal[0]);
+
+    /**
+     * @param usedCounts      số lượt đã dùng hiện tại theo id voucher (usedCount của bản sao chỉ là giá trị lúc nạp)
+     * @param sorted          voucher PUBLIC sắp theo minOrderAmount tăng dần
+     * @param minOrderAmounts minOrderAmount tương ứng với sorted, để tìm nhị phân
+     */
+    private record Snapshot(Map<String, Discount> byCode, Map<Integer, Discount> byId,
+                            Map<Integer, AtomicInteger> usedCounts, List<Discount> sorted, BigDecimal[] minOrderAmounts) {
+    }
+
+    @Autowired
+    public VoucherCatalog(DiscountRepository discountRepository) {
+        this(discountRepository, Clock.systemDefaultZone());
+    }
+
+    VoucherCatalog(DiscountRepository discountRepository, Clock clock) {
+        this.discountRepository = discountRepository;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        refresh();
+    }
+
+    /**
+     * Nạp lại toàn bộ voucher ACTIVE chưa hết hạn
+     */
+    @Scheduled(cron = "${app.voucher-catalog.daily-refresh-cron:5 0 0 * * *}")
+    @Scheduled(fixedDelayString = "${app.voucher-catalog.refresh-interval-ms:300000}",
+            initialDelayString = "${app.voucher-catalog.refresh-interval-ms:300000}")
+    public void refresh() {
+        try {
+            LocalDate today = LocalDate.now(clock);
+            List<Discount> active = new ArrayList<>();
+            for (Discount voucher : discountRepository.findByStatus(Discount.DiscountStatus.ACTIVE)) {
+                if (voucher.getValidTo() == null || !voucher.getValidTo().isBefore(today)) {
+                    active.add(copyOf(voucher));
+                }
+            }
+            active.sort(BY_MIN_ORDER_AMOUNT);
+
+            Map<String, Discount> byCode = new HashMap<>();
+            Map<Integer, Discount> byId = new HashMap<>();
+            Map<Integer, AtomicInteger> usedCounts = new HashMap<>();
+            List<Discount> publicVouchers = new ArrayList<>();
+            for (Discount voucher : active) {
+                byCode.put(normalize(voucher.getCode()), voucher);
+                byId.put(voucher.getId(), voucher);
+                usedCounts.put(voucher.getId(), new AtomicInteger(voucher.getUsedCount() != null ? voucher.getUsedCount() : 0));
+                if (!isPersonal(voucher)) {
+                    publicVouchers.add(voucher);
+                }
+            }
+            BigDecimal[] minOrderAmounts = new BigDecimal[publicVouchers.size()];
+            for (int i = 0; i < publicVouchers.size(); i++) {
+                minOrderAmounts[i] = minOrderAmount(publicVouchers.get(i));
+            }
+            snapshot = new Snapshot(byCode, byId, usedCounts, Collections.unmodifiableList(publicVouchers), minOrderAmounts);
+            log.debug("[VOUCHER] Đã nạp {} voucher đang hoạt động", active.size());
+        } catch (Exception e) {
+            log.warn("[VOUCHER] Không thể nạp danh mục voucher: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Nạp lại sau khi transaction hiện tại commit (dùng sau khi tạo/sửa/xóa voucher)
+     */
+    public void refreshAfterCommit() {
+        TransactionHooks.afterCommit(this::refresh);
+    }
+
+    /**
+     * Voucher ACTIVE chưa hết hạn theo mã (không phân biệt hoa thường)
+     */
+    public Optional<Discount> findByCode(String code) {
+        if (code == null) {
+            return Optional.empty();
+        }
+        Snapshot current = snapshot;
+        return Optional.ofNullable(current.byCode().get(normalize(code))).map(voucher -> view(current, voucher));
+    }
+
+    /**
+     * Voucher mà khách userId được dùng theo mã: voucher PUBLIC, hoặc voucher PERSONAL khách đang giữ chưa dùng
+     */
+    public Optional<Discount> findByCode(String code, Integer userId) {
+        Optional<Discount> voucher = findByCode(code);
+        if (voucher.isEmpty() || !isPersonal(voucher.get())) {
+            return voucher;
+        }
+        return userId != null && personalVoucherIds(userId).contains(voucher.get().getId()) ? voucher : Optional.empty();
+    }
+
+    /**
+     * Voucher PUBLIC dùng được cho đơn hàng amount vào ngày today: đã có hiệu lực, chưa hết hạn,
+     * minOrderAmount <= amount và còn lượt. Sắp theo minOrderAmount tăng dần.
+     */
+    public List<Discount> findAvailable(BigDecimal amount, LocalDate today) {
+        Snapshot current = snapshot;
+        int end = upperBound(current.minOrderAmounts(), amount);
+        List<Discount> available = new ArrayList<>();
+        for (Discount voucher : current.sorted().subList(0, end)) {
+            Discount view = view(current, voucher);
+            if (isUsable(view, today)) {
+                available.add(view);
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Như findAvailable, thêm các voucher PERSONAL khách userId đang giữ chưa dùng
+     */
+    public List<Discount> findAvailable(BigDecimal amount, LocalDate today, Integer userId) {
+        List<Discount> available = findAvailable(amount, today);
+        if (userId == null) {
+            return available;
+        }
+        Snapshot current = snapshot;
+        boolean added = false;
+        for (Integer voucherId : personalVoucherIds(userId)) {
+            Discount voucher = current.byId().get(voucherId);
+            if (voucher == null || !isPersonal(voucher) || minOrderAmount(voucher).compareTo(amount) > 0) {
+                continue;
+            }
+            Discount view = view(current, voucher);
+            if (isUsable(view, today)) {
+                available.add(view);
+                added = true;
+            }
+        }
+        if (added) {
+            available.sort(BY_MIN_ORDER_AMOUNT);
+        }
+        return available;
+    }
+
+    /**
+     * Cộng delta vào số lượt đã dùng của voucher trong danh mục (gọi sau khi lượt dùng đã commit)
+     */
+    public void recordUse(Integer voucherId, int delta) {
+        AtomicInteger usedCount = snapshot.usedCounts().get(voucherId);
+        if (usedCount != null) {
+            usedCount.updateAndGet(used -> Math.max(0, used + delta));
+        }
+    }
+
+    // Bản sao voucher với số lượt đã dùng hiện tại, người gọi được tự do sửa
+    private static Discount view(Snapshot current, Discount voucher) {
+        Discount view = copyOf(voucher);
+        AtomicInteger usedCount = current.usedCounts().get(voucher.getId());
+        if (usedCount != null) {
+            view.setUsedCount(usedCount.get());
+        }
+        return view;
+    }
+
+    private static Discount copyOf(Discount voucher) {
+        Discount copy = new Discount();
+        BeanUtils.copyProperties(voucher, copy);
+        return copy;
+    }
+
+    private List<Integer> personalVoucherIds(Integer userId) {
+        return discountRepository.findUnusedPersonalVoucherIds(userId);
+    }
+
+    private static boolean isUsable(Discount voucher, LocalDate today) {
+        return !voucher.getValidFrom().isAfter(today)
+                && (voucher.getValidTo() == null || !voucher.getValidTo().isBefore(today))
+                && hasUsesLeft(voucher);
+    }
+
+    private static boolean isPersonal(Discount voucher) {
+        return voucher.getVoucherType() == Discount.VoucherType.PERSONAL;
+    }
+
+    public static boolean hasUsesLeft(Discount voucher) {
+        return voucher.getUsageLimit() == null || voucher.getUsedCount() < voucher.getUsageLimit();
+    }
+
+    // Số voucher có minOrderAmount <= amount
+    private static int upperBound(BigDecimal[] minOrderAmounts, BigDecimal amount) {
+        int low = 0;
+        int high = minOrderAmounts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (minOrderAmounts[mid].compareTo(amount) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static BigDecimal minOrderAmount(Discount voucher) {
+        return voucher.getMinOrderAmount() != null ? voucher.getMinOrderAmount() : BigDecimal.ZERO;
+    }
+
+    private static String normalize(String code) {
+        return code.trim().toUpperCase(Locale.ROOT);
+    }
+}
@@ -1,208 +1,100 @@
 package com.example.shuttlesync.service;
 
-import lombok.RequiredArgsConstructor;
+import com.example.shuttlesync.dto.EmailRunStats;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import jakarta.mail.internet.MimeMessage;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Email voucher (RelatedType = VOUCHER) trong hàng đợi EmailLogs của EmailDeliveryService.
+ * Dòng EmailLogs chỉ giữ người nhận và id voucher; nội dung HTML được dựng ngay trước khi gửi,
+ * thông tin voucher và khách của cả lô được lấy bằng một truy vấn. Gửi, thử lại và giới hạn tốc độ
+ * do EmailDeliveryService đảm nhận.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
-public class VoucherEmailService {
+public class VoucherEmailService implements EmailRenderer {
+
+    private static final String RESOLVE_SQL = """
+        SELECT e.Id, d.Code, d.Name, u.FullName
+        FROM EmailLogs e
+        JOIN Discounts d ON d.Id = e.RelatedId
+        JOIN Users u ON u.Email = e.ToEmail
+        JOIN PersonalVouchers pv ON pv.VoucherId = d.Id AND pv.UserId = u.Id
+        WHERE e.ClaimToken = ? AND e.RelatedType = 'VOUCHER'
+        """;
+
+    private static final String MARK_VOUCHER_SENT_SQL = """
+        UPDATE PersonalVouchers
+        SET EmailSent = 1, EmailSentAt = GETDATE()
+        WHERE VoucherId = ?
+        AND UserId = (SELECT Id FROM Users WHERE Email = ?)
+        AND EmailSent = 0
+        """;
 
-    private final JavaMailSender mailSender;
     private final JdbcTemplate jdbcTemplate;
-
-    @Value("${spring.mail.username:noreply@shuttlesync.com}")
-    private String fromEmail;
+    private final EmailDeliveryService emailDeliveryService;
 
     @Value("${app.name:ShuttleSync}")
     private String appName;
 
-    /**
-     * Xử lý email voucher chờ gửi (chạy tự động mỗi phút)
-     */
-    @Scheduled(fixedRate = 60000)
-    public void processVoucherEmails() {
-        try {
-            // Log đơn giản để kiểm tra job có chạy không
-            System.out.println("=== SCHEDULED JOB RUNNING === " + new java.util.Date());
-            log.info("[SCHEDULED] Bắt đầu xử lý email voucher chờ gửi... Time: {}", new java.util.Date());
-
-            String sql = """
-                SELECT Id, ToEmail, Subject, Body, RelatedId
-                FROM EmailLogs 
-                WHERE Status = 'PENDING' AND RelatedType = 'VOUCHER'
-                ORDER BY CreatedAt
-                """;
-
-            List<Map<String, Object>> pendingEmails = jdbcTemplate.queryForList(sql);
-
-            log.info("[SCHEDULED] Tìm thấy {} email voucher chờ gửi", pendingEmails.size());
-            System.out.println("=== FOUND " + pendingEmails.size() + " PENDING EMAILS ===");
-
-            if (pendingEmails.isEmpty()) {
-                log.debug("[SCHEDULED] Không có email voucher nào cần gửi");
-                System.out.println("=== NO PENDING EMAILS ===");
-                return;
-            }
-
-            int successCount = 0;
-            int failCount = 0;
-
-            for (Map<String, Object> email : pendingEmails) {
-                Integer emailId = (Integer) email.get("Id");
-                String toEmail = (String) email.get("ToEmail");
-                String subject = (String) email.get("Subject");
-                Integer voucherId = (Integer) email.get("RelatedId");
-
-                log.info("[SCHEDULED] Đang gửi email voucher #{} đến: {}", emailId, toEmail);
-                System.out.println("=== SENDING EMAIL " + emailId + " TO " + toEmail + " ===");
-
-                boolean sent = sendVoucherEmailFromDatabase(toEmail, subject, voucherId);
-
-                if (sent) {
-                    updateEmailStatus(emailId, "SENT", null);
-                    updateVoucherEmailSent(voucherId, toEmail);
-                    successCount++;
-                    log.info("[SCHEDULED] Gửi email voucher #{} thành công", emailId);
-                    System.out.println("=== EMAIL " + emailId + " SENT SUCCESS ===");
-                } else {
-                    updateEmailStatus(emailId, "FAILED", "Không thể gửi email voucher");
-                    failCount++;
-                    log.error("[SCHEDULED] Gửi email voucher #{} thất bại", emailId);
-                    System.out.println("=== EMAIL " + emailId + " FAILED ===");
-                }
-            }
-
-            log.info("[SCHEDULED] Kết quả gửi email voucher: {} thành công, {} thất bại", successCount, failCount);
-            System.out.println("=== RESULT: " + successCount + " success, " + failCount + " failed ===");
-
-        } catch (Exception e) {
-            log.error("[SCHEDULED] Lỗi khi xử lý email voucher: {}", e.getMessage(), e);
-            System.out.println("=== SCHEDULED JOB ERROR: " + e.getMessage() + " ===");
-            e.printStackTrace();
-        }
+    public VoucherEmailService(JdbcTemplate jdbcTemplate, EmailDeliveryService emailDeliveryService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.emailDeliveryService = emailDeliveryService;
+        emailDeliveryService.registerRenderer(EmailDeliveryService.RELATED_TYPE_VOUCHER, this);
     }
 
     /**
-     * Gửi email voucher từ database
+     * Dựng email cho các dòng VOUCHER của một lô. Dòng không có RelatedId là email thử với voucher mẫu.
      */
-    private boolean sendVoucherEmailFromDatabase(String toEmail, String subject, Integer voucherId) {
-        try {
-            // Lấy thông tin voucher và khách hàng
-            String sql = """
-                SELECT 
-                    d.Code as VoucherCode,
-                    d.Name as VoucherName,
-                    d.Description as VoucherDescription,
-                    d.Type as VoucherType,
-                    d.Value as VoucherValue,
-                    d.ValidFrom,
-                    d.ValidTo,
-                    u.FullName as CustomerName,
-                    u.Email as CustomerEmail
-                FROM PersonalVouchers pv
-                JOIN Discounts d ON pv.VoucherId = d.Id
-                JOIN Users u ON pv.UserId = u.Id
-                WHERE d.Id = ? AND u.Email = ?
-                """;
-
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, voucherId, toEmail);
-
-            if (results.isEmpty()) {
-                log.error("❌ Không tìm thấy thông tin voucher {} cho email {}", voucherId, toEmail);
-                return false;
+    @Override
+    public Map<Integer, EmailDeliveryService.EmailContent> render(List<EmailDeliveryService.QueuedEmail> emails) {
+        Map<Integer, EmailDeliveryService.EmailContent> contents = new HashMap<>();
+        jdbcTemplate.query(RESOLVE_SQL, rs -> {
+            contents.putIfAbsent(rs.getInt("Id"), content(rs.getString("Code"), rs.getString("Name"), rs.getString("FullName")));
+        }, emails.get(0).claimToken());
+        for (EmailDeliveryService.QueuedEmail email : emails) {
+            if (email.relatedId() == null) {
+                contents.put(email.id(), content("WELCOME2025", "Voucher chào mừng", "Khách hàng thân mến"));
             }
-
-            Map<String, Object> voucherInfo = results.get(0);
-            String voucherCode = (String) voucherInfo.get("VoucherCode");
-            String voucherName = (String) voucherInfo.get("VoucherName");
-            String customerName = (String) voucherInfo.get("CustomerName");
-
-            return sendVoucherEmail(toEmail, subject, voucherCode, voucherName, customerName);
-
-        } catch (Exception e) {
-            log.error("❌ Lỗi khi lấy thông tin voucher từ database: {}", e.getMessage());
-            return false;
         }
+        return contents;
     }
 
-    /**
-     * Gửi email voucher với template HTML đẹp
-     */
-    public boolean sendVoucherEmail(String toEmail, String subject, String voucherCode, String voucherName, String customerName) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail, appName);
-            helper.setTo(toEmail);
-            helper.setSubject(subject);
-
-            String htmlContent = createVoucherEmailTemplate(voucherCode, voucherName, customerName);
-            helper.setText(htmlContent, true);
-            
-            // Đảm bảo encoding UTF-8
-            message.setHeader("Content-Type", "text/html; charset=UTF-8");
-
-            mailSender.send(message);
-            log.info("✅ Đã gửi email voucher {} thành công đến: {}", voucherCode, toEmail);
-            return true;
-
-        } catch (Exception e) {
-            log.error("❌ Lỗi khi gửi email voucher đến {}: {}", toEmail, e.getMessage());
-            return false;
+    @Override
+    public void onSent(EmailDeliveryService.QueuedEmail email) {
+        if (email.relatedId() != null) {
+            jdbcTemplate.update(MARK_VOUCHER_SENT_SQL, email.relatedId(), email.to());
         }
     }
 
     /**
-     * Gửi email voucher thủ công cho user cụ thể
+     * Đưa email voucher của user vào hàng đợi gửi (thủ công)
+     *
+     * @return false nếu user không có voucher này
      */
     public boolean sendVoucherEmailToUser(Integer userId, Integer voucherId) {
         try {
-            String sql = """
-                SELECT 
-                    u.Email,
-                    u.FullName,
-                    d.Code,
-                    d.Name
+            List<String> emails = jdbcTemplate.queryForList("""
+                SELECT u.Email
                 FROM Users u
                 JOIN PersonalVouchers pv ON u.Id = pv.UserId
-                JOIN Discounts d ON pv.VoucherId = d.Id
-                WHERE u.Id = ? AND d.Id = ?
-                """;
-
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, userId, voucherId);
+                WHERE u.Id = ? AND pv.VoucherId = ?
+                """, String.class, userId, voucherId);
 
-            if (results.isEmpty()) {
+            if (emails.isEmpty()) {
                 log.error("❌ Không tìm thấy voucher {} cho user {}", voucherId, userId);
                 return false;
             }
 
-            Map<String, Object> info = results.get(0);
-            String email = (String) info.get("Email");
-            String fullName = (String) info.get("FullName");
-            String code = (String) info.get("Code");
-            String name = (String) info.get("Name");
-
-            String subject = "🎉 Bạn đã nhận được voucher đặc biệt từ " + appName;
-            
-            boolean sent = sendVoucherEmail(email, subject, code, name, fullName);
-
-            if (sent) {
-                updateVoucherEmailSent(voucherId, email);
-            }
-
-            return sent;
+            emailDeliveryService.enqueue(emails.get(0), subject(), "Voucher #" + voucherId,
+                    EmailDeliveryService.RELATED_TYPE_VOUCHER, voucherId);
+            return true;
 
         } catch (Exception e) {
             log.error("❌ Lỗi khi gửi email voucher thủ công: {}", e.getMessage());
@@ -211,47 +103,34 @@ public class VoucherEmailService {
     }
 
     /**
-     * Cập nhật trạng thái email trong database
+     * Đưa email voucher mẫu vào hàng đợi gửi
      */
-    private void updateEmailStatus(Integer emailId, String status, String errorMessage) {
+    public boolean sendTestVoucherEmail(String toEmail) {
         try {
-            String sql = """
-                UPDATE EmailLogs 
-                SET Status = ?, 
-                    SentAt = CASE WHEN ? = 'SENT' THEN GETDATE() ELSE SentAt END,
-                    ErrorMessage = ?
-                WHERE Id = ?
-                """;
-
-            jdbcTemplate.update(sql, status, status, errorMessage, emailId);
-
+            emailDeliveryService.enqueue(toEmail, subject(), "Voucher mẫu", EmailDeliveryService.RELATED_TYPE_VOUCHER, null);
+            return true;
         } catch (Exception e) {
-            log.error("❌ Lỗi khi cập nhật trạng thái email: {}", e.getMessage());
+            log.error("❌ Lỗi khi gửi email voucher: {}", e.getMessage());
+            return false;
         }
     }
 
     /**
-     * Cập nhật trạng thái đã gửi email cho voucher
+     * Xử lý ngay các email chờ gửi thay vì đợi lần quét định kỳ
+     *
+     * @return số liệu của lượt xử lý (claimed, sent, failed, thời gian, email/s)
      */
-    private void updateVoucherEmailSent(Integer voucherId, String email) {
-        try {
-            String sql = """
-                UPDATE PersonalVouchers 
-                SET EmailSent = 1, EmailSentAt = GETDATE()
-                WHERE VoucherId = ? 
-                AND UserId = (SELECT Id FROM Users WHERE Email = ?)
-                AND EmailSent = 0
-                """;
+    public EmailRunStats processPendingEmails() {
+        return emailDeliveryService.drainNow();
+    }
 
-            int updated = jdbcTemplate.update(sql, voucherId, email);
-            
-            if (updated > 0) {
-                log.info("✅ Đã cập nhật trạng thái email cho voucher {}", voucherId);
-            }
+    private String subject() {
+        return "🎉 Bạn đã nhận được voucher đặc biệt từ " + appName;
+    }
 
-        } catch (Exception e) {
-            log.error("❌ Lỗi khi cập nhật trạng thái voucher: {}", e.getMessage());
-        }
+    private EmailDeliveryService.EmailContent content(String voucherCode, String voucherName, String customerName) {
+        return new EmailDeliveryService.EmailContent(subject(),
+                createVoucherEmailTemplate(voucherCode, voucherName, customerName), true);
     }
 
     /**
@@ -363,19 +242,6 @@ public class VoucherEmailService {
             appName, appName, customerName, appName, voucherName, voucherCode, voucherCode, appName, appName);
     }
 
-    /**
-     * Gửi email test cho voucher
-     */
-    public boolean sendTestVoucherEmail(String toEmail) {
-        try {
-            String subject = "🎉 Bạn đã nhận được voucher đặc biệt từ " + appName;
-            return sendVoucherEmail(toEmail, subject, "WELCOME2025", "Voucher chào mừng", "Khách hàng thân mến");
-        } catch (Exception e) {
-            log.error("❌ Lỗi khi gửi email voucher: {}", e.getMessage());
-            return false;
-        }
-    }
-
     /**
      * Kiểm tra trạng thái email service
      */
@@ -392,11 +258,15 @@ public class VoucherEmailService {
 
             List<Map<String, Object>> statusList = jdbcTemplate.queryForList(sql);
             
-            return Map.of(
-                "status", "OK",
-                "emailStats", statusList,
-                "lastCheck", new java.util.Date()
-            );
+            Map<String, Object> status = new HashMap<>();
+            status.put("status", "OK");
+            status.put("emailStats", statusList);
+            EmailRunStats lastRun = emailDeliveryService.getLastRun();
+            if (lastRun != null) {
+                status.put("lastRun", lastRun);
+            }
+            status.put("lastCheck", new java.util.Date());
+            return status;
 
         } catch (Exception e) {
             log.error("❌ Lỗi khi kiểm tra trạng thái email service: {}", e.getMessage());
@@ -0,0 +1,444 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.model.Discount;
+import com.example.shuttlesync.model.VoucherLease;
+import com.example.shuttlesync.repository.DiscountRepository;
+import com.example.shuttlesync.repository.VoucherLeaseRepository;
+import com.example.shuttlesync.util.TransactionHooks;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Ghi nhận lượt dùng voucher bằng UPDATE có điều kiện (UsedCount + 1 <= UsageLimit), không đọc-sửa-ghi entity.
+ * Lượt dùng thuộc transaction của người gọi: transaction rollback thì lượt dùng cũng được trả lại.
+ * <p>
+ * Voucher "nóng" (app.voucher-redemption.hot-codes, ví dụ mã flash sale) được giữ trước từng khối lượt dùng
+ * trong transaction riêng và cấp phát trong bộ nhớ, để các request không xếp hàng chờ khóa cùng một dòng Discounts.
+ * Mỗi khối được ghi vào một VoucherLease có hạn; mỗi lượt cấp phát INSERT một dòng VoucherLeaseUses trong transaction
+ * của người gọi. Node gia hạn lease định kỳ và trả phần dư khi tắt; lease không được gia hạn (node chết, mất kết nối)
+ * được node bất kỳ thu hồi, nên UsedCount không bị giữ mãi bởi một node đã chết.
+ * <p>
+ * Khối mới được giữ trên một luồng riêng khi khối hiện tại xuống dưới ngưỡng (không dùng thêm connection
+ * trong khi người gọi đang giữ connection của transaction). Khối cạn trước khi kịp nạp thì lượt đó
+ * đi đường UPDATE có điều kiện trên connection của người gọi.
+ */
+@Service
+@Slf4j
+public class VoucherRedemptionService {
+
+    // Thời gian tối đa chờ lượt nạp khối đang chạy khi database báo hết lượt (lượt có thể đang nằm trong khối đó)
+    private static final long REFILL_WAIT_MILLIS = 2000;
+
+    private static final String ENSURE_TABLES_SQL = """
+        IF OBJECT_ID('VoucherLeases', 'U') IS NULL
+        BEGIN
+            CREATE TABLE VoucherLeases (
+                Id BIGINT IDENTITY(1,1) PRIMARY KEY,
+                VoucherId INT NOT NULL,
+                Reserved INT NOT NULL,
+                LeaseUntil DATETIME2 NOT NULL
+            );
+            CREATE INDEX IX_VoucherLeases_LeaseUntil ON VoucherLeases (LeaseUntil);
+        END
+        IF OBJECT_ID('VoucherLeaseUses', 'U') IS NULL
+        BEGIN
+            CREATE TABLE VoucherLeaseUses (
+                Id BIGINT IDENTITY(1,1) PRIMARY KEY,
+                LeaseId BIGINT NOT NULL
+            );
+            CREATE INDEX IX_VoucherLeaseUses_LeaseId ON VoucherLeaseUses (LeaseId);
+        END
+        """;
+
+    private final DiscountRepository discountRepository;
+    private final VoucherLeaseRepository voucherLeaseRepository;
+    private final VoucherCatalog voucherCatalog;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate requiresNew;
+    private final Set<String> hotCodes;
+    private final int blockSize;
+    private final int lowWater;
+    private final Duration leaseDuration;
+    private final ExecutorService refiller = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "voucher-block-refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Khối lượt dùng đã giữ nhưng chưa cấp phát, theo id voucher nóng
+    private final Map<Integer, HotBlock> blocks = new ConcurrentHashMap<>();
+
+    private static final class HotBlock {
+        private Long leaseId;
+        private int available;
+        private boolean refilling;
+        // Lần nạp gần nhất không giữ được lượt nào: không nạp lại, mọi lượt đi đường UPDATE có điều kiện
+        private boolean exhausted;
+    }
+
+    private record Reservation(Long leaseId, int count) {
+    }
+
+    public VoucherRedemptionService(DiscountRepository discountRepository,
+                                    VoucherLeaseRepository voucherLeaseRepository,
+                                    VoucherCatalog voucherCatalog,
+                                    JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.voucher-redemption.hot-codes:}") Collection<String> hotCodes,
+                                    @Value("${app.voucher-redemption.block-size:20}") int blockSize,
+                                    @Value("${app.voucher-redemption.lease-seconds:120}") long leaseSeconds) {
+        this.discountRepository = discountRepository;
+        this.voucherLeaseRepository = voucherLeaseRepository;
+        this.voucherCatalog = voucherCatalog;
+        this.jdbcTemplate = jdbcTemplate;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.hotCodes = hotCodes.stream()
+                .map(String::trim)
+                .filter(code -> !code.isEmpty())
+                .map(String::toUpperCase)
+                .collect(Collectors.toUnmodifiableSet());
+        this.blockSize = blockSize;
+        this.lowWater = Math.max(1, blockSize / 4);
+        this.leaseDuration = Duration.ofSeconds(leaseSeconds);
+    }
+
+    /**
+     * Tạo bảng lease nếu chưa có và thu hồi lease còn sót từ lần chạy trước
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureTables() {
+        try {
+            jdbcTemplate.execute(ENSURE_TABLES_SQL);
+            reclaimExpiredLeases();
+        } catch (Exception e) {
+            log.warn("[VOUCHER] Không thể tạo bảng VoucherLeases: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi nhận một lượt dùng voucher
+     *
+     * @return false nếu voucher đã hết lượt
+     */
+    public boolean redeem(Discount voucher) {
+        if (!isHot(voucher)) {
+            if (discountRepository.tryIncrementUsage(voucher.getId(), 1) != 1) {
+                return false;
+            }
+            TransactionHooks.afterCommit(() -> voucherCatalog.recordUse(voucher.getId(), 1));
+            return true;
+        }
+
+        Integer voucherId = voucher.getId();
+        HotBlock block = blocks.computeIfAbsent(voucherId, id -> new HotBlock());
+        Long leaseId = take(voucherId, block);
+        if (leaseId != null) {
+            if (voucherLeaseRepository.recordUse(leaseId) == 1) {
+                TransactionHooks.onRollback(() -> giveBack(voucherId, leaseId));
+                TransactionHooks.afterCommit(() -> voucherCatalog.recordUse(voucherId, 1));
+                return true;
+            }
+            // Lease đã bị thu hồi (node này không gia hạn kịp): bỏ khối cũ, nạp khối mới
+            dropBlock(voucherId, leaseId);
+        }
+
+        if (discountRepository.tryIncrementUsage(voucherId, 1) == 1) {
+            TransactionHooks.afterCommit(() -> voucherCatalog.recordUse(voucherId, 1));
+            return true;
+        }
+        // Database hết lượt nhưng lượt còn lại có thể nằm trong khối đang nạp
+        Long refilledLeaseId = awaitRefill(voucherId, block);
+        if (refilledLeaseId != null && voucherLeaseRepository.recordUse(refilledLeaseId) == 1) {
+            TransactionHooks.onRollback(() -> giveBack(voucherId, refilledLeaseId));
+            TransactionHooks.afterCommit(() -> voucherCatalog.recordUse(voucherId, 1));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Trả lại một lượt dùng (ví dụ khi hóa đơn đổi sang voucher khác)
+     */
+    public void release(Discount voucher) {
+        discountRepository.releaseUsage(voucher.getId(), 1);
+        TransactionHooks.afterCommit(() -> voucherCatalog.recordUse(voucher.getId(), -1));
+    }
+
+    /**
+     * Gia hạn lease của node này (kèm dọn các dòng VoucherLeaseUses đã commit), rồi thu hồi lease quá hạn của các node khác
+     */
+    @Scheduled(fixedDelayString = "${app.voucher-redemption.renew-interval-ms:30000}")
+    public void renewLeases() {
+        LocalDateTime leaseUntil = LocalDateTime.now().plus(leaseDuration);
+        blocks.forEach((voucherId, block) -> {
+            Long leaseId;
+            synchronized (block) {
+                leaseId = block.leaseId;
+            }
+            if (leaseId == null) {
+                return;
+            }
+            try {
+                Boolean renewed = requiresNew.execute(status -> {
+                    if (voucherLeaseRepository.renew(leaseId, leaseUntil) == 0) {
+                        return false;
+                    }
+                    // Lượt dùng đã commit không cần giữ riêng nữa: trừ thẳng vào Reserved (Reserved - số dòng không đổi)
+                    int settled = voucherLeaseRepository.deleteUses(leaseId);
+                    if (settled > 0) {
+                        voucherLeaseRepository.addReserved(leaseId, -settled, leaseUntil);
+                    }
+                    return true;
+                });
+                if (!Boolean.TRUE.equals(renewed)) {
+                    dropBlock(voucherId, leaseId);
+                }
+            } catch (Exception e) {
+                log.warn("[VOUCHER] Không thể gia hạn lease {} của voucher {}: {}", leaseId, voucherId, e.getMessage());
+            }
+        });
+        reclaimExpiredLeases();
+    }
+
+    /**
+     * Trả về database các lượt đã giữ nhưng chưa dùng của lease quá hạn
+     */
+    public void reclaimExpiredLeases() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            for (Long leaseId : voucherLeaseRepository.findExpiredIds(now)) {
+                requiresNew.executeWithoutResult(status -> {
+                    VoucherLease lease = voucherLeaseRepository.findById(leaseId).orElse(null);
+                    if (lease == null || voucherLeaseRepository.deleteIfExpired(leaseId, now) == 0) {
+                        return;
+                    }
+                    int unused = lease.getReserved() - (int) voucherLeaseRepository.countUses(leaseId);
+                    if (unused > 0) {
+                        discountRepository.releaseUsage(lease.getVoucherId(), unused);
+                    }
+                    voucherLeaseRepository.deleteUses(leaseId);
+                    log.info("[VOUCHER] Thu hồi lease {} quá hạn, trả {} lượt cho voucher {}",
+                            leaseId, Math.max(unused, 0), lease.getVoucherId());
+                });
+            }
+        } catch (Exception e) {
+            log.warn("[VOUCHER] Không thể thu hồi lease quá hạn: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Trả các lượt đã giữ nhưng chưa dùng của mọi voucher nóng về database và đóng lease
+     */
+    @PreDestroy
+    public void releaseReservedBlocks() {
+        awaitRefills();
+        refiller.shutdown();
+        blocks.forEach((voucherId, block) -> {
+            Long leaseId;
+            int unused;
+            synchronized (block) {
+                leaseId = block.leaseId;
+                unused = block.available;
+                block.leaseId = null;
+                block.available = 0;
+            }
+            if (leaseId == null) {
+                return;
+            }
+            try {
+                requiresNew.executeWithoutResult(status -> {
+                    if (unused > 0) {
+                        discountRepository.releaseUsage(voucherId, unused);
+                    }
+                    voucherLeaseRepository.deleteUses(leaseId);
+                    voucherLeaseRepository.deleteById(leaseId);
+                });
+            } catch (Exception e) {
+                log.warn("[VOUCHER] Không thể trả {} lượt đã giữ của voucher {}: {}", unused, voucherId, e.getMessage());
+            }
+        });
+    }
+
+    private boolean isHot(Discount voucher) {
+        return voucher.getCode() != null && hotCodes.contains(voucher.getCode().toUpperCase());
+    }
+
+    /**
+     * Giữ tối đa blockSize lượt trong transaction riêng, ít hơn nếu voucher sắp hết lượt,
+     * và cộng vào lease hiện tại (tạo lease mới nếu chưa có hoặc đã bị thu hồi)
+     *
+     * @return lease và số lượt giữ được, count = 0 nếu đã hết
+     */
+    private Reservation reserveBlock(Integer voucherId, Long currentLeaseId) {
+        LocalDateTime leaseUntil = LocalDateTime.now().plus(leaseDuration);
+        Reservation reservation = requiresNew.execute(status -> {
+            int reserved = reserveUsage(voucherId);
+            if (reserved == 0) {
+                return new Reservation(currentLeaseId, 0);
+            }
+            if (currentLeaseId != null && voucherLeaseRepository.addReserved(currentLeaseId, reserved, leaseUntil) == 1) {
+                return new Reservation(currentLeaseId, reserved);
+            }
+            VoucherLease lease = voucherLeaseRepository.save(new VoucherLease(null, voucherId, reserved, leaseUntil));
+            return new Reservation(lease.getId(), reserved);
+        });
+        log.debug("[VOUCHER] Giữ {} lượt cho voucher nóng {}", reservation != null ? reservation.count() : 0, voucherId);
+        return reservation != null ? reservation : new Reservation(currentLeaseId, 0);
+    }
+
+    private int reserveUsage(Integer voucherId) {
+        int wanted = blockSize;
+        while (wanted > 0) {
+            if (discountRepository.tryIncrementUsage(voucherId, wanted) == 1) {
+                return wanted;
+            }
+            Integer remaining = discountRepository.findRemainingUsage(voucherId);
+            if (remaining == null || remaining <= 0) {
+                return 0;
+            }
+            wanted = Math.min(wanted, remaining);
+        }
+        return 0;
+    }
+
+    /**
+     * Lấy một lượt từ khối trong bộ nhớ, nạp trước khối mới khi xuống dưới ngưỡng
+     *
+     * @return lease của lượt vừa lấy, null nếu khối đang trống
+     */
+    private Long take(Integer voucherId, HotBlock block) {
+        synchronized (block) {
+            Long leaseId = null;
+            if (block.available > 0) {
+                block.available--;
+                leaseId = block.leaseId;
+            }
+            if (block.available <= lowWater) {
+                requestRefill(voucherId, block);
+            }
+            return leaseId;
+        }
+    }
+
+    // Gọi khi đang giữ khóa block
+    private void requestRefill(Integer voucherId, HotBlock block) {
+        if (block.refilling || block.exhausted || refiller.isShutdown()) {
+            return;
+        }
+        block.refilling = true;
+        Long currentLeaseId = block.leaseId;
+        refiller.execute(() -> refill(voucherId, block, currentLeaseId));
+    }
+
+    private void refill(Integer voucherId, HotBlock block, Long currentLeaseId) {
+        Reservation reservation = null;
+        try {
+            reservation = reserveBlock(voucherId, currentLeaseId);
+        } catch (Exception e) {
+            log.warn("[VOUCHER] Không thể giữ khối lượt dùng cho voucher {}: {}", voucherId, e.getMessage());
+        } finally {
+            synchronized (block) {
+                if (reservation != null && reservation.count() > 0) {
+                    if (!Objects.equals(block.leaseId, reservation.leaseId())) {
+                        // Lease cũ đã bị thu hồi; phần còn lại của nó được tính khi lease cũ hết hạn
+                        block.leaseId = reservation.leaseId();
+                        block.available = 0;
+                    }
+                    block.available += reservation.count();
+                } else if (reservation != null) {
+                    block.exhausted = true;
+                }
+                block.refilling = false;
+                block.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Chờ lượt nạp đang chạy (nếu có) trong thời gian ngắn rồi lấy một lượt từ khối
+     *
+     * @return lease của lượt vừa lấy, null nếu khối vẫn trống
+     */
+    private Long awaitRefill(Integer voucherId, HotBlock block) {
+        long deadline = System.currentTimeMillis() + REFILL_WAIT_MILLIS;
+        synchronized (block) {
+            try {
+                while (block.available == 0 && block.refilling) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    block.wait(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return take(voucherId, block);
+    }
+
+    /**
+     * Chờ các lượt nạp khối đã xếp hàng chạy xong
+     */
+    void awaitRefills() {
+        try {
+            refiller.submit(() -> { }).get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("[VOUCHER] Không thể chờ nạp khối lượt dùng: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Trả lượt của transaction rollback về khối, nếu khối vẫn thuộc lease đã cấp lượt đó.
+     * Lease đã đổi thì lượt này được tính khi lease cũ bị thu hồi.
+     */
+    private void giveBack(Integer voucherId, Long leaseId) {
+        HotBlock block = blocks.get(voucherId);
+        if (block == null) {
+            return;
+        }
+        synchronized (block) {
+            if (Objects.equals(block.leaseId, leaseId)) {
+                block.available++;
+            }
+        }
+    }
+
+    private void dropBlock(Integer voucherId, Long leaseId) {
+        HotBlock block = blocks.get(voucherId);
+        if (block == null) {
+            return;
+        }
+        synchronized (block) {
+            if (Objects.equals(block.leaseId, leaseId)) {
+                block.leaseId = null;
+                block.available = 0;
+                requestRefill(voucherId, block);
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.example.shuttlesync.dto.AuthResponse;
 import com.example.shuttlesync.dto.UserDto;
 import com.example.shuttlesync.model.User;
 import com.example.shuttlesync.repository.UserRepository;
+import com.example.shuttlesync.security.UserDetailsCache;
 import com.example.shuttlesync.service.AuthService;
 import com.example.shuttlesync.service.JwtService;
 import lombok.RequiredArgsConstructor;
@@ -15,6 +16,9 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Service
 @RequiredArgsConstructor
 public class AuthServiceImpl implements AuthService {
@@ -35,7 +39,7 @@ public class AuthServiceImpl implements AuthService {
         SecurityContextHolder.getContext().setAuthentication(authentication);
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
-        String jwt = jwtService.generateToken(userDetails);
+        String jwt = jwtService.generateToken(identityClaims(userDetails), userDetails);
         String refreshToken = jwtService.generateRefreshToken(userDetails);
 
         String role = userDetails.getAuthorities().iterator().next().getAuthority().replace("ROLE_", "").toLowerCase();
@@ -86,7 +90,7 @@ public class AuthServiceImpl implements AuthService {
         UserDetailsImpl userDetails = UserDetailsImpl.build(user);
 
         if (jwtService.isTokenValid(refreshToken, userDetails)) {
-            String newToken = jwtService.generateToken(userDetails);
+            String newToken = jwtService.generateToken(identityClaims(userDetails), userDetails);
             String newRefreshToken = jwtService.generateRefreshToken(userDetails);
 
             String role = userDetails.getAuthorities().iterator().next().getAuthority().replace("ROLE_", "").toLowerCase();
@@ -110,4 +114,15 @@ public class AuthServiceImpl implements AuthService {
 
         throw new RuntimeException("Refresh token không hợp lệ");
     }
+
+    /**
+     * Nhúng id và quyền của user vào access token để filter không phải tra database
+     */
+    private Map<String, Object> identityClaims(UserDetailsImpl userDetails) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(UserDetailsCache.CLAIM_USER_ID, userDetails.getId());
+        claims.put(UserDetailsCache.CLAIM_ROLE, userDetails.getAuthorities().iterator().next().getAuthority());
+        claims.put(UserDetailsCache.CLAIM_FULL_NAME, userDetails.getFullName());
+        return claims;
+    }
 }
@@ -4,23 +4,25 @@ import com.example.shuttlesync.dto.BookingDTO;
 import com.example.shuttlesync.exeption.ResourceNotFoundException;
 import com.example.shuttlesync.model.*;
 import com.example.shuttlesync.repository.*;
+import com.example.shuttlesync.service.ReferenceDataRegistry;
 import com.example.shuttlesync.service.BookingService;
-import com.example.shuttlesync.service.EmailService;
-import com.example.shuttlesync.service.NotificationService;
-import com.example.shuttlesync.service.SystemChangeLogService;
-import com.example.shuttlesync.service.InvoiceService;
+import com.example.shuttlesync.service.CourtAvailabilityIndex;
+import com.example.shuttlesync.service.OutboxService;
+import com.example.shuttlesync.service.SlotReservationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -31,16 +33,11 @@ public class BookingServiceImpl implements BookingService {
     private final CourtRepository courtRepository;
     private final UserRepository userRepository;
     private final PaymentRepository paymentRepository;
-    private final SystemConfigRepository systemConfigRepository;
     private final DiscountRepository discountRepository;
-    private final NotificationService notificationService;
-    private final SystemChangeLogService systemChangeLogService;
-    private final BookingStatusTypeRepository bookingStatusTypeRepository;
-    private final NotificationRepository notificationRepository;
-    private final SystemChangeLogRepository systemChangeLogRepository;
-    private final PaymentStatusTypeRepository paymentStatusTypeRepository;
-    private final EmailService emailService;
-    private final InvoiceService invoiceService;
+    private final ReferenceDataRegistry referenceDataRegistry;
+    private final CourtAvailabilityIndex availabilityIndex;
+    private final SlotReservationService slotReservationService;
+    private final OutboxService outboxService;
     
     @Override
     public List<Booking> getAllBookings() {
@@ -62,7 +59,7 @@ public class BookingServiceImpl implements BookingService {
     
     @Override
     public List<Booking> getBookingsByStatus(Byte statusId) {
-        BookingStatusType status = bookingStatusTypeRepository.findById(statusId)
+        BookingStatusType status = referenceDataRegistry.findBookingStatus(statusId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái đặt sân với ID: " + statusId));
         
         return bookingRepository.findByStatusId(statusId);
@@ -88,13 +85,8 @@ public class BookingServiceImpl implements BookingService {
             throw new IllegalArgumentException("Khung giờ không thuộc sân này");
         }
         
-        // Kiểm tra xem khung giờ đã được đặt chưa
-        if (isTimeSlotBooked(courtId, timeSlotId, bookingDate)) {
-            throw new IllegalArgumentException("Khung giờ này đã được đặt cho ngày " + bookingDate);
-        }
-        
         // Lấy trạng thái "Chờ xác nhận" (ID = 1)
-        BookingStatusType waitingStatus = bookingStatusTypeRepository.findById((byte)1)
+        BookingStatusType waitingStatus = referenceDataRegistry.findBookingStatus((byte)1)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Chờ xác nhận'"));
         
         // Tạo booking mới
@@ -136,44 +128,18 @@ public class BookingServiceImpl implements BookingService {
             booking.setDiscounts(discounts);
         }
         
-        // Lưu booking
-        Booking savedBooking = bookingRepository.save(booking);
-        
-        // Tạo invoice tự động cho booking
-        try {
-            invoiceService.createInvoice(savedBooking.getId());
-        } catch (Exception e) {
-            // Log lỗi nhưng không làm gián đoạn tạo booking
-            System.err.println("Failed to create invoice for booking " + savedBooking.getId() + ": " + e.getMessage());
-        }
+        // Giữ chỗ và lưu booking (khóa theo khung giờ + unique index chống đặt trùng)
+        Booking savedBooking = slotReservationService.reserve(courtId, timeSlotId, bookingDate,
+                () -> bookingRepository.saveAndFlush(booking));
         
-        // Tạo thông báo cho admin
-        List<User> admins = userRepository.findByRole("admin");
-        for (User admin : admins) {
-            Notification notification = new Notification();
-            notification.setUser(admin);
-            notification.setMessage("Có đặt sân mới từ " + user.getFullName() + " đang chờ xác nhận (Đặt online)");
-            notification.setIsRead(false);
-            notificationRepository.save(notification);
-        }
-        
-        // Tạo thông báo cho người dùng
-        Notification userNotification = new Notification();
-        userNotification.setUser(user);
-        userNotification.setMessage("Đặt sân của bạn đang chờ xác nhận");
-        userNotification.setIsRead(false);
-        notificationRepository.save(userNotification);
-        
-        // Ghi log thay đổi
-        SystemChangeLog log = new SystemChangeLog();
-        log.setTableName("Bookings");
-        log.setRecordId(savedBooking.getId());
-        log.setChangeType("INSERT");
-        log.setChangedFields(String.format(
+        // Các tác vụ phụ được ghi vào outbox và thực hiện sau khi commit
+        outboxService.createInvoice(savedBooking.getId());
+        outboxService.notifyAdmins(savedBooking.getId(),
+                "Có đặt sân mới từ " + user.getFullName() + " đang chờ xác nhận (Đặt online)");
+        outboxService.notifyUser(savedBooking.getId(), user.getId(), "Đặt sân của bạn đang chờ xác nhận");
+        outboxService.auditLog("Bookings", savedBooking.getId(), "INSERT", String.format(
                 "{\"UserId\":\"%d\",\"CourtId\":\"%d\",\"TimeSlotId\":\"%d\",\"BookingDate\":\"%s\",\"BookingChannel\":\"ONLINE\"}",
-                userId, courtId, timeSlotId, bookingDate));
-        log.setChangedBy(user);
-        systemChangeLogRepository.save(log);
+                userId, courtId, timeSlotId, bookingDate), user.getId());
         
         // CustomerBookingInfo sẽ được tự động tạo bởi database trigger
         
@@ -188,7 +154,7 @@ public class BookingServiceImpl implements BookingService {
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy đặt sân với ID: " + bookingId));
         
         // Lấy thông tin trạng thái mới
-        BookingStatusType newStatus = bookingStatusTypeRepository.findById(newStatusId)
+        BookingStatusType newStatus = referenceDataRegistry.findBookingStatus(newStatusId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái với ID: " + newStatusId));
         
         // Lưu trạng thái cũ để so sánh
@@ -200,15 +166,9 @@ public class BookingServiceImpl implements BookingService {
         
         // Ghi log thay đổi nếu có thông tin người thay đổi
         if (changedBy != null) {
-            SystemChangeLog log = new SystemChangeLog();
-            log.setTableName("Bookings");
-            log.setRecordId(bookingId);
-            log.setChangeType("UPDATE");
-            log.setChangedFields(String.format(
+            outboxService.auditLog("Bookings", bookingId, "UPDATE", String.format(
                     "{\"Status\":{\"from\":\"%d\",\"to\":\"%d\"}}",
-                    oldStatus.getId(), newStatusId));
-            log.setChangedBy(changedBy);
-            systemChangeLogRepository.save(log);
+                    oldStatus.getId(), newStatusId), changedBy.getId());
         }
         
         // Tạo thanh toán nếu trạng thái là "Đã xác nhận" (ID = 2)
@@ -219,7 +179,7 @@ public class BookingServiceImpl implements BookingService {
             payment.setPaymentMethod("Chưa chọn");
             
             // Lấy trạng thái thanh toán từ repository thay vì tạo mới
-            PaymentStatusType pendingStatus = paymentStatusTypeRepository.findById((byte)1)
+            PaymentStatusType pendingStatus = referenceDataRegistry.findPaymentStatus((byte)1)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái thanh toán 'Chưa thanh toán'"));
             payment.setPaymentStatus(pendingStatus);
             
@@ -228,38 +188,17 @@ public class BookingServiceImpl implements BookingService {
             
             // CustomerBookingInfo sẽ được tự động update bởi database triggers
             
-            // Thông báo cho người dùng
-            Notification notification = new Notification();
-            notification.setUser(booking.getUser());
-            notification.setMessage("Đặt sân của bạn đã được xác nhận. Vui lòng tiến hành thanh toán.");
-            notification.setIsRead(false);
-            notificationRepository.save(notification);
-            
-            // Gửi email xác nhận đặt sân
-            try {
-                emailService.sendBookingConfirmationEmail(booking.getUser(), booking);
-            } catch (Exception e) {
-                // Log lỗi nhưng không làm gián đoạn flow chính
-                System.err.println("Failed to send confirmation email: " + e.getMessage());
-            }
+            // Thông báo và gửi email xác nhận sau khi commit
+            outboxService.notifyUser(bookingId, booking.getUser().getId(),
+                    "Đặt sân của bạn đã được xác nhận. Vui lòng tiến hành thanh toán.");
+            outboxService.sendBookingConfirmedEmail(bookingId);
         }
         
         // Nếu trạng thái là "Đã hủy" (ID = 3)
         if (newStatusId == 3 && !oldStatus.getId().equals(newStatusId)) {
-            // Thông báo cho người dùng
-            Notification notification = new Notification();
-            notification.setUser(booking.getUser());
-            notification.setMessage("Đặt sân của bạn đã bị hủy.");
-            notification.setIsRead(false);
-            notificationRepository.save(notification);
-            
-            // Gửi email thông báo hủy đặt sân
-            try {
-                emailService.sendBookingCancellationEmail(booking.getUser(), booking);
-            } catch (Exception e) {
-                // Log lỗi nhưng không làm gián đoạn flow chính
-                System.err.println("Failed to send cancellation email: " + e.getMessage());
-            }
+            // Thông báo và gửi email hủy đặt sân sau khi commit
+            outboxService.notifyUser(bookingId, booking.getUser().getId(), "Đặt sân của bạn đã bị hủy.");
+            outboxService.sendBookingCancelledEmail(bookingId);
         }
         
         return updatedBooking;
@@ -278,7 +217,7 @@ public class BookingServiceImpl implements BookingService {
         }
         
         // Lấy trạng thái "Đã hủy" (ID = 3)
-        BookingStatusType cancelledStatus = bookingStatusTypeRepository.findById((byte)3)
+        BookingStatusType cancelledStatus = referenceDataRegistry.findBookingStatus((byte)3)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Đã hủy'"));
         
         // Lưu trạng thái cũ để ghi log
@@ -289,35 +228,19 @@ public class BookingServiceImpl implements BookingService {
         bookingRepository.save(booking);
         
         // Ghi log thay đổi
-        SystemChangeLog log = new SystemChangeLog();
-        log.setTableName("Bookings");
-        log.setRecordId(bookingId);
-        log.setChangeType("UPDATE");
-        log.setChangedFields(String.format(
+        outboxService.auditLog("Bookings", bookingId, "UPDATE", String.format(
                 "{\"Status\":{\"from\":\"%d\",\"to\":\"3\"}}",
-                oldStatus.getId()));
-        log.setChangedBy(user);
-        systemChangeLogRepository.save(log);
+                oldStatus.getId()), user.getId());
         
         // Thông báo cho người dùng (nếu admin hủy)
         if (!"admin".equals(user.getRole())) {
-            Notification notification = new Notification();
-            notification.setUser(booking.getUser());
-            notification.setMessage("Đặt sân của bạn đã bị hủy bởi quản trị viên.");
-            notification.setIsRead(false);
-            notificationRepository.save(notification);
+            outboxService.notifyUser(bookingId, booking.getUser().getId(), "Đặt sân của bạn đã bị hủy bởi quản trị viên.");
         }
         
         // Thông báo cho admin (nếu người dùng hủy)
         if (booking.getUser().getId().equals(user.getId())) {
-            List<User> admins = userRepository.findByRole("admin");
-            for (User admin : admins) {
-                Notification notification = new Notification();
-                notification.setUser(admin);
-                notification.setMessage("Đặt sân của " + booking.getUser().getFullName() + " đã bị hủy bởi người dùng.");
-                notification.setIsRead(false);
-                notificationRepository.save(notification);
-            }
+            outboxService.notifyAdmins(bookingId,
+                    "Đặt sân của " + booking.getUser().getFullName() + " đã bị hủy bởi người dùng.");
         }
     }
     
@@ -378,39 +301,6 @@ public class BookingServiceImpl implements BookingService {
         
         paymentRepository.save(payment);
     }
-
-    
-    private void notifyBookingCreated(Booking booking) {
-        // Thông báo cho khách hàng
-        String userMessage = "Bạn đã đặt sân #" + booking.getId() + " thành công. ";
-        if (isBookingConfirmationRequired()) {
-            userMessage += "Vui lòng chờ xác nhận từ quản trị viên.";
-        } else {
-            userMessage += "Vui lòng tiến hành thanh toán.";
-        }
-        notificationService.sendNotification(booking.getUser().getId(), userMessage);
-        
-        // Thông báo cho admin nếu cần xác nhận
-        if (isBookingConfirmationRequired()) {
-            List<User> admins = userRepository.findByRole("admin");
-            for (User admin : admins) {
-                notificationService.sendNotification(admin.getId(),
-                        "Có yêu cầu đặt sân mới #" + booking.getId() + " từ khách hàng " + booking.getUser().getFullName());
-            }
-        }
-    }
-    
-    private boolean isBookingConfirmationRequired() {
-        return systemConfigRepository.findByConfigKey("BOOKING_CONFIRMATION_REQUIRED")
-                .map(config -> Boolean.parseBoolean(config.getConfigValue()))
-                .orElse(true); // Mặc định là yêu cầu xác nhận
-    }
-    
-    private int getMinBookingHoursInAdvance() {
-        return systemConfigRepository.findByConfigKey("MIN_BOOKING_HOURS_IN_ADVANCE")
-                .map(config -> Integer.parseInt(config.getConfigValue()))
-                .orElse(2); // Mặc định là 2 giờ
-    }
     
     @Override
     public boolean isTimeSlotBooked(Integer courtId, Integer timeSlotId, LocalDate date) {
@@ -425,12 +315,8 @@ public class BookingServiceImpl implements BookingService {
                 throw new ResourceNotFoundException("Không tìm thấy khung giờ với ID: " + timeSlotId);
             }
             
-            return bookingRepository.existsByCourtIdAndTimeSlotIdAndBookingDateAndStatusIdNot(
-                courtId, 
-                timeSlotId, 
-                date,
-                (byte)3 // ID cho trạng thái "Đã hủy"
-            );
+            // Trả lời từ chỉ mục trong bộ nhớ (chỉ truy vấn database khi ngày nằm ngoài cửa sổ)
+            return availabilityIndex.isBooked(courtId, timeSlotId, date);
         } catch (ResourceNotFoundException e) {
             // Log và rethrow cho loại lỗi này để client xử lý
             throw e;
@@ -492,13 +378,8 @@ public class BookingServiceImpl implements BookingService {
             throw new IllegalArgumentException("Khung giờ không thuộc sân này");
         }
         
-        // Kiểm tra xem khung giờ đã được đặt chưa
-        if (isTimeSlotBooked(courtId, timeSlotId, bookingDate)) {
-            throw new IllegalArgumentException("Khung giờ này đã được đặt cho ngày " + bookingDate);
-        }
-        
         // Lấy trạng thái "Chờ xác nhận" (ID = 1)
-        BookingStatusType waitingStatus = bookingStatusTypeRepository.findById((byte)1)
+        BookingStatusType waitingStatus = referenceDataRegistry.findBookingStatus((byte)1)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Chờ xác nhận'"));
         
         // Tạo booking mới
@@ -523,56 +404,34 @@ public class BookingServiceImpl implements BookingService {
             booking.setBookingType(Booking.BookingType.ADVANCE);
         }
         
-        // Lưu booking
-        Booking savedBooking = bookingRepository.save(booking);
-        
-        // Tạo invoice tự động cho booking
-        try {
-            invoiceService.createInvoice(savedBooking.getId());
-        } catch (Exception e) {
-            // Log lỗi nhưng không làm gián đoạn tạo booking
-            System.err.println("Failed to create invoice for booking " + savedBooking.getId() + ": " + e.getMessage());
-        }
+        // Giữ chỗ và lưu booking (khóa theo khung giờ + unique index chống đặt trùng)
+        Booking savedBooking = slotReservationService.reserve(courtId, timeSlotId, bookingDate,
+                () -> bookingRepository.saveAndFlush(booking));
         
-        // Tạo thông báo cho admin
-        List<User> admins = userRepository.findByRole("admin");
-        for (User admin : admins) {
-            Notification notification = new Notification();
-            notification.setUser(admin);
-            notification.setMessage("Có đặt sân mới từ " + user.getFullName() + " đang chờ xác nhận (" + 
-                                   bookingChannel.getDescription() + ")");
-            notification.setIsRead(false);
-            notificationRepository.save(notification);
-        }
-        
-        // Tạo thông báo cho người dùng
-        Notification userNotification = new Notification();
-        userNotification.setUser(user);
-        userNotification.setMessage("Đặt sân của bạn đang chờ xác nhận");
-        userNotification.setIsRead(false);
-        notificationRepository.save(userNotification);
-        
-        // Ghi log thay đổi
-        SystemChangeLog log = new SystemChangeLog();
-        log.setTableName("Bookings");
-        log.setRecordId(savedBooking.getId());
-        log.setChangeType("INSERT");
-        log.setChangedFields(String.format(
+        // Các tác vụ phụ được ghi vào outbox và thực hiện sau khi commit
+        outboxService.createInvoice(savedBooking.getId());
+        outboxService.notifyAdmins(savedBooking.getId(),
+                "Có đặt sân mới từ " + user.getFullName() + " đang chờ xác nhận (" + bookingChannel.getDescription() + ")");
+        outboxService.notifyUser(savedBooking.getId(), user.getId(), "Đặt sân của bạn đang chờ xác nhận");
+        outboxService.auditLog("Bookings", savedBooking.getId(), "INSERT", String.format(
                 "{\"UserId\":\"%d\",\"CourtId\":\"%d\",\"TimeSlotId\":\"%d\",\"BookingDate\":\"%s\",\"BookingChannel\":\"%s\"}",
-                userId, courtId, timeSlotId, bookingDate, bookingChannel));
-        log.setChangedBy(user);
-        systemChangeLogRepository.save(log);
+                userId, courtId, timeSlotId, bookingDate, bookingChannel), user.getId());
         
         return savedBooking;
     }
 
     @Override
     public List<BookingDTO> getRecentBookings() {
-        List<Booking> bookings = bookingRepository.findFirst10ByOrderByCreatedAtDesc();
-        return bookings.stream()
-                .limit(10)
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return bookingRepository.findRecentSummaries(PageRequest.of(0, 10));
+    }
+
+    @Override
+    public Map<Byte, Long> countBookingsByStatus() {
+        Map<Byte, Long> counts = new HashMap<>();
+        for (Object[] row : bookingRepository.countGroupedByStatus()) {
+            counts.put((Byte) row[0], (Long) row[1]);
+        }
+        return counts;
     }
 
     @Override
@@ -580,18 +439,6 @@ public class BookingServiceImpl implements BookingService {
         return bookingRepository.save(booking);
     }
 
-    private BookingDTO convertToDTO(Booking booking) {
-        BookingDTO dto = new BookingDTO();
-        dto.setId(booking.getId());
-        dto.setUserName(booking.getUser().getFullName());
-        dto.setCourtName(booking.getCourt().getName());
-        dto.setBookingDate(booking.getBookingDate());
-        dto.setStartTime(booking.getTimeSlot().getStartTime().toString());
-        dto.setEndTime(booking.getTimeSlot().getEndTime().toString());
-        dto.setStatus(booking.getStatus().getId().toString());
-        return dto;
-    }
-    
     // Sync methods không cần thiết nữa vì database triggers sẽ tự động sync
     @Override
     @Transactional
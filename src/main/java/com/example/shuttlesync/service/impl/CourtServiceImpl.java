@@ -4,7 +4,7 @@ import com.example.shuttlesync.exeption.ResourceNotFoundException;
 import com.example.shuttlesync.model.Court;
 import com.example.shuttlesync.model.StatusType;
 import com.example.shuttlesync.repository.CourtRepository;
-import com.example.shuttlesync.repository.StatusTypeRepository;
+import com.example.shuttlesync.service.ReferenceDataRegistry;
 import com.example.shuttlesync.service.CourtService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -16,7 +16,7 @@ import java.util.List;
 public class CourtServiceImpl implements CourtService {
 
     private final CourtRepository courtRepository;
-    private final StatusTypeRepository statusTypeRepository;
+    private final ReferenceDataRegistry referenceDataRegistry;
 
     @Override
     public List<Court> getAllCourts() {
@@ -32,7 +32,7 @@ public class CourtServiceImpl implements CourtService {
     @Override
     public List<Court> getAvailableCourts() {
         Byte trongStatusId = 1; // ID cho trạng thái "Trống" từ bảng StatusTypes
-        StatusType trongStatus = statusTypeRepository.findById(trongStatusId)
+        StatusType trongStatus = referenceDataRegistry.findStatusType(trongStatusId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Trống'"));
         
         return courtRepository.findByStatus(trongStatus);
@@ -41,7 +41,7 @@ public class CourtServiceImpl implements CourtService {
     @Override
     public Court createCourt(Court court) {
         if (court.getStatus() == null) {
-            StatusType defaultStatus = statusTypeRepository.findById((byte)1)
+            StatusType defaultStatus = referenceDataRegistry.findStatusType((byte)1)
                     .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Trống'"));
             court.setStatus(defaultStatus);
         }
@@ -102,7 +102,7 @@ public class CourtServiceImpl implements CourtService {
                 newStatusId = 1; // Mặc định về trạng thái Trống
         }
         
-        StatusType newStatus = statusTypeRepository.findById(newStatusId)
+        StatusType newStatus = referenceDataRegistry.findStatusType(newStatusId)
                 .orElseThrow(() -> new ResourceNotFoundException("Status type not found with ID: " + newStatusId));
         
         court.setStatus(newStatus);
@@ -2,11 +2,10 @@ package com.example.shuttlesync.service.impl;
 
 import com.example.shuttlesync.model.Booking;
 import com.example.shuttlesync.model.User;
+import com.example.shuttlesync.service.EmailDeliveryService;
 import com.example.shuttlesync.service.EmailService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
 import java.time.format.DateTimeFormatter;
@@ -16,7 +15,7 @@ import java.time.format.DateTimeFormatter;
 @Slf4j
 public class EmailServiceImpl implements EmailService {
 
-    private final JavaMailSender mailSender;
+    private final EmailDeliveryService emailDeliveryService;
 
     @Override
     public void sendBookingConfirmationEmail(User user, Booking booking) {
@@ -24,11 +23,9 @@ public class EmailServiceImpl implements EmailService {
             String subject = "🎾 Xác nhận đặt sân - ShuttleSync";
             String content = buildBookingConfirmationContent(user, booking);
             
-            // Gửi email thật
-            sendEmail(user.getEmail(), subject, content);
+            sendEmail(user.getEmail(), subject, content, "BOOKING", booking.getId());
             
-            log.info("✅ Email xác nhận đã được gửi thành công đến: {}", user.getEmail());
-            System.out.println("📧 Email xác nhận đã được gửi đến: " + user.getEmail());
+            log.info("✅ Email xác nhận đã được đưa vào hàng đợi gửi đến: {}", user.getEmail());
             
         } catch (Exception e) {
             log.error("❌ Failed to send booking confirmation email to: {}", user.getEmail(), e);
@@ -42,11 +39,9 @@ public class EmailServiceImpl implements EmailService {
             String subject = "💳 Nhắc nhở thanh toán - ShuttleSync";
             String content = buildPaymentReminderContent(user, booking);
             
-            // Gửi email thật
-            sendEmail(user.getEmail(), subject, content);
+            sendEmail(user.getEmail(), subject, content, "BOOKING", booking.getId());
             
-            log.info("✅ Email nhắc nhở thanh toán đã được gửi thành công đến: {}", user.getEmail());
-            System.out.println("📧 Email nhắc nhở thanh toán đã được gửi đến: " + user.getEmail());
+            log.info("✅ Email nhắc nhở thanh toán đã được đưa vào hàng đợi gửi đến: {}", user.getEmail());
             
         } catch (Exception e) {
             log.error("❌ Failed to send payment reminder email to: {}", user.getEmail(), e);
@@ -60,11 +55,9 @@ public class EmailServiceImpl implements EmailService {
             String subject = "❌ Thông báo hủy đặt sân - ShuttleSync";
             String content = buildBookingCancellationContent(user, booking);
             
-            // Gửi email thật
-            sendEmail(user.getEmail(), subject, content);
+            sendEmail(user.getEmail(), subject, content, "BOOKING", booking.getId());
             
-            log.info("✅ Email thông báo hủy đã được gửi thành công đến: {}", user.getEmail());
-            System.out.println("📧 Email thông báo hủy đã được gửi đến: " + user.getEmail());
+            log.info("✅ Email thông báo hủy đã được đưa vào hàng đợi gửi đến: {}", user.getEmail());
             
         } catch (Exception e) {
             log.error("❌ Failed to send booking cancellation email to: {}", user.getEmail(), e);
@@ -75,11 +68,9 @@ public class EmailServiceImpl implements EmailService {
     @Override
     public void sendNotificationEmail(String to, String subject, String content) {
         try {
-            // Gửi email thật
-            sendEmail(to, subject, content);
+            sendEmail(to, subject, content, "NOTIFICATION", null);
             
-            log.info("✅ Email thông báo đã được gửi thành công đến: {}", to);
-            System.out.println("📧 Email thông báo đã được gửi đến: " + to);
+            log.info("✅ Email thông báo đã được đưa vào hàng đợi gửi đến: {}", to);
             
         } catch (Exception e) {
             log.error("❌ Failed to send email to: {}", to, e);
@@ -87,16 +78,12 @@ public class EmailServiceImpl implements EmailService {
         }
     }
 
-    private void sendEmail(String to, String subject, String content) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom("shuttlesync.system@gmail.com");
-        message.setTo(to);
-        message.setSubject(subject);
-        message.setText(content);
-        
-        log.info("Đang gửi email đến: {} với subject: {}", to, subject);
-        mailSender.send(message);
-        log.info("Email đã được gửi thành công!");
+    /**
+     * Ghi email vào hàng đợi EmailLogs; EmailDeliveryService gửi sau khi transaction commit
+     */
+    private void sendEmail(String to, String subject, String content, String relatedType, Integer relatedId) {
+        log.info("Đưa email vào hàng đợi: {} với subject: {}", to, subject);
+        emailDeliveryService.enqueue(to, subject, content, relatedType, relatedId);
     }
 
     private String buildBookingConfirmationContent(User user, Booking booking) {
@@ -4,6 +4,7 @@ import com.example.shuttlesync.model.HolidayDate;
 import com.example.shuttlesync.model.User;
 import com.example.shuttlesync.repository.HolidayDateRepository;
 import com.example.shuttlesync.service.HolidayDateService;
+import com.example.shuttlesync.service.HolidayCalendar;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -17,6 +18,7 @@ import java.util.Optional;
 public class HolidayDateServiceImpl implements HolidayDateService {
 
     private final HolidayDateRepository holidayDateRepository;
+    private final HolidayCalendar holidayCalendar;
 
     @Override
     public List<HolidayDate> getAllHolidays() {
@@ -42,7 +44,9 @@ public class HolidayDateServiceImpl implements HolidayDateService {
         holidayDate.setIsRecurringYearly(isRecurringYearly);
         holidayDate.setCreatedBy(updatedBy);
         
-        return holidayDateRepository.save(holidayDate);
+        HolidayDate saved = holidayDateRepository.save(holidayDate);
+        holidayCalendar.refreshAfterCommit();
+        return saved;
     }
 
     @Override
@@ -55,12 +59,15 @@ public class HolidayDateServiceImpl implements HolidayDateService {
         holidayDate.setIsRecurringYearly(isRecurringYearly);
         // Không cập nhật createdBy vì đây là trường không thay đổi
         
-        return holidayDateRepository.save(holidayDate);
+        HolidayDate saved = holidayDateRepository.save(holidayDate);
+        holidayCalendar.refreshAfterCommit();
+        return saved;
     }
 
     @Override
     public void deleteHoliday(Integer id) {
         holidayDateRepository.deleteById(id);
+        holidayCalendar.refreshAfterCommit();
     }
 
     @Override
@@ -75,6 +82,6 @@ public class HolidayDateServiceImpl implements HolidayDateService {
 
     @Override
     public boolean isHoliday(LocalDate date) {
-        return holidayDateRepository.isHoliday(date);
+        return holidayCalendar.isHoliday(date);
     }
 } 
\ No newline at end of file
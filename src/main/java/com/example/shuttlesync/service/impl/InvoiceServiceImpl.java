@@ -1,19 +1,27 @@
 package com.example.shuttlesync.service.impl;
 
+import com.example.shuttlesync.dto.CustomerInvoiceSummaryDTO;
 import com.example.shuttlesync.dto.InvoiceDTO;
 import com.example.shuttlesync.dto.InvoiceDetailDTO;
 import com.example.shuttlesync.model.*;
 import com.example.shuttlesync.repository.*;
+import com.example.shuttlesync.service.ReferenceDataRegistry;
+import com.example.shuttlesync.service.InvoicePdfCache;
 import com.example.shuttlesync.service.InvoiceService;
+import com.example.shuttlesync.service.VoucherRedemptionService;
 import com.example.shuttlesync.util.PDFGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.ArrayList;
 import java.util.stream.Collectors;
@@ -29,8 +37,11 @@ public class InvoiceServiceImpl implements InvoiceService {
     private final TimeSlotRepository timeSlotRepository;
     private final ServiceRepository serviceRepository;
     private final SystemChangeLogRepository systemChangeLogRepository;
-    private final BookingStatusTypeRepository bookingStatusTypeRepository;
+    private final ReferenceDataRegistry referenceDataRegistry;
     private final DiscountRepository discountRepository;
+    private final BookingServiceRepository bookingServiceRepository;
+    private final InvoicePdfCache invoicePdfCache;
+    private final VoucherRedemptionService voucherRedemptionService;
 
     @Override
     public List<Invoice> getAllInvoices() {
@@ -41,7 +52,7 @@ public class InvoiceServiceImpl implements InvoiceService {
     @Override
     public Optional<Invoice> getInvoiceById(Integer id) {
         log.info("Fetching invoice with id: {}", id);
-        return invoiceRepository.findById(id);
+        return invoiceRepository.findWithDetailsById(id);
     }
 
     @Override
@@ -63,6 +74,21 @@ public class InvoiceServiceImpl implements InvoiceService {
         return invoiceRepository.findByStatus(status);
     }
 
+    @Override
+    public List<CustomerInvoiceSummaryDTO> getUserInvoicePage(Integer userId, Integer afterId, int size) {
+        return invoiceRepository.findUserInvoicePage(userId, afterId, PageRequest.of(0, size));
+    }
+
+    @Override
+    public long countUserInvoices(Integer userId) {
+        return invoiceRepository.countByUserId(userId);
+    }
+
+    @Override
+    public long countUserInvoicesByStatus(Integer userId, String status) {
+        return invoiceRepository.countByUserIdAndStatus(userId, status);
+    }
+
     @Override
     public Invoice createInvoice(Integer bookingId) {
         log.info("Creating invoice for booking id: {}", bookingId);
@@ -136,108 +162,70 @@ public class InvoiceServiceImpl implements InvoiceService {
         
         BigDecimal totalAmount = timeSlot.getPrice();
         
-        // Parse services từ booking notes và tạo invoice details
-        if (booking.getNotes() != null && booking.getNotes().contains("Services:")) {
-            String notes = booking.getNotes();
-            String[] parts = notes.split("\\|");
+        // Dịch vụ đi kèm đã lưu khi đặt sân, tải cùng Service trong một truy vấn;
+        // booking cũ chưa có dòng BookingServices thì đọc từ ghi chú "Services: ..."
+        List<com.example.shuttlesync.model.BookingService> serviceLines = bookingServiceRepository.findWithServiceByBookingId(bookingId);
+        if (serviceLines.isEmpty()) {
+            serviceLines = parseLegacyServiceLines(booking);
+        }
+        for (com.example.shuttlesync.model.BookingService line : serviceLines) {
+            com.example.shuttlesync.model.Service service = line.getService();
+            BigDecimal amount = line.getUnitPrice().multiply(BigDecimal.valueOf(line.getQuantity()));
             
-            for (String part : parts) {
-                part = part.trim();
-                if (part.startsWith("Services:")) {
-                    String servicesStr = part.substring("Services:".length()).trim();
-                    String[] services = servicesStr.split(",");
-                    
-                    for (String serviceStr : services) {
-                        serviceStr = serviceStr.trim();
-                        // Parse "Service X xY" format
-                        if (serviceStr.startsWith("Service ") && serviceStr.contains(" x")) {
-                            try {
-                                String[] serviceParts = serviceStr.split(" x");
-                                String serviceIdStr = serviceParts[0].replace("Service ", "").trim();
-                                int serviceId = Integer.parseInt(serviceIdStr);
-                                int quantity = Integer.parseInt(serviceParts[1].trim());
-                                
-                                // Tìm service trong database
-                                Optional<com.example.shuttlesync.model.Service> serviceOpt = serviceRepository.findById(serviceId);
-                                if (serviceOpt.isPresent()) {
-                                    com.example.shuttlesync.model.Service service = serviceOpt.get();
-                                    
-                                    // Tạo invoice detail cho service
-                                    InvoiceDetail serviceDetail = new InvoiceDetail();
-                                    serviceDetail.setInvoice(invoice);
-                                    serviceDetail.setService(service);
-                                    serviceDetail.setItemName(service.getServiceName());
-                                    serviceDetail.setQuantity(quantity);
-                                    serviceDetail.setUnitPrice(service.getUnitPrice());
-                                    serviceDetail.setAmount(service.getUnitPrice().multiply(BigDecimal.valueOf(quantity)));
-                                    
-                                    invoice.getInvoiceDetails().add(serviceDetail);
-                                    totalAmount = totalAmount.add(serviceDetail.getAmount());
-                                    
-                                    log.info("Added service detail: {} x{} = {}", service.getServiceName(), quantity, serviceDetail.getAmount());
-                                }
-                            } catch (Exception e) {
-                                log.warn("Failed to parse service: {} - {}", serviceStr, e.getMessage());
-                            }
-                        }
-                    }
-                }
-            }
+            InvoiceDetail serviceDetail = new InvoiceDetail();
+            serviceDetail.setInvoice(invoice);
+            serviceDetail.setService(service);
+            serviceDetail.setItemName(service.getServiceName());
+            serviceDetail.setQuantity(line.getQuantity());
+            serviceDetail.setUnitPrice(line.getUnitPrice());
+            serviceDetail.setAmount(amount);
+            
+            invoice.getInvoiceDetails().add(serviceDetail);
+            totalAmount = totalAmount.add(amount);
+            
+            log.info("Added service detail: {} x{} = {}", service.getServiceName(), line.getQuantity(), amount);
         }
         
         // Calculate amounts
         invoice.setOriginalAmount(totalAmount);
         invoice.setFinalAmount(totalAmount.subtract(invoice.getDiscountAmount()));
         
-        // Parse và apply voucher từ booking notes
-        if (booking.getNotes() != null && booking.getNotes().contains("Voucher:")) {
-            String notes = booking.getNotes();
-            String[] parts = notes.split("\\|");
+        // Áp dụng voucher đã gắn với booking (chỉ voucher đầu tiên)
+        Optional<Discount> voucherOpt = booking.getDiscounts().stream()
+                .min(Comparator.comparing(Discount::getId));
+        if (voucherOpt.isEmpty()) {
+            voucherOpt = parseLegacyVoucher(booking);
+        }
+        if (voucherOpt.isPresent() && !voucherRedemptionService.redeem(voucherOpt.get())) {
+            // Voucher hết lượt giữa lúc đặt sân và lúc lập hóa đơn: không giảm giá
+            log.warn("Voucher {} has reached usage limit, invoice for booking {} is not discounted",
+                    voucherOpt.get().getCode(), bookingId);
+            invoice.setNotes("Voucher " + voucherOpt.get().getCode() + " đã hết lượt sử dụng");
+        } else if (voucherOpt.isPresent()) {
+            Discount voucher = voucherOpt.get();
             
-            for (String part : parts) {
-                part = part.trim();
-                if (part.startsWith("Voucher:")) {
-                    String voucherStr = part.substring("Voucher:".length()).trim();
-                    // Parse "CODE - Name" format
-                    if (voucherStr.contains(" - ")) {
-                        String voucherCode = voucherStr.split(" - ")[0].trim();
-                        
-                        // Tìm voucher trong database
-                        Optional<Discount> voucherOpt = discountRepository.findByCode(voucherCode);
-                        if (voucherOpt.isPresent()) {
-                            Discount voucher = voucherOpt.get();
-                            
-                            // Calculate discount
-                            BigDecimal discountAmount;
-                            if (voucher.getType() == Discount.DiscountType.PERCENTAGE) {
-                                discountAmount = totalAmount.multiply(voucher.getValue().divide(new BigDecimal(100)))
-                                    .setScale(0, BigDecimal.ROUND_DOWN);
-                                
-                                if (voucher.getMaxDiscountAmount() != null && 
-                                    discountAmount.compareTo(voucher.getMaxDiscountAmount()) > 0) {
-                                    discountAmount = voucher.getMaxDiscountAmount();
-                                }
-                            } else {
-                                discountAmount = voucher.getValue();
-                                if (discountAmount.compareTo(totalAmount) > 0) {
-                                    discountAmount = totalAmount;
-                                }
-                            }
-                            
-                            invoice.setDiscountAmount(discountAmount);
-                            invoice.setFinalAmount(totalAmount.subtract(discountAmount));
-                            invoice.setNotes("Voucher: " + voucherCode);
-                            
-                            // Increase voucher usage count
-                            voucher.setUsedCount(voucher.getUsedCount() + 1);
-                            discountRepository.save(voucher);
-                            
-                            log.info("Applied voucher {}: discount = {}", voucherCode, discountAmount);
-                        }
-                    }
-                    break; // Only process first voucher
+            // Calculate discount
+            BigDecimal discountAmount;
+            if (voucher.getType() == Discount.DiscountType.PERCENTAGE) {
+                discountAmount = totalAmount.multiply(voucher.getValue().divide(new BigDecimal(100)))
+                    .setScale(0, BigDecimal.ROUND_DOWN);
+                
+                if (voucher.getMaxDiscountAmount() != null && 
+                    discountAmount.compareTo(voucher.getMaxDiscountAmount()) > 0) {
+                    discountAmount = voucher.getMaxDiscountAmount();
+                }
+            } else {
+                discountAmount = voucher.getValue();
+                if (discountAmount.compareTo(totalAmount) > 0) {
+                    discountAmount = totalAmount;
                 }
             }
+            
+            invoice.setDiscountAmount(discountAmount);
+            invoice.setFinalAmount(totalAmount.subtract(discountAmount));
+            invoice.setNotes("Voucher: " + voucher.getCode());
+            
+            log.info("Applied voucher {}: discount = {}", voucher.getCode(), discountAmount);
         }
         
         Invoice savedInvoice = invoiceRepository.save(invoice);
@@ -247,6 +235,78 @@ public class InvoiceServiceImpl implements InvoiceService {
         return savedInvoice;
     }
 
+    /**
+     * Đọc dịch vụ từ ghi chú dạng cũ "Services: Service 3 x2, Service 5 x1 | ..." của các booking
+     * tạo trước khi có bảng BookingServices. Các dịch vụ được tải bằng một truy vấn, đơn giá lấy theo giá hiện tại.
+     */
+    private List<com.example.shuttlesync.model.BookingService> parseLegacyServiceLines(Booking booking) {
+        String notes = booking.getNotes();
+        if (notes == null || !notes.contains("Services:")) {
+            return List.of();
+        }
+        
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        for (String part : notes.split("\\|")) {
+            part = part.trim();
+            if (!part.startsWith("Services:")) {
+                continue;
+            }
+            for (String serviceStr : part.substring("Services:".length()).split(",")) {
+                serviceStr = serviceStr.trim();
+                if (serviceStr.startsWith("Service ") && serviceStr.contains(" x")) {
+                    try {
+                        String[] serviceParts = serviceStr.split(" x");
+                        int serviceId = Integer.parseInt(serviceParts[0].replace("Service ", "").trim());
+                        int quantity = Integer.parseInt(serviceParts[1].trim());
+                        quantities.merge(serviceId, quantity, Integer::sum);
+                    } catch (NumberFormatException e) {
+                        log.warn("Failed to parse legacy service: {} - {}", serviceStr, e.getMessage());
+                    }
+                }
+            }
+        }
+        if (quantities.isEmpty()) {
+            return List.of();
+        }
+        
+        Map<Integer, com.example.shuttlesync.model.Service> services = serviceRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(com.example.shuttlesync.model.Service::getId, service -> service));
+        List<com.example.shuttlesync.model.BookingService> lines = new ArrayList<>();
+        quantities.forEach((serviceId, quantity) -> {
+            com.example.shuttlesync.model.Service service = services.get(serviceId);
+            if (service == null) {
+                log.warn("Legacy service {} of booking {} no longer exists", serviceId, booking.getId());
+                return;
+            }
+            com.example.shuttlesync.model.BookingService line = new com.example.shuttlesync.model.BookingService();
+            line.setBooking(booking);
+            line.setService(service);
+            line.setQuantity(quantity);
+            line.setUnitPrice(service.getUnitPrice());
+            lines.add(line);
+        });
+        return lines;
+    }
+
+    /**
+     * Đọc voucher từ ghi chú dạng cũ "Voucher: CODE - Tên voucher" của các booking chưa gắn BookingDiscounts
+     */
+    private Optional<Discount> parseLegacyVoucher(Booking booking) {
+        String notes = booking.getNotes();
+        if (notes == null || !notes.contains("Voucher:")) {
+            return Optional.empty();
+        }
+        
+        for (String part : notes.split("\\|")) {
+            part = part.trim();
+            if (part.startsWith("Voucher:")) {
+                String voucherCode = part.substring("Voucher:".length()).split(" - ")[0].trim();
+                return voucherCode.isEmpty() ? Optional.empty() : discountRepository.findByCode(voucherCode);
+            }
+        }
+        return Optional.empty();
+    }
+
     @Override
     public Invoice updateInvoiceStatus(Integer invoiceId, String newStatus, User changedBy) {
         log.info("Updating invoice {} status to: {}", invoiceId, newStatus);
@@ -258,6 +318,7 @@ public class InvoiceServiceImpl implements InvoiceService {
         invoice.setStatus(newStatus);
         
         Invoice updatedInvoice = invoiceRepository.save(invoice);
+        invoicePdfCache.invalidate(invoiceId);
         
         // Log the change
         if (changedBy != null) {
@@ -309,6 +370,7 @@ public class InvoiceServiceImpl implements InvoiceService {
         BigDecimal newOriginalAmount = calculateTotalAmount(invoiceId);
         invoice.setOriginalAmount(newOriginalAmount);
         invoice.setFinalAmount(newOriginalAmount.subtract(invoice.getDiscountAmount()));
+        invoicePdfCache.invalidate(invoiceId);
         
         return invoiceRepository.save(invoice);
     }
@@ -326,6 +388,7 @@ public class InvoiceServiceImpl implements InvoiceService {
         BigDecimal newOriginalAmount = calculateTotalAmount(invoiceId);
         invoice.setOriginalAmount(newOriginalAmount);
         invoice.setFinalAmount(newOriginalAmount.subtract(invoice.getDiscountAmount()));
+        invoicePdfCache.invalidate(invoiceId);
         
         return invoiceRepository.save(invoice);
     }
@@ -437,12 +500,8 @@ public class InvoiceServiceImpl implements InvoiceService {
                     if (oldVoucherCode != null && !oldVoucherCode.isEmpty()) {
                         Optional<Discount> oldVoucherOpt = discountRepository.findByCode(oldVoucherCode);
                         if (oldVoucherOpt.isPresent()) {
-                            Discount oldVoucher = oldVoucherOpt.get();
-                            if (oldVoucher.getUsedCount() > 0) {
-                                oldVoucher.setUsedCount(oldVoucher.getUsedCount() - 1);
-                                discountRepository.save(oldVoucher);
-                                log.info("Decreased usage count for old voucher: {}", oldVoucherCode);
-                            }
+                            voucherRedemptionService.release(oldVoucherOpt.get());
+                            log.info("Decreased usage count for old voucher: {}", oldVoucherCode);
                         }
                     }
                 }
@@ -510,9 +569,10 @@ public class InvoiceServiceImpl implements InvoiceService {
             invoice.setDiscountAmount(discountAmount);
             invoice.setFinalAmount(invoice.getOriginalAmount().subtract(discountAmount));
             
-            // Tăng số lần sử dụng voucher mới
-            voucher.setUsedCount(voucher.getUsedCount() + 1);
-            discountRepository.save(voucher);
+            // Tăng số lần sử dụng voucher mới (UPDATE có điều kiện, có thể hết lượt ngay lúc này)
+            if (!voucherRedemptionService.redeem(voucher)) {
+                throw new IllegalStateException("Voucher đã hết lượt sử dụng");
+            }
             
             // BƯỚC 5: Cập nhật notes - THAY THẾ hoàn toàn thay vì append để tránh vượt quá độ dài
             String voucherNote = "Voucher: " + voucher.getCode();
@@ -556,7 +616,7 @@ public class InvoiceServiceImpl implements InvoiceService {
             Booking booking = invoice.getBooking();
             if (booking != null) {
                 // Lấy BookingStatusType cho trạng thái "Đã xác nhận"
-                BookingStatusType confirmedStatus = bookingStatusTypeRepository.findByName("Đã xác nhận")
+                BookingStatusType confirmedStatus = referenceDataRegistry.findBookingStatusByName("Đã xác nhận")
                     .orElseThrow(() -> new IllegalStateException("Không tìm thấy trạng thái Đã xác nhận"));
                 booking.setStatus(confirmedStatus);
                 bookingRepository.save(booking);
@@ -565,6 +625,7 @@ public class InvoiceServiceImpl implements InvoiceService {
         }
         
         Invoice updatedInvoice = invoiceRepository.save(invoice);
+        invoicePdfCache.invalidate(updatedInvoice.getId());
         log.info("Updated invoice {} status from {} to {}", id, oldStatus, status);
         return updatedInvoice;
     }
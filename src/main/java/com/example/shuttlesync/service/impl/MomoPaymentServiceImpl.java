@@ -13,7 +13,8 @@ import com.example.shuttlesync.repository.CustomerBookingInfoRepository;
 import com.example.shuttlesync.repository.InvoiceRepository;
 import com.example.shuttlesync.repository.MomoPaymentRepository;
 import com.example.shuttlesync.repository.PaymentRepository;
-import com.example.shuttlesync.repository.PaymentStatusTypeRepository;
+import com.example.shuttlesync.service.CustomerStatsService;
+import com.example.shuttlesync.service.ReferenceDataRegistry;
 import com.example.shuttlesync.service.MomoPaymentService;
 import com.example.shuttlesync.service.PaymentService;
 import lombok.RequiredArgsConstructor;
@@ -48,7 +49,8 @@ public class MomoPaymentServiceImpl implements MomoPaymentService {
 
     private static final Logger logger = Logger.getLogger(MomoPaymentServiceImpl.class.getName());
     private final PaymentRepository paymentRepository;
-    private final PaymentStatusTypeRepository paymentStatusTypeRepository;
+    private final ReferenceDataRegistry referenceDataRegistry;
+    private final CustomerStatsService customerStatsService;
     private final BookingRepository bookingRepository;
     private final MomoPaymentRepository momoPaymentRepository;
     private final InvoiceRepository invoiceRepository;
@@ -92,7 +94,7 @@ public class MomoPaymentServiceImpl implements MomoPaymentService {
             payment.setPaymentMethod("MOMO");
             
             // Lấy PaymentStatusType "Chưa thanh toán" (giả sử ID = 1)
-            PaymentStatusType pendingStatus = paymentStatusTypeRepository.findById((byte)1)
+            PaymentStatusType pendingStatus = referenceDataRegistry.findPaymentStatus((byte)1)
                     .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Chưa thanh toán'"));
             payment.setPaymentStatus(pendingStatus);
             payment = paymentRepository.save(payment);
@@ -239,11 +241,12 @@ public class MomoPaymentServiceImpl implements MomoPaymentService {
 
                 // Cập nhật payment với trạng thái "Đã thanh toán" (ID = 2)
                 Payment payment = momoPayment.getPayment();
-                PaymentStatusType paidStatus = paymentStatusTypeRepository.findById((byte)2)
+                PaymentStatusType paidStatus = referenceDataRegistry.findPaymentStatus((byte)2)
                         .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Đã thanh toán'"));
                 payment.setPaymentStatus(paidStatus);
                 payment.setPaidAt(LocalDateTime.now());
                 paymentRepository.save(payment);
+                customerStatsService.invalidate(payment.getBooking().getUser().getId());
 
                 // Cập nhật invoice status
                 Invoice invoice = payment.getInvoice();
@@ -5,6 +5,8 @@ import com.example.shuttlesync.exeption.BadRequestException;
 import com.example.shuttlesync.exeption.ResourceNotFoundException;
 import com.example.shuttlesync.model.*;
 import com.example.shuttlesync.repository.*;
+import com.example.shuttlesync.service.ReferenceDataRegistry;
+import com.example.shuttlesync.service.CustomerStatsService;
 import com.example.shuttlesync.service.PaymentService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -27,10 +29,10 @@ public class PaymentServiceImpl implements PaymentService {
     private final PaymentRepository paymentRepository;
     private final BookingRepository bookingRepository;
     private final UserRepository userRepository;
-    private final PaymentStatusTypeRepository paymentStatusTypeRepository;
     private final DiscountRepository discountRepository;
     private final InvoiceRepository invoiceRepository;
-    private final BookingStatusTypeRepository bookingStatusTypeRepository;
+    private final ReferenceDataRegistry referenceDataRegistry;
+    private final CustomerStatsService customerStatsService;
     private static final Logger log = LoggerFactory.getLogger(PaymentServiceImpl.class);
 
     @Override
@@ -52,7 +54,7 @@ public class PaymentServiceImpl implements PaymentService {
 
     @Override
     public List<Payment> getPaymentsByStatus(Byte statusId) {
-        PaymentStatusType status = paymentStatusTypeRepository.findById(statusId)
+        PaymentStatusType status = referenceDataRegistry.findPaymentStatus(statusId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái thanh toán với ID: " + statusId));
         return paymentRepository.findByPaymentStatus(status);
     }
@@ -82,7 +84,7 @@ public class PaymentServiceImpl implements PaymentService {
         payment.setPaymentMethod(paymentMethod);
         
         // Thiết lập trạng thái mặc định là "Chưa thanh toán"
-        PaymentStatusType unpaidStatus = paymentStatusTypeRepository.findById((byte)1)
+        PaymentStatusType unpaidStatus = referenceDataRegistry.findPaymentStatus((byte)1)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Chưa thanh toán'"));
         payment.setPaymentStatus(unpaidStatus);
         
@@ -102,7 +104,7 @@ public class PaymentServiceImpl implements PaymentService {
         Payment payment = getPaymentById(paymentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy thanh toán với ID: " + paymentId));
 
-        PaymentStatusType newStatus = paymentStatusTypeRepository.findById(newStatusId)
+        PaymentStatusType newStatus = referenceDataRegistry.findPaymentStatus(newStatusId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái thanh toán với ID: " + newStatusId));
 
         payment.setPaymentStatus(newStatus);
@@ -110,6 +112,8 @@ public class PaymentServiceImpl implements PaymentService {
             payment.setPaidAt(LocalDateTime.now());
         }
 
+        customerStatsService.invalidate(payment.getBooking().getUser().getId());
+
         return paymentRepository.save(payment);
     }
 
@@ -157,6 +161,8 @@ public class PaymentServiceImpl implements PaymentService {
         // Cập nhật số tiền thanh toán
         payment.setAmount(payment.getAmount().subtract(discountAmount));
         
+        customerStatsService.invalidate(payment.getBooking().getUser().getId());
+        
         return paymentRepository.save(payment);
     }
 
@@ -191,6 +197,8 @@ public class PaymentServiceImpl implements PaymentService {
         // Cập nhật số tiền thanh toán (cộng lại số tiền đã giảm)
         payment.setAmount(payment.getAmount().add(discountAmount));
 
+        customerStatsService.invalidate(payment.getBooking().getUser().getId());
+
         return paymentRepository.save(payment);
     }
 
@@ -225,7 +233,7 @@ public class PaymentServiceImpl implements PaymentService {
                     booking.getStatus() != null ? booking.getStatus().getName() : "null");
 
             // Cập nhật trạng thái thanh toán
-            PaymentStatusType paidStatus = paymentStatusTypeRepository.findById((byte)2)
+            PaymentStatusType paidStatus = referenceDataRegistry.findPaymentStatus((byte)2)
                     .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Đã thanh toán'"));
             payment.setPaymentStatus(paidStatus);
             payment.setPaymentMethod(paymentMethod);
@@ -242,7 +250,7 @@ public class PaymentServiceImpl implements PaymentService {
             }
 
             // Cập nhật trạng thái booking
-            BookingStatusType paidBookingStatus = bookingStatusTypeRepository.findById((byte)2)
+            BookingStatusType paidBookingStatus = referenceDataRegistry.findBookingStatus((byte)2)
                     .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Đã xác nhận' cho booking"));
             log.info("Tìm thấy trạng thái 'Đã xác nhận' với ID: {}, tên: {}", 
                     paidBookingStatus.getId(), paidBookingStatus.getName());
@@ -1,25 +1,33 @@
 package com.example.shuttlesync.service.impl;
 
 import com.example.shuttlesync.model.PriceSetting;
+import com.example.shuttlesync.model.TimeSlot;
 import com.example.shuttlesync.model.User;
 import com.example.shuttlesync.repository.PriceSettingRepository;
-import com.example.shuttlesync.service.HolidayDateService;
+import com.example.shuttlesync.repository.TimeSlotRepository;
 import com.example.shuttlesync.service.PriceSettingService;
+import com.example.shuttlesync.service.PricingEngine;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class PriceSettingServiceImpl implements PriceSettingService {
 
+    private static final int MAX_GRID_DAYS = 93;
+
     private final PriceSettingRepository priceSettingRepository;
-    private final HolidayDateService holidayDateService;
+    private final TimeSlotRepository timeSlotRepository;
+    private final PricingEngine pricingEngine;
 
     @Override
     public List<PriceSetting> getAllPriceSettings() {
@@ -48,34 +56,24 @@ public class PriceSettingServiceImpl implements PriceSettingService {
 
     @Override
     public BigDecimal getPriceForCourtAndDate(Integer courtId, LocalDate date, Integer timeSlotIndex) {
-        // Xác định loại ngày (thường, cuối tuần, lễ)
-        PriceSetting.DayType dayType = determineDayType(date);
-        
-        // Tìm cấu hình giá phù hợp
-        Optional<PriceSetting> priceSetting = priceSettingRepository.findByCourtIdAndTimeSlotIndexAndDayTypeAndEffectiveFromLessThanEqualAndEffectiveToGreaterThanEqualOrCourtIdAndTimeSlotIndexAndDayTypeAndEffectiveFromLessThanEqualAndEffectiveToIsNull(
-                courtId, timeSlotIndex, dayType, date, date,
-                courtId, timeSlotIndex, dayType, date);
-        
-        if (priceSetting.isPresent()) {
-            return priceSetting.get().getPrice();
+        return pricingEngine.findPrice(courtId, timeSlotIndex, date)
+                .orElseThrow(() -> new RuntimeException("No price setting found for the given criteria"));
+    }
+
+    @Override
+    public Map<LocalDate, Map<Integer, BigDecimal>> getPriceGrid(Integer courtId, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Ngày kết thúc phải sau ngày bắt đầu");
         }
-        
-        // Nếu không tìm thấy cấu hình cụ thể cho sân và khung giờ, tìm cấu hình chung cho loại ngày
-        Optional<PriceSetting> generalPriceSetting = priceSettingRepository.findByCourtIdIsNullAndTimeSlotIndexAndDayTypeAndEffectiveFromLessThanEqualAndEffectiveToGreaterThanEqualOrCourtIdIsNullAndTimeSlotIndexAndDayTypeAndEffectiveFromLessThanEqualAndEffectiveToIsNull(
-                timeSlotIndex, dayType, date, date,
-                timeSlotIndex, dayType, date);
-        
-        if (generalPriceSetting.isPresent()) {
-            return generalPriceSetting.get().getPrice();
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_GRID_DAYS) {
+            throw new IllegalArgumentException("Chỉ hỗ trợ bảng giá tối đa " + MAX_GRID_DAYS + " ngày");
         }
-        
-        // Nếu không tìm thấy cấu hình cho khung giờ cụ thể, tìm cấu hình chung cho tất cả khung giờ
-        Optional<PriceSetting> defaultPriceSetting = priceSettingRepository.findByCourtIdIsNullAndTimeSlotIndexIsNullAndDayTypeAndEffectiveFromLessThanEqualAndEffectiveToGreaterThanEqualOrCourtIdIsNullAndTimeSlotIndexIsNullAndDayTypeAndEffectiveFromLessThanEqualAndEffectiveToIsNull(
-                dayType, date, date,
-                dayType, date);
-        
-        return defaultPriceSetting.map(PriceSetting::getPrice)
-                .orElseThrow(() -> new RuntimeException("No price setting found for the given criteria"));
+        List<Integer> slotIndexes = timeSlotRepository.findByCourtId(courtId).stream()
+                .map(TimeSlot::getSlotIndex)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        return pricingEngine.priceGrid(courtId, slotIndexes, from, to);
     }
 
     @Override
@@ -93,7 +91,9 @@ public class PriceSettingServiceImpl implements PriceSettingService {
         priceSetting.setUpdatedAt(LocalDateTime.now());
         priceSetting.setUpdatedBy(updatedBy);
         
-        return priceSettingRepository.save(priceSetting);
+        PriceSetting saved = priceSettingRepository.save(priceSetting);
+        pricingEngine.rebuildAfterCommit();
+        return saved;
     }
 
     @Override
@@ -111,7 +111,9 @@ public class PriceSettingServiceImpl implements PriceSettingService {
         priceSetting.setUpdatedAt(LocalDateTime.now());
         priceSetting.setUpdatedBy(updatedBy);
         
-        return priceSettingRepository.save(priceSetting);
+        PriceSetting saved = priceSettingRepository.save(priceSetting);
+        pricingEngine.rebuildAfterCommit();
+        return saved;
     }
 
     @Override
@@ -126,21 +128,6 @@ public class PriceSettingServiceImpl implements PriceSettingService {
         priceSetting.setUpdatedBy(updatedBy);
         
         priceSettingRepository.save(priceSetting);
+        pricingEngine.rebuildAfterCommit();
     }
-    
-    private PriceSetting.DayType determineDayType(LocalDate date) {
-        // Kiểm tra xem có phải ngày lễ không
-        if (holidayDateService.isHoliday(date)) {
-            return PriceSetting.DayType.holiday;
-        }
-        
-        // Kiểm tra xem có phải cuối tuần không (thứ 7 hoặc chủ nhật)
-        int dayOfWeek = date.getDayOfWeek().getValue();
-        if (dayOfWeek == 6 || dayOfWeek == 7) {
-            return PriceSetting.DayType.weekend;
-        }
-        
-        // Ngày thường
-        return PriceSetting.DayType.weekday;
-    }
-} 
\ No newline at end of file
+}
@@ -6,6 +6,7 @@ import com.example.shuttlesync.model.ServiceType;
 import com.example.shuttlesync.exeption.ResourceNotFoundException;
 import com.example.shuttlesync.repository.ServiceRepository;
 import com.example.shuttlesync.repository.ServiceTypeRepository;
+import com.example.shuttlesync.service.ReferenceDataRegistry;
 import com.example.shuttlesync.service.ServiceService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -27,6 +28,7 @@ import java.util.stream.Collectors;
 public class ServiceServiceImpl implements ServiceService {
     private final ServiceRepository serviceRepository;
     private final ServiceTypeRepository serviceTypeRepository;
+    private final ReferenceDataRegistry referenceDataRegistry;
 
     // --- Service methods ---
     @Override
@@ -43,7 +45,7 @@ public class ServiceServiceImpl implements ServiceService {
 
     @Override
     public List<Service> getServicesByType(Integer typeId) {
-        if (!serviceTypeRepository.existsById(typeId)) {
+        if (referenceDataRegistry.findServiceType(typeId).isEmpty()) {
             throw new ResourceNotFoundException("Không tìm thấy loại dịch vụ với ID: " + typeId);
         }
         return serviceRepository.findByServiceTypeId(typeId);
@@ -78,7 +80,7 @@ public class ServiceServiceImpl implements ServiceService {
         
         // Xử lý serviceType
         if (serviceDTO.getServiceTypeId() != null && serviceDTO.getServiceTypeId() > 0) {
-            ServiceType serviceType = serviceTypeRepository.findById(serviceDTO.getServiceTypeId())
+            ServiceType serviceType = referenceDataRegistry.findServiceType(serviceDTO.getServiceTypeId())
                     .orElseThrow(() -> new ResourceNotFoundException(
                             "Không tìm thấy loại dịch vụ với ID: " + serviceDTO.getServiceTypeId()));
             service.setServiceType(serviceType);
@@ -114,7 +116,7 @@ public class ServiceServiceImpl implements ServiceService {
         // Cập nhật serviceType nếu có
         if (serviceDTO.getServiceTypeId() != null) {
             if (serviceDTO.getServiceTypeId() > 0) {
-                ServiceType serviceType = serviceTypeRepository.findById(serviceDTO.getServiceTypeId())
+                ServiceType serviceType = referenceDataRegistry.findServiceType(serviceDTO.getServiceTypeId())
                         .orElseThrow(() -> new ResourceNotFoundException(
                                 "Không tìm thấy loại dịch vụ với ID: " + serviceDTO.getServiceTypeId()));
                 service.setServiceType(serviceType);
@@ -134,7 +136,7 @@ public class ServiceServiceImpl implements ServiceService {
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy dịch vụ với ID: " + id));
         
         if (serviceTypeId != null && serviceTypeId > 0) {
-            ServiceType serviceType = serviceTypeRepository.findById(serviceTypeId)
+            ServiceType serviceType = referenceDataRegistry.findServiceType(serviceTypeId)
                     .orElseThrow(() -> new ResourceNotFoundException(
                             "Không tìm thấy loại dịch vụ với ID: " + serviceTypeId));
             service.setServiceType(serviceType);
@@ -194,12 +196,12 @@ public class ServiceServiceImpl implements ServiceService {
     // --- ServiceType methods ---
     @Override
     public List<ServiceType> getAllServiceTypes() {
-        return serviceTypeRepository.findAll();
+        return referenceDataRegistry.getServiceTypes();
     }
 
     @Override
     public Optional<ServiceType> getServiceTypeById(Integer id) {
-        return serviceTypeRepository.findById(id);
+        return referenceDataRegistry.findServiceType(id);
     }
     
     @Override
@@ -231,7 +233,9 @@ public class ServiceServiceImpl implements ServiceService {
         serviceType.setTypeName(name.trim());
         serviceType.setDescription(description != null ? description.trim() : null);
         log.info("Creating new service type: {}", name);
-        return serviceTypeRepository.save(serviceType);
+        ServiceType saved = serviceTypeRepository.save(serviceType);
+        referenceDataRegistry.reloadAfterCommit();
+        return saved;
     }
 
     @Override
@@ -254,7 +258,9 @@ public class ServiceServiceImpl implements ServiceService {
         }
         
         log.info("Updated service type: {}", serviceType.getTypeName());
-        return serviceTypeRepository.save(serviceType);
+        ServiceType saved = serviceTypeRepository.save(serviceType);
+        referenceDataRegistry.reloadAfterCommit();
+        return saved;
     }
 
     @Override
@@ -270,6 +276,7 @@ public class ServiceServiceImpl implements ServiceService {
         }
         
         serviceTypeRepository.deleteById(id);
+        referenceDataRegistry.reloadAfterCommit();
         log.info("Deleted service type with ID: {}", id);
     }
     
@@ -1,7 +1,7 @@
 package com.example.shuttlesync.service.impl;
 
 import com.example.shuttlesync.model.StatusType;
-import com.example.shuttlesync.repository.StatusTypeRepository;
+import com.example.shuttlesync.service.ReferenceDataRegistry;
 import com.example.shuttlesync.service.StatusTypeService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -13,20 +13,20 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class StatusTypeServiceImpl implements StatusTypeService {
 
-    private final StatusTypeRepository statusTypeRepository;
+    private final ReferenceDataRegistry referenceDataRegistry;
 
     @Override
     public List<StatusType> getAllStatusTypes() {
-        return statusTypeRepository.findAll();
+        return referenceDataRegistry.getStatusTypes();
     }
 
     @Override
     public Optional<StatusType> getStatusTypeById(Byte id) {
-        return statusTypeRepository.findById(id);
+        return referenceDataRegistry.findStatusType(id);
     }
 
     @Override
     public Optional<StatusType> getStatusTypeByName(String name) {
-        return statusTypeRepository.findByName(name);
+        return referenceDataRegistry.findStatusTypeByName(name);
     }
 } 
\ No newline at end of file
@@ -1,31 +1,48 @@
 package com.example.shuttlesync.service.impl;
 
+import com.example.shuttlesync.dto.ExpirySweepResult;
+import com.example.shuttlesync.event.BookingsCompletedEvent;
+import com.example.shuttlesync.event.BookingsCompletedEvent.CompletedBooking;
 import com.example.shuttlesync.exeption.ResourceNotFoundException;
 import com.example.shuttlesync.model.*;
 import com.example.shuttlesync.repository.*;
+import com.example.shuttlesync.service.CourtAvailabilityIndex;
+import com.example.shuttlesync.service.HolidayCalendar;
+import com.example.shuttlesync.service.PricingEngine;
+import com.example.shuttlesync.service.ReferenceDataRegistry;
 import com.example.shuttlesync.service.TimeSlotService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.time.DayOfWeek;
+import java.sql.Date;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class TimeSlotServiceImpl implements TimeSlotService {
 
+    private static final BigDecimal DEFAULT_PRICE = new BigDecimal("200000");
+
     private final TimeSlotRepository timeSlotRepository;
     private final CourtRepository courtRepository;
-    private final StatusTypeRepository statusTypeRepository;
     private final TimeSlotConfigRepository timeSlotConfigRepository;
-    private final PriceSettingRepository priceSettingRepository;
     private final BookingRepository bookingRepository;
-    private final HolidayDateRepository holidayDateRepository;
     private final SystemChangeLogRepository systemChangeLogRepository;
-    private final BookingStatusTypeRepository bookingStatusTypeRepository;
+    private final ReferenceDataRegistry referenceDataRegistry;
+    private final CourtAvailabilityIndex availabilityIndex;
+    private final PricingEngine pricingEngine;
+    private final HolidayCalendar holidayCalendar;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.expiry.chunk-size:500}")
+    private int expiryChunkSize;
 
     @Override
     public List<TimeSlot> getAllTimeSlotsByCourt(Integer courtId) {
@@ -39,10 +56,10 @@ public class TimeSlotServiceImpl implements TimeSlotService {
         Court court = courtRepository.findById(courtId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy sân với ID: " + courtId));
         
-        StatusType trongStatus = statusTypeRepository.findById((byte)1)
-                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Trống'"));
-        
-        return timeSlotRepository.findAvailableTimeSlotsByCourtAndDate(courtId, date);
+        // Lọc các khung giờ đã đặt bằng chỉ mục trong bộ nhớ
+        return timeSlotRepository.findByCourtOrderBySlotIndexAsc(court).stream()
+                .filter(slot -> !availabilityIndex.isBooked(courtId, slot.getId(), date))
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -52,7 +69,7 @@ public class TimeSlotServiceImpl implements TimeSlotService {
         LocalTime endTime = config.getEndTimeLastSlot();
         
         List<Court> courts = courtRepository.findAll();
-        StatusType trongStatus = statusTypeRepository.findById((byte)1)
+        StatusType trongStatus = referenceDataRegistry.findStatusType((byte)1)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Trống'"));
         
         for (Court court : courts) {
@@ -78,13 +95,11 @@ public class TimeSlotServiceImpl implements TimeSlotService {
                     newSlot.setEndTime(slotEndTime);
                     newSlot.setStatus(trongStatus);
                     
-                    // Lấy giá mặc định từ PriceSetting
-                    String dayType = "weekday"; // Mặc định
-                    
-                    // Sử dụng giá mặc định
-                    newSlot.setPrice(new BigDecimal("200000")); // Giá mặc định nếu không có cấu hình
+                    // Lấy giá từ bảng giá, dùng giá mặc định nếu không có cấu hình
+                    LocalDate today = LocalDate.now();
+                    newSlot.setPrice(pricingEngine.findPrice(court.getId(), slotIndex, today).orElse(DEFAULT_PRICE));
                     
-                    newSlot.setEffectiveDate(LocalDate.now());
+                    newSlot.setEffectiveDate(today);
                     timeSlotRepository.save(newSlot);
                     
                     // Ghi log thay đổi
@@ -123,10 +138,9 @@ public class TimeSlotServiceImpl implements TimeSlotService {
         }
         
         TimeSlot timeSlot = timeSlots.get(0);
-        String dayType = getDayType(date);
         
         // Lấy giá từ PriceSetting hoặc sử dụng giá mặc định nếu không tìm thấy
-        BigDecimal price = new BigDecimal("200000"); // Giá mặc định
+        BigDecimal price = pricingEngine.findPrice(courtId, slotIndex, date).orElse(DEFAULT_PRICE);
         
         // Cập nhật giá cho timeSlot
         timeSlot.setPrice(price);
@@ -137,7 +151,7 @@ public class TimeSlotServiceImpl implements TimeSlotService {
     @Override
     public boolean isTimeSlotAvailable(Court court, TimeSlot timeSlot, LocalDate bookingDate) {
         // Kiểm tra xem time slot có ở trạng thái "Trống" không
-        StatusType trongStatus = statusTypeRepository.findById((byte)1)
+        StatusType trongStatus = referenceDataRegistry.findStatusType((byte)1)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Trống'"));
         
         if (!timeSlot.getStatus().getId().equals(trongStatus.getId())) {
@@ -145,33 +159,20 @@ public class TimeSlotServiceImpl implements TimeSlotService {
         }
         
         // Kiểm tra xem đã có booking nào cho time slot này vào ngày này chưa
-        // Sử dụng phương thức isTimeSlotBooked thay vì existsByCourtAndTimeSlotAndBookingDate
-        return !bookingRepository.isTimeSlotBooked(court, timeSlot, bookingDate);
+        // Tra trong chỉ mục khung giờ đã đặt thay vì truy vấn database
+        return !availabilityIndex.isBooked(court.getId(), timeSlot.getId(), bookingDate);
     }
 
     @Override
     public String getDayType(LocalDate date) {
-        // Kiểm tra xem ngày có phải là ngày lễ không
-        // Sử dụng query thay vì existsByHolidayDate
-        boolean isHoliday = false; // Thay bằng logic kiểm tra ngày lễ
-        if (isHoliday) {
-            return "holiday";
-        }
-        
-        // Kiểm tra xem ngày có phải là cuối tuần không
-        DayOfWeek dayOfWeek = date.getDayOfWeek();
-        if (dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY) {
-            return "weekend";
-        }
-        
-        // Nếu không phải cuối tuần hoặc ngày lễ, thì là ngày thường
-        return "weekday";
+        // Tra lịch ngày lễ/cuối tuần đã tính sẵn
+        return holidayCalendar.dayTypeOf(date).name();
     }
     
     @Override
     public int resetPastTimeSlots(LocalDate date) {
         // Lấy trạng thái "Trống" từ repository
-        StatusType trongStatus = statusTypeRepository.findById((byte)1)
+        StatusType trongStatus = referenceDataRegistry.findStatusType((byte)1)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Trống'"));
         
         // Tìm tất cả các khung giờ đã đặt cho ngày đã qua
@@ -190,48 +191,33 @@ public class TimeSlotServiceImpl implements TimeSlotService {
     }
     
     @Override
-    public int resetExpiredTimeSlots(LocalDate date, LocalTime currentTime) {
-        try {
-            // Lấy trạng thái "Trống" từ repository
-            StatusType trongStatus = statusTypeRepository.findById((byte)1)
-                    .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Trống'"));
-            
-            // Lấy trạng thái "Đã hoàn thành" cho booking (ID = 4)
-            BookingStatusType completedStatus = bookingStatusTypeRepository.findById((byte)4)
-                    .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy trạng thái 'Đã hoàn thành'"));
-            
-            // Tìm tất cả các khung giờ đã kết thúc cho ngày hiện tại, dựa trên các booking đang hoạt động
-            List<TimeSlot> expiredTimeSlots = timeSlotRepository.findExpiredTimeSlotsForBookings(date, currentTime);
-            
-            int updatedCount = 0;
-            
-            for (TimeSlot timeSlot : expiredTimeSlots) {
-                // Tìm và cập nhật trạng thái các booking liên quan
-                List<Booking> bookings = bookingRepository.findByCourtAndBookingDateAndTimeSlot(
-                        timeSlot.getCourt(), date, timeSlot);
-                
-                for (Booking booking : bookings) {
-                    // Chỉ cập nhật các booking đang ở trạng thái "Chờ xác nhận" (1) hoặc "Đã xác nhận" (2)
-                    // Không cập nhật các booking đã ở trạng thái "Đã hủy" (3)
-                    if (booking.getStatus().getId() == 1 || booking.getStatus().getId() == 2) {
-                        booking.setStatus(completedStatus);
-                        bookingRepository.save(booking);
-                    }
-                }
-                
-                // Đặt lại trạng thái timeSlot thành "Trống" cho tất cả các slot đã hết hạn
-                // bất kể booking ở trạng thái nào
-                timeSlot.setStatus(trongStatus);
-                timeSlotRepository.save(timeSlot);
-                updatedCount++;
+    public ExpirySweepResult resetExpiredTimeSlots(LocalDate fromDate, LocalDate date, LocalTime currentTime) {
+        // Cập nhật theo từng lô để không giữ khóa quá lâu khi có nhiều ngày bị bỏ lỡ
+        List<CompletedBooking> completed = new ArrayList<>();
+        List<Object[]> rows;
+        do {
+            rows = bookingRepository.completeExpiredBookings(fromDate, date, currentTime, expiryChunkSize);
+            for (Object[] row : rows) {
+                completed.add(new CompletedBooking(((Number) row[0]).intValue(), ((Number) row[1]).intValue(),
+                        ((Number) row[2]).intValue(), ((Number) row[3]).intValue(), toLocalDate(row[4])));
             }
-            
-            return updatedCount;
-        } catch (Exception e) {
-            // Log lỗi và ném ngoại lệ để xử lý ở tầng trên
-            System.err.println("Lỗi khi reset khung giờ hết hạn: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
+        } while (rows.size() >= expiryChunkSize);
+
+        int resetTimeSlots = 0;
+        int updated;
+        do {
+            updated = timeSlotRepository.resetExpiredTimeSlots(fromDate, date, currentTime, expiryChunkSize);
+            resetTimeSlots += updated;
+        } while (updated >= expiryChunkSize);
+
+        if (!completed.isEmpty()) {
+            // Cập nhật bằng SQL không qua entity listener nên phát một sự kiện chung cho cả lần quét
+            eventPublisher.publishEvent(new BookingsCompletedEvent(fromDate, date, completed));
         }
+        return new ExpirySweepResult(completed.size(), resetTimeSlots);
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        return value instanceof Date sqlDate ? sqlDate.toLocalDate() : (LocalDate) value;
     }
 }
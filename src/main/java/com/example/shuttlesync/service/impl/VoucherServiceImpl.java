@@ -1,11 +1,16 @@
 package com.example.shuttlesync.service.impl;
 
+import com.example.shuttlesync.exeption.ConflictException;
 import com.example.shuttlesync.model.Discount;
 import com.example.shuttlesync.model.SystemChangeLog;
 import com.example.shuttlesync.model.User;
 import com.example.shuttlesync.repository.DiscountRepository;
 import com.example.shuttlesync.repository.SystemChangeLogRepository;
+import com.example.shuttlesync.service.VoucherAutoGiftService;
+import com.example.shuttlesync.service.VoucherCatalog;
+import com.example.shuttlesync.service.VoucherRedemptionService;
 import com.example.shuttlesync.service.VoucherService;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -29,6 +34,10 @@ public class VoucherServiceImpl implements VoucherService {
 
     private final DiscountRepository discountRepository;
     private final SystemChangeLogRepository systemChangeLogRepository;
+    private final VoucherAutoGiftService voucherAutoGiftService;
+    private final VoucherRedemptionService voucherRedemptionService;
+    private final VoucherCatalog voucherCatalog;
+    private final EntityManager entityManager;
 
     @Override
     public List<Discount> getAllVouchers() {
@@ -70,6 +79,7 @@ public class VoucherServiceImpl implements VoucherService {
         validateVoucherData(voucher);
         
         Discount savedVoucher = discountRepository.save(voucher);
+        voucherCatalog.refreshAfterCommit();
         log.info("Created voucher with id: {} and code: {}", savedVoucher.getId(), savedVoucher.getCode());
         
         return savedVoucher;
@@ -96,6 +106,7 @@ public class VoucherServiceImpl implements VoucherService {
         voucher.setCreatedAt(existingVoucher.getCreatedAt());
         
         Discount updatedVoucher = discountRepository.save(voucher);
+        voucherCatalog.refreshAfterCommit();
         log.info("Updated voucher with id: {}", updatedVoucher.getId());
         
         return updatedVoucher;
@@ -110,6 +121,7 @@ public class VoucherServiceImpl implements VoucherService {
         }
         
         discountRepository.deleteById(id);
+        voucherCatalog.refreshAfterCommit();
         log.info("Deleted voucher with id: {}", id);
     }
 
@@ -125,6 +137,7 @@ public class VoucherServiceImpl implements VoucherService {
         
         voucher.setStatus(newStatus);
         Discount updatedVoucher = discountRepository.save(voucher);
+        voucherCatalog.refreshAfterCommit();
         
         // Log the change
         if (updatedBy != null) {
@@ -193,14 +206,14 @@ public class VoucherServiceImpl implements VoucherService {
     @Override
     public List<Discount> getAvailableVouchersForAmount(BigDecimal amount) {
         log.info("Fetching available vouchers for amount: {}", amount);
-        return discountRepository.findAvailableVouchersForAmount(LocalDate.now(), amount);
+        return voucherCatalog.findAvailable(amount, LocalDate.now());
     }
 
     @Override
     public BigDecimal calculateDiscount(String voucherCode, BigDecimal orderAmount) {
         log.info("Calculating discount for voucher: {} with amount: {}", voucherCode, orderAmount);
         
-        Optional<Discount> voucherOpt = discountRepository.findByCode(voucherCode);
+        Optional<Discount> voucherOpt = voucherCatalog.findByCode(voucherCode);
         if (voucherOpt.isEmpty()) {
             throw new IllegalArgumentException("Voucher not found: " + voucherCode);
         }
@@ -235,7 +248,8 @@ public class VoucherServiceImpl implements VoucherService {
 
     @Override
     public boolean canUseVoucher(String voucherCode, BigDecimal orderAmount) {
-        Optional<Discount> voucherOpt = discountRepository.findByCode(voucherCode);
+        // Danh mục chỉ chứa voucher ACTIVE chưa hết hạn, không cần truy vấn database
+        Optional<Discount> voucherOpt = voucherCatalog.findByCode(voucherCode);
         if (voucherOpt.isEmpty()) {
             return false;
         }
@@ -267,7 +281,7 @@ public class VoucherServiceImpl implements VoucherService {
         }
         
         // Check usage limit
-        if (voucher.getUsageLimit() != null && voucher.getUsedCount() >= voucher.getUsageLimit()) {
+        if (!VoucherCatalog.hasUsesLeft(voucher)) {
             log.debug("Voucher {} has reached usage limit", voucherCode);
             return false;
         }
@@ -286,10 +300,13 @@ public class VoucherServiceImpl implements VoucherService {
         Discount voucher = discountRepository.findByCode(voucherCode)
             .orElseThrow(() -> new IllegalArgumentException("Voucher not found: " + voucherCode));
         
-        // Increment usage count
-        voucher.setUsedCount(voucher.getUsedCount() + 1);
-        
-        Discount updatedVoucher = discountRepository.save(voucher);
+        // Tăng UsedCount bằng UPDATE có điều kiện, không ghi đè lượt dùng của request khác
+        int usedBefore = voucher.getUsedCount();
+        if (!voucherRedemptionService.redeem(voucher)) {
+            throw new ConflictException("Voucher usage limit reached: " + voucherCode);
+        }
+        entityManager.refresh(voucher);
+        Discount updatedVoucher = voucher;
         
         // Log the usage
         if (usedBy != null) {
@@ -297,7 +314,7 @@ public class VoucherServiceImpl implements VoucherService {
             changeLog.setTableName("Discounts");
             changeLog.setRecordId(voucher.getId());
             changeLog.setChangeType("USE");
-            changeLog.setChangedFields("{\"UsedCount\":\"" + (voucher.getUsedCount() - 1) + " -> " + voucher.getUsedCount() + "\"}");
+            changeLog.setChangedFields("{\"UsedCount\":\"" + usedBefore + " -> " + voucher.getUsedCount() + "\"}");
             changeLog.setChangedBy(usedBy);
             systemChangeLogRepository.save(changeLog);
         }
@@ -344,6 +361,9 @@ public class VoucherServiceImpl implements VoucherService {
             discountRepository.save(voucher);
             log.debug("Marked voucher {} as expired", voucher.getCode());
         }
+        if (!expiredVouchers.isEmpty()) {
+            voucherCatalog.refreshAfterCommit();
+        }
         
         log.info("Updated {} expired vouchers", expiredVouchers.size());
     }
@@ -357,15 +377,13 @@ public class VoucherServiceImpl implements VoucherService {
     @Override
     public int autoGiftVouchersForUser(Integer userId) {
         log.info("Auto gifting vouchers for user: {}", userId);
-        // Mock implementation - in real scenario, call stored procedure
-        return 0;
+        return voucherAutoGiftService.giftVouchersForUser(userId);
     }
     
     @Override
     public int autoGiftVouchersForAllUsers() {
         log.info("Auto gifting vouchers for all users");
-        // Mock implementation - in real scenario, call stored procedure
-        return 0;
+        return voucherAutoGiftService.autoGiftVouchersForAllCustomers();
     }
     
     @Override
@@ -0,0 +1,89 @@
+package com.example.shuttlesync.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bộ đệm trong bộ nhớ có giới hạn kích thước (bỏ phần tử ít dùng nhất) và thời gian sống cho từng phần tử.
+ * Phần tử hết hạn được nạp lại bằng loader ở lần đọc kế tiếp.
+ */
+public class BoundedTtlCache<K, V> {
+
+    private final Duration ttl;
+    private final Map<K, Entry<V>> entries;
+
+    // Các key đang được nạp -> thế hệ hiện tại, tăng mỗi lần key bị xóa trong lúc đang nạp
+    private final Map<K, Load> loading = new HashMap<>();
+
+    private record Entry<V>(V value, Instant expiresAt) {
+    }
+
+    private static final class Load {
+        private long generation;
+        private int loaders;
+    }
+
+    public BoundedTtlCache(Duration ttl, int maxSize) {
+        this.ttl = ttl;
+        // LinkedHashMap theo thứ tự truy cập: vượt quá maxSize thì bỏ phần tử ít dùng nhất
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Giá trị của key nếu còn hạn, ngược lại gọi loader và lưu kết quả.
+     * Loader chạy ngoài khóa; nếu key bị xóa trong lúc nạp thì kết quả chỉ được trả về, không được lưu,
+     * để giá trị đọc trước khi xóa không đè lên lần xóa đó.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Instant now = Instant.now();
+        Load load;
+        long generation;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt().isAfter(now)) {
+                return entry.value();
+            }
+            load = loading.computeIfAbsent(key, k -> new Load());
+            load.loaders++;
+            generation = load.generation;
+        }
+
+        try {
+            V value = loader.apply(key);
+            synchronized (this) {
+                if (load.generation == generation) {
+                    entries.put(key, new Entry<>(value, now.plus(ttl)));
+                }
+            }
+            return value;
+        } finally {
+            synchronized (this) {
+                if (--load.loaders == 0) {
+                    loading.remove(key);
+                }
+            }
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+        Load load = loading.get(key);
+        if (load != null) {
+            load.generation++;
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        loading.values().forEach(load -> load.generation++);
+    }
+}
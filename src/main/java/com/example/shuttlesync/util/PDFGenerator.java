@@ -4,9 +4,12 @@ import com.example.shuttlesync.dto.InvoiceDTO;
 import com.example.shuttlesync.dto.InvoiceDetailDTO;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.*;
+import lombok.extern.slf4j.Slf4j;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -14,11 +17,12 @@ import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Locale;
 
+@Slf4j
 public class PDFGenerator {
 
-    // Đường dẫn đến font tiếng Việt
-    private static final String FONT_PATH = "src/main/resources/fonts/vietnamese/BeVietnamPro-Regular.ttf";
-    private static final String FONT_BOLD_PATH = "src/main/resources/fonts/vietnamese/BeVietnamPro-Bold.ttf";
+    // Font tiếng Việt trong classpath (đọc được cả khi chạy từ file jar)
+    private static final String FONT_RESOURCE = "/fonts/vietnamese/BeVietnamPro-Regular.ttf";
+    private static final String FONT_BOLD_RESOURCE = "/fonts/vietnamese/BeVietnamPro-Bold.ttf";
     
     // Khai báo font với Unicode tiếng Việt
     private static Font TITLE_FONT;
@@ -27,11 +31,11 @@ public class PDFGenerator {
     private static Font BOLD_FONT;
     private static Font SMALL_FONT;
     
-    // Khởi tạo các font
+    // Khởi tạo các font một lần cho cả ứng dụng
     static {
         try {
-            BaseFont baseFont = BaseFont.createFont(FONT_PATH, BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
-            BaseFont boldBaseFont = BaseFont.createFont(FONT_BOLD_PATH, BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
+            BaseFont baseFont = loadFont(FONT_RESOURCE);
+            BaseFont boldBaseFont = loadFont(FONT_BOLD_RESOURCE);
             
             TITLE_FONT = new Font(boldBaseFont, 18, Font.NORMAL);
             HEADER_FONT = new Font(boldBaseFont, 12, Font.NORMAL);
@@ -45,7 +49,18 @@ public class PDFGenerator {
             NORMAL_FONT = new Font(Font.FontFamily.HELVETICA, 10, Font.NORMAL);
             BOLD_FONT = new Font(Font.FontFamily.HELVETICA, 10, Font.BOLD);
             SMALL_FONT = new Font(Font.FontFamily.HELVETICA, 8, Font.NORMAL);
-            e.printStackTrace();
+            log.error("Không thể tải font tiếng Việt, dùng Helvetica: {}", e.getMessage());
+        }
+    }
+    
+    private static BaseFont loadFont(String resource) throws DocumentException, IOException {
+        try (InputStream in = PDFGenerator.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Không tìm thấy font " + resource + " trong classpath");
+            }
+            byte[] fontBytes = in.readAllBytes();
+            return BaseFont.createFont(resource.substring(resource.lastIndexOf('/') + 1),
+                    BaseFont.IDENTITY_H, BaseFont.EMBEDDED, true, fontBytes, null);
         }
     }
     
@@ -55,8 +70,17 @@ public class PDFGenerator {
     
     public static byte[] generateInvoicePDF(InvoiceDTO invoice) throws DocumentException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writeInvoicePDF(invoice, baos);
+        return baos.toByteArray();
+    }
+    
+    /**
+     * Ghi PDF hóa đơn thẳng ra out khi đang dựng. Không đóng out.
+     */
+    public static void writeInvoicePDF(InvoiceDTO invoice, OutputStream out) throws DocumentException {
         Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, baos);
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        writer.setCloseStream(false);
         
         document.open();
         
@@ -164,8 +188,6 @@ public class PDFGenerator {
         document.add(footer);
         
         document.close();
-        
-        return baos.toByteArray();
     }
     
     private static PdfPCell createHeaderCell(String text) {
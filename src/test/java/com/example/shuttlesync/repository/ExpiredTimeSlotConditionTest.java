@@ -0,0 +1,117 @@
+package com.example.shuttlesync.repository;
+
+import com.example.shuttlesync.model.Booking;
+import com.example.shuttlesync.model.BookingStatusType;
+import com.example.shuttlesync.model.Court;
+import com.example.shuttlesync.model.StatusType;
+import com.example.shuttlesync.model.TimeSlot;
+import com.example.shuttlesync.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Câu UPDATE TOP ... FROM chỉ chạy trên SQL Server, nên kiểm tra điều kiện chọn khung giờ bằng một câu SELECT trên H2.
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.auto_quote_keyword=true",
+		"spring.jpa.show-sql=false"
+})
+@ContextConfiguration(classes = JpaSliceConfig.class)
+class ExpiredTimeSlotConditionTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2025, 6, 1);
+	private static final LocalTime NOW = LocalTime.of(12, 0);
+
+	@Autowired
+	private TestEntityManager em;
+
+	private StatusType booked;
+	private BookingStatusType confirmed;
+	private User customer;
+	private Court court;
+
+	@BeforeEach
+	void setUp() {
+		StatusType available = em.persist(new StatusType((byte) 1, "Trống", null));
+		booked = em.persist(new StatusType((byte) 2, "Đã đặt", null));
+		confirmed = em.persist(new BookingStatusType((byte) 2, "Đã xác nhận", null));
+
+		customer = new User();
+		customer.setFullName("Khách");
+		customer.setEmail("customer@shuttlesync.vn");
+		customer.setPhone("0900000000");
+		customer.setPassword("secret");
+		customer.setRole("customer");
+		em.persist(customer);
+
+		court = new Court();
+		court.setName("Sân 1");
+		court.setStatus(available);
+		em.persist(court);
+	}
+
+	@Test
+	void slotBookedAgainLaterTodayIsNotReset() {
+		TimeSlot heldToday = slot(1, LocalTime.of(18, 0));
+		book(heldToday, TODAY.minusDays(1));
+		book(heldToday, TODAY);
+
+		TimeSlot heldTomorrow = slot(2, LocalTime.of(10, 0));
+		book(heldTomorrow, TODAY.minusDays(1));
+		book(heldTomorrow, TODAY.plusDays(1));
+
+		TimeSlot expired = slot(3, LocalTime.of(10, 0));
+		book(expired, TODAY.minusDays(1));
+		book(expired, TODAY);
+		em.flush();
+
+		assertEquals(List.of(expired.getId()), expiredSlotIds(TODAY.minusDays(1)));
+		assertEquals(List.of(expired.getId()), expiredSlotIds(LocalDate.of(2000, 1, 1)));
+	}
+
+	private List<Integer> expiredSlotIds(LocalDate fromDate) {
+		List<?> rows = em.getEntityManager()
+				.createNativeQuery("SELECT ts.Id FROM TimeSlots ts WHERE ts.Status != 1 AND "
+						+ TimeSlotRepository.EXPIRED_SLOT_CONDITION + " ORDER BY ts.Id")
+				.setParameter("fromDate", fromDate)
+				.setParameter("date", TODAY)
+				.setParameter("currentTime", NOW)
+				.getResultList();
+		return rows.stream().map(row -> ((Number) row).intValue()).collect(Collectors.toList());
+	}
+
+	private TimeSlot slot(int index, LocalTime endTime) {
+		TimeSlot slot = new TimeSlot();
+		slot.setCourt(court);
+		slot.setSlotIndex(index);
+		slot.setStartTime(endTime.minusHours(1));
+		slot.setEndTime(endTime);
+		slot.setStatus(booked);
+		slot.setPrice(BigDecimal.valueOf(200000));
+		return em.persist(slot);
+	}
+
+	private void book(TimeSlot slot, LocalDate date) {
+		Booking booking = new Booking();
+		booking.setUser(customer);
+		booking.setCourt(court);
+		booking.setTimeSlot(slot);
+		booking.setBookingDate(date);
+		booking.setStatus(confirmed);
+		em.persist(booking);
+	}
+}
@@ -0,0 +1,253 @@
+package com.example.shuttlesync.repository;
+
+import com.example.shuttlesync.dto.BookingDTO;
+import com.example.shuttlesync.dto.CustomerRecentBookingDTO;
+import com.example.shuttlesync.model.Booking;
+import com.example.shuttlesync.model.BookingStatusType;
+import com.example.shuttlesync.model.Court;
+import com.example.shuttlesync.model.Invoice;
+import com.example.shuttlesync.model.InvoiceDetail;
+import com.example.shuttlesync.model.Payment;
+import com.example.shuttlesync.model.PaymentStatusType;
+import com.example.shuttlesync.model.StatusType;
+import com.example.shuttlesync.model.TimeSlot;
+import com.example.shuttlesync.model.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mỗi màn hình đọc dữ liệu chỉ được tốn đúng một câu SQL, dù danh sách có bao nhiêu dòng.
+ * Nếu một quan hệ mới được đọc mà chưa có trong entity graph tương ứng, số câu SQL sẽ tăng theo số dòng.
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.auto_quote_keyword=true",
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"spring.jpa.show-sql=false"
+})
+@ContextConfiguration(classes = JpaSliceConfig.class)
+class FetchPlanQueryCountTest {
+
+	private static final LocalDate DATE = LocalDate.now().plusDays(1);
+	private static final int COURTS = 3;
+	private static final int USERS = 4;
+
+	@Autowired
+	private TestEntityManager em;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private BookingRepository bookingRepository;
+
+	@Autowired
+	private InvoiceRepository invoiceRepository;
+
+	private Statistics statistics;
+	private User customer;
+	private Integer invoiceId;
+
+	@BeforeEach
+	void setUp() {
+		StatusType active = em.persist(new StatusType((byte) 1, "Active", null));
+		BookingStatusType confirmed = em.persist(new BookingStatusType((byte) 2, "Đã xác nhận", null));
+		PaymentStatusType paid = em.persist(new PaymentStatusType((byte) 2, "Đã thanh toán", null));
+
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < USERS; i++) {
+			User user = new User();
+			user.setFullName("Khách " + i);
+			user.setEmail("customer" + i + "@shuttlesync.vn");
+			user.setPhone("090000000" + i);
+			user.setPassword("secret");
+			user.setRole("customer");
+			users.add(em.persist(user));
+		}
+		customer = users.get(0);
+
+		List<TimeSlot> slots = new ArrayList<>();
+		for (int c = 0; c < COURTS; c++) {
+			Court court = new Court();
+			court.setName("Sân " + (c + 1));
+			court.setStatus(active);
+			em.persist(court);
+			for (int s = 0; s < USERS; s++) {
+				TimeSlot slot = new TimeSlot();
+				slot.setCourt(court);
+				slot.setSlotIndex(s);
+				slot.setStartTime(LocalTime.of(6 + s, 0));
+				slot.setEndTime(LocalTime.of(7 + s, 0));
+				slot.setStatus(active);
+				slot.setPrice(BigDecimal.valueOf(200000));
+				slots.add(em.persist(slot));
+			}
+		}
+
+		// Mỗi user đặt một khung giờ trên mỗi sân, kèm thanh toán và hóa đơn hai dòng
+		for (int i = 0; i < slots.size(); i++) {
+			TimeSlot slot = slots.get(i);
+			Booking booking = new Booking();
+			booking.setUser(users.get(i % USERS));
+			booking.setCourt(slot.getCourt());
+			booking.setTimeSlot(slot);
+			booking.setBookingDate(DATE);
+			booking.setStatus(confirmed);
+			em.persist(booking);
+
+			Payment payment = new Payment();
+			payment.setBooking(booking);
+			payment.setAmount(slot.getPrice());
+			payment.setPaymentMethod("MOMO");
+			payment.setPaymentStatus(paid);
+			em.persist(payment);
+
+			Invoice invoice = new Invoice();
+			invoice.setBooking(booking);
+			invoice.setOriginalAmount(slot.getPrice());
+			invoice.setFinalAmount(slot.getPrice());
+			invoice.setStatus("Paid");
+			em.persist(invoice);
+			for (int d = 0; d < 2; d++) {
+				InvoiceDetail detail = new InvoiceDetail();
+				detail.setInvoice(invoice);
+				detail.setItemName(d == 0 ? "Thuê sân" : "Nước uống");
+				detail.setQuantity(1);
+				detail.setUnitPrice(BigDecimal.TEN);
+				detail.setAmount(BigDecimal.TEN);
+				invoice.getInvoiceDetails().add(em.persist(detail));
+			}
+			invoiceId = invoice.getId();
+		}
+
+		em.flush();
+		em.clear();
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void adminBookingsByDateUseOneQuery() {
+		List<Booking> bookings = bookingRepository.findBookingsByDate(DATE);
+
+		assertEquals(COURTS * USERS, bookings.size());
+		for (Booking booking : bookings) {
+			assertNotNull(booking.getUser().getFullName());
+			assertNotNull(booking.getCourt().getName());
+			assertNotNull(booking.getTimeSlot().getStartTime());
+			assertNotNull(booking.getStatus().getName());
+		}
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void adminBookingListUsesOneQuery() {
+		List<Booking> bookings = bookingRepository.findAll();
+
+		assertEquals(COURTS * USERS, bookings.size());
+		for (Booking booking : bookings) {
+			assertNotNull(booking.getUser().getEmail());
+			assertNotNull(booking.getCourt().getName());
+			assertNotNull(booking.getTimeSlot().getEndTime());
+		}
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void customerRecentBookingsUseOneQuery() {
+		List<Booking> bookings = bookingRepository.findByUserIdOrderByCreatedAtDesc(customer.getId());
+
+		assertEquals(COURTS, bookings.size());
+		for (Booking booking : bookings) {
+			assertNotNull(booking.getCourt().getName());
+			assertNotNull(booking.getTimeSlot().getStartTime());
+			assertNotNull(booking.getStatus().getName());
+			assertEquals(1, booking.getPayments().size());
+			booking.getPayments().forEach(payment -> assertNotNull(payment.getPaymentStatus().getName()));
+		}
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void customerBookingDetailsUseOneQuery() {
+		List<Booking> bookings = bookingRepository.findByUserIdWithAllDetails(customer.getId());
+
+		assertEquals(COURTS, bookings.size());
+		for (Booking booking : bookings) {
+			assertNotNull(booking.getUser().getFullName());
+			assertNotNull(booking.getCourt().getName());
+			assertTrue(booking.getPayments().stream().allMatch(payment -> payment.getPaymentStatus() != null));
+		}
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void customerRecentBookingProjectionUsesOneQuery() {
+		List<CustomerRecentBookingDTO> bookings = bookingRepository.findUserRecentBookings(customer.getId(), PageRequest.of(0, 2));
+
+		assertEquals(2, bookings.size());
+		for (CustomerRecentBookingDTO booking : bookings) {
+			assertNotNull(booking.getCourtName());
+			assertEquals(0, BigDecimal.valueOf(200000).compareTo(booking.getAmount()));
+			assertEquals((byte) 2, booking.getPaymentStatusId());
+		}
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void adminBookingPagesUseOneQueryEach() {
+		Specification<Booking> confirmed = BookingSpecifications.hasStatus((byte) 2);
+		List<BookingDTO> first = bookingRepository.findAdminPage(confirmed, 5);
+		BookingDTO last = first.get(first.size() - 1);
+		List<BookingDTO> rest = bookingRepository.findAdminPage(
+				confirmed.and(BookingSpecifications.createdBefore(last.getCreatedAt(), last.getId())), COURTS * USERS);
+
+		assertEquals(5, first.size());
+		assertEquals(COURTS * USERS - 5, rest.size());
+		assertTrue(rest.stream().noneMatch(row -> first.stream().anyMatch(seen -> seen.getId().equals(row.getId()))));
+		assertEquals(2, bookingRepository.findRecentSummaries(PageRequest.of(0, 2)).size());
+		assertEquals(3, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void invoiceExportUsesOneQuery() {
+		Invoice invoice = invoiceRepository.findWithDetailsById(invoiceId).orElseThrow();
+
+		assertNotNull(invoice.getBooking().getUser().getEmail());
+		assertNotNull(invoice.getBooking().getCourt().getName());
+		assertEquals(2, invoice.getInvoiceDetails().size());
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void adminInvoiceListUsesOneQuery() {
+		List<Invoice> invoices = invoiceRepository.findAll();
+
+		assertEquals(COURTS * USERS, invoices.size());
+		for (Invoice invoice : invoices) {
+			assertNotNull(invoice.getBooking().getUser().getFullName());
+			assertEquals(2, invoice.getInvoiceDetails().size());
+		}
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+}
@@ -0,0 +1,16 @@
+package com.example.shuttlesync.repository;
+
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * Cấu hình chung cho các test @DataJpaTest.
+ * ShuttleSyncApplication có @ComponentScan nên không dùng được làm cấu hình cho lát cắt JPA;
+ * chỉ khai báo một lần vì test context đầy đủ cũng quét thấy lớp này.
+ */
+@Configuration
+@EntityScan("com.example.shuttlesync.model")
+@EnableJpaRepositories("com.example.shuttlesync.repository")
+public class JpaSliceConfig {
+}
@@ -0,0 +1,39 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.event.BookingChangedEvent;
+import com.example.shuttlesync.event.ChangeType;
+import com.example.shuttlesync.repository.BookingRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CourtAvailabilityIndexTest {
+
+	private static final LocalDate TODAY = LocalDate.now();
+
+	@Test
+	void changesCommittedDuringRebuildAreNotLost() {
+		BookingRepository bookingRepository = mock(BookingRepository.class);
+		CourtAvailabilityIndex index = new CourtAvailabilityIndex(bookingRepository);
+
+		// Truy vấn đọc dữ liệu trước khi booking 10 bị hủy và booking 11 được tạo; cả hai commit khi truy vấn chưa xong
+		when(bookingRepository.findActiveSlotKeysBetween(any(), any())).thenAnswer(inv -> {
+			index.onBookingChanged(new BookingChangedEvent(10, 1, 1, 7, TODAY, (byte) 4, ChangeType.UPDATED,
+					1, 7, TODAY));
+			index.onBookingChanged(new BookingChangedEvent(11, 2, 1, 8, TODAY, (byte) 1, ChangeType.CREATED,
+					null, null, null));
+			return List.<Object[]>of(new Object[]{1, 7, TODAY});
+		});
+		index.rebuild();
+
+		assertFalse(index.isBooked(1, 7, TODAY));
+		assertTrue(index.isBooked(1, 8, TODAY));
+	}
+}
@@ -0,0 +1,77 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.dto.InvoiceDTO;
+import com.example.shuttlesync.util.PDFGenerator;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvoicePdfCacheTest {
+
+	private static final LocalDateTime VERSION = LocalDateTime.of(2025, 6, 1, 10, 0);
+
+	@Test
+	void renderedPdfIsStreamedAndServedAgainUntilInvoiceChanges() throws Exception {
+		InvoicePdfCache cache = new InvoicePdfCache(1 << 20, 1 << 20);
+		ByteArrayOutputStream response = new ByteArrayOutputStream();
+
+		InvoicePdfCache.CapturingOutputStream capture = cache.capture(7, VERSION, response);
+		PDFGenerator.writeInvoicePDF(invoice(), capture);
+		capture.commit();
+
+		byte[] cached = cache.get(7, VERSION);
+		assertArrayEquals(response.toByteArray(), cached);
+		// Font tiếng Việt được nạp từ classpath, không rơi về Helvetica
+		String text = PdfTextExtractor.getTextFromPage(new PdfReader(cached), 1);
+		assertTrue(text.contains("Nguyễn Thị Hằng"), text);
+
+		assertNull(cache.get(7, VERSION.plusSeconds(1)));
+		assertNull(cache.get(7, VERSION));
+	}
+
+	@Test
+	void leastRecentlyUsedPdfsAreEvictedWhenOverBudget() {
+		InvoicePdfCache cache = new InvoicePdfCache(250, 200);
+
+		cache.put(1, VERSION, new byte[100]);
+		cache.put(2, VERSION, new byte[100]);
+		cache.get(1, VERSION);
+		cache.put(3, VERSION, new byte[100]);
+		cache.put(4, VERSION, new byte[300]);
+
+		assertNotNull(cache.get(1, VERSION));
+		assertNull(cache.get(2, VERSION));
+		assertNotNull(cache.get(3, VERSION));
+		assertNull(cache.get(4, VERSION));
+
+		cache.invalidate(1);
+		assertNull(cache.get(1, VERSION));
+	}
+
+	private static InvoiceDTO invoice() {
+		InvoiceDTO invoice = new InvoiceDTO();
+		invoice.setId(7);
+		invoice.setBookingId(3);
+		invoice.setCustomerName("Nguyễn Thị Hằng");
+		invoice.setCustomerEmail("hang@shuttlesync.vn");
+		invoice.setCustomerPhone("0900000000");
+		invoice.setInvoiceDate(LocalDate.of(2025, 6, 1));
+		invoice.setStatus("Paid");
+		invoice.setOriginalAmount(BigDecimal.valueOf(200000));
+		invoice.setDiscountAmount(BigDecimal.ZERO);
+		invoice.setFinalAmount(BigDecimal.valueOf(200000));
+		invoice.setDetails(new ArrayList<>());
+		return invoice;
+	}
+}
@@ -0,0 +1,166 @@
+package com.example.shuttlesync.service;
+
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Gửi qua một máy chủ SMTP giả chạy trong test để đếm số kết nối và số email nhận được
+ */
+class MailTransportPoolTest {
+
+	private ServerSocket server;
+	private ExecutorService serverThreads;
+	private final AtomicInteger connections = new AtomicInteger();
+	private final AtomicInteger delivered = new AtomicInteger();
+
+	@BeforeEach
+	void startSmtp() throws IOException {
+		server = new ServerSocket(0);
+		serverThreads = Executors.newCachedThreadPool();
+		serverThreads.execute(() -> {
+			while (!server.isClosed()) {
+				try {
+					Socket socket = server.accept();
+					connections.incrementAndGet();
+					serverThreads.execute(() -> serve(socket));
+				} catch (IOException e) {
+					return;
+				}
+			}
+		});
+	}
+
+	@AfterEach
+	void stopSmtp() throws IOException {
+		server.close();
+		serverThreads.shutdownNow();
+	}
+
+	@Test
+	void manyMessagesShareTheSameConnections() throws Exception {
+		MailTransportPool pool = new MailTransportPool(mailSender(), 2, 60_000, 1_000);
+		ExecutorService senders = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int i = 0; i < 40; i++) {
+				int index = i;
+				results.add(senders.submit(() -> {
+					MimeMessage message = pool.createMimeMessage();
+					message.setFrom("shuttlesync.system@gmail.com");
+					message.setRecipients(MimeMessage.RecipientType.TO, "customer" + index + "@shuttlesync.vn");
+					message.setSubject("Xác nhận đặt sân #" + index, "UTF-8");
+					message.setText("Xin chào", "UTF-8");
+					pool.send(message);
+					return null;
+				}));
+			}
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			senders.shutdown();
+			pool.close();
+		}
+
+		assertEquals(40, delivered.get());
+		assertTrue(connections.get() <= 2, "connections: " + connections.get());
+	}
+
+	@Test
+	void connectionIsRecycledAfterMessageLimit() throws Exception {
+		MailTransportPool pool = new MailTransportPool(mailSender(), 1, 60_000, 3);
+		try {
+			for (int i = 0; i < 7; i++) {
+				MimeMessage message = pool.createMimeMessage();
+				message.setFrom("shuttlesync.system@gmail.com");
+				message.setRecipients(MimeMessage.RecipientType.TO, "customer@shuttlesync.vn");
+				message.setText("Xin chào", "UTF-8");
+				pool.send(message);
+			}
+		} finally {
+			pool.close();
+		}
+
+		assertEquals(7, delivered.get());
+		assertEquals(3, connections.get());
+	}
+
+	@Test
+	void recipientLimiterDefersInsteadOfSending() {
+		EmailDeliveryService.RecipientRateLimiter limiter =
+				new EmailDeliveryService.RecipientRateLimiter(2, Duration.ofMinutes(1));
+
+		assertEquals(0, limiter.tryAcquire("a@shuttlesync.vn", 1_000));
+		assertEquals(0, limiter.tryAcquire("a@shuttlesync.vn", 2_000));
+		assertEquals(59_000, limiter.tryAcquire("a@shuttlesync.vn", 2_000));
+		assertEquals(0, limiter.tryAcquire("b@shuttlesync.vn", 2_000));
+		assertEquals(0, limiter.tryAcquire("a@shuttlesync.vn", 61_000));
+	}
+
+	private JavaMailSenderImpl mailSender() {
+		JavaMailSenderImpl sender = new JavaMailSenderImpl();
+		sender.setHost("127.0.0.1");
+		sender.setPort(server.getLocalPort());
+		return sender;
+	}
+
+	/**
+	 * Phần tối thiểu của SMTP đủ cho Jakarta Mail gửi email (không AUTH, không STARTTLS)
+	 */
+	private void serve(Socket socket) {
+		try (socket;
+			 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			 PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+			reply(out, "220 localhost ESMTP");
+			String line;
+			while ((line = in.readLine()) != null) {
+				String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+				switch (command) {
+					case "EHLO", "HELO" -> reply(out, "250 localhost");
+					case "MAIL", "RCPT", "RSET", "NOOP" -> reply(out, "250 OK");
+					case "DATA" -> {
+						reply(out, "354 End data with <CR><LF>.<CR><LF>");
+						while ((line = in.readLine()) != null && !line.equals(".")) {
+							// bỏ qua nội dung
+						}
+						delivered.incrementAndGet();
+						reply(out, "250 OK");
+					}
+					case "QUIT" -> {
+						reply(out, "221 Bye");
+						return;
+					}
+					default -> reply(out, "502 Command not implemented");
+				}
+			}
+		} catch (IOException ignored) {
+			// client đóng kết nối
+		}
+	}
+
+	private static void reply(PrintWriter out, String line) {
+		out.print(line + "\r\n");
+		out.flush();
+	}
+}
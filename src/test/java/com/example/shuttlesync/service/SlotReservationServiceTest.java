@@ -0,0 +1,107 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.exeption.ConflictException;
+import com.example.shuttlesync.repository.BookingRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SlotReservationServiceTest {
+
+	private static final int REQUESTS = 300;
+	private static final LocalDate DATE = LocalDate.now().plusDays(1);
+
+	@Test
+	void parallelBookingsOnOneSlotHaveExactlyOneWinner() throws Exception {
+		// "Bảng Bookings" không có ràng buộc: chỉ khóa trong tiến trình chống đặt trùng
+		List<Integer> rows = new CopyOnWriteArrayList<>();
+		SlotReservationService reservation = newService(() -> !rows.isEmpty());
+
+		Result result = fire(REQUESTS, i -> reservation.reserve(1, 7, DATE, () -> {
+			Thread.yield();
+			rows.add(i);
+			return i;
+		}));
+
+		assertEquals(1, result.winners.get());
+		assertEquals(REQUESTS - 1, result.conflicts.get());
+		assertEquals(1, rows.size());
+	}
+
+	@Test
+	void uniqueIndexViolationAcrossNodesMapsToConflict() throws Exception {
+		// Hai node có khóa riêng, chỉ unique index ở database chặn đặt trùng
+		Set<String> uniqueIndex = ConcurrentHashMap.newKeySet();
+		SlotReservationService nodeA = newService(() -> false);
+		SlotReservationService nodeB = newService(() -> false);
+
+		Result result = fire(REQUESTS, i -> (i % 2 == 0 ? nodeA : nodeB).reserve(1, 7, DATE, () -> {
+			if (!uniqueIndex.add("1-7-" + DATE)) {
+				throw new DataIntegrityViolationException("Cannot insert duplicate key row in object 'dbo.Bookings' with unique index '"
+						+ SlotReservationService.UNIQUE_INDEX_NAME + "'");
+			}
+			return i;
+		}));
+
+		assertEquals(1, result.winners.get());
+		assertEquals(REQUESTS - 1, result.conflicts.get());
+	}
+
+	private SlotReservationService newService(BooleanSupplier slotTaken) {
+		BookingRepository bookingRepository = mock(BookingRepository.class);
+		when(bookingRepository.existsActiveBooking(any(), any(), any())).thenAnswer(inv -> slotTaken.getAsBoolean());
+		return new SlotReservationService(new CourtAvailabilityIndex(bookingRepository), mock(JdbcTemplate.class));
+	}
+
+	private Result fire(int requests, IntConsumer booking) throws InterruptedException {
+		Result result = new Result();
+		ExecutorService pool = Executors.newFixedThreadPool(32);
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(requests);
+		for (int i = 0; i < requests; i++) {
+			int request = i;
+			pool.execute(() -> {
+				try {
+					start.await();
+					booking.accept(request);
+					result.winners.incrementAndGet();
+				} catch (ConflictException e) {
+					result.conflicts.incrementAndGet();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		start.countDown();
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		pool.shutdown();
+		return result;
+	}
+
+	private static class Result {
+		final AtomicInteger winners = new AtomicInteger();
+		final AtomicInteger conflicts = new AtomicInteger();
+	}
+
+}
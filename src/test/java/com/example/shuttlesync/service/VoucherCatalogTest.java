@@ -0,0 +1,99 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.model.Discount;
+import com.example.shuttlesync.repository.DiscountRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VoucherCatalogTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2025, 6, 1);
+	private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+	private static final Clock CLOCK = Clock.fixed(TODAY.atStartOfDay(ZONE).plusHours(12).toInstant(), ZONE);
+
+	@Test
+	void availableVouchersAreARangeOnMinOrderAmount() {
+		DiscountRepository repository = mock(DiscountRepository.class);
+		when(repository.findByStatus(Discount.DiscountStatus.ACTIVE)).thenReturn(List.of(
+				voucher(1, "BIG", 500000, TODAY.minusDays(1), null, null),
+				voucher(2, "ANY", null, TODAY.minusDays(1), null, null),
+				voucher(3, "MID", 200000, TODAY.minusDays(1), null, 10),
+				voucher(4, "SOON", 100000, TODAY.plusDays(1), null, null),
+				voucher(5, "OLD", 100000, TODAY.minusDays(10), TODAY.minusDays(1), null)));
+		VoucherCatalog catalog = new VoucherCatalog(repository, CLOCK);
+		catalog.refresh();
+
+		assertEquals(List.of("ANY"), codes(catalog.findAvailable(BigDecimal.valueOf(199999), TODAY)));
+		assertEquals(List.of("ANY", "MID"), codes(catalog.findAvailable(BigDecimal.valueOf(200000), TODAY)));
+		assertEquals(List.of("ANY", "MID", "BIG"), codes(catalog.findAvailable(BigDecimal.valueOf(900000), TODAY)));
+		assertEquals(List.of("ANY", "SOON", "MID"), codes(catalog.findAvailable(BigDecimal.valueOf(300000), TODAY.plusDays(1))));
+
+		// Mã tra không phân biệt hoa thường, voucher đã hết hạn không được nạp
+		assertEquals(3, catalog.findByCode(" mid ").orElseThrow().getId());
+		assertTrue(catalog.findByCode("OLD").isEmpty());
+
+		// Mỗi lần tra là một bản sao: sửa kết quả hay ghi nhận lượt dùng không đổi voucher đã trả cho người gọi
+		Discount mid = catalog.findByCode("MID").orElseThrow();
+		assertNotSame(mid, catalog.findByCode("MID").orElseThrow());
+		mid.setUsageLimit(1000);
+		catalog.recordUse(3, 10);
+		assertEquals(0, mid.getUsedCount());
+		assertEquals(10, catalog.findByCode("MID").orElseThrow().getUsedCount());
+		assertEquals(10, catalog.findByCode("MID").orElseThrow().getUsageLimit());
+		assertEquals(List.of("ANY", "BIG"), codes(catalog.findAvailable(BigDecimal.valueOf(900000), TODAY)));
+		verify(repository).findByStatus(Discount.DiscountStatus.ACTIVE);
+	}
+
+	@Test
+	void personalVouchersAreOnlyVisibleToTheirHolder() {
+		DiscountRepository repository = mock(DiscountRepository.class);
+		Discount mine = voucher(2, "MINE", 100000, TODAY.minusDays(1), null, null);
+		mine.setVoucherType(Discount.VoucherType.PERSONAL);
+		Discount theirs = voucher(3, "THEIRS", null, TODAY.minusDays(1), null, null);
+		theirs.setVoucherType(Discount.VoucherType.PERSONAL);
+		when(repository.findByStatus(Discount.DiscountStatus.ACTIVE)).thenReturn(List.of(
+				voucher(1, "PUBLIC", 200000, TODAY.minusDays(1), null, null), mine, theirs));
+		when(repository.findUnusedPersonalVoucherIds(7)).thenReturn(List.of(2));
+		VoucherCatalog catalog = new VoucherCatalog(repository, CLOCK);
+		catalog.refresh();
+
+		assertEquals(List.of("PUBLIC"), codes(catalog.findAvailable(BigDecimal.valueOf(300000), TODAY)));
+		assertEquals(List.of("MINE", "PUBLIC"), codes(catalog.findAvailable(BigDecimal.valueOf(300000), TODAY, 7)));
+		assertEquals(List.of("MINE"), codes(catalog.findAvailable(BigDecimal.valueOf(150000), TODAY, 7)));
+
+		assertTrue(catalog.findByCode("MINE", 7).isPresent());
+		assertTrue(catalog.findByCode("THEIRS", 7).isEmpty());
+		assertTrue(catalog.findByCode("MINE", null).isEmpty());
+		assertTrue(catalog.findByCode("PUBLIC", null).isPresent());
+	}
+
+	private static List<String> codes(List<Discount> vouchers) {
+		return vouchers.stream().map(Discount::getCode).toList();
+	}
+
+	private static Discount voucher(int id, String code, Integer minOrderAmount, LocalDate validFrom, LocalDate validTo,
+									Integer usageLimit) {
+		Discount voucher = new Discount();
+		voucher.setId(id);
+		voucher.setCode(code);
+		voucher.setType(Discount.DiscountType.FIXED);
+		voucher.setValue(BigDecimal.valueOf(20000));
+		voucher.setMinOrderAmount(minOrderAmount != null ? BigDecimal.valueOf(minOrderAmount) : null);
+		voucher.setValidFrom(validFrom);
+		voucher.setValidTo(validTo);
+		voucher.setUsageLimit(usageLimit);
+		return voucher;
+	}
+}
@@ -0,0 +1,194 @@
+package com.example.shuttlesync.service;
+
+import com.example.shuttlesync.model.Discount;
+import com.example.shuttlesync.repository.DiscountRepository;
+import com.example.shuttlesync.repository.JpaSliceConfig;
+import com.example.shuttlesync.repository.VoucherLeaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Nhiều request dùng cùng một voucher giới hạn lượt: số lượt thành công không bao giờ vượt UsageLimit
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.auto_quote_keyword=true",
+		"spring.jpa.show-sql=false"
+})
+@ContextConfiguration(classes = JpaSliceConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VoucherRedemptionServiceTest {
+
+	private static final int LIMIT = 50;
+	private static final int REQUESTS = 200;
+
+	@Autowired
+	private DiscountRepository discountRepository;
+
+	@Autowired
+	private VoucherLeaseRepository voucherLeaseRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM VoucherLeaseUses");
+		voucherLeaseRepository.deleteAll();
+		discountRepository.deleteAll();
+	}
+
+	@Test
+	void concurrentRedemptionsNeverExceedUsageLimit() throws Exception {
+		Discount voucher = voucher("FLASH50");
+		VoucherRedemptionService redemption = newService(List.of(), 20);
+
+		assertEquals(LIMIT, fire(redemption, voucher));
+		assertEquals(LIMIT, usedCount(voucher));
+	}
+
+	@Test
+	void hotVoucherBlocksNeverExceedUsageLimit() throws Exception {
+		Discount voucher = voucher("HOT50");
+		VoucherRedemptionService redemption = newService(List.of("hot50"), 8);
+
+		assertEquals(LIMIT, fire(redemption, voucher));
+		assertEquals(LIMIT, usedCount(voucher));
+	}
+
+	@Test
+	void rolledBackHotRedemptionIsReturnedToTheBlock() {
+		Discount voucher = voucher("HOT50");
+		VoucherRedemptionService redemption = newService(List.of("HOT50"), 8);
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+		tx.executeWithoutResult(status -> {
+			assertTrue(redemption.redeem(voucher));
+			status.setRollbackOnly();
+		});
+		tx.executeWithoutResult(status -> assertTrue(redemption.redeem(voucher)));
+		redemption.releaseReservedBlocks();
+
+		assertEquals(1, usedCount(voucher));
+	}
+
+	@Test
+	void expiredLeaseOfCrashedNodeIsReclaimed() {
+		Discount voucher = voucher("HOT50");
+		// Node "chết" sau khi giữ khối 8 lượt và dùng 2 lượt từ khối, lease hết hạn ngay
+		VoucherRedemptionService crashed = newService(List.of("HOT50"), 8, 0);
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+		for (int i = 0; i < 3; i++) {
+			tx.executeWithoutResult(status -> assertTrue(crashed.redeem(voucher)));
+			crashed.awaitRefills();
+		}
+		// Lượt đầu đi đường UPDATE trực tiếp trong lúc khối đầu tiên được nạp
+		assertEquals(1 + 8, usedCount(voucher));
+
+		newService(List.of("HOT50"), 8).reclaimExpiredLeases();
+
+		assertEquals(3, usedCount(voucher));
+		assertEquals(0, voucherLeaseRepository.count());
+		// Khối của node cũ đã bị thu hồi: lượt tiếp theo không dùng khối cũ mà đi đường trực tiếp và nạp khối mới
+		tx.executeWithoutResult(status -> assertTrue(crashed.redeem(voucher)));
+		crashed.awaitRefills();
+		assertEquals(4 + 8, usedCount(voucher));
+	}
+
+	@Test
+	void renewingLeaseSettlesCommittedUses() {
+		Discount voucher = voucher("HOT50");
+		VoucherRedemptionService redemption = newService(List.of("HOT50"), 8);
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+		for (int i = 0; i < 4; i++) {
+			tx.executeWithoutResult(status -> assertTrue(redemption.redeem(voucher)));
+			redemption.awaitRefills();
+		}
+
+		redemption.renewLeases();
+
+		assertEquals(0L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM VoucherLeaseUses", Long.class));
+		// Khối 8 lượt đã cấp 3 lượt: lease còn giữ 5
+		assertEquals(5, voucherLeaseRepository.findAll().get(0).getReserved());
+		redemption.releaseReservedBlocks();
+		assertEquals(4, usedCount(voucher));
+	}
+
+	/**
+	 * @return số lượt dùng thành công
+	 */
+	private int fire(VoucherRedemptionService redemption, Discount voucher) throws InterruptedException {
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+		AtomicInteger redeemed = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(16);
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(REQUESTS);
+		for (int i = 0; i < REQUESTS; i++) {
+			pool.execute(() -> {
+				try {
+					start.await();
+					if (Boolean.TRUE.equals(tx.execute(status -> redemption.redeem(voucher)))) {
+						redeemed.incrementAndGet();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		start.countDown();
+		assertTrue(done.await(60, TimeUnit.SECONDS));
+		pool.shutdown();
+		redemption.releaseReservedBlocks();
+		return redeemed.get();
+	}
+
+	private VoucherRedemptionService newService(List<String> hotCodes, int blockSize) {
+		return newService(hotCodes, blockSize, 120);
+	}
+
+	private VoucherRedemptionService newService(List<String> hotCodes, int blockSize, long leaseSeconds) {
+		return new VoucherRedemptionService(discountRepository, voucherLeaseRepository,
+				new VoucherCatalog(discountRepository), jdbcTemplate, transactionManager, hotCodes, blockSize, leaseSeconds);
+	}
+
+	private Discount voucher(String code) {
+		Discount voucher = new Discount();
+		voucher.setCode(code);
+		voucher.setName("Flash sale");
+		voucher.setType(Discount.DiscountType.FIXED);
+		voucher.setValue(BigDecimal.valueOf(20000));
+		voucher.setUsageLimit(LIMIT);
+		voucher.setValidFrom(LocalDate.now());
+		return discountRepository.save(voucher);
+	}
+
+	private int usedCount(Discount voucher) {
+		return discountRepository.findById(voucher.getId()).orElseThrow().getUsedCount();
+	}
+}
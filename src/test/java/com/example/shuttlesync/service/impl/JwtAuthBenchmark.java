@@ -0,0 +1,90 @@
+package com.example.shuttlesync.service.impl;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh chi phí xác thực JWT cho mỗi request trong JwtAuthenticationFilter:
+ * cách cũ (parse 3 lần, mỗi lần tạo lại khóa và parser) và cách mới (parse 1 lần với parser dùng chung).
+ *
+ * Chạy: mvn test-compile exec:java -Dexec.mainClass=com.example.shuttlesync.service.impl.JwtAuthBenchmark -Dexec.classpathScope=test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthBenchmark {
+
+	private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+	private JwtServiceImpl jwtService;
+	private UserDetails userDetails;
+	private String token;
+
+	@Setup
+	public void setUp() {
+		jwtService = new JwtServiceImpl();
+		ReflectionTestUtils.setField(jwtService, "secretKey", SECRET);
+		ReflectionTestUtils.setField(jwtService, "jwtExpiration", 86400000L);
+		ReflectionTestUtils.setField(jwtService, "refreshExpiration", 604800000L);
+		jwtService.init();
+
+		userDetails = new User("customer@shuttlesync.vn", "", List.of());
+		token = jwtService.generateToken(userDetails);
+	}
+
+	@Benchmark
+	public boolean perRequestBefore() {
+		String username = legacyParse(token).getSubject();
+		return username.equals(userDetails.getUsername())
+				&& legacyParse(token).getSubject().equals(userDetails.getUsername())
+				&& !legacyParse(token).getExpiration().before(new Date());
+	}
+
+	@Benchmark
+	public boolean perRequestAfter() {
+		Claims claims = jwtService.parseClaims(token);
+		return claims.getSubject() != null && jwtService.isTokenValid(claims, userDetails);
+	}
+
+	// Cách parse trước đây: giải mã secret, tạo khóa và parser mới cho mỗi lần gọi
+	private static Claims legacyParse(String token) {
+		Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+		return Jwts.parserBuilder()
+				.setSigningKey(key)
+				.build()
+				.parseClaimsJws(token)
+				.getBody();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(JwtAuthBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
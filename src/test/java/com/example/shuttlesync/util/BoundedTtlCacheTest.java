@@ -0,0 +1,71 @@
+package com.example.shuttlesync.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BoundedTtlCacheTest {
+
+	@Test
+	void leastRecentlyUsedEntryIsDroppedWhenFull() {
+		List<Integer> loads = new ArrayList<>();
+		BoundedTtlCache<Integer, String> cache = new BoundedTtlCache<>(Duration.ofMinutes(5), 2);
+
+		cache.get(1, key -> load(loads, key));
+		cache.get(2, key -> load(loads, key));
+		cache.get(1, key -> load(loads, key));
+		cache.get(3, key -> load(loads, key));
+		cache.get(1, key -> load(loads, key));
+		cache.get(2, key -> load(loads, key));
+
+		assertEquals(List.of(1, 2, 3, 2), loads);
+	}
+
+	@Test
+	void expiredAndInvalidatedEntriesAreLoadedAgain() {
+		List<Integer> loads = new ArrayList<>();
+		BoundedTtlCache<Integer, String> expired = new BoundedTtlCache<>(Duration.ZERO, 10);
+		expired.get(1, key -> load(loads, key));
+		expired.get(1, key -> load(loads, key));
+		assertEquals(List.of(1, 1), loads);
+
+		loads.clear();
+		BoundedTtlCache<Integer, String> cache = new BoundedTtlCache<>(Duration.ofMinutes(5), 10);
+		assertEquals("user-1", cache.get(1, key -> load(loads, key)));
+		cache.invalidate(1);
+		cache.get(1, key -> load(loads, key));
+		cache.invalidateAll();
+		cache.get(1, key -> load(loads, key));
+		assertEquals(List.of(1, 1, 1), loads);
+	}
+
+	@Test
+	void valueLoadedBeforeInvalidationIsNotStored() {
+		List<Integer> loads = new ArrayList<>();
+		BoundedTtlCache<Integer, String> cache = new BoundedTtlCache<>(Duration.ofMinutes(5), 10);
+
+		// Key bị xóa trong lúc loader còn đang chạy: giá trị cũ vẫn được trả về nhưng không được lưu
+		assertEquals("user-1", cache.get(1, key -> {
+			cache.invalidate(key);
+			return load(loads, key);
+		}));
+		cache.get(1, key -> load(loads, key));
+		assertEquals("user-2", cache.get(2, key -> {
+			cache.invalidateAll();
+			return load(loads, key);
+		}));
+		cache.get(2, key -> load(loads, key));
+		cache.get(2, key -> load(loads, key));
+
+		assertEquals(List.of(1, 1, 2, 2), loads);
+	}
+
+	private static String load(List<Integer> loads, Integer key) {
+		loads.add(key);
+		return "user-" + key;
+	}
+}